@@ -0,0 +1,298 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.Interval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
+
+/**
+ * A {@link RealTransform} by continuous offset lookup in a dense vector field
+ * that is stored in a flat primitive array.  The <em>n</em> components of a
+ * vector are stored next to each other, followed by the vector of the next
+ * pixel along dimension 0, then 1, and so on.
+ *
+ * Offsets are n-linearly interpolated and the field is extended by its border
+ * vectors, i.e. the transform is equivalent to a
+ * {@link DeformationFieldTransform} with default interpolation and
+ * out-of-bounds strategy.  Unlike the former, the interpolation weights are
+ * calculated only once per point and all components of a vector are fetched
+ * together.
+ *
+ * The jacobian is that of the n-linear interpolant, i.e. it is piecewise
+ * constant along the differentiated dimension and does not exist on the
+ * grid lines where the one-sided derivative is used.
+ *
+ * Copies share the field.
+ */
+public abstract class AbstractInterleavedDeformationFieldTransform extends AbstractDifferentiableRealTransform
+{
+	protected final int n;
+
+	protected final long[] min;
+
+	/* last valid pixel index per dimension */
+	protected final long[] last;
+
+	/* distance of neighboring vectors along each dimension in array elements */
+	protected final int[] strides;
+
+	protected final int numCorners;
+
+	/* scratch for the current point */
+	protected final double[] position;
+
+	protected final int[] offsets;
+
+	protected final double[] weights;
+
+	protected final double[] displacement;
+
+	protected AbstractInterleavedDeformationFieldTransform( final long[] min, final long[] dimensions, final long length )
+	{
+		n = dimensions.length;
+
+		assert min.length == n : "Dimensions do not match.";
+
+		this.min = min.clone();
+		last = new long[ n ];
+		strides = new int[ n ];
+		long size = n;
+		for ( int d = 0; d < n; ++d )
+		{
+			last[ d ] = dimensions[ d ] - 1;
+			strides[ d ] = ( int )size;
+			size *= dimensions[ d ];
+		}
+
+		assert length >= size : "Field array too small.";
+
+		numCorners = 1 << n;
+		position = new double[ n ];
+		offsets = new int[ numCorners ];
+		weights = new double[ numCorners ];
+		displacement = new double[ n ];
+	}
+
+	protected AbstractInterleavedDeformationFieldTransform( final Interval interval, final long length )
+	{
+		this( minAsLongArray( interval ), dimensionsAsLongArray( interval ), length );
+	}
+
+	protected AbstractInterleavedDeformationFieldTransform( final AbstractInterleavedDeformationFieldTransform t )
+	{
+		n = t.n;
+		min = t.min;
+		last = t.last;
+		strides = t.strides;
+		numCorners = t.numCorners;
+		position = new double[ n ];
+		offsets = new int[ numCorners ];
+		weights = new double[ numCorners ];
+		displacement = new double[ n ];
+	}
+
+	private static long[] minAsLongArray( final Interval interval )
+	{
+		final long[] min = new long[ interval.numDimensions() ];
+		interval.min( min );
+		return min;
+	}
+
+	private static long[] dimensionsAsLongArray( final Interval interval )
+	{
+		final long[] dimensions = new long[ interval.numDimensions() ];
+		interval.dimensions( dimensions );
+		return dimensions;
+	}
+
+	/**
+	 * Calculate the array offsets of all 2<sup><em>n</em></sup> corner
+	 * vectors around {@link #position} and their interpolation weights.
+	 */
+	protected void prepare()
+	{
+		prepare( -1 );
+	}
+
+	/**
+	 * Calculate the array offsets of all 2<sup><em>n</em></sup> corner
+	 * vectors around {@link #position} and the weights of the partial
+	 * derivative of the interpolant along dimension <em>derivative</em>.
+	 * Outside of the field, the derivative along the clamped dimension is 0.
+	 * A negative <em>derivative</em> calculates the interpolation weights.
+	 */
+	protected void prepare( final int derivative )
+	{
+		offsets[ 0 ] = 0;
+		weights[ 0 ] = 1.0;
+		for ( int d = 0, numPrepared = 1; d < n; ++d, numPrepared <<= 1 )
+		{
+			final double p = position[ d ] - min[ d ];
+			final long f;
+			final double t;
+			if ( p <= 0 )
+			{
+				f = 0;
+				t = 0;
+			}
+			else if ( p >= last[ d ] )
+			{
+				f = last[ d ];
+				t = 0;
+			}
+			else
+			{
+				f = ( long )p;
+				t = p - f;
+			}
+
+			final int offset = ( int )f * strides[ d ];
+			final int step = f < last[ d ] ? strides[ d ] : 0;
+			final double t0, t1;
+			if ( d != derivative )
+			{
+				t0 = 1.0 - t;
+				t1 = t;
+			}
+			else if ( p <= 0 || p >= last[ d ] )
+			{
+				t0 = 0;
+				t1 = 0;
+			}
+			else
+			{
+				t0 = -1.0;
+				t1 = 1.0;
+			}
+			for ( int k = 0; k < numPrepared; ++k )
+			{
+				final int o = offsets[ k ] + offset;
+				final double w = weights[ k ];
+				offsets[ k ] = o;
+				weights[ k ] = w * t0;
+				offsets[ k + numPrepared ] = o + step;
+				weights[ k + numPrepared ] = w * t1;
+			}
+		}
+	}
+
+	/**
+	 * Interpolate the offset vector at {@link #position} into
+	 * {@link #displacement} using the corners calculated by {@link #prepare()}.
+	 */
+	protected abstract void interpolate();
+
+	/**
+	 * Interpolate the partial derivative of the offset vector at
+	 * {@link #position} into {@link #displacement} using the corners
+	 * calculated by {@link #prepare(int)}.  Other than {@link #interpolate()},
+	 * the weights of a derivative sum up to 0, implementations that shift
+	 * the interpolated vector must override this method.
+	 */
+	protected void interpolateDerivative()
+	{
+		interpolate();
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		System.arraycopy( source, 0, position, 0, n );
+		prepare();
+		interpolate();
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = position[ d ] + displacement[ d ];
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = source[ d ];
+		prepare();
+		interpolate();
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = ( float )( position[ d ] + displacement[ d ] );
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = source.getDoublePosition( d );
+		prepare();
+		interpolate();
+		for ( int d = 0; d < n; ++d )
+			target.setPosition( position[ d ] + displacement[ d ], d );
+	}
+
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		assert x.length >= n : "Input dimensions too small.";
+
+		System.arraycopy( x, 0, position, 0, n );
+		for ( int j = 0; j < n; ++j )
+		{
+			prepare( j );
+			interpolateDerivative();
+			for ( int i = 0; i < n; ++i )
+				jacobian[ i ][ j ] = ( i == j ? 1.0 : 0.0 ) + displacement[ i ];
+		}
+	}
+
+	@Override
+	public abstract AbstractInterleavedDeformationFieldTransform copy();
+}
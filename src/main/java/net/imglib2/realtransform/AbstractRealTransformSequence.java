@@ -35,20 +35,31 @@
 package net.imglib2.realtransform;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPoint;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
 
 /**
  * Shared properties of {@link RealTransformSequence} and
  * {@link InvertibleRealTransformSequence}, sequences of something that extends
  * {@link RealTransform RealTransforms}. If empty, will behave as the identity transformation.
+ *
+ * The jacobian is the product of the jacobians of all stages, see
+ * {@link RealTransformJacobian}.
  * 
  * @author Stephan Saalfeld
  */
-public class AbstractRealTransformSequence< R extends RealTransform > implements RealTransform
+public class AbstractRealTransformSequence< R extends RealTransform > extends AbstractDifferentiableRealTransform
 {
+	/**
+	 * Number of points passed through all transforms of the sequence at once
+	 * by the batch apply methods.
+	 */
+	final static protected int BATCH_SIZE = 1024;
+
 	final protected ArrayList< R > transforms = new ArrayList<>();
 
 	protected double[] tmp = new double[ 0 ];
@@ -59,6 +70,14 @@ public class AbstractRealTransformSequence< R extends RealTransform > implements
 
 	protected int nTarget = 0;
 
+	/**
+	 * Cached result of {@link #compile()}, null if it has to be recomputed.
+	 */
+	protected AbstractRealTransformSequence< R > compiled = null;
+
+	/* jacobian scratch, allocated on first use */
+	protected RealTransformJacobian chain = null;
+
 	/**
 	 * Append a {@link RealTransform} to the sequence.
 	 *
@@ -67,6 +86,7 @@ public class AbstractRealTransformSequence< R extends RealTransform > implements
 	public void add( final R transform )
 	{
 		transforms.add( transform );
+		compiled = null;
 
 		if ( transforms.size() == 1 )
 		{
@@ -167,8 +187,8 @@ public class AbstractRealTransformSequence< R extends RealTransform > implements
 			for ( int d = 0; d < nSource; ++d )
 				tmp[ d ] = source[ d ];
 
-			for ( final RealTransform t : transforms )
-				t.apply( tmp, tmp );
+			for ( int i = 0; i <= s; ++i )
+				transforms.get( i ).apply( tmp, tmp );
 
 			for ( int d = 0; d < nTarget; ++d )
 				target[ d ] = ( float )tmp[ d ];
@@ -204,6 +224,249 @@ public class AbstractRealTransformSequence< R extends RealTransform > implements
 		}
 	}
 
+	/**
+	 * Returns true if the sequence is not empty and all transforms in the
+	 * sequence map between spaces of the same dimensionality.  Then, batches
+	 * can be passed through the sequence stage by stage, using the target
+	 * array as intermediate storage.
+	 *
+	 * @return true if batches can be transformed stage by stage
+	 */
+	protected boolean isBatchable()
+	{
+		if ( transforms.size() == 0 || nSource != nTarget )
+			return false;
+
+		for ( final R t : transforms )
+			if ( t.numSourceDimensions() != nTarget || t.numTargetDimensions() != nTarget )
+				return false;
+
+		return true;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		if ( !isBatchable() )
+		{
+			super.apply( source, target, offset, count );
+			return;
+		}
+
+		assert source.length >= ( offset + count ) * nSource && target.length >= ( offset + count ) * nTarget: "Input dimensions too small.";
+
+		final int s = transforms.size();
+		final R first = transforms.get( 0 );
+		for ( int b = offset, e = offset + count; b < e; b += BATCH_SIZE )
+		{
+			/* stay in cache while passing a block through all stages */
+			final int n = Math.min( BATCH_SIZE, e - b );
+			first.apply( source, target, b, n );
+			for ( int i = 1; i < s; ++i )
+				transforms.get( i ).apply( target, target, b, n );
+		}
+	}
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		if ( !isBatchable() )
+		{
+			super.apply( source, target, offset, count );
+			return;
+		}
+
+		assert source.length >= nSource && target.length >= nTarget: "Input dimensions too small.";
+
+		final int s = transforms.size();
+		final R first = transforms.get( 0 );
+		for ( int b = offset, e = offset + count; b < e; b += BATCH_SIZE )
+		{
+			final int n = Math.min( BATCH_SIZE, e - b );
+			first.apply( source, target, b, n );
+			for ( int i = 1; i < s; ++i )
+				transforms.get( i ).apply( target, target, b, n );
+		}
+	}
+
+	/**
+	 * Writes the jacobian of the sequence at x into jacobian by the chain
+	 * rule, i.e. the product of the jacobians of all stages, each evaluated
+	 * at the image of x under the preceding stages.
+	 *
+	 * @param x
+	 *            the point
+	 * @param jacobian
+	 *            the jacobian to write into, [row][column], at least
+	 *            {@link #numTargetDimensions()} x {@link #numSourceDimensions()}
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		if ( chain == null )
+			chain = new RealTransformJacobian( Math.max( 1, tmp.length ) );
+
+		chain.jacobian( transforms, x, jacobian );
+	}
+
+	/**
+	 * Returns an equivalent sequence with fewer stages.  Transforms that
+	 * return true for {@link RealTransform#isIdentity()} are dropped, all
+	 * other transforms are shared with this sequence.  Subclasses may in
+	 * addition fuse adjacent transforms.
+	 *
+	 * <p>
+	 * The result is cached and recomputed after the next
+	 * {@link #add(RealTransform)}.  It must not be modified.
+	 * </p>
+	 *
+	 * @return the compiled sequence
+	 */
+	public AbstractRealTransformSequence< R > compile()
+	{
+		if ( compiled == null )
+		{
+			final AbstractRealTransformSequence< R > sequence = new AbstractRealTransformSequence<>();
+			for ( final R t : transforms )
+				if ( !t.isIdentity() )
+					sequence.add( t );
+
+			/* preserve dimensionality */
+			if ( sequence.transforms.size() == 0 && transforms.size() > 0 )
+				sequence.add( transforms.get( 0 ) );
+
+			compiled = sequence;
+		}
+		return compiled;
+	}
+
+	/**
+	 * Append the stages of a transform to a flat list.  Nested sequences are
+	 * unrolled, the inverse of an {@link InvertibleRealTransformSequence} is
+	 * unrolled into the inverses of its elements in reverse order, and an
+	 * {@link InverseRealTransform} is replaced by the inverse of the wrapped
+	 * transform if that is not an {@link InverseRealTransform} itself.  All
+	 * other transforms are appended as they are.
+	 *
+	 * @param transform the transform
+	 * @param flat the list to append to
+	 */
+	protected static void flatten( final RealTransform transform, final List< RealTransform > flat )
+	{
+		if ( transform instanceof AbstractRealTransformSequence )
+		{
+			for ( final RealTransform t : ( ( AbstractRealTransformSequence< ? > )transform ).transforms )
+				flatten( t, flat );
+		}
+		else if ( transform instanceof InverseRealTransform )
+			flattenInverse( ( ( InverseRealTransform )transform ).inverse(), flat );
+		else
+			flat.add( transform );
+	}
+
+	private static void flattenInverse( final InvertibleRealTransform transform, final List< RealTransform > flat )
+	{
+		if ( transform instanceof InvertibleRealTransformSequence )
+		{
+			final List< InvertibleRealTransform > ts = ( ( InvertibleRealTransformSequence )transform ).transforms;
+			for ( int i = ts.size() - 1; i >= 0; --i )
+				flattenInverse( ts.get( i ), flat );
+		}
+		else if ( transform instanceof InverseRealTransform )
+			flatten( transform.inverse(), flat );
+		else
+		{
+			final InvertibleRealTransform inverse = transform.inverse();
+			if ( inverse instanceof InverseRealTransform )
+				flat.add( inverse );
+			else
+				flatten( inverse, flat );
+		}
+	}
+
+	/**
+	 * Drop identities from a list of transforms and replace runs of adjacent
+	 * {@link AffineGet AffineGets} of equal dimensionality by their
+	 * concatenation.  Concatenated affines are new instances that do not
+	 * reflect later changes of the original transforms.  An
+	 * {@link AffineTransform2D} or {@link AffineTransform3D} is used for 2d
+	 * and 3d affines respectively.
+	 *
+	 * @param transforms the transforms in the order they are applied
+	 * @return the fused transforms in the order they are applied
+	 */
+	protected static List< RealTransform > fuseAffines( final List< ? extends RealTransform > transforms )
+	{
+		final ArrayList< RealTransform > fused = new ArrayList<>();
+		final ArrayList< AffineGet > run = new ArrayList<>();
+		for ( final RealTransform t : transforms )
+		{
+			if ( t instanceof AffineGet )
+			{
+				final AffineGet affine = ( AffineGet ) t;
+				if ( run.size() > 0 && run.get( 0 ).numDimensions() != affine.numDimensions() )
+					flushAffines( run, fused );
+				run.add( affine );
+			}
+			else
+			{
+				flushAffines( run, fused );
+				if ( !t.isIdentity() )
+					fused.add( t );
+			}
+		}
+		flushAffines( run, fused );
+
+		/* preserve dimensionality */
+		if ( fused.size() == 0 && transforms.size() > 0 )
+			fused.add( transforms.get( 0 ) );
+
+		return fused;
+	}
+
+	private static void flushAffines( final List< AffineGet > run, final List< RealTransform > fused )
+	{
+		if ( run.size() == 1 )
+		{
+			final AffineGet affine = run.get( 0 );
+			if ( !RealViewsSimplifyUtils.isIdentity( affine ) )
+				fused.add( affine );
+		}
+		else if ( run.size() > 1 )
+		{
+			final AffineGet affine = concatenate( run );
+			if ( !RealViewsSimplifyUtils.isIdentity( affine ) )
+				fused.add( affine );
+		}
+		run.clear();
+	}
+
+	private static AffineGet concatenate( final List< AffineGet > run )
+	{
+		final int n = run.get( 0 ).numDimensions();
+		if ( n == 3 )
+		{
+			final AffineTransform3D affine = new AffineTransform3D();
+			for ( final AffineGet a : run )
+				affine.preConcatenate( a );
+			return affine;
+		}
+		else if ( n == 2 )
+		{
+			final AffineTransform2D affine = new AffineTransform2D();
+			for ( final AffineGet a : run )
+				affine.preConcatenate( a );
+			return affine;
+		}
+		else
+		{
+			final AffineTransform affine = new AffineTransform( n );
+			for ( final AffineGet a : run )
+				affine.preConcatenate( a );
+			return affine;
+		}
+	}
+
 	@SuppressWarnings( "unchecked" )
 	@Override
 	public AbstractRealTransformSequence< R > copy()
@@ -146,6 +146,33 @@ abstract public class AbstractScale implements ScaleGet
 			target.setPosition( source.getDoublePosition( d ) * s[ d ], d );
 	}
 
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		final int n = s.length;
+
+		assert source.length >= ( offset + count ) * n && target.length >= ( offset + count ) * n : "Input dimensions too small.";
+
+		for ( int i = offset * n, e = i + count * n; i < e; i += n )
+			for ( int d = 0; d < n; ++d )
+				target[ i + d ] = source[ i + d ] * s[ d ];
+	}
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		assert source.length >= s.length && target.length >= s.length : "Input dimensions too small.";
+
+		for ( int d = 0; d < s.length; ++d )
+		{
+			final double sd = s[ d ];
+			final double[] sourced = source[ d ];
+			final double[] targetd = target[ d ];
+			for ( int i = offset, e = offset + count; i < e; ++i )
+				targetd[ i ] = sourced[ i ] * sd;
+		}
+	}
+
 	@Override
 	public double get( final int row, final int column )
 	{
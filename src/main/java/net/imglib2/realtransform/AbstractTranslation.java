@@ -139,6 +139,33 @@ abstract public class AbstractTranslation implements TranslationGet
 			target.setPosition( source.getDoublePosition( d ) + t[ d ], d );
 	}
 
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		final int n = t.length;
+
+		assert source.length >= ( offset + count ) * n && target.length >= ( offset + count ) * n: "Input dimensions too small.";
+
+		for ( int i = offset * n, e = i + count * n; i < e; i += n )
+			for ( int d = 0; d < n; ++d )
+				target[ i + d ] = source[ i + d ] + t[ d ];
+	}
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		assert source.length >= t.length && target.length >= t.length: "Input dimensions too small.";
+
+		for ( int d = 0; d < t.length; ++d )
+		{
+			final double td = t[ d ];
+			final double[] sourced = source[ d ];
+			final double[] targetd = target[ d ];
+			for ( int i = offset, e = offset + count; i < e; ++i )
+				targetd[ i ] = sourced[ i ] + td;
+		}
+	}
+
 	@Override
 	public void applyInverse( final double[] source, final double[] target )
 	{
@@ -0,0 +1,490 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.RealInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+
+/**
+ * Approximates a {@link RealTransform} over a {@link RealInterval} by a
+ * 2<sup><em>n</em></sup>-tree (quadtree in 2D, octree in 3D).  Each leaf
+ * n-linearly interpolates the exact target coordinates at its corners.  Leaves
+ * are split until the distance between approximation and transform at a
+ * regular grid of samples per leaf is below a tolerance or a maximum depth is
+ * reached.  Outside of the interval, the original transform is used.
+ *
+ * Use {@link Builder} to create the approximation, {@link #getMaxError()} and
+ * {@link #numNodes()} report the achieved error and size.  Copies share the
+ * tree.
+ */
+public class AdaptiveGridTransform implements RealTransform
+{
+	protected final int n;
+
+	protected final int m;
+
+	protected final int numCorners;
+
+	protected final double[] min;
+
+	protected final double[] max;
+
+	/* index of the first of the 2^n children of each node, -1 for leaves */
+	protected final int[] children;
+
+	/* index of the corner values of each leaf */
+	protected final int[] leaves;
+
+	/* m target coordinates for each of the 2^n corners of each leaf */
+	protected final double[] corners;
+
+	protected final double maxError;
+
+	protected final int depth;
+
+	/* used outside of the interval */
+	protected final RealTransform transform;
+
+	/* scratch */
+	protected final double[] lo;
+
+	protected final double[] hi;
+
+	protected final double[] position;
+
+	protected final double[] result;
+
+	/**
+	 * Configures and builds an {@link AdaptiveGridTransform}.
+	 */
+	public static class Builder
+	{
+		protected final RealTransform transform;
+
+		protected final RealInterval interval;
+
+		protected double tolerance = 0.1;
+
+		protected int maxDepth = 8;
+
+		protected int samplesPerDimension = 5;
+
+		/**
+		 * @param transform
+		 *            the transform to be approximated
+		 * @param interval
+		 *            the domain of the approximation in source coordinates
+		 */
+		public Builder( final RealTransform transform, final RealInterval interval )
+		{
+			assert interval.numDimensions() >= transform.numSourceDimensions() : "Dimensions do not match.";
+
+			this.transform = transform;
+			this.interval = interval;
+		}
+
+		/**
+		 * @param tolerance
+		 *            the maximum distance in target space between
+		 *            approximation and transform
+		 * @return this
+		 */
+		public Builder tolerance( final double tolerance )
+		{
+			this.tolerance = tolerance;
+			return this;
+		}
+
+		/**
+		 * @param maxDepth
+		 *            the maximum number of subdivisions
+		 * @return this
+		 */
+		public Builder maxDepth( final int maxDepth )
+		{
+			this.maxDepth = maxDepth;
+			return this;
+		}
+
+		/**
+		 * @param samplesPerDimension
+		 *            the number of test points per leaf and dimension, at least
+		 *            2, the corners are included
+		 * @return this
+		 */
+		public Builder samplesPerDimension( final int samplesPerDimension )
+		{
+			assert samplesPerDimension >= 2 : "Need at least two samples per dimension.";
+
+			this.samplesPerDimension = samplesPerDimension;
+			return this;
+		}
+
+		public AdaptiveGridTransform build()
+		{
+			return new AdaptiveGridTransform( this );
+		}
+	}
+
+	/* temporary tree used while building */
+	private static class Node
+	{
+		Node[] children;
+
+		double[] corners;
+	}
+
+	protected AdaptiveGridTransform( final Builder builder )
+	{
+		n = builder.transform.numSourceDimensions();
+		m = builder.transform.numTargetDimensions();
+		numCorners = 1 << n;
+		transform = builder.transform.copy();
+
+		min = new double[ n ];
+		max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = builder.interval.realMin( d );
+			max[ d ] = builder.interval.realMax( d );
+		}
+
+		lo = new double[ n ];
+		hi = new double[ n ];
+		position = new double[ Math.max( n, m ) ];
+		result = new double[ m ];
+
+		/* build */
+		final double[] error = new double[ 1 ];
+		final int[] maxLevel = new int[ 1 ];
+		final Node root = build( builder, min.clone(), max.clone(), 0, error, maxLevel );
+		maxError = error[ 0 ];
+		depth = maxLevel[ 0 ];
+
+		/* flatten breadth first such that siblings are contiguous */
+		final List< Node > nodes = new ArrayList<>();
+		nodes.add( root );
+		int numLeaves = 0;
+		for ( int i = 0; i < nodes.size(); ++i )
+		{
+			final Node node = nodes.get( i );
+			if ( node.children == null )
+				++numLeaves;
+			else
+				for ( final Node child : node.children )
+					nodes.add( child );
+		}
+
+		children = new int[ nodes.size() ];
+		leaves = new int[ nodes.size() ];
+		corners = new double[ numLeaves * numCorners * m ];
+		for ( int i = 0, next = 1, leaf = 0; i < nodes.size(); ++i )
+		{
+			final Node node = nodes.get( i );
+			if ( node.children == null )
+			{
+				children[ i ] = -1;
+				leaves[ i ] = leaf;
+				System.arraycopy( node.corners, 0, corners, leaf, node.corners.length );
+				leaf += node.corners.length;
+			}
+			else
+			{
+				children[ i ] = next;
+				leaves[ i ] = -1;
+				next += numCorners;
+			}
+		}
+	}
+
+	protected AdaptiveGridTransform( final AdaptiveGridTransform t )
+	{
+		n = t.n;
+		m = t.m;
+		numCorners = t.numCorners;
+		min = t.min;
+		max = t.max;
+		children = t.children;
+		leaves = t.leaves;
+		corners = t.corners;
+		maxError = t.maxError;
+		depth = t.depth;
+		transform = t.transform.copy();
+
+		lo = new double[ n ];
+		hi = new double[ n ];
+		position = new double[ Math.max( n, m ) ];
+		result = new double[ m ];
+	}
+
+	private Node build(
+			final Builder builder,
+			final double[] nodeMin,
+			final double[] nodeMax,
+			final int level,
+			final double[] error,
+			final int[] maxLevel )
+	{
+		final Node node = new Node();
+		node.corners = new double[ numCorners * m ];
+		final double[] p = new double[ Math.max( n, m ) ];
+		final double[] q = new double[ Math.max( n, m ) ];
+		for ( int k = 0; k < numCorners; ++k )
+		{
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = ( k & ( 1 << d ) ) == 0 ? nodeMin[ d ] : nodeMax[ d ];
+			transform.apply( p, q );
+			System.arraycopy( q, 0, node.corners, k * m, m );
+		}
+
+		/* test a regular grid of samples */
+		final int s = builder.samplesPerDimension;
+		final int[] sample = new int[ n ];
+		final double[] fraction = new double[ n ];
+		final double[] approximation = new double[ m ];
+		double nodeError = 0;
+		while ( true )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				fraction[ d ] = ( double )sample[ d ] / ( s - 1 );
+				p[ d ] = nodeMin[ d ] + fraction[ d ] * ( nodeMax[ d ] - nodeMin[ d ] );
+			}
+			transform.apply( p, q );
+			interpolate( node.corners, 0, fraction, approximation );
+			double sum = 0;
+			for ( int d = 0; d < m; ++d )
+			{
+				final double diff = q[ d ] - approximation[ d ];
+				sum += diff * diff;
+			}
+			nodeError = Math.max( nodeError, Math.sqrt( sum ) );
+
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( ++sample[ d ] < s )
+					break;
+				sample[ d ] = 0;
+			}
+			if ( d == n )
+				break;
+		}
+
+		if ( nodeError <= builder.tolerance || level >= builder.maxDepth )
+		{
+			error[ 0 ] = Math.max( error[ 0 ], nodeError );
+			maxLevel[ 0 ] = Math.max( maxLevel[ 0 ], level );
+			return node;
+		}
+
+		node.children = new Node[ numCorners ];
+		for ( int k = 0; k < numCorners; ++k )
+		{
+			final double[] childMin = new double[ n ];
+			final double[] childMax = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				final double mid = 0.5 * ( nodeMin[ d ] + nodeMax[ d ] );
+				if ( ( k & ( 1 << d ) ) == 0 )
+				{
+					childMin[ d ] = nodeMin[ d ];
+					childMax[ d ] = mid;
+				}
+				else
+				{
+					childMin[ d ] = mid;
+					childMax[ d ] = nodeMax[ d ];
+				}
+			}
+			node.children[ k ] = build( builder, childMin, childMax, level + 1, error, maxLevel );
+		}
+		node.corners = null;
+		return node;
+	}
+
+	/**
+	 * n-linear interpolation of the corner values starting at offset.
+	 */
+	private void interpolate( final double[] values, final int offset, final double[] fraction, final double[] target )
+	{
+		for ( int d = 0; d < m; ++d )
+			target[ d ] = 0;
+
+		for ( int k = 0; k < numCorners; ++k )
+		{
+			double w = 1.0;
+			for ( int d = 0; d < n; ++d )
+				w *= ( k & ( 1 << d ) ) == 0 ? 1.0 - fraction[ d ] : fraction[ d ];
+
+			if ( w == 0 )
+				continue;
+
+			for ( int d = 0, i = offset + k * m; d < m; ++d, ++i )
+				target[ d ] += w * values[ i ];
+		}
+	}
+
+	/**
+	 * @return the largest error at the test samples of all leaves
+	 */
+	public double getMaxError()
+	{
+		return maxError;
+	}
+
+	/**
+	 * @return the number of nodes of the tree including the leaves
+	 */
+	public int numNodes()
+	{
+		return children.length;
+	}
+
+	/**
+	 * @return the number of leaves
+	 */
+	public int numLeaves()
+	{
+		return corners.length / ( numCorners * m );
+	}
+
+	/**
+	 * @return the depth of the deepest leaf
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Transform {@link #position} into {@link #result}.
+	 */
+	protected void applyPosition()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final double p = position[ d ];
+			if ( p < min[ d ] || p > max[ d ] )
+			{
+				transform.apply( position, position );
+				System.arraycopy( position, 0, result, 0, m );
+				return;
+			}
+			lo[ d ] = min[ d ];
+			hi[ d ] = max[ d ];
+		}
+
+		int node = 0;
+		while ( children[ node ] >= 0 )
+		{
+			int k = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double mid = 0.5 * ( lo[ d ] + hi[ d ] );
+				if ( position[ d ] >= mid )
+				{
+					k |= 1 << d;
+					lo[ d ] = mid;
+				}
+				else
+					hi[ d ] = mid;
+			}
+			node = children[ node ] + k;
+		}
+
+		/* reuse lo for the fractions */
+		for ( int d = 0; d < n; ++d )
+			lo[ d ] = hi[ d ] > lo[ d ] ? ( position[ d ] - lo[ d ] ) / ( hi[ d ] - lo[ d ] ) : 0;
+
+		interpolate( corners, leaves[ node ], lo, result );
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return m;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= m : "Input dimensions too small.";
+
+		System.arraycopy( source, 0, position, 0, n );
+		applyPosition();
+		System.arraycopy( result, 0, target, 0, m );
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= m : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = source[ d ];
+		applyPosition();
+		for ( int d = 0; d < m; ++d )
+			target[ d ] = ( float )result[ d ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= m : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = source.getDoublePosition( d );
+		applyPosition();
+		for ( int d = 0; d < m; ++d )
+			target.setPosition( result[ d ], d );
+	}
+
+	@Override
+	public AdaptiveGridTransform copy()
+	{
+		return new AdaptiveGridTransform( this );
+	}
+}
@@ -65,52 +65,89 @@ public class AffineRandomAccessible< T, R extends AffineGet > extends RealTransf
 	 */
 	public class AffineRandomAccess extends RealTransformRandomAccessible< T, R >.RealTransformRandomAccess
 	{
-		final double[] move = new double[ n ];
+		/* unit step vectors and their negatives, immutable after construction */
+		final protected double[][] ds;
+
+		final protected double[][] bds;
+
+		/* per dimension step vectors for the last distance moved */
+		final protected double[][] moves;
+
+		final protected long[] moveDistances;
 
 		protected AffineRandomAccess()
 		{
 			super();
+			ds = new double[ n ][ n ];
+			bds = new double[ n ][ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				final RealLocalizable dd = transformCopy.d( d );
+				for ( int ddd = 0; ddd < n; ++ddd )
+				{
+					ds[ d ][ ddd ] = dd.getDoublePosition( ddd );
+					bds[ d ][ ddd ] = -ds[ d ][ ddd ];
+				}
+			}
+			moves = new double[ n ][ n ];
+			moveDistances = new long[ n ];
 			apply();
 		}
 
 		protected AffineRandomAccess( final AffineRandomAccess a )
 		{
 			super( a );
-		}
-
-		protected void scaleMove( final double distance, final int d )
-		{
-			final RealLocalizable dd = transformCopy.d( d );
-			for ( int ddd = 0; ddd < n; ++ddd )
-				move[ ddd ] = distance * dd.getDoublePosition( ddd );
+			ds = a.ds;
+			bds = a.bds;
+			moves = new double[ n ][];
+			for ( int d = 0; d < n; ++d )
+				moves[ d ] = a.moves[ d ].clone();
+			moveDistances = a.moveDistances.clone();
+		}
+
+		/**
+		 * Get the step vector in source space for moving by distance along
+		 * dimension d.  Step vectors for the most recent distance per
+		 * dimension are cached such that repeated strides do not have to
+		 * be rescaled.
+		 */
+		protected double[] step( final long distance, final int d )
+		{
+			if ( distance == 1 )
+				return ds[ d ];
+			if ( distance == -1 )
+				return bds[ d ];
+
+			final double[] m = moves[ d ];
+			if ( moveDistances[ d ] != distance )
+			{
+				final double[] dd = ds[ d ];
+				for ( int ddd = 0; ddd < n; ++ddd )
+					m[ ddd ] = distance * dd[ ddd ];
+				moveDistances[ d ] = distance;
+			}
+			return m;
 		}
 
 		@Override
 		public void fwd( final int d )
 		{
 			super.fwd( d );
-			sourceAccess.move( transformCopy.d( d ) );
+			sourceAccess.move( ds[ d ] );
 		}
 
 		@Override
 		public void bck( final int d )
 		{
 			super.bck( d );
-			
-			/* TODO storing an inverse of all ds would potentially improve the
-			 * performance of bck calls for some overhead on construction of
-			 * the access.
-			 */
-			scaleMove( -1, d );
-			sourceAccess.move( move );
+			sourceAccess.move( bds[ d ] );
 		}
 
 		@Override
 		public void move( final long distance, final int d )
 		{
 			super.move( distance, d );
-			scaleMove( distance, d );
-			sourceAccess.move( move );
+			sourceAccess.move( step( distance, d ) );
 		}
 
 		@Override
@@ -62,35 +62,67 @@ public class AffineRealRandomAccessible< T, R extends AffineGet > extends RealTr
 	 */
 	public class AffineRealRandomAccess extends RealTransformRealRandomAccessible< T, R >.RealTransformRealRandomAccess
 	{
-		final double[] move = new double[ n ];
+		/* unit step vectors and their negatives */
+		final double[][] ds = new double[ n ][ n ];
+
+		final double[][] bds = new double[ n ][ n ];
+
+		/* per dimension step vectors for the last distance moved */
+		final double[][] moves = new double[ n ][ n ];
+
+		final double[] moveDistances = new double[ n ];
 
 		protected AffineRealRandomAccess()
 		{
 			super();
+			for ( int d = 0; d < n; ++d )
+			{
+				final RealLocalizable dd = transformCopy.d( d );
+				for ( int ddd = 0; ddd < n; ++ddd )
+				{
+					ds[ d ][ ddd ] = dd.getDoublePosition( ddd );
+					bds[ d ][ ddd ] = -ds[ d ][ ddd ];
+				}
+			}
 			apply();
 		}
 
-		final private void scaleMove( final double distance, final int d )
+		/**
+		 * Get the step vector in source space for moving by distance along
+		 * dimension d.  Step vectors for the most recent distance per
+		 * dimension are cached such that repeated strides do not have to
+		 * be rescaled.
+		 */
+		protected double[] step( final double distance, final int d )
 		{
-			final RealLocalizable dd = transformCopy.d( d );
-			for ( int ddd = 0; ddd < n; ++ddd )
-				move[ ddd ] = distance * dd.getDoublePosition( ddd );
+			if ( distance == 1 )
+				return ds[ d ];
+			if ( distance == -1 )
+				return bds[ d ];
+
+			final double[] m = moves[ d ];
+			if ( moveDistances[ d ] != distance )
+			{
+				final double[] dd = ds[ d ];
+				for ( int ddd = 0; ddd < n; ++ddd )
+					m[ ddd ] = distance * dd[ ddd ];
+				moveDistances[ d ] = distance;
+			}
+			return m;
 		}
 
 		@Override
 		public void move( final float distance, final int d )
 		{
 			super.move( distance, d );
-			scaleMove( distance, d );
-			sourceAccess.move( move );
+			sourceAccess.move( step( distance, d ) );
 		}
 
 		@Override
 		public void move( final double distance, final int d )
 		{
 			super.move( distance, d );
-			scaleMove( distance, d );
-			sourceAccess.move( move );
+			sourceAccess.move( step( distance, d ) );
 		}
 
 		@Override
@@ -152,35 +184,28 @@ public class AffineRealRandomAccessible< T, R extends AffineGet > extends RealTr
 		public void fwd( final int d )
 		{
 			super.fwd( d );
-			sourceAccess.move( transformCopy.d( d ) );
+			sourceAccess.move( ds[ d ] );
 		}
 
 		@Override
-		/* TODO storing an inverse of all ds would potentially improve the
-		 * performance of bck calls for some overhead on construction of
-		 * the access.
-		 */
 		public void bck( final int d )
 		{
 			super.bck( d );
-			scaleMove( -1, d );
-			sourceAccess.move( move );
+			sourceAccess.move( bds[ d ] );
 		}
 
 		@Override
 		public void move( final int distance, final int d )
 		{
 			super.move( distance, d );
-			scaleMove( distance, d );
-			sourceAccess.move( move );
+			sourceAccess.move( step( distance, d ) );
 		}
 
 		@Override
 		public void move( final long distance, final int d )
 		{
 			super.move( distance, d );
-			scaleMove( distance, d );
-			sourceAccess.move( move );
+			sourceAccess.move( step( distance, d ) );
 		}
 
 		@Override
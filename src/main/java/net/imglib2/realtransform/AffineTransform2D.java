@@ -153,6 +153,42 @@ public class AffineTransform2D implements AffineGet, AffineSet, Concatenable< Af
 		target[ 0 ] = tmp;
 	}
 
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		assert source.length >= ( offset + count ) * 2 && target.length >= ( offset + count ) * 2: "2d affine transformations can be applied to 2d coordinates only.";
+
+		final double m00 = a.m00, m01 = a.m01, m02 = a.m02;
+		final double m10 = a.m10, m11 = a.m11, m12 = a.m12;
+
+		for ( int i = offset * 2, e = i + count * 2; i < e; i += 2 )
+		{
+			final double s0 = source[ i ];
+			final double s1 = source[ i + 1 ];
+			target[ i ] = s0 * m00 + s1 * m01 + m02;
+			target[ i + 1 ] = s0 * m10 + s1 * m11 + m12;
+		}
+	}
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		assert source.length >= 2 && target.length >= 2: "2d affine transformations can be applied to 2d coordinates only.";
+
+		final double m00 = a.m00, m01 = a.m01, m02 = a.m02;
+		final double m10 = a.m10, m11 = a.m11, m12 = a.m12;
+
+		final double[] x = source[ 0 ], y = source[ 1 ];
+		final double[] tx = target[ 0 ], ty = target[ 1 ];
+		for ( int i = offset, e = offset + count; i < e; ++i )
+		{
+			final double s0 = x[ i ];
+			final double s1 = y[ i ];
+			tx[ i ] = s0 * m00 + s1 * m01 + m02;
+			ty[ i ] = s0 * m10 + s1 * m11 + m12;
+		}
+	}
+
 	@Override
 	public void apply( final float[] source, final float[] target )
 	{
@@ -406,6 +406,48 @@ public class AffineTransform3D implements AffineGet, AffineSet, Concatenable< Af
 		target[ 1 ] = t1;
 	}
 
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		assert source.length >= ( offset + count ) * 3 && target.length >= ( offset + count ) * 3: "3d affine transformations can be applied to 3d coordinates only.";
+
+		final double m00 = a.m00, m01 = a.m01, m02 = a.m02, m03 = a.m03;
+		final double m10 = a.m10, m11 = a.m11, m12 = a.m12, m13 = a.m13;
+		final double m20 = a.m20, m21 = a.m21, m22 = a.m22, m23 = a.m23;
+
+		for ( int i = offset * 3, e = i + count * 3; i < e; i += 3 )
+		{
+			final double s0 = source[ i ];
+			final double s1 = source[ i + 1 ];
+			final double s2 = source[ i + 2 ];
+			target[ i ] = s0 * m00 + s1 * m01 + s2 * m02 + m03;
+			target[ i + 1 ] = s0 * m10 + s1 * m11 + s2 * m12 + m13;
+			target[ i + 2 ] = s0 * m20 + s1 * m21 + s2 * m22 + m23;
+		}
+	}
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		assert source.length >= 3 && target.length >= 3: "3d affine transformations can be applied to 3d coordinates only.";
+
+		final double m00 = a.m00, m01 = a.m01, m02 = a.m02, m03 = a.m03;
+		final double m10 = a.m10, m11 = a.m11, m12 = a.m12, m13 = a.m13;
+		final double m20 = a.m20, m21 = a.m21, m22 = a.m22, m23 = a.m23;
+
+		final double[] x = source[ 0 ], y = source[ 1 ], z = source[ 2 ];
+		final double[] tx = target[ 0 ], ty = target[ 1 ], tz = target[ 2 ];
+		for ( int i = offset, e = offset + count; i < e; ++i )
+		{
+			final double s0 = x[ i ];
+			final double s1 = y[ i ];
+			final double s2 = z[ i ];
+			tx[ i ] = s0 * m00 + s1 * m01 + s2 * m02 + m03;
+			ty[ i ] = s0 * m10 + s1 * m11 + s2 * m12 + m13;
+			tz[ i ] = s0 * m20 + s1 * m21 + s2 * m22 + m23;
+		}
+	}
+
 	@Override
 	public void apply( final float[] source, final float[] target )
 	{
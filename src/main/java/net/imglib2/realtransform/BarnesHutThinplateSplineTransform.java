@@ -0,0 +1,520 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import jitk.spline.ThinPlateR2LogRSplineKernelTransform;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+
+/**
+ * A thin plate spline {@link RealTransform} for large numbers of landmarks
+ * that approximates the contribution of distant groups of landmarks
+ * (Barnes-Hut).
+ *
+ * The landmarks are organized in a k-d tree.  Each tree node stores the
+ * moments of its kernel weights up to second order around its center, such
+ * that the summed kernels r<sup>2</sup>log r of all its landmarks can be
+ * evaluated by a single second order Taylor expansion at points far enough
+ * away.  The estimated truncation error of a node is
+ * <em>|w<sub>node</sub>|</em> &rho;<sup>3</sup> / (<em>d</em> - &rho;),
+ * with <em>|w<sub>node</sub>|</em> the summed absolute weights of its
+ * landmarks, &rho; the radius of the node and <em>d</em> the distance of
+ * the point from its center.  Each node gets the share
+ * <em>|w<sub>node</sub>|</em> / <em>|w|</em> of the accuracy, with
+ * <em>|w|</em> the summed absolute weights of all landmarks, and is expanded
+ * instead of descended into if its error is below that share, i.e. if
+ * &rho;<sup>3</sup> / (<em>d</em> - &rho;) &lt; accuracy / <em>|w|</em>.
+ * Since the expanded nodes of a query are disjoint, their estimated errors
+ * sum to at most the accuracy.  With accuracy 0, all kernels are summed
+ * exactly.
+ *
+ * The transform is x + A x + b + &Sigma; w<sub>l</sub>
+ * U(|x - p<sub>l</sub>|) with the coefficients of a
+ * {@link ThinPlateR2LogRSplineKernelTransform}.  Copies share the tree.
+ */
+public class BarnesHutThinplateSplineTransform implements RealTransform
+{
+	final static public int DEFAULT_LEAF_SIZE = 8;
+
+	protected final int n;
+
+	protected final int numLandmarks;
+
+	/* affine part, A as row packed n x n, null for identity */
+	protected final double[] affine;
+
+	protected final double[] translation;
+
+	protected final double accuracy;
+
+	/* accuracy per absolute weight */
+	protected final double tolerance;
+
+	/* landmarks and their weights in tree order, [landmark * n + d] */
+	protected final double[] points;
+
+	protected final double[] weights;
+
+	/* tree nodes, children are -1 for leaves */
+	protected final int[] nodeStart;
+
+	protected final int[] nodeEnd;
+
+	protected final int[] left;
+
+	protected final int[] right;
+
+	protected final double[] center;
+
+	protected final double[] radius;
+
+	/* moments around center, [node][i] [node][i][j] and [node][i][j][k] flat */
+	protected final double[] moment0;
+
+	protected final double[] moment1;
+
+	protected final double[] moment2;
+
+	protected int numNodes = 0;
+
+	/* scratch */
+	protected final int[] stack;
+
+	protected final double[] v;
+
+	protected final double[] tmp;
+
+	protected final double[] result;
+
+	/**
+	 * @param sourceLandmarks
+	 *            the landmarks, [dimension][landmark]
+	 * @param weights
+	 *            the kernel weights, [landmark * n + dimension]
+	 * @param affine
+	 *            the affine matrix A, [row][column], may be null
+	 * @param translation
+	 *            the translation b, may be null
+	 * @param accuracy
+	 *            the maximum estimated error of a query
+	 * @param leafSize
+	 *            the maximum number of landmarks per leaf
+	 */
+	public BarnesHutThinplateSplineTransform(
+			final double[][] sourceLandmarks,
+			final double[] weights,
+			final double[][] affine,
+			final double[] translation,
+			final double accuracy,
+			final int leafSize )
+	{
+		n = sourceLandmarks.length;
+		numLandmarks = sourceLandmarks[ 0 ].length;
+		this.accuracy = accuracy;
+
+		assert weights.length >= numLandmarks * n : "Too few weights.";
+
+		if ( affine == null )
+			this.affine = null;
+		else
+		{
+			this.affine = new double[ n * n ];
+			for ( int i = 0; i < n; ++i )
+				System.arraycopy( affine[ i ], 0, this.affine, i * n, n );
+		}
+		this.translation = translation == null ? new double[ n ] : translation.clone();
+
+		/* a tree with leaves of at least leafSize / 2 landmarks has less than 4 N / leafSize nodes */
+		final int maxNodes = Math.max( 1, 4 * numLandmarks / Math.max( 1, leafSize ) + 1 );
+		nodeStart = new int[ maxNodes ];
+		nodeEnd = new int[ maxNodes ];
+		left = new int[ maxNodes ];
+		right = new int[ maxNodes ];
+		center = new double[ maxNodes * n ];
+		radius = new double[ maxNodes ];
+		moment0 = new double[ maxNodes * n ];
+		moment1 = new double[ maxNodes * n * n ];
+		moment2 = new double[ maxNodes * n * n * n ];
+
+		final int[] order = new int[ numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			order[ l ] = l;
+
+		final int depth = build( sourceLandmarks, order, 0, numLandmarks, Math.max( 1, leafSize ) );
+
+		points = new double[ numLandmarks * n ];
+		this.weights = new double[ numLandmarks * n ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+			{
+				points[ l * n + d ] = sourceLandmarks[ d ][ order[ l ] ];
+				this.weights[ l * n + d ] = weights[ order[ l ] * n + d ];
+			}
+
+		for ( int node = 0; node < numNodes; ++node )
+			computeMoments( node );
+
+		double totalAbsWeight = 0;
+		for ( final double w : this.weights )
+			totalAbsWeight += Math.abs( w );
+		tolerance = totalAbsWeight > 0 ? accuracy / totalAbsWeight : accuracy;
+
+		stack = new int[ depth + 2 ];
+		v = new double[ n ];
+		tmp = new double[ n ];
+		result = new double[ n ];
+	}
+
+	public BarnesHutThinplateSplineTransform( final ThinPlateR2LogRSplineKernelTransform tps, final double accuracy )
+	{
+		this( tps.getSourceLandmarks(), tps.getKnotWeights(), tps.getAffine(), tps.getTranslation(), accuracy, DEFAULT_LEAF_SIZE );
+	}
+
+	public BarnesHutThinplateSplineTransform( final ThinplateSplineTransform tps, final double accuracy )
+	{
+		this( tps.getKernelTransform(), accuracy );
+	}
+
+	public BarnesHutThinplateSplineTransform( final double[][] p, final double[][] q, final double accuracy )
+	{
+		this( new ThinPlateR2LogRSplineKernelTransform( p.length, p, q ), accuracy );
+	}
+
+	protected BarnesHutThinplateSplineTransform( final BarnesHutThinplateSplineTransform t )
+	{
+		n = t.n;
+		numLandmarks = t.numLandmarks;
+		affine = t.affine;
+		translation = t.translation;
+		accuracy = t.accuracy;
+		tolerance = t.tolerance;
+		points = t.points;
+		weights = t.weights;
+		nodeStart = t.nodeStart;
+		nodeEnd = t.nodeEnd;
+		left = t.left;
+		right = t.right;
+		center = t.center;
+		radius = t.radius;
+		moment0 = t.moment0;
+		moment1 = t.moment1;
+		moment2 = t.moment2;
+		numNodes = t.numNodes;
+
+		stack = new int[ t.stack.length ];
+		v = new double[ n ];
+		tmp = new double[ n ];
+		result = new double[ n ];
+	}
+
+	/**
+	 * Recursively split order[start, end) at the median of the widest
+	 * dimension.
+	 *
+	 * @return the depth of the subtree
+	 */
+	protected int build( final double[][] p, final int[] order, final int start, final int end, final int leafSize )
+	{
+		final int node = numNodes++;
+		nodeStart[ node ] = start;
+		nodeEnd[ node ] = end;
+		left[ node ] = -1;
+		right[ node ] = -1;
+
+		if ( end - start <= leafSize )
+			return 1;
+
+		int widest = 0;
+		double maxExtent = -1;
+		for ( int d = 0; d < n; ++d )
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for ( int l = start; l < end; ++l )
+			{
+				min = Math.min( min, p[ d ][ order[ l ] ] );
+				max = Math.max( max, p[ d ][ order[ l ] ] );
+			}
+			if ( max - min > maxExtent )
+			{
+				maxExtent = max - min;
+				widest = d;
+			}
+		}
+
+		final int mid = ( start + end ) >>> 1;
+		select( p[ widest ], order, start, end - 1, mid );
+
+		left[ node ] = numNodes;
+		final int leftDepth = build( p, order, start, mid, leafSize );
+		right[ node ] = numNodes;
+		final int rightDepth = build( p, order, mid, end, leafSize );
+
+		return 1 + Math.max( leftDepth, rightDepth );
+	}
+
+	/**
+	 * Partially sort order[lo, hi] such that order[k] is the landmark with
+	 * the k-th smallest coordinate (quickselect).
+	 */
+	protected static void select( final double[] coordinate, final int[] order, int lo, int hi, final int k )
+	{
+		while ( hi > lo )
+		{
+			final double pivot = coordinate[ order[ ( lo + hi ) >>> 1 ] ];
+			int i = lo;
+			int j = hi;
+			while ( i <= j )
+			{
+				while ( coordinate[ order[ i ] ] < pivot )
+					++i;
+				while ( coordinate[ order[ j ] ] > pivot )
+					--j;
+				if ( i <= j )
+				{
+					final int t = order[ i ];
+					order[ i ] = order[ j ];
+					order[ j ] = t;
+					++i;
+					--j;
+				}
+			}
+			if ( k <= j )
+				hi = j;
+			else if ( k >= i )
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	protected void computeMoments( final int node )
+	{
+		final int c = node * n;
+		final int start = nodeStart[ node ];
+		final int end = nodeEnd[ node ];
+
+		for ( int l = start; l < end; ++l )
+			for ( int d = 0; d < n; ++d )
+				center[ c + d ] += points[ l * n + d ];
+		for ( int d = 0; d < n; ++d )
+			center[ c + d ] /= end - start;
+
+		final double[] delta = new double[ n ];
+		double r2 = 0;
+		for ( int l = start; l < end; ++l )
+		{
+			double dr2 = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				delta[ d ] = points[ l * n + d ] - center[ c + d ];
+				dr2 += delta[ d ] * delta[ d ];
+			}
+			r2 = Math.max( r2, dr2 );
+
+			for ( int i = 0; i < n; ++i )
+			{
+				final double w = weights[ l * n + i ];
+				moment0[ c + i ] += w;
+				for ( int j = 0; j < n; ++j )
+				{
+					moment1[ ( c + i ) * n + j ] += w * delta[ j ];
+					for ( int k = 0; k < n; ++k )
+						moment2[ ( ( c + i ) * n + j ) * n + k ] += w * delta[ j ] * delta[ k ];
+				}
+			}
+		}
+		radius[ node ] = Math.sqrt( r2 );
+	}
+
+	/**
+	 * Add the kernel sum at x into result.
+	 */
+	protected void addKernels( final double[] x, final double[] result )
+	{
+		int top = 0;
+		stack[ top++ ] = 0;
+		while ( top > 0 )
+		{
+			final int node = stack[ --top ];
+			final int c = node * n;
+
+			if ( left[ node ] >= 0 )
+			{
+				double r2 = 0;
+				for ( int d = 0; d < n; ++d )
+				{
+					v[ d ] = x[ d ] - center[ c + d ];
+					r2 += v[ d ] * v[ d ];
+				}
+				final double r = Math.sqrt( r2 );
+				final double rho = radius[ node ];
+				if ( r > rho && rho * rho * rho < tolerance * ( r - rho ) )
+				{
+					addExpansion( node, r2, result );
+					continue;
+				}
+				stack[ top++ ] = right[ node ];
+				stack[ top++ ] = left[ node ];
+				continue;
+			}
+
+			/* leaf, sum exactly */
+			for ( int l = nodeStart[ node ], e = nodeEnd[ node ]; l < e; ++l )
+			{
+				final int o = l * n;
+				double r2 = 0;
+				for ( int d = 0; d < n; ++d )
+				{
+					final double dx = x[ d ] - points[ o + d ];
+					r2 += dx * dx;
+				}
+				if ( r2 == 0 )
+					continue;
+
+				final double u = 0.5 * r2 * Math.log( r2 );
+				for ( int i = 0; i < n; ++i )
+					result[ i ] += u * weights[ o + i ];
+			}
+		}
+	}
+
+	/**
+	 * Add the second order Taylor expansion of the kernels of node around
+	 * its center at v = x - center with r2 = |v|<sup>2</sup>:
+	 * U(v - &delta;) &asymp; U(v) - &nabla;U(v) &delta; + &frac12;
+	 * &delta;<sup>T</sup> H(v) &delta;, with
+	 * &nabla;U(v) = g v, g = 2 log r + 1, and H(v) = g I + 2 v
+	 * v<sup>T</sup> / r<sup>2</sup>.
+	 */
+	protected void addExpansion( final int node, final double r2, final double[] result )
+	{
+		final int c = node * n;
+		final double logR2 = Math.log( r2 );
+		final double u = 0.5 * r2 * logR2;
+		final double g = logR2 + 1;
+		final double h = 2 / r2;
+
+		for ( int i = 0; i < n; ++i )
+		{
+			final int m1 = ( c + i ) * n;
+			final int m2 = m1 * n;
+
+			double first = 0;
+			double trace = 0;
+			double quadratic = 0;
+			for ( int j = 0; j < n; ++j )
+			{
+				first += v[ j ] * moment1[ m1 + j ];
+				trace += moment2[ m2 + j * n + j ];
+				for ( int k = 0; k < n; ++k )
+					quadratic += v[ j ] * v[ k ] * moment2[ m2 + j * n + k ];
+			}
+			result[ i ] += u * moment0[ c + i ] - g * first + 0.5 * ( g * trace + h * quadratic );
+		}
+	}
+
+	protected void applyToResult( final double[] x )
+	{
+		for ( int i = 0; i < n; ++i )
+		{
+			double t = x[ i ] + translation[ i ];
+			if ( affine != null )
+				for ( int j = 0; j < n; ++j )
+					t += affine[ i * n + j ] * x[ j ];
+			result[ i ] = t;
+		}
+		addKernels( x, result );
+	}
+
+	/**
+	 * @return the number of nodes of the k-d tree
+	 */
+	public int numNodes()
+	{
+		return numNodes;
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		applyToResult( source );
+		System.arraycopy( result, 0, target, 0, n );
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source[ d ];
+		applyToResult( tmp );
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = ( float )result[ d ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source.getDoublePosition( d );
+		applyToResult( tmp );
+		for ( int d = 0; d < n; ++d )
+			target.setPosition( result[ d ], d );
+	}
+
+	@Override
+	public BarnesHutThinplateSplineTransform copy()
+	{
+		return new BarnesHutThinplateSplineTransform( this );
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.Type;
+
+/**
+ * Materializes a {@link RandomAccessible}, typically a transformed view as
+ * generated by {@link RealViews}, into a target {@link RandomAccessible} in
+ * parallel.
+ *
+ * The target interval is split into blocks that are distributed over a given
+ * number of tasks, by default as many as there are processors.  Each task works with its own copy of the
+ * source and target {@link RandomAccess} and iterates each block in flat
+ * order, i.e. with only relative moves along dimension 0 and a single move to
+ * the next line.  This way, {@link AffineRandomAccessible} and
+ * {@link ScanlineRealTransform scanline transforms} can update the source
+ * coordinates incrementally.
+ */
+public class BlockResampler
+{
+	/**
+	 * Default block size for <em>n</em>-dimensional targets: long lines
+	 * along dimension 0 and short extents in all other dimensions.
+	 *
+	 * @param n number of dimensions
+	 * @return the block size
+	 */
+	public static int[] defaultBlockSize( final int n )
+	{
+		final int[] blockSize = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			blockSize[ d ] = d == 0 ? 256 : 16;
+		return blockSize;
+	}
+
+	/**
+	 * Copy the samples of source within targetInterval into target using
+	 * {@link #defaultBlockSize(int) default blocks}.
+	 *
+	 * @param source the source, e.g. a transformed view
+	 * @param targetInterval the interval to be copied
+	 * @param target the target
+	 * @param service the {@link ExecutorService} executing the blocks
+	 * @param <T> the type
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static < T extends Type< T > > void resample(
+			final RandomAccessible< T > source,
+			final Interval targetInterval,
+			final RandomAccessible< T > target,
+			final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		resample( source, targetInterval, target, defaultBlockSize( targetInterval.numDimensions() ), service );
+	}
+
+	/**
+	 * Copy the samples of source within targetInterval into target.
+	 *
+	 * @param source the source, e.g. a transformed view
+	 * @param targetInterval the interval to be copied
+	 * @param target the target
+	 * @param blockSize the size of a block, blocks at the max border of
+	 *            targetInterval are cropped
+	 * @param service the {@link ExecutorService} executing the blocks
+	 * @param <T> the type
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static < T extends Type< T > > void resample(
+			final RandomAccessible< T > source,
+			final Interval targetInterval,
+			final RandomAccessible< T > target,
+			final int[] blockSize,
+			final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		resample( source, targetInterval, target, blockSize, service, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Copy the samples of source within targetInterval into target with at
+	 * most numTasks blocks being copied concurrently.
+	 *
+	 * @param source the source, e.g. a transformed view
+	 * @param targetInterval the interval to be copied
+	 * @param target the target
+	 * @param blockSize the size of a block, blocks at the max border of
+	 *            targetInterval are cropped
+	 * @param service the {@link ExecutorService} executing the blocks
+	 * @param numTasks the number of tasks submitted to service
+	 * @param <T> the type
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws IllegalArgumentException
+	 *             if a block size or numTasks is not positive
+	 */
+	public static < T extends Type< T > > void resample(
+			final RandomAccessible< T > source,
+			final Interval targetInterval,
+			final RandomAccessible< T > target,
+			final int[] blockSize,
+			final ExecutorService service,
+			final int numTasks ) throws InterruptedException, ExecutionException
+	{
+		final int n = targetInterval.numDimensions();
+
+		assert source.numDimensions() >= n && target.numDimensions() >= n && blockSize.length >= n : "Dimensions do not match.";
+
+		for ( int d = 0; d < n; ++d )
+			if ( blockSize[ d ] <= 0 )
+				throw new IllegalArgumentException( "Block size must be positive, is " + blockSize[ d ] + " in dimension " + d + "." );
+		if ( numTasks <= 0 )
+			throw new IllegalArgumentException( "Number of tasks must be positive, is " + numTasks + "." );
+
+		final long[] numBlocks = new long[ n ];
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			numBlocks[ d ] = ( targetInterval.dimension( d ) + blockSize[ d ] - 1 ) / blockSize[ d ];
+			size *= numBlocks[ d ];
+		}
+		final long totalBlocks = size;
+		if ( totalBlocks == 0 )
+			return;
+
+		final RandomAccess< T > sourceAccess = source.randomAccess( targetInterval );
+		final RandomAccess< T > targetAccess = target.randomAccess( targetInterval );
+		final AtomicLong nextBlock = new AtomicLong();
+
+		final int numSubmitted = ( int )Math.min( totalBlocks, numTasks );
+		final List< Future< ? > > futures = new ArrayList<>( numSubmitted );
+		for ( int t = 0; t < numSubmitted; ++t )
+		{
+			/* one pair of accesses per task, blocks are pulled until none is left */
+			final RandomAccess< T > s = sourceAccess.copyRandomAccess();
+			final RandomAccess< T > u = targetAccess.copyRandomAccess();
+			futures.add( service.submit( () -> {
+				final long[] min = new long[ n ];
+				final long[] max = new long[ n ];
+				for ( long i = nextBlock.getAndIncrement(); i < totalBlocks; i = nextBlock.getAndIncrement() )
+				{
+					long r = i;
+					for ( int d = 0; d < n; ++d )
+					{
+						min[ d ] = targetInterval.min( d ) + ( r % numBlocks[ d ] ) * blockSize[ d ];
+						max[ d ] = Math.min( min[ d ] + blockSize[ d ] - 1, targetInterval.max( d ) );
+						r /= numBlocks[ d ];
+					}
+					copyBlock( s, u, min, max );
+				}
+			} ) );
+		}
+
+		for ( final Future< ? > future : futures )
+			future.get();
+	}
+
+	/**
+	 * Copy the block [min, max] from source into target in flat order.
+	 */
+	protected static < T extends Type< T > > void copyBlock(
+			final RandomAccess< T > source,
+			final RandomAccess< T > target,
+			final long[] min,
+			final long[] max )
+	{
+		final int n = min.length;
+		final long[] position = min.clone();
+		final long width = max[ 0 ] - min[ 0 ] + 1;
+
+		source.setPosition( min );
+		target.setPosition( min );
+		while ( true )
+		{
+			for ( long x = 0; x < width; ++x )
+			{
+				target.get().set( source.get() );
+				source.fwd( 0 );
+				target.fwd( 0 );
+			}
+			source.setPosition( min[ 0 ], 0 );
+			target.setPosition( min[ 0 ], 0 );
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( position[ d ] < max[ d ] )
+				{
+					++position[ d ];
+					source.fwd( d );
+					target.fwd( d );
+					break;
+				}
+				position[ d ] = min[ d ];
+				source.setPosition( min[ d ], d );
+				target.setPosition( min[ d ], d );
+			}
+			if ( d == n )
+				return;
+		}
+	}
+}
@@ -0,0 +1,407 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+
+/**
+ * Approximates a {@link RealTransform} by a deformation field on a regular
+ * grid that is rasterized lazily, block by block, when a point is first
+ * transformed in its neighborhood.  Offsets between grid nodes are
+ * n-linearly interpolated.  This trades accuracy for speed when the wrapped
+ * transform is expensive, e.g. a {@link ThinplateSplineTransform} with many
+ * landmarks, an iterative inverse, or a long sequence.
+ *
+ * Blocks store one more node per dimension than their size so that the
+ * neighbors of every point fall into a single block, i.e. each transformed
+ * point looks up exactly one block.
+ *
+ * Computed blocks are kept in a bounded least recently used cache that is
+ * shared by all copies.  Copies can be used concurrently, each rasterizes
+ * with its own copy of the wrapped transform.
+ */
+public class CachedDeformationFieldTransform implements RealTransform
+{
+	final static public long DEFAULT_MAX_BYTES = 256L << 20;
+
+	final static public int DEFAULT_BLOCK_SIZE = 32;
+
+	/**
+	 * Least recently used cache of rasterized blocks.
+	 */
+	protected static class BlockCache
+	{
+		protected final Map< BlockKey, double[] > blocks;
+
+		protected BlockCache( final int maxBlocks )
+		{
+			blocks = new LinkedHashMap< BlockKey, double[] >( 2 * maxBlocks, 0.75f, true )
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry( final Map.Entry< BlockKey, double[] > eldest )
+				{
+					return size() > maxBlocks;
+				}
+			};
+		}
+
+		synchronized protected double[] get( final BlockKey key )
+		{
+			return blocks.get( key );
+		}
+
+		synchronized protected void put( final BlockKey key, final double[] block )
+		{
+			blocks.put( key, block );
+		}
+
+		synchronized protected int size()
+		{
+			return blocks.size();
+		}
+	}
+
+	/**
+	 * Block index as a hash key.  Keys in the cache are never modified,
+	 * lookups reuse a mutable key per instance.
+	 */
+	protected static class BlockKey
+	{
+		protected final long[] index;
+
+		protected int hashCode;
+
+		protected BlockKey( final long[] index )
+		{
+			this.index = index;
+			hashCode = Arrays.hashCode( index );
+		}
+
+		protected void set( final long[] index )
+		{
+			System.arraycopy( index, 0, this.index, 0, this.index.length );
+			hashCode = Arrays.hashCode( this.index );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			return o instanceof BlockKey && Arrays.equals( index, ( ( BlockKey )o ).index );
+		}
+	}
+
+	protected final int n;
+
+	protected final RealTransform transform;
+
+	protected final double[] origin;
+
+	protected final double[] spacing;
+
+	protected final int[] blockSize;
+
+	/* distance of neighboring nodes within a padded block in array elements */
+	protected final int[] strides;
+
+	protected final BlockCache cache;
+
+	/* scratch */
+	protected final double[] position;
+
+	protected final double[] displacement;
+
+	protected final long[] floor;
+
+	protected final double[] fraction;
+
+	protected final long[] blockIndex;
+
+	protected final long[] lastBlockIndex;
+
+	protected final BlockKey lookupKey;
+
+	protected double[] lastBlock = null;
+
+	/**
+	 * @param transform
+	 *            the transform, must have as many source as target dimensions
+	 * @param origin
+	 *            the location of grid node 0
+	 * @param spacing
+	 *            the distance of grid nodes per dimension
+	 * @param blockSize
+	 *            the number of grid cells per block and dimension, blocks
+	 *            store one more node per dimension
+	 * @param maxBytes
+	 *            the memory budget of the block cache
+	 */
+	public CachedDeformationFieldTransform(
+			final RealTransform transform,
+			final double[] origin,
+			final double[] spacing,
+			final int[] blockSize,
+			final long maxBytes )
+	{
+		n = transform.numSourceDimensions();
+
+		assert transform.numTargetDimensions() == n && origin.length >= n && spacing.length >= n && blockSize.length >= n : "Dimensions do not match.";
+
+		this.transform = transform.copy();
+		this.origin = origin.clone();
+		this.spacing = spacing.clone();
+		this.blockSize = blockSize.clone();
+
+		strides = new int[ n ];
+		long size = n;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = ( int )size;
+			size *= blockSize[ d ] + 1;
+		}
+
+		assert size <= Integer.MAX_VALUE : "Blocks too large.";
+
+		cache = new BlockCache( ( int )Math.max( 1, Math.min( Integer.MAX_VALUE / 2, maxBytes / ( size * Double.BYTES ) ) ) );
+
+		position = new double[ n ];
+		displacement = new double[ n ];
+		floor = new long[ n ];
+		fraction = new double[ n ];
+		blockIndex = new long[ n ];
+		lastBlockIndex = new long[ n ];
+		lookupKey = new BlockKey( new long[ n ] );
+	}
+
+	/**
+	 * Grid at origin 0 with blocks of {@link #DEFAULT_BLOCK_SIZE} nodes per
+	 * dimension and a cache of {@link #DEFAULT_MAX_BYTES}.
+	 *
+	 * @param transform
+	 *            the transform, must have as many source as target dimensions
+	 * @param spacing
+	 *            the distance of grid nodes per dimension
+	 */
+	public CachedDeformationFieldTransform( final RealTransform transform, final double... spacing )
+	{
+		this( transform, new double[ spacing.length ], spacing, defaultBlockSize( spacing.length ), DEFAULT_MAX_BYTES );
+	}
+
+	protected CachedDeformationFieldTransform( final CachedDeformationFieldTransform t )
+	{
+		n = t.n;
+		transform = t.transform.copy();
+		origin = t.origin;
+		spacing = t.spacing;
+		blockSize = t.blockSize;
+		strides = t.strides;
+		cache = t.cache;
+
+		position = new double[ n ];
+		displacement = new double[ n ];
+		floor = new long[ n ];
+		fraction = new double[ n ];
+		blockIndex = new long[ n ];
+		lastBlockIndex = new long[ n ];
+		lookupKey = new BlockKey( new long[ n ] );
+	}
+
+	private static int[] defaultBlockSize( final int n )
+	{
+		final int[] blockSize = new int[ n ];
+		Arrays.fill( blockSize, DEFAULT_BLOCK_SIZE );
+		return blockSize;
+	}
+
+	/**
+	 * @return the number of blocks in the shared cache
+	 */
+	public int numCachedBlocks()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * Get the block at {@link #blockIndex}, rasterize it if it is not cached.
+	 */
+	protected double[] block()
+	{
+		if ( lastBlock != null && Arrays.equals( blockIndex, lastBlockIndex ) )
+			return lastBlock;
+
+		lookupKey.set( blockIndex );
+		double[] block = cache.get( lookupKey );
+		if ( block == null )
+		{
+			/* rasterize outside of the lock, concurrent duplicates are harmless */
+			final long[] index = blockIndex.clone();
+			block = rasterize( index );
+			cache.put( new BlockKey( index ), block );
+		}
+		System.arraycopy( blockIndex, 0, lastBlockIndex, 0, n );
+		lastBlock = block;
+		return block;
+	}
+
+	protected double[] rasterize( final long[] index )
+	{
+		final double[] block = new double[ strides[ n - 1 ] * ( blockSize[ n - 1 ] + 1 ) ];
+		final int[] local = new int[ n ];
+		final double[] p = new double[ n ];
+		final double[] q = new double[ n ];
+		for ( int i = 0; i < block.length; i += n )
+		{
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = origin[ d ] + spacing[ d ] * ( index[ d ] * blockSize[ d ] + local[ d ] );
+
+			transform.apply( p, q );
+			for ( int d = 0; d < n; ++d )
+				block[ i + d ] = q[ d ] - p[ d ];
+
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ++local[ d ] <= blockSize[ d ] )
+					break;
+				local[ d ] = 0;
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Interpolate the offset at {@link #position} into {@link #displacement}.
+	 */
+	protected void interpolate()
+	{
+		int offset = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double g = ( position[ d ] - origin[ d ] ) / spacing[ d ];
+			final double f = Math.floor( g );
+			floor[ d ] = ( long )f;
+			fraction[ d ] = g - f;
+			displacement[ d ] = 0;
+			blockIndex[ d ] = Math.floorDiv( floor[ d ], blockSize[ d ] );
+			offset += ( int )( floor[ d ] - blockIndex[ d ] * blockSize[ d ] ) * strides[ d ];
+		}
+
+		final double[] block = block();
+		for ( int k = 0; k < 1 << n; ++k )
+		{
+			double w = 1.0;
+			int i = offset;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ( k & ( 1 << d ) ) == 0 )
+					w *= 1.0 - fraction[ d ];
+				else
+				{
+					w *= fraction[ d ];
+					i += strides[ d ];
+				}
+			}
+			if ( w == 0 )
+				continue;
+
+			for ( int d = 0; d < n; ++d )
+				displacement[ d ] += w * block[ i + d ];
+		}
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		System.arraycopy( source, 0, position, 0, n );
+		interpolate();
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = position[ d ] + displacement[ d ];
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = source[ d ];
+		interpolate();
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = ( float )( position[ d ] + displacement[ d ] );
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = source.getDoublePosition( d );
+		interpolate();
+		for ( int d = 0; d < n; ++d )
+			target.setPosition( position[ d ] + displacement[ d ], d );
+	}
+
+	@Override
+	public CachedDeformationFieldTransform copy()
+	{
+		return new CachedDeformationFieldTransform( this );
+	}
+}
@@ -43,6 +43,7 @@ import net.imglib2.RealRandomAccessible;
 import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.composite.Composite;
 
 /**
  * A {@link RealTransform} by continuous offset lookup.
@@ -70,6 +71,30 @@ public class DeformationFieldTransform< T extends RealType< T > > extends Positi
 		super( positions );
 	}
 
+	/**
+	 * @param offsetAccess
+	 *            access to the n-dimensional field of n-dimensional offsets
+	 * @param n
+	 *            number of dimensions
+	 */
+	public DeformationFieldTransform( final RealRandomAccess< ? extends Composite< T > > offsetAccess, final int n )
+	{
+		super( offsetAccess, n );
+	}
+
+	/**
+	 * @param field
+	 *            the offsets of an n-dimensional field stored in one
+	 *            (n+1)-dimensional image
+	 * @param vectorAxis
+	 *            the dimension of field that holds the vector components,
+	 *            typically 0 for interleaved storage or n
+	 */
+	public DeformationFieldTransform( final RandomAccessibleInterval< T > field, final int vectorAxis )
+	{
+		super( field, vectorAxis );
+	}
+
 	@SafeVarargs
 	public DeformationFieldTransform(
 			final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBoundsFactory,
@@ -82,36 +107,69 @@ public class DeformationFieldTransform< T extends RealType< T > > extends Positi
 	@Override
 	public void apply( final double[] source, final double[] target )
 	{
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			positionAccesses[ d ].setPosition( source );
+		if ( vectorAccess == null )
+		{
+			for ( int d = 0; d < n; d++ )
+				positionAccesses[ d ].setPosition( source );
 
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			target[ d ] = positionAccesses[ d ].get().getRealDouble() + source[ d ];
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = positionAccesses[ d ].get().getRealDouble() + source[ d ];
+		}
+		else
+		{
+			vectorAccess.setPosition( source );
+			final Composite< T > vector = vectorAccess.get();
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = vector.get( d ).getRealDouble() + source[ d ];
+		}
 	}
 
 	@Override
 	public void apply( final float[] source, final float[] target )
 	{
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			positionAccesses[ d ].setPosition( source );
+		if ( vectorAccess == null )
+		{
+			for ( int d = 0; d < n; d++ )
+				positionAccesses[ d ].setPosition( source );
 
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			target[ d ] = ( float ) ( positionAccesses[ d ].get().getRealDouble() + source[ d ] );
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = ( float )( positionAccesses[ d ].get().getRealDouble() + source[ d ] );
+		}
+		else
+		{
+			vectorAccess.setPosition( source );
+			final Composite< T > vector = vectorAccess.get();
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = ( float )( vector.get( d ).getRealDouble() + source[ d ] );
+		}
 	}
 
 	@Override
 	public void apply( final RealLocalizable source, final RealPositionable target )
 	{
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			positionAccesses[ d ].setPosition( source );
+		if ( vectorAccess == null )
+		{
+			for ( int d = 0; d < n; d++ )
+				positionAccesses[ d ].setPosition( source );
 
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			target.setPosition( positionAccesses[ d ].get().getRealDouble() + source.getDoublePosition( d ), d );
+			for ( int d = 0; d < n; d++ )
+				target.setPosition( positionAccesses[ d ].get().getRealDouble() + source.getDoublePosition( d ), d );
+		}
+		else
+		{
+			vectorAccess.setPosition( source );
+			final Composite< T > vector = vectorAccess.get();
+			for ( int d = 0; d < n; d++ )
+				target.setPosition( vector.get( d ).getRealDouble() + source.getDoublePosition( d ), d );
+		}
 	}
 
 	@Override
 	public RealTransform copy()
 	{
-		return new DeformationFieldTransform<>( copyAccesses() );
+		if ( vectorAccess == null )
+			return new DeformationFieldTransform<>( copyAccesses() );
+		else
+			return new DeformationFieldTransform<>( copyVectorAccess(), n );
 	}
 }
@@ -62,6 +62,12 @@ public class ExplicitInvertibleRealTransform implements InvertibleRealTransform
 		forwardTransform.apply( source, target );
 	}
 
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		forwardTransform.apply( source, target );
+	}
+
 	@Override
 	public void apply( final RealLocalizable source, final RealPositionable target )
 	{
@@ -74,6 +80,12 @@ public class ExplicitInvertibleRealTransform implements InvertibleRealTransform
 		inverseTransform.apply( target, source );
 	}
 
+	@Override
+	public void applyInverse( final float[] source, final float[] target )
+	{
+		inverseTransform.apply( target, source );
+	}
+
 	@Override
 	public void applyInverse( final RealPositionable source, final RealLocalizable target )
 	{
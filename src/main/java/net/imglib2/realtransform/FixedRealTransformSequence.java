@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
+
+/**
+ * A sequence of two to four {@link RealTransform RealTransforms} that holds
+ * its stages in fields instead of a list.  Use it in place of a
+ * {@link RealTransformSequence} for short sequences that are applied very
+ * often.
+ *
+ * The jacobian is the product of the jacobians of all stages, see
+ * {@link RealTransformJacobian}.
+ *
+ * @see RealTransformSequence#specialize()
+ */
+public class FixedRealTransformSequence extends AbstractDifferentiableRealTransform
+{
+	final protected int size;
+
+	final protected RealTransform t0, t1, t2, t3;
+
+	final protected double[] tmp;
+
+	final protected RealPoint ptmp;
+
+	/* jacobian scratch, allocated on first use */
+	protected List< RealTransform > stages = null;
+
+	protected RealTransformJacobian chain = null;
+
+	public FixedRealTransformSequence( final RealTransform t0, final RealTransform t1 )
+	{
+		this( 2, t0, t1, null, null );
+	}
+
+	public FixedRealTransformSequence( final RealTransform t0, final RealTransform t1, final RealTransform t2 )
+	{
+		this( 3, t0, t1, t2, null );
+	}
+
+	public FixedRealTransformSequence( final RealTransform t0, final RealTransform t1, final RealTransform t2, final RealTransform t3 )
+	{
+		this( 4, t0, t1, t2, t3 );
+	}
+
+	protected FixedRealTransformSequence( final int size, final RealTransform t0, final RealTransform t1, final RealTransform t2, final RealTransform t3 )
+	{
+		this.size = size;
+		this.t0 = t0;
+		this.t1 = t1;
+		this.t2 = t2;
+		this.t3 = t3;
+
+		/* tmp has to hold the source for #apply(float[], float[]) */
+		int n = Math.max( t0.numSourceDimensions(), t0.numTargetDimensions() );
+		n = Math.max( n, t1.numTargetDimensions() );
+		if ( size > 2 )
+			n = Math.max( n, t2.numTargetDimensions() );
+		if ( size > 3 )
+			n = Math.max( n, t3.numTargetDimensions() );
+
+		tmp = new double[ n ];
+		ptmp = RealPoint.wrap( tmp );
+	}
+
+	/**
+	 * Returns the number of stages.
+	 *
+	 * @return the number of stages
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the stage at index i.
+	 *
+	 * @param i the index
+	 * @return the transform
+	 */
+	public RealTransform get( final int i )
+	{
+		assert i >= 0 && i < size : "Index out of bounds.";
+
+		switch ( i )
+		{
+		case 0:
+			return t0;
+		case 1:
+			return t1;
+		case 2:
+			return t2;
+		default:
+			return t3;
+		}
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return t0.numSourceDimensions();
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return get( size - 1 ).numTargetDimensions();
+	}
+
+	@Override
+	public boolean isIdentity()
+	{
+		for ( int i = 0; i < size; ++i )
+			if ( !get( i ).isIdentity() )
+				return false;
+		return true;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= numSourceDimensions() && target.length >= numTargetDimensions(): "Input dimensions too small.";
+
+		t0.apply( source, tmp );
+		switch ( size )
+		{
+		case 2:
+			t1.apply( tmp, target );
+			break;
+		case 3:
+			t1.apply( tmp, tmp );
+			t2.apply( tmp, target );
+			break;
+		default:
+			t1.apply( tmp, tmp );
+			t2.apply( tmp, tmp );
+			t3.apply( tmp, target );
+		}
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= numSourceDimensions() && target.length >= numTargetDimensions(): "Input dimensions too small.";
+
+		for ( int d = 0; d < t0.numSourceDimensions(); ++d )
+			tmp[ d ] = source[ d ];
+
+		t0.apply( tmp, tmp );
+		t1.apply( tmp, tmp );
+		if ( size > 2 )
+			t2.apply( tmp, tmp );
+		if ( size > 3 )
+			t3.apply( tmp, tmp );
+
+		for ( int d = 0; d < numTargetDimensions(); ++d )
+			target[ d ] = ( float )tmp[ d ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= numSourceDimensions() && target.numDimensions() >= numTargetDimensions(): "Input dimensions too small.";
+
+		t0.apply( source, ptmp );
+		switch ( size )
+		{
+		case 2:
+			t1.apply( ptmp, target );
+			break;
+		case 3:
+			t1.apply( tmp, tmp );
+			t2.apply( ptmp, target );
+			break;
+		default:
+			t1.apply( tmp, tmp );
+			t2.apply( tmp, tmp );
+			t3.apply( ptmp, target );
+		}
+	}
+
+	/**
+	 * Writes the jacobian of the sequence at x into jacobian by the chain
+	 * rule.
+	 *
+	 * @param x
+	 *            the point
+	 * @param jacobian
+	 *            the jacobian to write into, [row][column], at least
+	 *            {@link #numTargetDimensions()} x {@link #numSourceDimensions()}
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		if ( chain == null )
+		{
+			stages = Arrays.asList( t0, t1, t2, t3 ).subList( 0, size );
+			chain = new RealTransformJacobian( tmp.length );
+		}
+		chain.jacobian( stages, x, jacobian );
+	}
+
+	@Override
+	public FixedRealTransformSequence copy()
+	{
+		return new FixedRealTransformSequence(
+				size,
+				t0.copy(),
+				t1.copy(),
+				size > 2 ? t2.copy() : null,
+				size > 3 ? t3.copy() : null );
+	}
+}
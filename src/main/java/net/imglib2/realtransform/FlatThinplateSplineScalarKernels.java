@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.realtransform;
+
+/**
+ * Scalar thin plate spline kernel sums for
+ * {@link FlatThinplateSplineTransform}.  The loops are simple enough for the
+ * JIT to unroll and auto-vectorize the distances, the logarithm is evaluated
+ * per landmark.
+ */
+final class FlatThinplateSplineScalarKernels
+{
+	private FlatThinplateSplineScalarKernels()
+	{}
+
+	/**
+	 * Write U(|x - p<sub>l</sub>|) for the landmarks [start, end) into
+	 * kernel[0, end - start).
+	 */
+	static void kernels( final double[][] landmarks, final int n, final double[] x, final int start, final int end, final double[] kernel )
+	{
+		final int size = end - start;
+
+		final double[] p0 = landmarks[ 0 ];
+		final double x0 = x[ 0 ];
+		for ( int k = 0, l = start; k < size; ++k, ++l )
+		{
+			final double dx = x0 - p0[ l ];
+			kernel[ k ] = dx * dx;
+		}
+		for ( int d = 1; d < n; ++d )
+		{
+			final double[] pd = landmarks[ d ];
+			final double xd = x[ d ];
+			for ( int k = 0, l = start; k < size; ++k, ++l )
+			{
+				final double dx = xd - pd[ l ];
+				kernel[ k ] += dx * dx;
+			}
+		}
+
+		/* U = r^2 log r = 0.5 r^2 log r^2, 0 at the landmark */
+		for ( int k = 0; k < size; ++k )
+		{
+			final double r2 = kernel[ k ];
+			kernel[ k ] = r2 > 0 ? 0.5 * r2 * Math.log( r2 ) : 0;
+		}
+	}
+
+	/**
+	 * &Sigma; kernel[k] w[start + k] with four independent partial sums.
+	 */
+	static double dot( final double[] kernel, final double[] w, final int start, final int size )
+	{
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int k = 0;
+		for ( int l = start; k + 3 < size; k += 4, l += 4 )
+		{
+			s0 += kernel[ k ] * w[ l ];
+			s1 += kernel[ k + 1 ] * w[ l + 1 ];
+			s2 += kernel[ k + 2 ] * w[ l + 2 ];
+			s3 += kernel[ k + 3 ] * w[ l + 3 ];
+		}
+		for ( int l = start + k; k < size; ++k, ++l )
+			s0 += kernel[ k ] * w[ l ];
+
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+}
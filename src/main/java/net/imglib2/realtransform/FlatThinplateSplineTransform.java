@@ -0,0 +1,321 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import jitk.spline.ThinPlateR2LogRSplineKernelTransform;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
+
+/**
+ * An <em>n</em>-dimensional thin plate spline transform
+ * x + A x + b + &Sigma; w<sub>l</sub> U(|x - p<sub>l</sub>|), U(r) =
+ * r<sup>2</sup>log r, that evaluates the coefficients of a
+ * {@link ThinPlateR2LogRSplineKernelTransform} from flat arrays.
+ *
+ * Landmark coordinates and weights are stored as one contiguous array per
+ * dimension (structure of arrays) and the kernels are summed in blocks:
+ * squared distances for a block of landmarks are computed first, then the
+ * kernels, then the weighted sums with independent partial sums.  On Java
+ * 16 or newer with the jdk.incubator.vector module available, these loops use
+ * the Vector API (see {@link #isVectorized()}), otherwise they are scalar
+ * loops simple enough for the JIT to unroll.  Copies share the coefficients.
+ */
+public class FlatThinplateSplineTransform extends AbstractDifferentiableRealTransform
+{
+	final static protected int BLOCK_SIZE = 256;
+
+	protected final int n;
+
+	protected final int numLandmarks;
+
+	/* [dimension][landmark] */
+	protected final double[][] landmarks;
+
+	protected final double[][] weights;
+
+	/* A as row packed n x n, null for identity */
+	protected final double[] affine;
+
+	protected final double[] translation;
+
+	/* scratch */
+	protected final double[] kernel = new double[ BLOCK_SIZE ];
+
+	protected final double[] tmp;
+
+	protected final double[] result;
+
+	/**
+	 * @param sourceLandmarks
+	 *            the landmarks, [dimension][landmark]
+	 * @param weights
+	 *            the kernel weights, [landmark * n + dimension]
+	 * @param affine
+	 *            the affine matrix A, [row][column], may be null
+	 * @param translation
+	 *            the translation b, may be null
+	 */
+	public FlatThinplateSplineTransform(
+			final double[][] sourceLandmarks,
+			final double[] weights,
+			final double[][] affine,
+			final double[] translation )
+	{
+		n = sourceLandmarks.length;
+		numLandmarks = sourceLandmarks[ 0 ].length;
+
+		assert weights.length >= numLandmarks * n : "Too few weights.";
+
+		landmarks = new double[ n ][];
+		this.weights = new double[ n ][ numLandmarks ];
+		for ( int d = 0; d < n; ++d )
+		{
+			landmarks[ d ] = sourceLandmarks[ d ].clone();
+			for ( int l = 0; l < numLandmarks; ++l )
+				this.weights[ d ][ l ] = weights[ l * n + d ];
+		}
+
+		if ( affine == null )
+			this.affine = null;
+		else
+		{
+			this.affine = new double[ n * n ];
+			for ( int i = 0; i < n; ++i )
+				System.arraycopy( affine[ i ], 0, this.affine, i * n, n );
+		}
+		this.translation = translation == null ? new double[ n ] : translation.clone();
+
+		tmp = new double[ n ];
+		result = new double[ n ];
+	}
+
+	public FlatThinplateSplineTransform( final ThinPlateR2LogRSplineKernelTransform tps )
+	{
+		this( tps.getSourceLandmarks(), tps.getKnotWeights(), tps.getAffine(), tps.getTranslation() );
+	}
+
+	public FlatThinplateSplineTransform( final ThinplateSplineTransform tps )
+	{
+		this( tps.getKernelTransform() );
+	}
+
+	/**
+	 * Fit a thin plate spline that maps p onto q.
+	 *
+	 * @param p
+	 *            source landmarks, [dimension][landmark]
+	 * @param q
+	 *            target landmarks, [dimension][landmark]
+	 */
+	public FlatThinplateSplineTransform( final double[][] p, final double[][] q )
+	{
+		this( new ThinPlateR2LogRSplineKernelTransform( p.length, p, q ) );
+	}
+
+	protected FlatThinplateSplineTransform( final FlatThinplateSplineTransform t )
+	{
+		n = t.n;
+		numLandmarks = t.numLandmarks;
+		landmarks = t.landmarks;
+		weights = t.weights;
+		affine = t.affine;
+		translation = t.translation;
+
+		tmp = new double[ n ];
+		result = new double[ n ];
+	}
+
+	/**
+	 * Write U(|x - p<sub>l</sub>|) for the landmarks [start, end) into
+	 * kernel[0, end - start).
+	 */
+	protected void kernels( final double[] x, final int start, final int end )
+	{
+		FlatThinplateSplineKernels.kernels( landmarks, n, x, start, end, kernel );
+	}
+
+	/**
+	 * &Sigma; kernel[k] w[start + k].
+	 */
+	protected static double dot( final double[] kernel, final double[] w, final int start, final int size )
+	{
+		return FlatThinplateSplineKernels.dot( kernel, w, start, size );
+	}
+
+	/**
+	 * Whether the kernel sums use the Vector API.  This requires Java 16 or
+	 * newer and the jdk.incubator.vector module, e.g.
+	 * <code>--add-modules jdk.incubator.vector</code>, otherwise the scalar
+	 * kernel sums are used.
+	 */
+	public static boolean isVectorized()
+	{
+		return FlatThinplateSplineKernels.isVectorized();
+	}
+
+	protected void applyToResult( final double[] x )
+	{
+		for ( int i = 0; i < n; ++i )
+		{
+			double t = x[ i ] + translation[ i ];
+			if ( affine != null )
+				for ( int j = 0; j < n; ++j )
+					t += affine[ i * n + j ] * x[ j ];
+			result[ i ] = t;
+		}
+
+		for ( int start = 0; start < numLandmarks; start += BLOCK_SIZE )
+		{
+			final int end = Math.min( numLandmarks, start + BLOCK_SIZE );
+			kernels( x, start, end );
+			for ( int i = 0; i < n; ++i )
+				result[ i ] += dot( kernel, weights[ i ], start, end - start );
+		}
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		applyToResult( source );
+		System.arraycopy( result, 0, target, 0, n );
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source[ d ];
+		applyToResult( tmp );
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = ( float )result[ d ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source.getDoublePosition( d );
+		applyToResult( tmp );
+		for ( int d = 0; d < n; ++d )
+			target.setPosition( result[ d ], d );
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		assert source.length >= ( offset + count ) * n && target.length >= ( offset + count ) * n : "Input dimensions too small.";
+
+		for ( int j = offset * n, e = j + count * n; j < e; j += n )
+		{
+			System.arraycopy( source, j, tmp, 0, n );
+			applyToResult( tmp );
+			System.arraycopy( result, 0, target, j, n );
+		}
+	}
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int i = offset, e = offset + count; i < e; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				tmp[ d ] = source[ d ][ i ];
+			applyToResult( tmp );
+			for ( int d = 0; d < n; ++d )
+				target[ d ][ i ] = result[ d ];
+		}
+	}
+
+	/**
+	 * Writes the jacobian matrix I + A + &Sigma; (2 log r + 1) w<sub>l</sub>
+	 * (x - p<sub>l</sub>)<sup>T</sup> at x into jacobian without allocating.
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		for ( int i = 0; i < n; ++i )
+			for ( int j = 0; j < n; ++j )
+				jacobian[ i ][ j ] = ( i == j ? 1 : 0 ) + ( affine == null ? 0 : affine[ i * n + j ] );
+
+		for ( int l = 0; l < numLandmarks; ++l )
+		{
+			double r2 = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double dx = x[ d ] - landmarks[ d ][ l ];
+				r2 += dx * dx;
+			}
+
+			/* the kernel is flat at its landmark */
+			if ( r2 < 1e-16 )
+				continue;
+
+			final double g = Math.log( r2 ) + 1;
+			for ( int i = 0; i < n; ++i )
+			{
+				final double w = g * weights[ i ][ l ];
+				for ( int j = 0; j < n; ++j )
+					jacobian[ i ][ j ] += w * ( x[ j ] - landmarks[ j ][ l ] );
+			}
+		}
+	}
+
+	@Override
+	public FlatThinplateSplineTransform copy()
+	{
+		return new FlatThinplateSplineTransform( this );
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * {@link AbstractInterleavedDeformationFieldTransform} over a float[] field.
+ */
+public class FloatInterleavedDeformationFieldTransform extends AbstractInterleavedDeformationFieldTransform
+{
+	protected final float[] field;
+
+	/**
+	 * @param field
+	 *            vector interleaved offsets
+	 * @param interval
+	 *            the interval covered by the field
+	 */
+	public FloatInterleavedDeformationFieldTransform( final float[] field, final Interval interval )
+	{
+		super( interval, field.length );
+		this.field = field;
+	}
+
+	/**
+	 * @param field
+	 *            vector interleaved offsets
+	 * @param dimensions
+	 *            the dimensions of the field, starting at 0
+	 */
+	public FloatInterleavedDeformationFieldTransform( final float[] field, final long... dimensions )
+	{
+		super( new long[ dimensions.length ], dimensions, field.length );
+		this.field = field;
+	}
+
+	protected FloatInterleavedDeformationFieldTransform( final FloatInterleavedDeformationFieldTransform t )
+	{
+		super( t );
+		field = t.field;
+	}
+
+	/**
+	 * Copy a deformation field given as one scalar field per component as used
+	 * by {@link DeformationFieldTransform} into a
+	 * {@link FloatInterleavedDeformationFieldTransform}.
+	 *
+	 * @param components
+	 *            one field per dimension, all of the same interval
+	 * @param <T> the type
+	 *
+	 * @return the transform
+	 */
+	@SafeVarargs
+	public static < T extends RealType< T > > FloatInterleavedDeformationFieldTransform copyOf( final RandomAccessibleInterval< T >... components )
+	{
+		final int n = components.length;
+		final FinalInterval interval = new FinalInterval( components[ 0 ] );
+
+		assert n == interval.numDimensions() : "Dimensions do not match.";
+
+		long size = n;
+		for ( int d = 0; d < n; ++d )
+			size *= interval.dimension( d );
+
+		assert size <= Integer.MAX_VALUE : "Field too large for a flat array.";
+
+		final float[] field = new float[ ( int )size ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final Cursor< T > c = Views.flatIterable( Views.interval( components[ d ], interval ) ).cursor();
+			for ( int i = d; i < field.length; i += n )
+				field[ i ] = c.next().getRealFloat();
+		}
+		return new FloatInterleavedDeformationFieldTransform( field, interval );
+	}
+
+	@Override
+	protected void interpolate()
+	{
+		for ( int d = 0; d < n; ++d )
+			displacement[ d ] = 0;
+
+		for ( int k = 0; k < numCorners; ++k )
+		{
+			final double w = weights[ k ];
+			if ( w == 0 )
+				continue;
+
+			for ( int d = 0, i = offsets[ k ]; d < n; ++d, ++i )
+				displacement[ d ] += w * field[ i ];
+		}
+	}
+
+	@Override
+	public FloatInterleavedDeformationFieldTransform copy()
+	{
+		return new FloatInterleavedDeformationFieldTransform( this );
+	}
+}
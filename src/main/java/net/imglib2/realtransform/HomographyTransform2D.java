@@ -36,6 +36,7 @@ package net.imglib2.realtransform;
 
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
 import net.imglib2.util.LinAlgHelpers;
 
 /**
@@ -45,7 +46,7 @@ import net.imglib2.util.LinAlgHelpers;
  *
  * @author Stephan Saalfeld
  */
-public class HomographyTransform2D implements InvertibleRealTransform
+public class HomographyTransform2D extends AbstractDifferentiableRealTransform implements InvertibleRealTransform, ScanlineRealTransform
 {
 	protected double
 			m00 = 1, m01 = 0, m02 = 0,
@@ -136,6 +137,58 @@ public class HomographyTransform2D implements InvertibleRealTransform
 		target.setPosition( t1 / s, 1 );
 	}
 
+	/* homogeneous coordinates of the current scanline position */
+	private double sx, sy, sw;
+
+	@Override
+	public void startScanline( final double[] source, final double[] target )
+	{
+		sw = m20 * source[ 0 ] + m21 * source[ 1 ] + m22;
+		sx = m00 * source[ 0 ] + m01 * source[ 1 ] + m02;
+		sy = m10 * source[ 0 ] + m11 * source[ 1 ] + m12;
+
+		target[ 0 ] = sx / sw;
+		target[ 1 ] = sy / sw;
+	}
+
+	@Override
+	public void advanceScanline( final long distance, final int d, final double[] target )
+	{
+		if ( d == 0 )
+		{
+			sw += distance * m20;
+			sx += distance * m00;
+			sy += distance * m10;
+		}
+		else
+		{
+			sw += distance * m21;
+			sx += distance * m01;
+			sy += distance * m11;
+		}
+
+		target[ 0 ] = sx / sw;
+		target[ 1 ] = sy / sw;
+	}
+
+	/**
+	 * Writes the jacobian at x into jacobian, the partial derivatives of
+	 * t<sub>i</sub> / s are (m<sub>ij</sub> - m<sub>2j</sub> t<sub>i</sub> /
+	 * s) / s.
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final double s = m20 * x[ 0 ] + m21 * x[ 1 ] + m22;
+		final double y0 = ( m00 * x[ 0 ] + m01 * x[ 1 ] + m02 ) / s;
+		final double y1 = ( m10 * x[ 0 ] + m11 * x[ 1 ] + m12 ) / s;
+
+		jacobian[ 0 ][ 0 ] = ( m00 - m20 * y0 ) / s;
+		jacobian[ 0 ][ 1 ] = ( m01 - m21 * y0 ) / s;
+		jacobian[ 1 ][ 0 ] = ( m10 - m20 * y1 ) / s;
+		jacobian[ 1 ][ 1 ] = ( m11 - m21 * y1 ) / s;
+	}
+
 	@Override
 	final public void applyInverse( final double[] source, final double[] target )
 	{
@@ -37,17 +37,20 @@ package net.imglib2.realtransform;
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPoint;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
 
 /**
  * A {@link RealTransform} that linearly interpolates between two
  * {@link RealTransform RealTransforms}.
  *
  * The lambda parameter is the weight that applies to transform A, i.e. the
- * interpolated transform is (lambda * a) + (1 - lambda * b).
+ * interpolated transform is (lambda * a) + (1 - lambda * b).  Its jacobian
+ * is interpolated accordingly from the jacobians of a and b, see
+ * {@link RealTransformJacobian}.
  *
  * @author Stephan Saalfeld
  */
-public class InterpolatedRealTransform implements RealTransform
+public class InterpolatedRealTransform extends AbstractDifferentiableRealTransform
 {
 	private final RealTransform a;
 	private final RealTransform b;
@@ -57,6 +60,11 @@ public class InterpolatedRealTransform implements RealTransform
 	private final RealPoint targetPositionableA;
 	private final RealPoint targetPositionableB;
 
+	/* jacobian scratch, allocated on first use */
+	private RealTransformJacobian jacobians = null;
+
+	private double[][] jacobianB = null;
+
 	public InterpolatedRealTransform(
 			final RealTransform a,
 			final RealTransform b,
@@ -129,6 +137,34 @@ public class InterpolatedRealTransform implements RealTransform
 			target.setPosition( ( targetPositionA[ d ] - targetPositionB[ d ] ) * lambda + targetPositionB[ d ], d );
 	}
 
+	/**
+	 * Writes lambda * J<sub>a</sub>(x) + (1 - lambda) * J<sub>b</sub>(x)
+	 * into jacobian.
+	 *
+	 * @param x
+	 *            the point
+	 * @param jacobian
+	 *            the jacobian to write into, [row][column], at least
+	 *            {@link #numTargetDimensions()} x {@link #numSourceDimensions()}
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final int n = numSourceDimensions();
+		final int m = numTargetDimensions();
+		if ( jacobians == null )
+		{
+			jacobians = new RealTransformJacobian( Math.max( n, m ) );
+			jacobianB = new double[ m ][ n ];
+		}
+
+		jacobians.jacobian( a, x, jacobian );
+		jacobians.jacobian( b, x, jacobianB );
+		for ( int i = 0; i < m; ++i )
+			for ( int j = 0; j < n; ++j )
+				jacobian[ i ][ j ] = ( jacobian[ i ][ j ] - jacobianB[ i ][ j ] ) * lambda + jacobianB[ i ][ j ];
+	}
+
 	@Override
 	public InterpolatedRealTransform copy()
 	{
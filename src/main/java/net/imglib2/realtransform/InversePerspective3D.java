@@ -37,6 +37,7 @@ package net.imglib2.realtransform;
 import net.imglib2.EuclideanSpace;
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.DifferentiableRealTransform;
 
 /**
  * 3d inverse perspective transformation. Implemented as singleton as it has no
@@ -44,7 +45,7 @@ import net.imglib2.RealPositionable;
  * 
  * @author Stephan Saalfeld
  */
-public class InversePerspective3D implements InvertibleRealTransform, EuclideanSpace
+public class InversePerspective3D implements InvertibleRealTransform, DifferentiableRealTransform, EuclideanSpace
 {
 	final static protected InversePerspective3D instance = new InversePerspective3D();
 
@@ -105,6 +106,37 @@ public class InversePerspective3D implements InvertibleRealTransform, EuclideanS
 		target.setPosition( source.getDoublePosition( 2 ), 2 );
 	}
 
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final double z = x[ 2 ];
+		jacobian[ 0 ][ 0 ] = z;
+		jacobian[ 0 ][ 1 ] = 0;
+		jacobian[ 0 ][ 2 ] = x[ 0 ];
+		jacobian[ 1 ][ 0 ] = 0;
+		jacobian[ 1 ][ 1 ] = z;
+		jacobian[ 1 ][ 2 ] = x[ 1 ];
+		jacobian[ 2 ][ 0 ] = 0;
+		jacobian[ 2 ][ 1 ] = 0;
+		jacobian[ 2 ][ 2 ] = 1;
+	}
+
+	/**
+	 * Returns the jacobian matrix at x.  The transform is shared, so a new
+	 * {@link AffineTransform} is created for each call, use
+	 * {@link #jacobian(double[], double[][])} to avoid that.
+	 */
+	@Override
+	public AffineTransform jacobian( final double[] x )
+	{
+		final double[][] jac = new double[ 3 ][ 4 ];
+		jacobian( x, jac );
+		final AffineTransform jacobian = new AffineTransform( 3 );
+		jacobian.set( jac );
+
+		return jacobian;
+	}
+
 	@Override
 	public void applyInverse( final double[] source, final double[] target )
 	{
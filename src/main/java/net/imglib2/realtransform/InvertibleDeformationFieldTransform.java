@@ -1,14 +1,329 @@
 package net.imglib2.realtransform;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.InverseRealTransformGradientDescent;
+import net.imglib2.realtransform.inverse.InverseRealTransformSolver;
+import net.imglib2.realtransform.inverse.RealTransformFiniteDerivatives;
 import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
 import net.imglib2.type.numeric.RealType;
 
+/**
+ * A {@link DeformationFieldTransform} whose inverse is estimated iteratively
+ * per point.  Alternatively, a dense inverse displacement field can be
+ * {@link #precomputeInverse(Interval, int, double, ExecutorService)
+ * precomputed} once, after which {@link #applyInverse(double[], double[])}
+ * interpolates that field for all points within its interval and falls back
+ * to the iterative inverse only outside of it.
+ */
 public class InvertibleDeformationFieldTransform< T extends RealType< T > > extends WrappedIterativeInvertibleRealTransform< DeformationFieldTransform< T > >
 {
+	final static public int DEFAULT_INVERSE_MAX_ITERS = 100;
+
+	final static public double DEFAULT_INVERSE_TOLERANCE = 0.01;
+
+	protected DoubleInterleavedDeformationFieldTransform inverseField = null;
+
+	protected Interval inverseInterval = null;
+
+	protected double inverseResidual = Double.NaN;
 
 	public InvertibleDeformationFieldTransform( final DeformationFieldTransform< T > def )
 	{
 		super( def );
 	}
 
+	protected InvertibleDeformationFieldTransform( final DeformationFieldTransform< T > def, final InverseRealTransformGradientDescent inverse )
+	{
+		super( def, inverse );
+	}
+
+	protected InvertibleDeformationFieldTransform( final DeformationFieldTransform< T > def, final InverseRealTransformSolver inverse )
+	{
+		super( def, inverse );
+	}
+
+	/**
+	 * Compute the inverse displacement field on all integer positions of
+	 * interval with {@link #DEFAULT_INVERSE_MAX_ITERS} and
+	 * {@link #DEFAULT_INVERSE_TOLERANCE}.
+	 *
+	 * @see #precomputeInverse(Interval, int, double, ExecutorService)
+	 */
+	public double precomputeInverse( final Interval interval, final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		return precomputeInverse( interval, DEFAULT_INVERSE_MAX_ITERS, DEFAULT_INVERSE_TOLERANCE, service );
+	}
+
+	/**
+	 * Compute the inverse displacement field on all integer positions of
+	 * interval in target space.  For each target position y, the source
+	 * position x is found by the fixed-point iteration
+	 * x &larr; y - d(x) = x - (&phi;(x) - y), starting from the result of
+	 * the previous position along dimension 0.  This converges as long as the
+	 * displacement field d is contractive.  Positions that do not converge
+	 * within maxIters fall back to the gradient descent of the per point
+	 * inverse.  Lines along dimension 0 are distributed over as many tasks as
+	 * there are processors, see
+	 * {@link #precomputeInverse(Interval, int, double, ExecutorService, int)}
+	 * to set the number of tasks.
+	 *
+	 * Afterwards, {@link #applyInverse(double[], double[])} n-linearly
+	 * interpolates the inverse field within interval.  The returned residual
+	 * is measured at the grid positions only, between grid positions the
+	 * error of the interpolated inverse can be larger where the field is
+	 * not linear.
+	 *
+	 * @param interval the target space region of the inverse field
+	 * @param maxIters maximum number of iterations per position
+	 * @param tolerance stop iterating when |&phi;(x) - y| is smaller
+	 * @param service the {@link ExecutorService} executing the lines, null
+	 *            to run in the calling thread
+	 * @return the maximum residual |&phi;(x) - y| over all grid positions
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double precomputeInverse(
+			final Interval interval,
+			final int maxIters,
+			final double tolerance,
+			final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		return precomputeInverse( interval, maxIters, tolerance, service, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Compute the inverse displacement field on all integer positions of
+	 * interval in target space with lines along dimension 0 distributed over
+	 * numTasks tasks.
+	 *
+	 * @param interval the target space region of the inverse field
+	 * @param maxIters maximum number of iterations per position
+	 * @param tolerance stop iterating when |&phi;(x) - y| is smaller
+	 * @param service the {@link ExecutorService} executing the lines, null
+	 *            to run in the calling thread
+	 * @param numTasks the number of tasks submitted to service
+	 * @return the maximum residual |&phi;(x) - y| over all grid positions
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws IllegalArgumentException
+	 *             if numTasks is not positive
+	 *
+	 * @see #precomputeInverse(Interval, int, double, ExecutorService)
+	 */
+	public double precomputeInverse(
+			final Interval interval,
+			final int maxIters,
+			final double tolerance,
+			final ExecutorService service,
+			final int numTasks ) throws InterruptedException, ExecutionException
+	{
+		if ( numTasks <= 0 )
+			throw new IllegalArgumentException( "Number of tasks must be positive, is " + numTasks + "." );
+
+		final int n = forwardTransform.numSourceDimensions();
+
+		assert interval.numDimensions() == n : "Dimensions do not match.";
+
+		final long width = interval.dimension( 0 );
+		long size = n;
+		for ( int d = 0; d < n; ++d )
+			size *= interval.dimension( d );
+
+		assert size <= Integer.MAX_VALUE : "Inverse field too large.";
+
+		final double[] data = new double[ ( int )size ];
+		final long numLines = size / n / width;
+		final AtomicLong nextLine = new AtomicLong();
+
+		double maxResidual = 0;
+		if ( service == null )
+			maxResidual = invertLines( interval, maxIters, tolerance, data, numLines, nextLine );
+		else
+		{
+			final int numSubmitted = ( int )Math.min( numLines, numTasks );
+			final List< Future< Double > > futures = new ArrayList<>( numSubmitted );
+			for ( int t = 0; t < numSubmitted; ++t )
+				futures.add( service.submit( () -> invertLines( interval, maxIters, tolerance, data, numLines, nextLine ) ) );
+
+			for ( final Future< Double > future : futures )
+				maxResidual = Math.max( maxResidual, future.get() );
+		}
+
+		inverseField = new DoubleInterleavedDeformationFieldTransform( data, interval );
+		inverseInterval = interval;
+		inverseResidual = maxResidual;
+
+		return maxResidual;
+	}
+
+	/**
+	 * Invert lines along dimension 0 of interval into data until nextLine
+	 * passes numLines.
+	 *
+	 * @return the maximum residual |&phi;(x) - y| over the inverted positions
+	 */
+	protected double invertLines(
+			final Interval interval,
+			final int maxIters,
+			final double tolerance,
+			final double[] data,
+			final long numLines,
+			final AtomicLong nextLine )
+	{
+		final int n = interval.numDimensions();
+		final long width = interval.dimension( 0 );
+
+		final RealTransform transform = forwardTransform.copy();
+		final InverseRealTransformGradientDescent optimizer = new InverseRealTransformGradientDescent( n, new RealTransformFiniteDerivatives( transform ) );
+		final double[] y = new double[ n ];
+		final double[] x = new double[ n ];
+		final double[] guess = new double[ n ];
+		final double[] fx = new double[ n ];
+		double maxResidual = 0;
+		for ( long line = nextLine.getAndIncrement(); line < numLines; line = nextLine.getAndIncrement() )
+		{
+			long r = line;
+			for ( int d = 1; d < n; ++d )
+			{
+				y[ d ] = interval.min( d ) + r % interval.dimension( d );
+				r /= interval.dimension( d );
+			}
+			y[ 0 ] = interval.min( 0 );
+			System.arraycopy( y, 0, x, 0, n );
+
+			for ( int i = ( int )( line * width * n ), e = i + ( int )width * n; i < e; i += n )
+			{
+				/* x is warm started with the solution of the previous position */
+				System.arraycopy( x, 0, guess, 0, n );
+				double residual;
+				for ( int k = 0;; ++k )
+				{
+					transform.apply( x, fx );
+					residual = 0;
+					for ( int d = 0; d < n; ++d )
+					{
+						final double dx = fx[ d ] - y[ d ];
+						residual += dx * dx;
+					}
+					residual = Math.sqrt( residual );
+					if ( residual < tolerance || k == maxIters )
+						break;
+
+					for ( int d = 0; d < n; ++d )
+						x[ d ] -= fx[ d ] - y[ d ];
+				}
+				if ( !( residual < tolerance ) )
+				{
+					residual = optimizer.inverseTol( y, guess, tolerance, maxIters );
+					System.arraycopy( optimizer.getEstimate(), 0, x, 0, n );
+				}
+				maxResidual = Math.max( maxResidual, residual );
+
+				for ( int d = 0; d < n; ++d )
+					data[ i + d ] = x[ d ] - y[ d ];
+
+				++y[ 0 ];
+				++x[ 0 ];
+			}
+		}
+		return maxResidual;
+	}
+
+	/**
+	 * @return the maximum residual of the precomputed inverse field at its
+	 *         grid positions or NaN if there is none
+	 */
+	public double getInverseResidual()
+	{
+		return inverseResidual;
+	}
+
+	/**
+	 * @return true if the inverse is interpolated from a precomputed field
+	 */
+	public boolean hasPrecomputedInverse()
+	{
+		return inverseField != null;
+	}
+
+	protected boolean inInverseInterval( final double[] target )
+	{
+		for ( int d = 0; d < inverseInterval.numDimensions(); ++d )
+			if ( target[ d ] < inverseInterval.min( d ) || target[ d ] > inverseInterval.max( d ) )
+				return false;
+		return true;
+	}
+
+	protected boolean inInverseInterval( final float[] target )
+	{
+		for ( int d = 0; d < inverseInterval.numDimensions(); ++d )
+			if ( target[ d ] < inverseInterval.min( d ) || target[ d ] > inverseInterval.max( d ) )
+				return false;
+		return true;
+	}
+
+	protected boolean inInverseInterval( final RealLocalizable target )
+	{
+		for ( int d = 0; d < inverseInterval.numDimensions(); ++d )
+		{
+			final double t = target.getDoublePosition( d );
+			if ( t < inverseInterval.min( d ) || t > inverseInterval.max( d ) )
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void applyInverse( final double[] source, final double[] target )
+	{
+		if ( inverseField != null && inInverseInterval( target ) )
+			inverseField.apply( target, source );
+		else
+			super.applyInverse( source, target );
+	}
+
+	@Override
+	public void applyInverse( final float[] source, final float[] target )
+	{
+		if ( inverseField != null && inInverseInterval( target ) )
+			inverseField.apply( target, source );
+		else
+			super.applyInverse( source, target );
+	}
+
+	@Override
+	public void applyInverse( final RealPositionable source, final RealLocalizable target )
+	{
+		if ( inverseField != null && inInverseInterval( target ) )
+			inverseField.apply( target, source );
+		else
+			super.applyInverse( source, target );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public InvertibleDeformationFieldTransform< T > copy()
+	{
+		final InvertibleDeformationFieldTransform< T > copy = new InvertibleDeformationFieldTransform<>(
+				( DeformationFieldTransform< T > )forwardTransform.copy(),
+				solver.copy() );
+		if ( inverseField != null )
+		{
+			copy.inverseField = inverseField.copy();
+			copy.inverseInterval = inverseInterval;
+			copy.inverseResidual = inverseResidual;
+		}
+		return copy;
+	}
 }
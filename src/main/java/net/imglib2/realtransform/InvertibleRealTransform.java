@@ -81,14 +81,17 @@ public interface InvertibleRealTransform extends RealTransform
 	/**
 	 * Apply the inverse transform to a target vector to obtain a source vector.
 	 *
+	 * <p>
+	 * The default implementation converts through temporary double vectors.
+	 * Implementations that are used in float precision pipelines should
+	 * override it without allocating.
+	 * </p>
+	 *
 	 * @param source
 	 *            set this to the source coordinates.
 	 * @param target
 	 *            target coordinates.
-	 *
-	 * @deprecated Use double precision instead
 	 */
-	@Deprecated
 	public default void applyInverse( final float[] source, final float[] target )
 	{
 		assert source.length >= numSourceDimensions() && target.length >= numTargetDimensions() : "Input dimensions too small.";
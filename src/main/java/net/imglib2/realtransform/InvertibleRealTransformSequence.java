@@ -34,6 +34,8 @@
 
 package net.imglib2.realtransform;
 
+import java.util.ArrayList;
+
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
 
@@ -127,6 +129,56 @@ public class InvertibleRealTransformSequence extends AbstractRealTransformSequen
 		return new InverseRealTransform( this );
 	}
 
+	/**
+	 * Returns an equivalent sequence with fewer stages.  Nested sequences are
+	 * {@link #flatten(InvertibleRealTransform) flattened}, identities are
+	 * dropped and adjacent affine, scale, and translation transforms are
+	 * fused into a single {@link AffineTransform}, {@link AffineTransform2D},
+	 * or {@link AffineTransform3D}.  Fused affines are snapshots and do not
+	 * reflect later changes of the original transforms, all other transforms
+	 * are shared with this sequence.
+	 *
+	 * <p>
+	 * The result is cached and recomputed after the next
+	 * {@link #add(RealTransform)}.  It must not be modified.
+	 * </p>
+	 *
+	 * @return the compiled sequence
+	 */
+	@Override
+	public InvertibleRealTransformSequence compile()
+	{
+		if ( compiled == null )
+		{
+			final InvertibleRealTransformSequence sequence = new InvertibleRealTransformSequence();
+			final ArrayList< RealTransform > flat = new ArrayList<>();
+			flatten( this, flat );
+			for ( final RealTransform t : fuseAffines( flat ) )
+				sequence.add( ( InvertibleRealTransform )t );
+			compiled = sequence;
+		}
+		return ( InvertibleRealTransformSequence )compiled;
+	}
+
+	/**
+	 * Create a flat {@link InvertibleRealTransformSequence} from a transform.
+	 * Nested sequences are unrolled, and the inverse of an
+	 * {@link InvertibleRealTransformSequence} is unrolled into the inverses
+	 * of its elements in reverse order.
+	 *
+	 * @param transform the transform
+	 * @return a sequence that contains no sequences
+	 */
+	public static InvertibleRealTransformSequence flatten( final InvertibleRealTransform transform )
+	{
+		final ArrayList< RealTransform > flat = new ArrayList<>();
+		flatten( transform, flat );
+		final InvertibleRealTransformSequence sequence = new InvertibleRealTransformSequence();
+		for ( final RealTransform t : flat )
+			sequence.add( ( InvertibleRealTransform )t );
+		return sequence;
+	}
+
 	@Override
 	public InvertibleRealTransformSequence copy()
 	{
@@ -0,0 +1,341 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * A read-only vector field stored as raw float32 values in a file that is
+ * memory mapped in chunks on demand, for fields that do not fit into the
+ * heap.
+ *
+ * The file holds the <em>n</em> components of each vector next to each
+ * other, followed by the vector of the next voxel along dimension 0, then
+ * 1, and so on.  The field is presented as an (<em>n</em>+1)-dimensional
+ * image with the vector components along dimension 0 and can be passed to
+ * {@link DeformationFieldTransform#DeformationFieldTransform(RandomAccessibleInterval, int)}
+ * and {@link PositionFieldTransform#PositionFieldTransform(RandomAccessibleInterval, int)}
+ * with vectorAxis 0, see {@link #deformationFieldTransform()} and
+ * {@link #positionFieldTransform()}.
+ *
+ * Chunks are slabs of consecutive hyperplanes along the last dimension.  A
+ * least recently used cache retains up to maxChunks mapped chunks and is
+ * shared by all {@link RandomAccess RandomAccesses} on the field and
+ * therefore by all copies of transforms using it.  Each access additionally
+ * holds on to its current chunk, so the shared cache is only locked when an
+ * access moves to another chunk.  Samples are read directly from the mapped
+ * buffers without copying.
+ *
+ * Java cannot unmap a buffer explicitly.  A chunk that is dropped from the
+ * cache is unmapped when it is garbage collected, i.e. maxChunks bounds the
+ * number of chunks retained by the cache, not the address space that is
+ * mapped at a time.  Since mappings are backed by the file rather than the
+ * heap, pages of unreachable chunks can be reclaimed by the operating system
+ * before that.
+ */
+public class MappedVectorField extends AbstractInterval implements RandomAccessibleInterval< FloatType >, Closeable
+{
+	final static public long DEFAULT_CHUNK_BYTES = 64L << 20;
+
+	final static public int DEFAULT_MAX_CHUNKS = 16;
+
+	protected final RandomAccessFile file;
+
+	protected final FileChannel channel;
+
+	protected final ByteOrder byteOrder;
+
+	/* distance of neighboring samples along each dimension in floats */
+	protected final long[] strides;
+
+	protected final long numElements;
+
+	protected final long chunkElements;
+
+	protected final Map< Long, FloatBuffer > chunks;
+
+	/**
+	 * {@link FloatAccess} over the chunk that contains the current sample.
+	 */
+	protected static class ChunkAccess implements FloatAccess
+	{
+		protected FloatBuffer chunk;
+
+		@Override
+		public float getValue( final int index )
+		{
+			return chunk.get( index );
+		}
+
+		@Override
+		public void setValue( final int index, final float value )
+		{
+			throw new UnsupportedOperationException( "Mapped fields are read-only." );
+		}
+	}
+
+	public class MappedVectorFieldRandomAccess extends Point implements RandomAccess< FloatType >
+	{
+		protected final ChunkAccess access = new ChunkAccess();
+
+		protected final FloatType t = new FloatType( access );
+
+		protected long chunkIndex = -1;
+
+		protected MappedVectorFieldRandomAccess()
+		{
+			super( MappedVectorField.this.numDimensions() );
+		}
+
+		protected MappedVectorFieldRandomAccess( final MappedVectorFieldRandomAccess a )
+		{
+			this();
+			setPosition( a );
+		}
+
+		@Override
+		public FloatType get()
+		{
+			long i = 0;
+			for ( int d = 0; d < n; ++d )
+				i += position[ d ] * strides[ d ];
+
+			final long c = i / chunkElements;
+			if ( c != chunkIndex )
+			{
+				access.chunk = chunk( c );
+				chunkIndex = c;
+			}
+			t.updateIndex( ( int )( i - c * chunkElements ) );
+			return t;
+		}
+
+		@Override
+		public MappedVectorFieldRandomAccess copy()
+		{
+			return new MappedVectorFieldRandomAccess( this );
+		}
+
+		@Override
+		public MappedVectorFieldRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+	/**
+	 * @param file
+	 *            the raw file
+	 * @param byteOrder
+	 *            the byte order of the values in file
+	 * @param planesPerChunk
+	 *            the number of hyperplanes along the last dimension per chunk
+	 * @param maxChunks
+	 *            the maximum number of chunks retained by the cache
+	 * @param dimensions
+	 *            the dimensions of the field, i.e. without the vector
+	 *            dimension
+	 *
+	 * @throws IOException
+	 */
+	public MappedVectorField(
+			final File file,
+			final ByteOrder byteOrder,
+			final int planesPerChunk,
+			final int maxChunks,
+			final long... dimensions ) throws IOException
+	{
+		super( new long[ dimensions.length + 1 ], fieldMax( dimensions ) );
+
+		this.byteOrder = byteOrder;
+
+		strides = new long[ n ];
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = size;
+			size *= dimension( d );
+		}
+		numElements = size;
+		chunkElements = strides[ n - 1 ] * planesPerChunk;
+
+		if ( chunkElements * Float.BYTES > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Chunks must not be larger than " + Integer.MAX_VALUE + " bytes." );
+
+		this.file = new RandomAccessFile( file, "r" );
+		channel = this.file.getChannel();
+		if ( channel.size() < numElements * Float.BYTES )
+		{
+			this.file.close();
+			throw new IllegalArgumentException( "File " + file + " is smaller than the field." );
+		}
+
+		chunks = new LinkedHashMap< Long, FloatBuffer >( 2 * maxChunks, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< Long, FloatBuffer > eldest )
+			{
+				return size() > maxChunks;
+			}
+		};
+	}
+
+	/**
+	 * Map file with chunks of at most {@link #DEFAULT_CHUNK_BYTES} (or one
+	 * hyperplane if that is larger) and a cache of at most
+	 * {@link #DEFAULT_MAX_CHUNKS} chunks.
+	 *
+	 * @param file
+	 *            the raw file
+	 * @param byteOrder
+	 *            the byte order of the values in file
+	 * @param dimensions
+	 *            the dimensions of the field, i.e. without the vector
+	 *            dimension
+	 *
+	 * @throws IOException
+	 */
+	public MappedVectorField( final File file, final ByteOrder byteOrder, final long... dimensions ) throws IOException
+	{
+		this( file, byteOrder, defaultPlanesPerChunk( dimensions ), DEFAULT_MAX_CHUNKS, dimensions );
+	}
+
+	private static long[] fieldMax( final long[] dimensions )
+	{
+		final long[] max = new long[ dimensions.length + 1 ];
+		max[ 0 ] = dimensions.length - 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+			max[ d + 1 ] = dimensions[ d ] - 1;
+		return max;
+	}
+
+	private static int defaultPlanesPerChunk( final long[] dimensions )
+	{
+		long planeBytes = dimensions.length * Float.BYTES;
+		for ( int d = 0; d < dimensions.length - 1; ++d )
+			planeBytes *= dimensions[ d ];
+
+		return ( int )Math.max( 1, Math.min( DEFAULT_CHUNK_BYTES / planeBytes, dimensions[ dimensions.length - 1 ] ) );
+	}
+
+	/**
+	 * Get chunk c, map it if it is not cached.
+	 */
+	protected FloatBuffer chunk( final long c )
+	{
+		synchronized ( chunks )
+		{
+			FloatBuffer chunk = chunks.get( c );
+			if ( chunk == null )
+			{
+				final long offset = c * chunkElements;
+				final long size = Math.min( chunkElements, numElements - offset );
+				try
+				{
+					chunk = channel.map( MapMode.READ_ONLY, offset * Float.BYTES, size * Float.BYTES ).order( byteOrder ).asFloatBuffer();
+				}
+				catch ( final IOException e )
+				{
+					throw new UncheckedIOException( e );
+				}
+				chunks.put( c, chunk );
+			}
+			return chunk;
+		}
+	}
+
+	/**
+	 * @return the number of chunks retained by the cache
+	 */
+	public int numCachedChunks()
+	{
+		synchronized ( chunks )
+		{
+			return chunks.size();
+		}
+	}
+
+	public DeformationFieldTransform< FloatType > deformationFieldTransform()
+	{
+		return new DeformationFieldTransform<>( this, 0 );
+	}
+
+	public PositionFieldTransform< FloatType > positionFieldTransform()
+	{
+		return new PositionFieldTransform<>( this, 0 );
+	}
+
+	@Override
+	public MappedVectorFieldRandomAccess randomAccess()
+	{
+		return new MappedVectorFieldRandomAccess();
+	}
+
+	@Override
+	public MappedVectorFieldRandomAccess randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	/**
+	 * Close the file.  Mapped chunks stay valid until they are garbage
+	 * collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+}
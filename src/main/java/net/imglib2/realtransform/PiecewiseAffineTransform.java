@@ -0,0 +1,649 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import Jama.Matrix;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+
+/**
+ * A piecewise affine {@link InvertibleRealTransform} defined by a simplicial
+ * mesh, i.e. triangles in 2D and tetrahedra in 3D, with corresponding source
+ * and target vertices.  Each simplex maps its source to its target vertices
+ * affinely, the inverse is exact and equally cheap.
+ *
+ * Simplices are located through a uniform grid over the bounding box of the
+ * vertices that lists the simplices overlapping each cell.  The last simplex
+ * is tested first, so coherent queries, e.g. along a scanline, usually skip
+ * the grid.  Points outside of the mesh are mapped by the affine of the
+ * simplex closest to them in Euclidean distance, found by searching the grid
+ * cells ring by ring around their (clamped) cell.
+ *
+ * Copies share the mesh.
+ */
+public class PiecewiseAffineTransform implements InvertibleRealTransform
+{
+	final static protected double EPS = 1e-10;
+
+	/**
+	 * Affines and point location of all simplices for one direction.
+	 */
+	protected static class Side
+	{
+		protected final int n;
+
+		protected final int numSimplices;
+
+		/* per simplex, the n x (n+1) matrix mapping a point to its
+		 * barycentric coordinates 1..n */
+		protected final double[] barycentric;
+
+		/* per simplex, the n x (n+1) affine into the other space */
+		protected final double[] affines;
+
+		/* per simplex, the n+1 vertices, [vertex * n + d] */
+		protected final double[] vertices;
+
+		protected final double[] min;
+
+		protected final double[] cellSize;
+
+		protected final int[] numCells;
+
+		protected final double minCellSize;
+
+		/* simplices overlapping cell i are cellSimplices[cellStart[i]..cellStart[i+1]) */
+		protected final int[] cellStart;
+
+		protected final int[] cellSimplices;
+
+		protected Side( final double[][] from, final double[][] to, final int[][] simplices )
+		{
+			n = from[ 0 ].length;
+			numSimplices = simplices.length;
+			final int size = n * ( n + 1 );
+			barycentric = new double[ numSimplices * size ];
+			affines = new double[ numSimplices * size ];
+			vertices = new double[ numSimplices * size ];
+
+			for ( int s = 0; s < numSimplices; ++s )
+			{
+				final int[] simplex = simplices[ s ];
+
+				assert simplex.length == n + 1 : "A simplex needs n + 1 vertices.";
+
+				for ( int v = 0; v <= n; ++v )
+					System.arraycopy( from[ simplex[ v ] ], 0, vertices, s * size + v * n, n );
+
+				final double[] from0 = from[ simplex[ 0 ] ];
+				final double[] to0 = to[ simplex[ 0 ] ];
+				final Matrix edges = new Matrix( n, n );
+				final Matrix toEdges = new Matrix( n, n );
+				for ( int j = 0; j < n; ++j )
+				{
+					for ( int i = 0; i < n; ++i )
+					{
+						edges.set( i, j, from[ simplex[ j + 1 ] ][ i ] - from0[ i ] );
+						toEdges.set( i, j, to[ simplex[ j + 1 ] ][ i ] - to0[ i ] );
+					}
+				}
+
+				final double[][] inverse;
+				try
+				{
+					inverse = edges.inverse().getArray();
+				}
+				catch ( final RuntimeException e )
+				{
+					throw new IllegalArgumentException( "Simplex " + s + " is degenerate." );
+				}
+
+				/* barycentric = inverse * ( x - from0 ) */
+				final int o = s * size;
+				for ( int i = 0; i < n; ++i )
+				{
+					double t = 0;
+					for ( int j = 0; j < n; ++j )
+					{
+						barycentric[ o + i * ( n + 1 ) + j ] = inverse[ i ][ j ];
+						t -= inverse[ i ][ j ] * from0[ j ];
+					}
+					barycentric[ o + i * ( n + 1 ) + n ] = t;
+				}
+
+				/* affine = to0 + toEdges * barycentric */
+				for ( int i = 0; i < n; ++i )
+				{
+					double t = to0[ i ];
+					for ( int j = 0; j <= n; ++j )
+					{
+						double a = 0;
+						for ( int k = 0; k < n; ++k )
+							a += toEdges.get( i, k ) * barycentric[ o + k * ( n + 1 ) + j ];
+						if ( j < n )
+							affines[ o + i * ( n + 1 ) + j ] = a;
+						else
+							t += a;
+					}
+					affines[ o + i * ( n + 1 ) + n ] = t;
+				}
+			}
+
+			/* uniform grid with about one cell per simplex */
+			min = new double[ n ];
+			final double[] max = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] = Double.POSITIVE_INFINITY;
+				max[ d ] = Double.NEGATIVE_INFINITY;
+			}
+			for ( final int[] simplex : simplices )
+				for ( final int v : simplex )
+					for ( int d = 0; d < n; ++d )
+					{
+						min[ d ] = Math.min( min[ d ], from[ v ][ d ] );
+						max[ d ] = Math.max( max[ d ], from[ v ][ d ] );
+					}
+
+			numCells = new int[ n ];
+			cellSize = new double[ n ];
+			final int cellsPerDimension = ( int )Math.max( 1, Math.ceil( Math.pow( numSimplices, 1.0 / n ) ) );
+			int totalCells = 1;
+			double minSize = Double.POSITIVE_INFINITY;
+			for ( int d = 0; d < n; ++d )
+			{
+				numCells[ d ] = cellsPerDimension;
+				cellSize[ d ] = Math.max( max[ d ] - min[ d ], EPS ) / cellsPerDimension;
+				minSize = Math.min( minSize, cellSize[ d ] );
+				totalCells *= cellsPerDimension;
+			}
+			minCellSize = minSize;
+
+			final int[] lo = new int[ n ];
+			final int[] hi = new int[ n ];
+			cellStart = new int[ totalCells + 1 ];
+			int[] entries = null;
+			for ( int pass = 0; pass < 2; ++pass )
+			{
+				final int[] count = new int[ totalCells ];
+				for ( int s = 0; s < numSimplices; ++s )
+				{
+					for ( int d = 0; d < n; ++d )
+					{
+						double smin = Double.POSITIVE_INFINITY;
+						double smax = Double.NEGATIVE_INFINITY;
+						for ( final int v : simplices[ s ] )
+						{
+							smin = Math.min( smin, from[ v ][ d ] );
+							smax = Math.max( smax, from[ v ][ d ] );
+						}
+						lo[ d ] = cell( smin, d );
+						hi[ d ] = cell( smax, d );
+					}
+
+					/* all cells in [lo, hi] */
+					final int[] c = lo.clone();
+					while ( true )
+					{
+						int i = 0;
+						for ( int d = n - 1; d >= 0; --d )
+							i = i * numCells[ d ] + c[ d ];
+
+						if ( pass == 1 )
+							entries[ cellStart[ i ] + count[ i ] ] = s;
+						++count[ i ];
+
+						int d = 0;
+						for ( ; d < n; ++d )
+						{
+							if ( ++c[ d ] <= hi[ d ] )
+								break;
+							c[ d ] = lo[ d ];
+						}
+						if ( d == n )
+							break;
+					}
+				}
+				if ( pass == 0 )
+				{
+					for ( int i = 0; i < totalCells; ++i )
+						cellStart[ i + 1 ] = cellStart[ i ] + count[ i ];
+					entries = new int[ cellStart[ totalCells ] ];
+				}
+			}
+			cellSimplices = entries;
+		}
+
+		protected int cell( final double x, final int d )
+		{
+			return Math.max( 0, Math.min( numCells[ d ] - 1, ( int )Math.floor( ( x - min[ d ] ) / cellSize[ d ] ) ) );
+		}
+
+		/**
+		 * @return the smallest barycentric coordinate of x in simplex s, i.e.
+		 *         negative if x is outside
+		 */
+		protected double minBarycentric( final int s, final double[] x )
+		{
+			final int o = s * n * ( n + 1 );
+			double sum = 0;
+			double min = Double.POSITIVE_INFINITY;
+			for ( int i = 0, j = o; i < n; ++i )
+			{
+				double b = barycentric[ j + n ];
+				for ( int k = 0; k < n; ++k, ++j )
+					b += barycentric[ j ] * x[ k ];
+				++j;
+				sum += b;
+				min = Math.min( min, b );
+			}
+			return Math.min( min, 1.0 - sum );
+		}
+
+		/**
+		 * Squared Euclidean distance of x from simplex s, i.e. the minimum
+		 * over all faces whose affine hull contains the projection of x
+		 * within the face.
+		 *
+		 * @param scratch
+		 *            at least n * (n + 2) elements
+		 */
+		protected double distanceSquared( final int s, final double[] x, final double[] scratch )
+		{
+			final int o = s * n * ( n + 1 );
+			final int lambda = n * ( n + 1 );
+			double best = Double.POSITIVE_INFINITY;
+			for ( int face = 1; face < 1 << ( n + 1 ); ++face )
+			{
+				/* first vertex of the face and the edges to the others */
+				final int v0 = Integer.numberOfTrailingZeros( face );
+				final int o0 = o + v0 * n;
+				int k = 0;
+				for ( int v = v0 + 1; v <= n; ++v )
+				{
+					if ( ( face & ( 1 << v ) ) == 0 )
+						continue;
+
+					/* row k of the normal equations, G_kj = e_k . e_j, r_k = (x - v0) . e_k */
+					final int ov = o + v * n;
+					double r = 0;
+					for ( int d = 0; d < n; ++d )
+						r += ( vertices[ ov + d ] - vertices[ o0 + d ] ) * ( x[ d ] - vertices[ o0 + d ] );
+					scratch[ k * ( n + 1 ) + n ] = r;
+					++k;
+				}
+				for ( int i = 0, vi = v0; i < k; ++i )
+				{
+					vi = nextVertex( face, vi );
+					for ( int j = 0, vj = v0; j < k; ++j )
+					{
+						vj = nextVertex( face, vj );
+						double g = 0;
+						for ( int d = 0; d < n; ++d )
+							g += ( vertices[ o + vi * n + d ] - vertices[ o0 + d ] ) * ( vertices[ o + vj * n + d ] - vertices[ o0 + d ] );
+						scratch[ i * ( n + 1 ) + j ] = g;
+					}
+				}
+				if ( !solve( scratch, k, lambda ) )
+					continue;
+
+				double l0 = 1;
+				boolean inside = true;
+				for ( int i = 0; i < k; ++i )
+				{
+					l0 -= scratch[ lambda + i ];
+					inside &= scratch[ lambda + i ] >= 0;
+				}
+				if ( !inside || l0 < 0 )
+					continue;
+
+				double d2 = 0;
+				for ( int d = 0; d < n; ++d )
+				{
+					double p = vertices[ o0 + d ];
+					for ( int i = 0, vi = v0; i < k; ++i )
+					{
+						vi = nextVertex( face, vi );
+						p += scratch[ lambda + i ] * ( vertices[ o + vi * n + d ] - vertices[ o0 + d ] );
+					}
+					final double dx = x[ d ] - p;
+					d2 += dx * dx;
+				}
+				best = Math.min( best, d2 );
+			}
+			return best;
+		}
+
+		private static int nextVertex( final int face, final int v )
+		{
+			return Integer.numberOfTrailingZeros( face & ( -1 << ( v + 1 ) ) );
+		}
+
+		/**
+		 * Solve the k x k system with rows of length n + 1 at the start of
+		 * scratch by Gaussian elimination with partial pivoting and write
+		 * the solution to scratch[offset..offset+k).
+		 *
+		 * @return false if the system is singular
+		 */
+		private boolean solve( final double[] scratch, final int k, final int offset )
+		{
+			final int w = n + 1;
+			for ( int c = 0; c < k; ++c )
+			{
+				int pivot = c;
+				for ( int r = c + 1; r < k; ++r )
+					if ( Math.abs( scratch[ r * w + c ] ) > Math.abs( scratch[ pivot * w + c ] ) )
+						pivot = r;
+				if ( Math.abs( scratch[ pivot * w + c ] ) < EPS * EPS )
+					return false;
+				if ( pivot != c )
+				{
+					for ( int j = c; j < k; ++j )
+						swap( scratch, pivot * w + j, c * w + j );
+					swap( scratch, pivot * w + n, c * w + n );
+				}
+				for ( int r = c + 1; r < k; ++r )
+				{
+					final double f = scratch[ r * w + c ] / scratch[ c * w + c ];
+					for ( int j = c; j < k; ++j )
+						scratch[ r * w + j ] -= f * scratch[ c * w + j ];
+					scratch[ r * w + n ] -= f * scratch[ c * w + n ];
+				}
+			}
+			for ( int r = k - 1; r >= 0; --r )
+			{
+				double t = scratch[ r * w + n ];
+				for ( int j = r + 1; j < k; ++j )
+					t -= scratch[ r * w + j ] * scratch[ offset + j ];
+				scratch[ offset + r ] = t / scratch[ r * w + r ];
+			}
+			return true;
+		}
+
+		private static void swap( final double[] a, final int i, final int j )
+		{
+			final double t = a[ i ];
+			a[ i ] = a[ j ];
+			a[ j ] = t;
+		}
+
+		/**
+		 * @param scratch
+		 *            at least n * (n + 2) elements
+		 * @param cell
+		 *            at least 2 * n elements
+		 *
+		 * @return the simplex that contains x or, outside of the mesh, the
+		 *         closest simplex
+		 */
+		protected int locate( final double[] x, final int last, final double[] scratch, final int[] cell )
+		{
+			if ( last >= 0 && minBarycentric( last, x ) >= -EPS )
+				return last;
+
+			int i = 0;
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				cell[ d ] = cell( x[ d ], d );
+				i = i * numCells[ d ] + cell[ d ];
+			}
+
+			for ( int k = cellStart[ i ]; k < cellStart[ i + 1 ]; ++k )
+			{
+				final int s = cellSimplices[ k ];
+				if ( minBarycentric( s, x ) >= -EPS )
+					return s;
+			}
+
+			/*
+			 * Outside of the mesh, search rings of cells around the cell of
+			 * x.  Cells in ring r + 1 are at least r * minCellSize away, so
+			 * the search stops once the best distance is within that bound.
+			 */
+			int maxRing = 0;
+			for ( int d = 0; d < n; ++d )
+				maxRing = Math.max( maxRing, Math.max( cell[ d ], numCells[ d ] - 1 - cell[ d ] ) );
+
+			final int[] c = cell;
+			int best = -1;
+			double bestDistance = Double.POSITIVE_INFINITY;
+			for ( int r = 0; r <= maxRing; ++r )
+			{
+				for ( int d = 0; d < n; ++d )
+					c[ n + d ] = -r;
+				while ( true )
+				{
+					boolean onRing = false;
+					boolean inside = true;
+					int j = 0;
+					for ( int d = n - 1; d >= 0; --d )
+					{
+						final int cd = c[ d ] + c[ n + d ];
+						onRing |= Math.abs( c[ n + d ] ) == r;
+						inside &= cd >= 0 && cd < numCells[ d ];
+						j = j * numCells[ d ] + cd;
+					}
+					if ( onRing && inside )
+					{
+						for ( int k = cellStart[ j ]; k < cellStart[ j + 1 ]; ++k )
+						{
+							final int s = cellSimplices[ k ];
+							final double distance = distanceSquared( s, x, scratch );
+							if ( distance < bestDistance )
+							{
+								best = s;
+								bestDistance = distance;
+							}
+						}
+					}
+
+					int d = 0;
+					for ( ; d < n; ++d )
+					{
+						if ( ++c[ n + d ] <= r )
+							break;
+						c[ n + d ] = -r;
+					}
+					if ( d == n )
+						break;
+				}
+
+				final double bound = r * minCellSize;
+				if ( best >= 0 && bestDistance <= bound * bound )
+					break;
+			}
+			return best;
+		}
+
+		protected void apply( final int s, final double[] x, final double[] target )
+		{
+			final int o = s * n * ( n + 1 );
+			for ( int i = 0, j = o; i < n; ++i )
+			{
+				double t = affines[ j + n ];
+				for ( int k = 0; k < n; ++k, ++j )
+					t += affines[ j ] * x[ k ];
+				++j;
+				target[ i ] = t;
+			}
+		}
+	}
+
+	protected final int n;
+
+	protected final Side forward;
+
+	protected final Side backward;
+
+	/* scratch */
+	protected final double[] tmp;
+
+	protected final double[] result;
+
+	protected final double[] locateScratch;
+
+	protected final int[] locateCell;
+
+	protected int lastForward = -1;
+
+	protected int lastBackward = -1;
+
+	protected PiecewiseAffineTransform( final Side forward, final Side backward )
+	{
+		this.n = forward.n;
+		this.forward = forward;
+		this.backward = backward;
+		tmp = new double[ n ];
+		result = new double[ n ];
+		locateScratch = new double[ n * ( n + 2 ) ];
+		locateCell = new int[ 2 * n ];
+	}
+
+	/**
+	 * @param sourceVertices
+	 *            the vertices in source space, [vertex][dimension]
+	 * @param targetVertices
+	 *            the corresponding vertices in target space,
+	 *            [vertex][dimension]
+	 * @param simplices
+	 *            the indices of the n+1 vertices of each simplex,
+	 *            [simplex][vertex]
+	 */
+	public PiecewiseAffineTransform( final double[][] sourceVertices, final double[][] targetVertices, final int[][] simplices )
+	{
+		this(
+				new Side( sourceVertices, targetVertices, simplices ),
+				new Side( targetVertices, sourceVertices, simplices ) );
+
+		assert sourceVertices.length == targetVertices.length : "Vertices do not match.";
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		System.arraycopy( source, 0, tmp, 0, n );
+		lastForward = forward.locate( tmp, lastForward, locateScratch, locateCell );
+		forward.apply( lastForward, tmp, target );
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source[ d ];
+		lastForward = forward.locate( tmp, lastForward, locateScratch, locateCell );
+		forward.apply( lastForward, tmp, result );
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = ( float )result[ d ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source.getDoublePosition( d );
+		lastForward = forward.locate( tmp, lastForward, locateScratch, locateCell );
+		forward.apply( lastForward, tmp, result );
+		for ( int d = 0; d < n; ++d )
+			target.setPosition( result[ d ], d );
+	}
+
+	@Override
+	public void applyInverse( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		System.arraycopy( target, 0, tmp, 0, n );
+		lastBackward = backward.locate( tmp, lastBackward, locateScratch, locateCell );
+		backward.apply( lastBackward, tmp, source );
+	}
+
+	@Override
+	public void applyInverse( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = target[ d ];
+		lastBackward = backward.locate( tmp, lastBackward, locateScratch, locateCell );
+		backward.apply( lastBackward, tmp, result );
+		for ( int d = 0; d < n; ++d )
+			source[ d ] = ( float )result[ d ];
+	}
+
+	@Override
+	public void applyInverse( final RealPositionable source, final RealLocalizable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = target.getDoublePosition( d );
+		lastBackward = backward.locate( tmp, lastBackward, locateScratch, locateCell );
+		backward.apply( lastBackward, tmp, result );
+		for ( int d = 0; d < n; ++d )
+			source.setPosition( result[ d ], d );
+	}
+
+	@Override
+	public PiecewiseAffineTransform inverse()
+	{
+		return new PiecewiseAffineTransform( backward, forward );
+	}
+
+	@Override
+	public PiecewiseAffineTransform copy()
+	{
+		return new PiecewiseAffineTransform( forward, backward );
+	}
+}
@@ -36,6 +36,7 @@ package net.imglib2.realtransform;
 
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
 
 /**
  * Transforms 2D polar to cartesian coordinates.
@@ -50,7 +51,7 @@ import net.imglib2.RealPositionable;
  * 
  * @author Tobias Pietzsch
  */
-public class PolarToCartesianTransform2D implements InvertibleRealTransform
+public class PolarToCartesianTransform2D extends AbstractDifferentiableRealTransform implements InvertibleRealTransform, ScanlineRealTransform
 {
 	private static double x( final double r, final double t )
 	{
@@ -118,6 +119,66 @@ public class PolarToCartesianTransform2D implements InvertibleRealTransform
 		target.setPosition( y( r, t ), 1 );
 	}
 
+	private final static double cos1 = Math.cos( 1 );
+
+	private final static double sin1 = Math.sin( 1 );
+
+	/* radius, cosine and sine of the angle of the current scanline position */
+	private double sr, sc, ss;
+
+	@Override
+	public void startScanline( final double[] source, final double[] target )
+	{
+		sr = source[ 0 ];
+		sc = Math.cos( source[ 1 ] );
+		ss = Math.sin( source[ 1 ] );
+		target[ 0 ] = sr * sc;
+		target[ 1 ] = sr * ss;
+	}
+
+	@Override
+	public void advanceScanline( final long distance, final int d, final double[] target )
+	{
+		if ( d == 0 )
+			sr += distance;
+		else
+		{
+			/* rotate by the angle step */
+			final double c, s;
+			if ( distance == 1 )
+			{
+				c = cos1;
+				s = sin1;
+			}
+			else if ( distance == -1 )
+			{
+				c = cos1;
+				s = -sin1;
+			}
+			else
+			{
+				c = Math.cos( distance );
+				s = Math.sin( distance );
+			}
+			final double sc1 = sc * c - ss * s;
+			ss = ss * c + sc * s;
+			sc = sc1;
+		}
+		target[ 0 ] = sr * sc;
+		target[ 1 ] = sr * ss;
+	}
+
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final double c = Math.cos( x[ 1 ] );
+		final double s = Math.sin( x[ 1 ] );
+		jacobian[ 0 ][ 0 ] = c;
+		jacobian[ 0 ][ 1 ] = -x[ 0 ] * s;
+		jacobian[ 1 ][ 0 ] = s;
+		jacobian[ 1 ][ 1 ] = x[ 0 ] * c;
+	}
+
 	@Override
 	public void applyInverse( final double[] source, final double[] target )
 	{
@@ -154,6 +215,7 @@ public class PolarToCartesianTransform2D implements InvertibleRealTransform
 	@Override
 	public PolarToCartesianTransform2D copy()
 	{
-		return this;
+		/* the scanline state must not be shared */
+		return new PolarToCartesianTransform2D();
 	}
 }
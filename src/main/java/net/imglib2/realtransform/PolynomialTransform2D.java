@@ -38,6 +38,7 @@ import java.util.Arrays;
 
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
 
 /**
  * A 2D polynomial transform of n-th order.
@@ -46,7 +47,7 @@ import net.imglib2.RealPositionable;
  *
  * @author Stephan Saalfeld
  */
-public class PolynomialTransform2D implements RealTransform
+public class PolynomialTransform2D extends AbstractDifferentiableRealTransform
 {
 	/**
 	 * order of the polynomial transform
@@ -214,8 +215,40 @@ public class PolynomialTransform2D implements RealTransform
 		target.setPosition( y, 1 );
 	}
 
+	/**
+	 * Writes the jacobian at x into jacobian.  The partial derivatives of
+	 * the term x<sup>o-p</sup>y<sup>p</sup> are (o-p)
+	 * x<sup>o-p-1</sup>y<sup>p</sup> and p x<sup>o-p</sup>y<sup>p-1</sup>,
+	 * i.e. terms of the previous order.
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		populateTerms( x[ 0 ], x[ 1 ] );
+		final int numPolTerms = polTerms.length + 1;
+		for ( int i = 0; i < 2; ++i )
+		{
+			final int offset = i * numPolTerms + 1;
+			double dx = 0;
+			double dy = 0;
+			for ( int o = 1, start = 0, previous = 0; o <= order; previous = start, start += ++o )
+			{
+				for ( int p = 0; p <= o; ++p )
+				{
+					final double c = a[ offset + start + p ];
+					if ( p < o )
+						dx += c * ( o - p ) * ( o == 1 ? 1 : polTerms[ previous + p ] );
+					if ( p > 0 )
+						dy += c * p * ( o == 1 ? 1 : polTerms[ previous + p - 1 ] );
+				}
+			}
+			jacobian[ i ][ 0 ] = dx;
+			jacobian[ i ][ 1 ] = dy;
+		}
+	}
+
 	@Override
-	public RealTransform copy()
+	public PolynomialTransform2D copy()
 	{
 		final PolynomialTransform2D copy = new PolynomialTransform2D();
 		copy.set( a.clone() );
@@ -48,17 +48,30 @@ import net.imglib2.outofbounds.OutOfBoundsBorderFactory;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.view.Views;
+import net.imglib2.view.composite.Composite;
+import net.imglib2.view.composite.NumericComposite;
 
 /**
  * A {@link RealTransform} by continuous coordinate lookup.
  *
+ * The positions are either given as one scalar field per dimension or as a
+ * single field with an additional vector dimension.  In the latter case, the
+ * interpolation weights are calculated once per lookup for all components and,
+ * if the vector dimension is the fastest varying dimension of the underlying
+ * storage, all components are read from the same cache line.
+ *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
 public class PositionFieldTransform< T extends RealType< T > > implements RealTransform
 {
-	/* one for each dimension */
+	protected final int n;
+
+	/* one for each dimension, null if vectorAccess is used */
 	protected final RealRandomAccess< T >[] positionAccesses;
 
+	/* vectors of all components, null if positionAccesses are used */
+	protected final RealRandomAccess< ? extends Composite< T > > vectorAccess;
+
 	@SuppressWarnings("unchecked")
 	protected static < T extends RealType< T > > RealRandomAccessible< T >[] extendAndInterpolate(
 			final RandomAccessibleInterval< T >[] positions,
@@ -72,6 +85,24 @@ public class PositionFieldTransform< T extends RealType< T > > implements RealTr
 		return realPositions;
 	}
 
+	/**
+	 * View a field with vectors along vectorAxis as an n-linearly
+	 * interpolated, border extended field of vectors.
+	 */
+	protected static < T extends RealType< T > > RealRandomAccessible< NumericComposite< T > > collapseAndInterpolate(
+			final RandomAccessibleInterval< T > field,
+			final int vectorAxis )
+	{
+		final int last = field.numDimensions() - 1;
+
+		assert field.dimension( vectorAxis ) == last : "Dimensions do not match.";
+
+		final RandomAccessibleInterval< T > vectorLast = vectorAxis == last ? field : Views.moveAxis( field, vectorAxis, last );
+		return Views.interpolate(
+				Views.extendBorder( Views.collapseNumeric( vectorLast ) ),
+				new NLinearInterpolatorFactory<>() );
+	}
+
 	protected RealRandomAccess< T >[] copyAccesses()
 	{
 		@SuppressWarnings("unchecked")
@@ -80,10 +111,17 @@ public class PositionFieldTransform< T extends RealType< T > > implements RealTr
 		return accessCopies;
 	}
 
+	protected RealRandomAccess< ? extends Composite< T > > copyVectorAccess()
+	{
+		return vectorAccess.copyRealRandomAccess();
+	}
+
 	@SuppressWarnings( "unchecked" )
 	public PositionFieldTransform( final RealRandomAccess< T >... positionAccesses )
 	{
+		this.n = positionAccesses.length;
 		this.positionAccesses = positionAccesses;
+		this.vectorAccess = null;
 	}
 
 	@SuppressWarnings( "unchecked" )
@@ -92,8 +130,36 @@ public class PositionFieldTransform< T extends RealType< T > > implements RealTr
 	{
 		assert( Arrays.stream( positions ).allMatch( p -> p.numDimensions() == positions.length ) ) : "Dimensions do not match.";
 
+		n = positions.length;
 		positionAccesses = new RealRandomAccess[ positions.length ];
 		Arrays.setAll( positionAccesses, i -> positions[ i ].realRandomAccess() );
+		vectorAccess = null;
+	}
+
+	/**
+	 * @param vectorAccess
+	 *            access to the n-dimensional field of n-dimensional vectors
+	 * @param n
+	 *            number of dimensions
+	 */
+	public PositionFieldTransform( final RealRandomAccess< ? extends Composite< T > > vectorAccess, final int n )
+	{
+		this.n = n;
+		this.positionAccesses = null;
+		this.vectorAccess = vectorAccess;
+	}
+
+	/**
+	 * @param field
+	 *            the vectors of an n-dimensional field stored in one
+	 *            (n+1)-dimensional image
+	 * @param vectorAxis
+	 *            the dimension of field that holds the vector components,
+	 *            typically 0 for interleaved storage or n
+	 */
+	public PositionFieldTransform( final RandomAccessibleInterval< T > field, final int vectorAxis )
+	{
+		this( collapseAndInterpolate( field, vectorAxis ).realRandomAccess(), field.numDimensions() - 1 );
 	}
 
 	@SafeVarargs
@@ -114,48 +180,81 @@ public class PositionFieldTransform< T extends RealType< T > > implements RealTr
 	@Override
 	public int numSourceDimensions()
 	{
-		return positionAccesses.length;
+		return n;
 	}
 
 	@Override
 	public int numTargetDimensions()
 	{
-		return positionAccesses.length;
+		return n;
 	}
 
 	@Override
 	public void apply( final double[] source, final double[] target )
 	{
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			positionAccesses[ d ].setPosition( source );
+		if ( vectorAccess == null )
+		{
+			for ( int d = 0; d < n; d++ )
+				positionAccesses[ d ].setPosition( source );
 
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			target[ d ] = positionAccesses[ d ].get().getRealDouble();
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = positionAccesses[ d ].get().getRealDouble();
+		}
+		else
+		{
+			vectorAccess.setPosition( source );
+			final Composite< T > vector = vectorAccess.get();
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = vector.get( d ).getRealDouble();
+		}
 	}
 
 	@Override
 	public void apply( final float[] source, final float[] target )
 	{
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			positionAccesses[ d ].setPosition( source );
+		if ( vectorAccess == null )
+		{
+			for ( int d = 0; d < n; d++ )
+				positionAccesses[ d ].setPosition( source );
 
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			target[ d ] = ( float )positionAccesses[ d ].get().getRealDouble();
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = ( float )( positionAccesses[ d ].get().getRealDouble() );
+		}
+		else
+		{
+			vectorAccess.setPosition( source );
+			final Composite< T > vector = vectorAccess.get();
+			for ( int d = 0; d < n; d++ )
+				target[ d ] = ( float )( vector.get( d ).getRealDouble() );
+		}
 	}
 
 	@Override
 	public void apply( final RealLocalizable source, final RealPositionable target )
 	{
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			positionAccesses[ d ].setPosition( source );
+		if ( vectorAccess == null )
+		{
+			for ( int d = 0; d < n; d++ )
+				positionAccesses[ d ].setPosition( source );
 
-		for ( int d = 0; d < positionAccesses.length; d++ )
-			target.setPosition( positionAccesses[ d ].get().getRealDouble(), d );
+			for ( int d = 0; d < n; d++ )
+				target.setPosition( positionAccesses[ d ].get().getRealDouble(), d );
+		}
+		else
+		{
+			vectorAccess.setPosition( source );
+			final Composite< T > vector = vectorAccess.get();
+			for ( int d = 0; d < n; d++ )
+				target.setPosition( vector.get( d ).getRealDouble(), d );
+		}
 	}
 
 	@Override
 	public RealTransform copy()
 	{
-		return new PositionFieldTransform<>( copyAccesses() );
+		if ( vectorAccess == null )
+			return new PositionFieldTransform<>( copyAccesses() );
+		else
+			return new PositionFieldTransform<>( copyVectorAccess(), n );
 	}
 }
@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+
+/**
+ * {@link AbstractInterleavedDeformationFieldTransform} over a field quantized
+ * to 16 bit.  Component <em>d</em> of a vector is
+ * offset[d] + scale[d] * q with q the unsigned 16 bit value stored in the
+ * field.  Since the interpolation weights sum up to 1, the quantized values
+ * are interpolated first and scaled and shifted only once per component.
+ *
+ * At a quarter of the memory of a double field, the quantization error is
+ * bounded by scale[d] / 2, see {@link #quantize(double[], Interval)}.
+ */
+public class QuantizedInterleavedDeformationFieldTransform extends AbstractInterleavedDeformationFieldTransform
+{
+	protected final short[] field;
+
+	protected final double[] scale;
+
+	protected final double[] offset;
+
+	/**
+	 * @param field
+	 *            vector interleaved unsigned 16 bit values
+	 * @param scale
+	 *            scale per component
+	 * @param offset
+	 *            offset per component
+	 * @param interval
+	 *            the interval covered by the field
+	 */
+	public QuantizedInterleavedDeformationFieldTransform(
+			final short[] field,
+			final double[] scale,
+			final double[] offset,
+			final Interval interval )
+	{
+		super( interval, field.length );
+
+		assert scale.length >= n && offset.length >= n : "Dimensions do not match.";
+
+		this.field = field;
+		this.scale = scale.clone();
+		this.offset = offset.clone();
+	}
+
+	protected QuantizedInterleavedDeformationFieldTransform( final QuantizedInterleavedDeformationFieldTransform t )
+	{
+		super( t );
+		field = t.field;
+		scale = t.scale;
+		offset = t.offset;
+	}
+
+	/**
+	 * Quantize a vector interleaved double field using the full 16 bit range
+	 * of each component.
+	 *
+	 * @param field
+	 *            vector interleaved offsets
+	 * @param interval
+	 *            the interval covered by the field
+	 *
+	 * @return the transform
+	 */
+	public static QuantizedInterleavedDeformationFieldTransform quantize( final double[] field, final Interval interval )
+	{
+		final int n = interval.numDimensions();
+		final double[] min = new double[ n ];
+		final double[] max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.POSITIVE_INFINITY;
+			max[ d ] = Double.NEGATIVE_INFINITY;
+		}
+		for ( int i = 0; i < field.length; i += n )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final double v = field[ i + d ];
+				if ( v < min[ d ] )
+					min[ d ] = v;
+				if ( v > max[ d ] )
+					max[ d ] = v;
+			}
+		}
+
+		final double[] scale = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			scale[ d ] = max[ d ] > min[ d ] ? ( max[ d ] - min[ d ] ) / 0xffff : 1.0;
+
+		final short[] quantized = new short[ field.length ];
+		for ( int i = 0; i < field.length; i += n )
+			for ( int d = 0; d < n; ++d )
+				quantized[ i + d ] = ( short )Math.round( ( field[ i + d ] - min[ d ] ) / scale[ d ] );
+
+		return new QuantizedInterleavedDeformationFieldTransform( quantized, scale, min, interval );
+	}
+
+	/**
+	 * Quantize a {@link DoubleInterleavedDeformationFieldTransform}.
+	 *
+	 * @param transform
+	 *            the transform
+	 *
+	 * @return the quantized transform
+	 */
+	public static QuantizedInterleavedDeformationFieldTransform quantize( final DoubleInterleavedDeformationFieldTransform transform )
+	{
+		final long[] max = new long[ transform.n ];
+		for ( int d = 0; d < transform.n; ++d )
+			max[ d ] = transform.min[ d ] + transform.last[ d ];
+
+		return quantize( transform.field, new FinalInterval( transform.min, max ) );
+	}
+
+	/**
+	 * Sum up the weighted quantized values of all corners.
+	 */
+	private void sum()
+	{
+		for ( int d = 0; d < n; ++d )
+			displacement[ d ] = 0;
+
+		for ( int k = 0; k < numCorners; ++k )
+		{
+			final double w = weights[ k ];
+			if ( w == 0 )
+				continue;
+
+			for ( int d = 0, i = offsets[ k ]; d < n; ++d, ++i )
+				displacement[ d ] += w * ( field[ i ] & 0xffff );
+		}
+	}
+
+	@Override
+	protected void interpolate()
+	{
+		sum();
+		for ( int d = 0; d < n; ++d )
+			displacement[ d ] = offset[ d ] + scale[ d ] * displacement[ d ];
+	}
+
+	@Override
+	protected void interpolateDerivative()
+	{
+		sum();
+		for ( int d = 0; d < n; ++d )
+			displacement[ d ] *= scale[ d ];
+	}
+
+	@Override
+	public QuantizedInterleavedDeformationFieldTransform copy()
+	{
+		return new QuantizedInterleavedDeformationFieldTransform( this );
+	}
+}
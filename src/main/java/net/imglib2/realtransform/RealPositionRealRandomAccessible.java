@@ -76,7 +76,9 @@ public class RealPositionRealRandomAccessible implements RealRandomAccessible< D
 		@Override
 		public RealPositionRealRandomAccess copy()
 		{
-			return new RealPositionRealRandomAccess();
+			final RealPositionRealRandomAccess copy = new RealPositionRealRandomAccess();
+			copy.setPosition( this );
+			return copy;
 		}
 
 		@Override
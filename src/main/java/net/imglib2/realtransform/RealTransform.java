@@ -91,16 +91,19 @@ public interface RealTransform
 	 * Apply the {@link RealTransform} to a source vector to obtain a target
 	 * vector.
 	 *
+	 * <p>
+	 * The default implementation converts through temporary double vectors.
+	 * Implementations that are used in float precision pipelines should
+	 * override it without allocating.
+	 * </p>
+	 *
 	 * @param source
 	 *            source coordinates, length must be {@code >=}
 	 *            {@link #numSourceDimensions()}
 	 * @param target
 	 *            set this to the target coordinates, length must be {@code >=}
 	 *            {@link #numTargetDimensions()}
-	 *
-	 * @deprecated use double precision instead
 	 */
-	@Deprecated
 	public default void apply( final float[] source, final float[] target )
 	{
 		assert source.length >= numSourceDimensions() && target.length >= numTargetDimensions() : "Input dimensions too small.";
@@ -132,6 +135,91 @@ public interface RealTransform
 	 */
 	public void apply( final RealLocalizable source, final RealPositionable target );
 
+	/**
+	 * Apply the {@link RealTransform} to a batch of source vectors stored
+	 * interleaved in a flat array to obtain a batch of target vectors.
+	 *
+	 * <p>
+	 * Point <em>i</em> occupies the elements
+	 * {@code [i * n, (i + 1) * n)} of <em>source</em> and
+	 * {@code [i * m, (i + 1) * m)} of <em>target</em> with
+	 * <em>n</em>={@link #numSourceDimensions()} and
+	 * <em>m</em>={@link #numTargetDimensions()}. The same array may be passed
+	 * as <em>source</em> and <em>target</em> if <em>n</em>=<em>m</em>.
+	 * </p>
+	 * <p>
+	 * The default implementation transforms one point at a time through
+	 * {@link #apply(double[], double[])}, implementations are encouraged to
+	 * override it with a tighter loop.
+	 * </p>
+	 *
+	 * @param source
+	 *            interleaved source coordinates
+	 * @param target
+	 *            set this to the interleaved target coordinates
+	 * @param offset
+	 *            index of the first point
+	 * @param count
+	 *            number of points
+	 */
+	public default void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		final int n = numSourceDimensions();
+		final int m = numTargetDimensions();
+
+		assert source.length >= ( offset + count ) * n && target.length >= ( offset + count ) * m : "Input dimensions too small.";
+
+		final double[] s = new double[ n ];
+		final double[] t = new double[ m ];
+		for ( int i = 0, is = offset * n, it = offset * m; i < count; ++i, is += n, it += m )
+		{
+			System.arraycopy( source, is, s, 0, n );
+			apply( s, t );
+			System.arraycopy( t, 0, target, it, m );
+		}
+	}
+
+	/**
+	 * Apply the {@link RealTransform} to a batch of source vectors stored as
+	 * one array per dimension (structure of arrays) to obtain a batch of
+	 * target vectors.
+	 *
+	 * <p>
+	 * Coordinate <em>d</em> of point <em>i</em> is {@code source[d][i]} and
+	 * {@code target[d][i]} respectively. The same arrays may be passed as
+	 * <em>source</em> and <em>target</em>.
+	 * </p>
+	 *
+	 * @param source
+	 *            source coordinates, length must be {@code >=}
+	 *            {@link #numSourceDimensions()}
+	 * @param target
+	 *            set this to the target coordinates, length must be
+	 *            {@code >=} {@link #numTargetDimensions()}
+	 * @param offset
+	 *            index of the first point
+	 * @param count
+	 *            number of points
+	 */
+	public default void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		final int n = numSourceDimensions();
+		final int m = numTargetDimensions();
+
+		assert source.length >= n && target.length >= m : "Input dimensions too small.";
+
+		final double[] s = new double[ n ];
+		final double[] t = new double[ m ];
+		for ( int i = offset; i < offset + count; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				s[ d ] = source[ d ][ i ];
+			apply( s, t );
+			for ( int d = 0; d < m; ++d )
+				target[ d ][ i ] = t[ d ];
+		}
+	}
+
 	/**
 	 * Create a deep copy of this {@link RealTransform}.
 	 *
@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.List;
+
+import net.imglib2.realtransform.inverse.DifferentiableRealTransform;
+
+/**
+ * Evaluates the jacobian of arbitrary {@link RealTransform RealTransforms}
+ * and of their concatenations by the chain rule without allocating.
+ *
+ * The jacobian of an {@link AffineGet} is its matrix, that of a
+ * {@link DifferentiableRealTransform} is its analytic jacobian.  For all
+ * other transforms, it is estimated by central differences.  Jacobians are
+ * <em>m</em> x <em>n</em>, [row][column], for transforms from
+ * <em>n</em> to <em>m</em> dimensions.
+ *
+ * Instances hold scratch space and must not be shared between threads.
+ */
+public class RealTransformJacobian
+{
+	/* relative step of central differences */
+	final static protected double STEP = 1e-5;
+
+	protected int maxDimensions = 0;
+
+	protected double[] point;
+
+	protected double[] next;
+
+	protected double[] forward;
+
+	protected double[] backward;
+
+	protected double[][] stage;
+
+	protected double[][] product;
+
+	protected double[][] result;
+
+	public RealTransformJacobian( final int maxDimensions )
+	{
+		ensureDimensions( maxDimensions );
+	}
+
+	/**
+	 * Grow the scratch space to transforms with up to maxDimensions source or
+	 * target dimensions.
+	 */
+	public void ensureDimensions( final int maxDimensions )
+	{
+		if ( maxDimensions <= this.maxDimensions )
+			return;
+
+		this.maxDimensions = maxDimensions;
+		point = new double[ maxDimensions ];
+		next = new double[ maxDimensions ];
+		forward = new double[ maxDimensions ];
+		backward = new double[ maxDimensions ];
+		stage = new double[ maxDimensions ][ maxDimensions + 1 ];
+		product = new double[ maxDimensions ][ maxDimensions + 1 ];
+		result = new double[ maxDimensions ][ maxDimensions + 1 ];
+	}
+
+	/**
+	 * Write the jacobian of transform at x into jacobian.
+	 */
+	public void jacobian( final RealTransform transform, final double[] x, final double[][] jacobian )
+	{
+		final int n = transform.numSourceDimensions();
+		final int m = transform.numTargetDimensions();
+
+		if ( transform instanceof AffineGet )
+		{
+			final AffineGet affine = ( AffineGet )transform;
+			for ( int i = 0; i < m; ++i )
+				for ( int j = 0; j < n; ++j )
+					jacobian[ i ][ j ] = affine.get( i, j );
+		}
+		else if ( transform instanceof DifferentiableRealTransform )
+			( ( DifferentiableRealTransform )transform ).jacobian( x, jacobian );
+		else
+		{
+			ensureDimensions( Math.max( n, m ) );
+			System.arraycopy( x, 0, point, 0, n );
+			for ( int j = 0; j < n; ++j )
+			{
+				final double xj = x[ j ];
+				final double h = STEP * Math.max( 1, Math.abs( xj ) );
+				point[ j ] = xj + h;
+				transform.apply( point, forward );
+				point[ j ] = xj - h;
+				transform.apply( point, backward );
+				point[ j ] = xj;
+				for ( int i = 0; i < m; ++i )
+					jacobian[ i ][ j ] = ( forward[ i ] - backward[ i ] ) / ( 2 * h );
+			}
+		}
+	}
+
+	/**
+	 * Write the jacobian of the concatenation of transforms, applied in list
+	 * order, at x into jacobian.  The jacobian of an empty list is the
+	 * identity.
+	 */
+	public void jacobian( final List< ? extends RealTransform > transforms, final double[] x, final double[][] jacobian )
+	{
+		final int s = transforms.size();
+		if ( s == 0 )
+		{
+			for ( int i = 0; i < jacobian.length; ++i )
+				for ( int j = 0; j < jacobian.length; ++j )
+					jacobian[ i ][ j ] = i == j ? 1 : 0;
+			return;
+		}
+
+		for ( final RealTransform t : transforms )
+			ensureDimensions( Math.max( t.numSourceDimensions(), t.numTargetDimensions() ) );
+
+		final RealTransform first = transforms.get( 0 );
+		final int n = first.numSourceDimensions();
+		if ( s == 1 )
+		{
+			jacobian( first, x, jacobian );
+			return;
+		}
+
+		/* J = J_s-1 ... J_0, each evaluated at the image of x under the preceding stages */
+		System.arraycopy( x, 0, next, 0, n );
+		double[][] a = result;
+		double[][] b = product;
+		jacobian( first, x, a );
+		int rows = first.numTargetDimensions();
+		for ( int k = 1; k < s; ++k )
+		{
+			transforms.get( k - 1 ).apply( next, next );
+
+			final RealTransform t = transforms.get( k );
+			jacobian( t, next, stage );
+			final int m = t.numTargetDimensions();
+			final double[][] target = k == s - 1 ? jacobian : b;
+			for ( int i = 0; i < m; ++i )
+				for ( int j = 0; j < n; ++j )
+				{
+					double sum = 0;
+					for ( int l = 0; l < rows; ++l )
+						sum += stage[ i ][ l ] * a[ l ][ j ];
+					target[ i ][ j ] = sum;
+				}
+			rows = m;
+			final double[][] swap = a;
+			a = b;
+			b = swap;
+		}
+	}
+}
@@ -41,6 +41,7 @@ import net.imglib2.RandomAccessible;
 import net.imglib2.RealInterval;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.RealRandomAccessible;
+import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
 
 /**
  * A {@link RandomAccessible} whose samples are generated by rasterizing a
@@ -65,6 +66,17 @@ public class RealTransformRandomAccessible< T, R extends RealTransform > extends
 	 * preferable in situations where relative moves aren't more efficient than
 	 * a full {@link #apply()} because moves execute only the integer part and
 	 * not the coordinate transfer if no value is requested.
+	 *
+	 * If the transform is a {@link ScanlineRealTransform}, {@link #get()}
+	 * compares the current position with the position of the last transfer.
+	 * The source access is not moved at all if the position did not change,
+	 * and it is moved by {@link ScanlineRealTransform#advanceScanline} if the
+	 * position changed along only one dimension.
+	 *
+	 * If the transform is the inverse of a
+	 * {@link WrappedIterativeInvertibleRealTransform}, the iterative solver of
+	 * this access' copy is switched to warm start mode because consecutive
+	 * {@link #get()} calls typically query neighboring pixels.
 	 */
 	public class RealTransformRandomAccess extends Point implements RandomAccess< T >
 	{
@@ -72,12 +84,28 @@ public class RealTransformRandomAccessible< T, R extends RealTransform > extends
 
 		final protected R transformCopy;
 
+		final protected ScanlineRealTransform scanline;
+
+		final protected long[] scanlinePosition;
+
+		final protected double[] scanlineSource;
+
+		final protected double[] scanlineTarget;
+
+		protected boolean scanlineValid = false;
+
 		@SuppressWarnings( "unchecked" )
 		protected RealTransformRandomAccess()
 		{
 			super( transformToSource.numSourceDimensions() );
 			sourceAccess = source.realRandomAccess();
 			transformCopy = ( R )transformToSource.copy();
+			warmStart( transformCopy );
+
+			scanline = transformCopy instanceof ScanlineRealTransform ? ( ScanlineRealTransform )transformCopy : null;
+			scanlinePosition = new long[ n ];
+			scanlineSource = new double[ n ];
+			scanlineTarget = new double[ transformCopy.numTargetDimensions() ];
 		}
 
 		@SuppressWarnings( "unchecked" )
@@ -86,6 +114,12 @@ public class RealTransformRandomAccessible< T, R extends RealTransform > extends
 			super( a );
 			sourceAccess = a.sourceAccess.copyRealRandomAccess();
 			transformCopy = ( R )a.transformCopy.copy();
+			warmStart( transformCopy );
+
+			scanline = transformCopy instanceof ScanlineRealTransform ? ( ScanlineRealTransform )transformCopy : null;
+			scanlinePosition = new long[ n ];
+			scanlineSource = new double[ n ];
+			scanlineTarget = new double[ transformCopy.numTargetDimensions() ];
 		}
 
 		final protected void apply()
@@ -93,10 +127,54 @@ public class RealTransformRandomAccessible< T, R extends RealTransform > extends
 			transformCopy.apply( this, sourceAccess );
 		}
 
+		final protected void applyScanline()
+		{
+			int moved = -1;
+			if ( scanlineValid )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( position[ d ] != scanlinePosition[ d ] )
+					{
+						if ( moved >= 0 )
+						{
+							moved = -2;
+							break;
+						}
+						moved = d;
+					}
+				}
+				if ( moved == -1 )
+					return;
+			}
+
+			if ( moved < 0 )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					scanlinePosition[ d ] = position[ d ];
+					scanlineSource[ d ] = position[ d ];
+				}
+				scanline.startScanline( scanlineSource, scanlineTarget );
+				scanlineValid = true;
+			}
+			else
+			{
+				scanline.advanceScanline( position[ moved ] - scanlinePosition[ moved ], moved, scanlineTarget );
+				scanlinePosition[ moved ] = position[ moved ];
+			}
+
+			for ( int d = 0; d < scanlineTarget.length; ++d )
+				sourceAccess.setPosition( scanlineTarget[ d ], d );
+		}
+
 		@Override
 		public T get()
 		{
-			apply();
+			if ( scanline == null )
+				apply();
+			else
+				applyScanline();
 			return sourceAccess.get();
 		}
 
@@ -113,6 +191,19 @@ public class RealTransformRandomAccessible< T, R extends RealTransform > extends
 		}
 	}
 
+	/**
+	 * Switch an iterative inverse to warm start mode.
+	 */
+	protected static void warmStart( final RealTransform transform )
+	{
+		if ( transform instanceof InverseRealTransform )
+		{
+			final InvertibleRealTransform inverse = ( ( InverseRealTransform )transform ).inverse();
+			if ( inverse instanceof WrappedIterativeInvertibleRealTransform )
+				( ( WrappedIterativeInvertibleRealTransform< ? > )inverse ).setWarmStart( true );
+		}
+	}
+
 	public RealTransformRandomAccessible( final RealRandomAccessible< T > source, final R transformToSource )
 	{
 		super( source, transformToSource );
@@ -34,6 +34,8 @@
 
 package net.imglib2.realtransform;
 
+import java.util.ArrayList;
+
 /**
  * A sequence of {@link RealTransform RealTransforms}. If empty, will behave as the identity transformation.
  * 
@@ -41,6 +43,85 @@ package net.imglib2.realtransform;
  */
 public class RealTransformSequence extends AbstractRealTransformSequence< RealTransform >
 {
+	/**
+	 * Returns an equivalent sequence with fewer stages.  Nested sequences are
+	 * {@link #flatten(RealTransform) flattened}, identities are
+	 * dropped and adjacent affine, scale, and translation transforms are
+	 * fused into a single {@link AffineTransform}, {@link AffineTransform2D},
+	 * or {@link AffineTransform3D}.  Fused affines are snapshots and do not
+	 * reflect later changes of the original transforms, all other transforms
+	 * are shared with this sequence.
+	 *
+	 * <p>
+	 * The result is cached and recomputed after the next
+	 * {@link #add(RealTransform)}.  It must not be modified.
+	 * </p>
+	 *
+	 * @return the compiled sequence
+	 */
+	@Override
+	public RealTransformSequence compile()
+	{
+		if ( compiled == null )
+		{
+			final RealTransformSequence sequence = new RealTransformSequence();
+			final ArrayList< RealTransform > flat = new ArrayList<>();
+			flatten( this, flat );
+			for ( final RealTransform t : fuseAffines( flat ) )
+				sequence.add( t );
+			compiled = sequence;
+		}
+		return ( RealTransformSequence )compiled;
+	}
+
+	/**
+	 * Returns a {@link RealTransform} that is equivalent to the
+	 * {@link #compile() compiled} sequence and avoids iterating over a list
+	 * for short sequences.  This is the only stage if there is only one, a
+	 * {@link FixedRealTransformSequence} for two to four stages, and the
+	 * compiled sequence otherwise.
+	 *
+	 * @return the specialized transform
+	 */
+	public RealTransform specialize()
+	{
+		final RealTransformSequence c = compile();
+		switch ( c.transforms.size() )
+		{
+		case 0:
+			return c;
+		case 1:
+			return c.transforms.get( 0 );
+		case 2:
+			return new FixedRealTransformSequence( c.transforms.get( 0 ), c.transforms.get( 1 ) );
+		case 3:
+			return new FixedRealTransformSequence( c.transforms.get( 0 ), c.transforms.get( 1 ), c.transforms.get( 2 ) );
+		case 4:
+			return new FixedRealTransformSequence( c.transforms.get( 0 ), c.transforms.get( 1 ), c.transforms.get( 2 ), c.transforms.get( 3 ) );
+		default:
+			return c;
+		}
+	}
+
+	/**
+	 * Create a flat {@link RealTransformSequence} from a transform.  Nested
+	 * sequences are unrolled, and the inverse of an
+	 * {@link InvertibleRealTransformSequence} is unrolled into the inverses
+	 * of its elements in reverse order.
+	 *
+	 * @param transform the transform
+	 * @return a sequence that contains no sequences
+	 */
+	public static RealTransformSequence flatten( final RealTransform transform )
+	{
+		final ArrayList< RealTransform > flat = new ArrayList<>();
+		flatten( transform, flat );
+		final RealTransformSequence sequence = new RealTransformSequence();
+		for ( final RealTransform t : flat )
+			sequence.add( t );
+		return sequence;
+	}
+
 	@Override
 	public RealTransformSequence copy()
 	{
@@ -34,10 +34,15 @@
 
 package net.imglib2.realtransform;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.RealRandomAccessible;
+import net.imglib2.type.Type;
 
 /**
  * Convenience factory methods for {@link RealRandomAccessible
@@ -161,6 +166,47 @@ public class RealViews
 		return new AffineRandomAccessible< >( source, transformFromSource.inverse() );
 	}
 
+	/**
+	 * Render a {@link RealRandomAccessible} transformed by an
+	 * {@link InvertibleRealTransform} into target.  The transform is
+	 * interpreted as in {@link #transform(RealRandomAccessible, InvertibleRealTransform)},
+	 * {@link AffineGet affine transforms} are rendered through
+	 * {@link #affine(RealRandomAccessible, AffineGet)}.  The targetInterval is
+	 * split into blocks that are processed in parallel by service, see
+	 * {@link BlockResampler}.
+	 *
+	 * @param source
+	 *            the {@link RealRandomAccessible} to be transformed
+	 * @param transformFromSource
+	 *            the {@link InvertibleRealTransform} transforming source
+	 *            coordinates to target coordinates
+	 * @param targetInterval
+	 *            the interval to be rendered
+	 * @param target
+	 *            the target
+	 * @param service
+	 *            the {@link ExecutorService} executing the blocks
+	 * @param <T> the type
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static < T extends Type< T > > void resample(
+			final RealRandomAccessible< T > source,
+			final InvertibleRealTransform transformFromSource,
+			final Interval targetInterval,
+			final RandomAccessible< T > target,
+			final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		final RandomAccessible< T > transformed;
+		if ( transformFromSource instanceof AffineGet )
+			transformed = affine( source, ( AffineGet )transformFromSource );
+		else
+			transformed = transform( source, transformFromSource );
+
+		BlockResampler.resample( transformed, targetInterval, target, service );
+	}
+
 	/**
 	 * Add a dimension to a {@link RealRandomAccessible}.  The resulting
 	 * {@link RealRandomAccessible} has samples from the original dimensions
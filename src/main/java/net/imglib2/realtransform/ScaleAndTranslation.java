@@ -158,6 +158,34 @@ public class ScaleAndTranslation implements ScaleAndTranslationGet, Concatenable
 	}
 
 
+	@Override
+	public void apply( final double[] source, final double[] target, final int offset, final int count )
+	{
+		assert source.length >= ( offset + count ) * n && target.length >= ( offset + count ) * n;
+
+		for ( int j = offset * n, e = j + count * n; j < e; j += n )
+			for ( int i = 0; i < n; i++ )
+				target[ j + i ] = scales[ i ] * source[ j + i ] + translations[ i ];
+	}
+
+
+	@Override
+	public void apply( final double[][] source, final double[][] target, final int offset, final int count )
+	{
+		assert source.length >= n && target.length >= n;
+
+		for ( int d = 0; d < n; ++d )
+		{
+			final double s = scales[ d ];
+			final double t = translations[ d ];
+			final double[] sourced = source[ d ];
+			final double[] targetd = target[ d ];
+			for ( int i = offset, e = offset + count; i < e; ++i )
+				targetd[ i ] = s * sourced[ i ] + t;
+		}
+	}
+
+
 	@Override
 	public void applyInverse( final double[] source, final double[] target )
 	{
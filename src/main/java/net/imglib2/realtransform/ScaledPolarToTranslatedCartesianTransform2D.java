@@ -36,6 +36,7 @@ package net.imglib2.realtransform;
 
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
 
 /**
  * Transforms scaled polar to translated cartesian coordinates.
@@ -58,7 +59,7 @@ import net.imglib2.RealPositionable;
  * 
  * @author Tobias Pietzsch
  */
-public class ScaledPolarToTranslatedCartesianTransform2D implements InvertibleRealTransform
+public class ScaledPolarToTranslatedCartesianTransform2D extends AbstractDifferentiableRealTransform implements InvertibleRealTransform, ScanlineRealTransform
 {
 	private static double x( final double r, final double t )
 	{
@@ -90,6 +91,14 @@ public class ScaledPolarToTranslatedCartesianTransform2D implements InvertibleRe
 
 	private final InverseRealTransform inverse;
 
+	/* cosine and sine of the angle of one pixel step */
+	private final double cosStep;
+
+	private final double sinStep;
+
+	/* radius, cosine and sine of the angle of the current scanline position */
+	private double scanlineR, scanlineC, scanlineS;
+
 	public ScaledPolarToTranslatedCartesianTransform2D( final double tx, final double ty, final double sr, final double st )
 	{
 		this.tx = tx;
@@ -97,6 +106,8 @@ public class ScaledPolarToTranslatedCartesianTransform2D implements InvertibleRe
 		this.sr = sr;
 		this.st = st;
 		inverse = new InverseRealTransform( this );
+		cosStep = Math.cos( 1.0 / st );
+		sinStep = Math.sin( 1.0 / st );
 	}
 
 	@Override
@@ -138,6 +149,62 @@ public class ScaledPolarToTranslatedCartesianTransform2D implements InvertibleRe
 		target.setPosition( y( r, t ) + ty, 1 );
 	}
 
+	@Override
+	public void startScanline( final double[] source, final double[] target )
+	{
+		final double t = source[ 1 ] / st;
+		scanlineR = source[ 0 ] / sr;
+		scanlineC = Math.cos( t );
+		scanlineS = Math.sin( t );
+		target[ 0 ] = scanlineR * scanlineC + tx;
+		target[ 1 ] = scanlineR * scanlineS + ty;
+	}
+
+	@Override
+	public void advanceScanline( final long distance, final int d, final double[] target )
+	{
+		if ( d == 0 )
+			scanlineR += distance / sr;
+		else
+		{
+			/* rotate by the angle step */
+			final double c, s;
+			if ( distance == 1 )
+			{
+				c = cosStep;
+				s = sinStep;
+			}
+			else if ( distance == -1 )
+			{
+				c = cosStep;
+				s = -sinStep;
+			}
+			else
+			{
+				c = Math.cos( distance / st );
+				s = Math.sin( distance / st );
+			}
+			final double c1 = scanlineC * c - scanlineS * s;
+			scanlineS = scanlineS * c + scanlineC * s;
+			scanlineC = c1;
+		}
+		target[ 0 ] = scanlineR * scanlineC + tx;
+		target[ 1 ] = scanlineR * scanlineS + ty;
+	}
+
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final double r = x[ 0 ] / sr;
+		final double t = x[ 1 ] / st;
+		final double c = Math.cos( t );
+		final double s = Math.sin( t );
+		jacobian[ 0 ][ 0 ] = c / sr;
+		jacobian[ 0 ][ 1 ] = -r * s / st;
+		jacobian[ 1 ][ 0 ] = s / sr;
+		jacobian[ 1 ][ 1 ] = r * c / st;
+	}
+
 	@Override
 	public void applyInverse( final double[] source, final double[] target )
 	{
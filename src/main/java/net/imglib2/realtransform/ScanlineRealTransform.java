@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+/**
+ * A {@link RealTransform} that can move a transformed point along one axis of
+ * the source space more cheaply than a full {@link #apply(double[], double[])}.
+ *
+ * <p>
+ * A scanline is started at a source point with
+ * {@link #startScanline(double[], double[])} and then followed with any number
+ * of {@link #advanceScanline(long, int, double[])} calls.  The scanline state
+ * is stored in the transform, use a {@link #copy()} per thread.
+ * </p>
+ *
+ * @see RealTransformRandomAccessible.RealTransformRandomAccess
+ */
+public interface ScanlineRealTransform extends RealTransform
+{
+	/**
+	 * Apply the transform to a source vector and remember the source vector
+	 * as the start of a scanline.
+	 *
+	 * @param source
+	 *            source coordinates, length must be {@code >=}
+	 *            {@link #numSourceDimensions()}
+	 * @param target
+	 *            set this to the target coordinates, length must be {@code >=}
+	 *            {@link #numTargetDimensions()}
+	 */
+	public void startScanline( final double[] source, final double[] target );
+
+	/**
+	 * Move the remembered source vector by an integer distance along one
+	 * dimension and write its transformed coordinates into target.
+	 *
+	 * @param distance
+	 *            relative distance, may be negative
+	 * @param d
+	 *            the source dimension
+	 * @param target
+	 *            set this to the target coordinates, length must be {@code >=}
+	 *            {@link #numTargetDimensions()}
+	 */
+	public void advanceScanline( final long distance, final int d, final double[] target );
+
+	@Override
+	public ScanlineRealTransform copy();
+}
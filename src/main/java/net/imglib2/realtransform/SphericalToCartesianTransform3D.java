@@ -36,6 +36,7 @@ package net.imglib2.realtransform;
 
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.DifferentiableRealTransform;
 
 /**
  * Transforms 3D spherical to cartesian coordinates.
@@ -48,7 +49,7 @@ import net.imglib2.RealPositionable;
  *
  * @author Tobias Pietzsch
  */
-public final class SphericalToCartesianTransform3D implements InvertibleRealTransform
+public final class SphericalToCartesianTransform3D implements InvertibleRealTransform, DifferentiableRealTransform
 {
 	private static final SphericalToCartesianTransform3D instance = new SphericalToCartesianTransform3D();
 
@@ -139,6 +140,41 @@ public final class SphericalToCartesianTransform3D implements InvertibleRealTran
 		target.setPosition( z( r, inclination ), 2 );
 	}
 
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final double r = x[ 0 ];
+		final double si = Math.sin( x[ 1 ] );
+		final double ci = Math.cos( x[ 1 ] );
+		final double sa = Math.sin( x[ 2 ] );
+		final double ca = Math.cos( x[ 2 ] );
+		jacobian[ 0 ][ 0 ] = si * ca;
+		jacobian[ 0 ][ 1 ] = r * ci * ca;
+		jacobian[ 0 ][ 2 ] = -r * si * sa;
+		jacobian[ 1 ][ 0 ] = si * sa;
+		jacobian[ 1 ][ 1 ] = r * ci * sa;
+		jacobian[ 1 ][ 2 ] = r * si * ca;
+		jacobian[ 2 ][ 0 ] = ci;
+		jacobian[ 2 ][ 1 ] = -r * si;
+		jacobian[ 2 ][ 2 ] = 0;
+	}
+
+	/**
+	 * Returns the jacobian matrix at x.  The transform is shared, so a new
+	 * {@link AffineTransform} is created for each call, use
+	 * {@link #jacobian(double[], double[][])} to avoid that.
+	 */
+	@Override
+	public AffineTransform jacobian( final double[] x )
+	{
+		final double[][] jac = new double[ 3 ][ 4 ];
+		jacobian( x, jac );
+		final AffineTransform jacobian = new AffineTransform( 3 );
+		jacobian.set( jac );
+
+		return jacobian;
+	}
+
 	@Override
 	public void applyInverse( final double[] source, final double[] target )
 	{
@@ -0,0 +1,770 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fits the coefficients of an <em>n</em>-dimensional thin plate spline
+ * x + A x + b + &Sigma; w<sub>l</sub> U(|x - p<sub>l</sub>|) that maps
+ * source landmarks p onto target landmarks q, and updates them when
+ * landmarks are added, moved or removed.
+ *
+ * The fit keeps the inverse of the symmetric (N + n + 1)<sup>2</sup> system
+ * <pre>
+ * | 0   P<sup>T</sup> | |a|   | 0   |
+ * | P   K  | |w| = | q-p |
+ * </pre>
+ * with K<sub>ij</sub> = U(|p<sub>i</sub> - p<sub>j</sub>|) and P<sub>i</sub>
+ * = (p<sub>i</sub>, 1).  The initial inverse is computed by a blocked LU
+ * decomposition with partial pivoting whose trailing updates and
+ * substitutions run in parallel.  Adding or removing a landmark borders or
+ * shrinks the inverse, changing a target is a rank-one update of the
+ * solution, each in O((N + n)<sup>2</sup>).  Rounding errors accumulate
+ * over many updates, {@link #fit(ExecutorService)} recomputes the inverse
+ * from scratch.
+ *
+ * The inverse is stored in place of the decomposition and dominates the
+ * memory footprint with 8 C<sup>2</sup> bytes for a capacity C slightly
+ * larger than N + n + 1, e.g. about 0.8GB for 10,000 and 20GB for 50,000
+ * landmarks.
+ *
+ * The coefficients are available in the layout of
+ * {@link jitk.spline.ThinPlateR2LogRSplineKernelTransform}.
+ */
+public class ThinplateSplineFit
+{
+	final static protected int BLOCK_SIZE = 64;
+
+	/* tolerance for the Schur complement of a new landmark relative to its kernel scale */
+	final static protected double EPS = 1e-12;
+
+	/* largest safe length of a Java array */
+	final static protected int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	protected interface RangeTask
+	{
+		void run( int start, int end );
+	}
+
+	protected final int n;
+
+	protected int numLandmarks;
+
+	/* capacity of the system, rows of inverse */
+	protected int capacity;
+
+	/* landmarks, [landmark * n + d] */
+	protected double[] p;
+
+	protected double[] q;
+
+	/* inverse of the system, rows of length capacity */
+	protected double[][] inverse;
+
+	/* right hand side and solution, [row * n + d] */
+	protected double[] rhs;
+
+	protected double[] solution;
+
+	/* scratch */
+	protected double[] column;
+
+	protected double[] u;
+
+	/**
+	 * @param p
+	 *            source landmarks, [dimension][landmark]
+	 * @param q
+	 *            target landmarks, [dimension][landmark]
+	 * @param service
+	 *            the {@link ExecutorService} executing the decomposition,
+	 *            null to run in the calling thread
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public ThinplateSplineFit( final double[][] p, final double[][] q, final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		assert p.length == q.length && p[ 0 ].length == q[ 0 ].length : "Dimensions do not match.";
+
+		n = p.length;
+		numLandmarks = p[ 0 ].length;
+		allocate( numLandmarks + n + 1 + BLOCK_SIZE );
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+			{
+				this.p[ l * n + d ] = p[ d ][ l ];
+				this.q[ l * n + d ] = q[ d ][ l ];
+			}
+		fit( service );
+	}
+
+	/**
+	 * Fit in the calling thread.
+	 *
+	 * @param p
+	 *            source landmarks, [dimension][landmark]
+	 * @param q
+	 *            target landmarks, [dimension][landmark]
+	 */
+	public ThinplateSplineFit( final double[][] p, final double[][] q )
+	{
+		n = p.length;
+		numLandmarks = p[ 0 ].length;
+		allocate( numLandmarks + n + 1 + BLOCK_SIZE );
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+			{
+				this.p[ l * n + d ] = p[ d ][ l ];
+				this.q[ l * n + d ] = q[ d ][ l ];
+			}
+		try
+		{
+			fit( null );
+		}
+		catch ( final InterruptedException | ExecutionException e )
+		{
+			/* not thrown without an executor */
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Allocate for a system of the given capacity and keep the current
+	 * contents.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the capacity cannot be represented in arrays
+	 */
+	protected void allocate( final long newCapacity )
+	{
+		if ( newCapacity * n > MAX_ARRAY_LENGTH )
+			throw new IllegalArgumentException( "A system of size " + newCapacity + " exceeds the maximum array length." );
+
+		final int c = ( int )newCapacity;
+		final int m = size();
+		final int numLandmarkCapacity = c - n - 1;
+
+		final double[] newP = new double[ numLandmarkCapacity * n ];
+		final double[] newQ = new double[ numLandmarkCapacity * n ];
+		final double[][] newInverse = new double[ c ][];
+		final double[] newRhs = new double[ c * n ];
+		final double[] newSolution = new double[ c * n ];
+		for ( int i = 0; i < c; ++i )
+			newInverse[ i ] = new double[ c ];
+		if ( p != null )
+		{
+			System.arraycopy( p, 0, newP, 0, numLandmarks * n );
+			System.arraycopy( q, 0, newQ, 0, numLandmarks * n );
+			for ( int i = 0; i < m; ++i )
+				System.arraycopy( inverse[ i ], 0, newInverse[ i ], 0, m );
+			System.arraycopy( rhs, 0, newRhs, 0, m * n );
+			System.arraycopy( solution, 0, newSolution, 0, m * n );
+		}
+		p = newP;
+		q = newQ;
+		inverse = newInverse;
+		rhs = newRhs;
+		solution = newSolution;
+		column = new double[ c ];
+		u = new double[ c ];
+		capacity = c;
+	}
+
+	/**
+	 * @return the size of the system
+	 */
+	protected int size()
+	{
+		return numLandmarks + n + 1;
+	}
+
+	protected static double kernel( final double r2 )
+	{
+		return r2 > 0 ? 0.5 * r2 * Math.log( r2 ) : 0;
+	}
+
+	/**
+	 * Write the system column of a landmark at x, (x, 1, U(|x -
+	 * p<sub>l</sub>|)), into column[0, size()).
+	 */
+	protected void kernelColumn( final double[] x, final int offset, final double[] column )
+	{
+		for ( int d = 0; d < n; ++d )
+			column[ d ] = x[ offset + d ];
+		column[ n ] = 1;
+		for ( int l = 0, i = n + 1; l < numLandmarks; ++l, ++i )
+		{
+			double r2 = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double dx = x[ offset + d ] - p[ l * n + d ];
+				r2 += dx * dx;
+			}
+			column[ i ] = kernel( r2 );
+		}
+	}
+
+	/**
+	 * Run task on [start, end) in chunks of {@link #BLOCK_SIZE}.
+	 */
+	protected static void forEachChunk( final int start, final int end, final RangeTask task, final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		final int numChunks = ( end - start + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
+		if ( service == null || numChunks < 2 )
+		{
+			task.run( start, end );
+			return;
+		}
+
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final int numTasks = Math.min( numChunks, Runtime.getRuntime().availableProcessors() );
+		final List< Future< ? > > futures = new ArrayList<>( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+			futures.add( service.submit( () -> {
+				for ( int c = nextChunk.getAndIncrement(); c < numChunks; c = nextChunk.getAndIncrement() )
+				{
+					final int chunkStart = start + c * BLOCK_SIZE;
+					task.run( chunkStart, Math.min( end, chunkStart + BLOCK_SIZE ) );
+				}
+			} ) );
+
+		for ( final Future< ? > future : futures )
+			future.get();
+	}
+
+	/**
+	 * In-place blocked LU decomposition with partial pivoting of the m x m
+	 * matrix in the leading columns of the rows of a.  Rows swapped in step
+	 * k are stored in pivots[k].
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a is singular
+	 */
+	protected static void factorize( final double[][] a, final int m, final int[] pivots, final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		for ( int k0 = 0; k0 < m; k0 += BLOCK_SIZE )
+		{
+			final int k1 = Math.min( m, k0 + BLOCK_SIZE );
+
+			/* panel of columns [k0, k1) */
+			for ( int k = k0; k < k1; ++k )
+			{
+				int pivot = k;
+				double max = Math.abs( a[ k ][ k ] );
+				for ( int i = k + 1; i < m; ++i )
+				{
+					final double abs = Math.abs( a[ i ][ k ] );
+					if ( abs > max )
+					{
+						max = abs;
+						pivot = i;
+					}
+				}
+				if ( max == 0 )
+					throw new IllegalArgumentException( "Landmarks are degenerate, the system is singular." );
+
+				pivots[ k ] = pivot;
+				if ( pivot != k )
+				{
+					final double[] t = a[ k ];
+					a[ k ] = a[ pivot ];
+					a[ pivot ] = t;
+				}
+
+				final double[] rk = a[ k ];
+				final double akk = rk[ k ];
+				for ( int i = k + 1; i < m; ++i )
+				{
+					final double[] ri = a[ i ];
+					final double l = ri[ k ] /= akk;
+					if ( l != 0 )
+						for ( int j = k + 1; j < k1; ++j )
+							ri[ j ] -= l * rk[ j ];
+				}
+			}
+
+			/* rows [k0, k1) of U right of the panel */
+			for ( int k = k0; k < k1; ++k )
+				for ( int i = k + 1; i < k1; ++i )
+				{
+					final double[] ri = a[ i ];
+					final double[] rk = a[ k ];
+					final double l = ri[ k ];
+					if ( l != 0 )
+						for ( int j = k1; j < m; ++j )
+							ri[ j ] -= l * rk[ j ];
+				}
+
+			/* trailing matrix */
+			final int panelStart = k0;
+			forEachChunk( k1, m, ( start, end ) -> {
+				for ( int i = start; i < end; ++i )
+				{
+					final double[] ri = a[ i ];
+					for ( int k = panelStart; k < k1; ++k )
+					{
+						final double l = ri[ k ];
+						if ( l != 0 )
+						{
+							final double[] rk = a[ k ];
+							for ( int j = k1; j < m; ++j )
+								ri[ j ] -= l * rk[ j ];
+						}
+					}
+				}
+			}, service );
+		}
+	}
+
+	/**
+	 * Replace a decomposition by
+	 * {@link #factorize(double[][], int, int[], ExecutorService)} with the
+	 * inverse of the decomposed matrix, i.e. invert U and solve
+	 * A<sup>-1</sup> L = U<sup>-1</sup> for A<sup>-1</sup> as in LAPACK's
+	 * getri.  Needs O(m) scratch per block of columns.
+	 */
+	protected static void invert( final double[][] a, final int m, final int[] pivots, final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		/* U^-1, row i from the rows below, x_j = sum_k u_ik (U^-1)_kj */
+		final double[] x = new double[ m ];
+		for ( int i = m - 1; i >= 0; --i )
+		{
+			final double[] ri = a[ i ];
+			final int row = i;
+			forEachChunk( i + 1, m, ( start, end ) -> {
+				for ( int j = start; j < end; ++j )
+					x[ j ] = 0;
+				for ( int k = row + 1; k < end; ++k )
+				{
+					final double uik = ri[ k ];
+					if ( uik != 0 )
+					{
+						final double[] rk = a[ k ];
+						for ( int j = Math.max( k, start ); j < end; ++j )
+							x[ j ] += uik * rk[ j ];
+					}
+				}
+			}, service );
+			final double uii = 1.0 / ri[ i ];
+			ri[ i ] = uii;
+			for ( int j = i + 1; j < m; ++j )
+				ri[ j ] = -uii * x[ j ];
+		}
+
+		/* A^-1 L = U^-1 by blocks of columns from the right, rows are independent */
+		final double[][] w = new double[ BLOCK_SIZE ][ m ];
+		for ( int j1 = m; j1 > 0; j1 -= BLOCK_SIZE )
+		{
+			final int j0 = Math.max( 0, j1 - BLOCK_SIZE );
+			for ( int j = j0; j < j1; ++j )
+			{
+				final double[] wj = w[ j - j0 ];
+				for ( int k = 0; k <= j; ++k )
+					wj[ k ] = 0;
+				for ( int k = j + 1; k < m; ++k )
+				{
+					wj[ k ] = a[ k ][ j ];
+					a[ k ][ j ] = 0;
+				}
+			}
+
+			final int blockEnd = j1;
+			forEachChunk( 0, m, ( start, end ) -> {
+				for ( int i = start; i < end; ++i )
+				{
+					final double[] ri = a[ i ];
+					for ( int j = blockEnd - 1; j >= j0; --j )
+					{
+						final double[] wj = w[ j - j0 ];
+						double s = ri[ j ];
+						for ( int k = j + 1; k < m; ++k )
+							s -= ri[ k ] * wj[ k ];
+						ri[ j ] = s;
+					}
+				}
+			}, service );
+		}
+
+		/* undo the row interchanges of A as column interchanges of A^-1 */
+		forEachChunk( 0, m, ( start, end ) -> {
+			for ( int i = start; i < end; ++i )
+			{
+				final double[] ri = a[ i ];
+				for ( int k = m - 1; k >= 0; --k )
+					if ( pivots[ k ] != k )
+						swap( ri, k, pivots[ k ] );
+			}
+		}, service );
+	}
+
+	/**
+	 * Fit from scratch, i.e. build the system for the current landmarks and
+	 * invert it in place.
+	 *
+	 * @param service
+	 *            the {@link ExecutorService} executing the decomposition,
+	 *            null to run in the calling thread
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws IllegalArgumentException
+	 *             if the landmarks are degenerate, the inverse is invalid
+	 *             until the next successful fit
+	 */
+	public void fit( final ExecutorService service ) throws InterruptedException, ExecutionException
+	{
+		final int m = size();
+		final double[][] a = inverse;
+		forEachChunk( 0, m, ( start, end ) -> {
+			for ( int i = start; i < end; ++i )
+			{
+				final double[] ri = a[ i ];
+				if ( i <= n )
+				{
+					/* affine rows, (p_l)_i or 1 */
+					for ( int j = 0; j <= n; ++j )
+						ri[ j ] = 0;
+					for ( int j = n + 1, l = 0; j < m; ++j, ++l )
+						ri[ j ] = i < n ? p[ l * n + i ] : 1;
+					continue;
+				}
+
+				final int l = i - n - 1;
+				for ( int d = 0; d < n; ++d )
+					ri[ d ] = p[ l * n + d ];
+				ri[ n ] = 1;
+				for ( int j = n + 1, k = 0; j < m; ++j, ++k )
+				{
+					double r2 = 0;
+					for ( int d = 0; d < n; ++d )
+					{
+						final double dx = p[ l * n + d ] - p[ k * n + d ];
+						r2 += dx * dx;
+					}
+					ri[ j ] = kernel( r2 );
+				}
+			}
+		}, service );
+
+		final int[] pivots = new int[ m ];
+		factorize( a, m, pivots, service );
+		invert( a, m, pivots, service );
+
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+				rhs[ ( l + n + 1 ) * n + d ] = q[ l * n + d ] - p[ l * n + d ];
+
+		forEachChunk( 0, m, ( start, end ) -> {
+			for ( int i = start; i < end; ++i )
+			{
+				final double[] ri = inverse[ i ];
+				for ( int d = 0; d < n; ++d )
+				{
+					double s = 0;
+					for ( int j = n + 1; j < m; ++j )
+						s += ri[ j ] * rhs[ j * n + d ];
+					solution[ i * n + d ] = s;
+				}
+			}
+		}, service );
+	}
+
+	/**
+	 * Add a landmark by bordering the inverse.
+	 *
+	 * @param source
+	 *            the source landmark
+	 * @param target
+	 *            the target landmark
+	 * @return the index of the new landmark
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the new landmark makes the system singular, e.g. if it
+	 *             coincides with an existing landmark
+	 */
+	public int add( final double[] source, final double[] target )
+	{
+		final int m = size();
+		if ( m + 1 > capacity )
+			allocate( ( long )capacity + Math.max( BLOCK_SIZE, capacity / 8 ) );
+
+		/* u = M^-1 c, s = U(0) - c^T u */
+		kernelColumn( source, 0, column );
+		double s = 0;
+		double scale = 0;
+		for ( int i = 0; i < m; ++i )
+		{
+			final double[] ri = inverse[ i ];
+			double ui = 0;
+			for ( int j = 0; j < m; ++j )
+				ui += ri[ j ] * column[ j ];
+			u[ i ] = ui;
+			s -= column[ i ] * ui;
+			scale = Math.max( scale, Math.abs( column[ i ] ) );
+		}
+		if ( !( Math.abs( s ) > EPS * Math.max( 1, scale ) ) )
+			throw new IllegalArgumentException( "Landmark makes the system singular." );
+
+		final double[] rm = inverse[ m ];
+		for ( int i = 0; i < m; ++i )
+		{
+			final double[] ri = inverse[ i ];
+			final double ui = u[ i ] / s;
+			for ( int j = 0; j < m; ++j )
+				ri[ j ] += ui * u[ j ];
+			ri[ m ] = -ui;
+			rm[ i ] = -ui;
+		}
+		rm[ m ] = 1 / s;
+
+		final int l = numLandmarks;
+		for ( int d = 0; d < n; ++d )
+		{
+			p[ l * n + d ] = source[ d ];
+			q[ l * n + d ] = target[ d ];
+			rhs[ m * n + d ] = target[ d ] - source[ d ];
+
+			double y = rhs[ m * n + d ];
+			for ( int i = 0; i < m; ++i )
+				y -= column[ i ] * solution[ i * n + d ];
+			y /= s;
+			for ( int i = 0; i < m; ++i )
+				solution[ i * n + d ] -= u[ i ] * y;
+			solution[ m * n + d ] = y;
+		}
+		++numLandmarks;
+
+		return l;
+	}
+
+	/**
+	 * Remove a landmark by shrinking the inverse.  The last landmark takes
+	 * the index of the removed landmark.
+	 *
+	 * @param index
+	 *            the landmark
+	 */
+	public void remove( final int index )
+	{
+		assert index >= 0 && index < numLandmarks : "No such landmark.";
+
+		final int last = size() - 1;
+		swap( index + n + 1, last );
+
+		/* B' = B_rr - B_rl B_lr / B_ll, x' = x_r - B_rl x_l / B_ll */
+		final double[] rl = inverse[ last ];
+		final double bll = rl[ last ];
+		for ( int i = 0; i < last; ++i )
+		{
+			final double[] ri = inverse[ i ];
+			final double bil = ri[ last ] / bll;
+			for ( int j = 0; j < last; ++j )
+				ri[ j ] -= bil * rl[ j ];
+			for ( int d = 0; d < n; ++d )
+				solution[ i * n + d ] -= bil * solution[ last * n + d ];
+		}
+		for ( int d = 0; d < n; ++d )
+			rhs[ last * n + d ] = 0;
+
+		--numLandmarks;
+	}
+
+	/**
+	 * Move a landmark.  Changing only the target is a rank-one update of the
+	 * solution, otherwise the landmark is removed and added again.
+	 *
+	 * @param index
+	 *            the landmark
+	 * @param source
+	 *            the new source landmark
+	 * @param target
+	 *            the new target landmark
+	 */
+	public void move( final int index, final double[] source, final double[] target )
+	{
+		assert index >= 0 && index < numLandmarks : "No such landmark.";
+
+		boolean sourceChanged = false;
+		for ( int d = 0; d < n; ++d )
+			sourceChanged |= source[ d ] != p[ index * n + d ];
+
+		if ( sourceChanged )
+		{
+			remove( index );
+			add( source, target );
+			swap( index + n + 1, size() - 1 );
+		}
+		else
+			setTarget( index, target );
+	}
+
+	/**
+	 * Change the target of a landmark, x += B<sub>:,k</sub> &delta;.
+	 *
+	 * @param index
+	 *            the landmark
+	 * @param target
+	 *            the new target landmark
+	 */
+	public void setTarget( final int index, final double[] target )
+	{
+		assert index >= 0 && index < numLandmarks : "No such landmark.";
+
+		final int m = size();
+		final int k = index + n + 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double delta = target[ d ] - q[ index * n + d ];
+			q[ index * n + d ] = target[ d ];
+			rhs[ k * n + d ] += delta;
+			for ( int i = 0; i < m; ++i )
+				solution[ i * n + d ] += inverse[ i ][ k ] * delta;
+		}
+	}
+
+	/**
+	 * Swap two landmark rows of the system, i.e. the rows and columns of the
+	 * inverse, right hand side, solution and landmarks.
+	 */
+	protected void swap( final int i, final int j )
+	{
+		if ( i == j )
+			return;
+
+		final int m = size();
+		final double[] t = inverse[ i ];
+		inverse[ i ] = inverse[ j ];
+		inverse[ j ] = t;
+		for ( int k = 0; k < m; ++k )
+			swap( inverse[ k ], i, j );
+		for ( int d = 0; d < n; ++d )
+		{
+			swap( rhs, i * n + d, j * n + d );
+			swap( solution, i * n + d, j * n + d );
+			swap( p, ( i - n - 1 ) * n + d, ( j - n - 1 ) * n + d );
+			swap( q, ( i - n - 1 ) * n + d, ( j - n - 1 ) * n + d );
+		}
+	}
+
+	protected static void swap( final double[] a, final int i, final int j )
+	{
+		final double t = a[ i ];
+		a[ i ] = a[ j ];
+		a[ j ] = t;
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	public int numLandmarks()
+	{
+		return numLandmarks;
+	}
+
+	/**
+	 * @return the source landmarks, [dimension][landmark]
+	 */
+	public double[][] getSourceLandmarks()
+	{
+		final double[][] landmarks = new double[ n ][ numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+				landmarks[ d ][ l ] = p[ l * n + d ];
+		return landmarks;
+	}
+
+	/**
+	 * @return the target landmarks, [dimension][landmark]
+	 */
+	public double[][] getTargetLandmarks()
+	{
+		final double[][] landmarks = new double[ n ][ numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+				landmarks[ d ][ l ] = q[ l * n + d ];
+		return landmarks;
+	}
+
+	/**
+	 * @return the kernel weights, [landmark * n + dimension]
+	 */
+	public double[] getKnotWeights()
+	{
+		final double[] weights = new double[ numLandmarks * n ];
+		System.arraycopy( solution, ( n + 1 ) * n, weights, 0, weights.length );
+		return weights;
+	}
+
+	/**
+	 * @return the affine matrix A, [row][column]
+	 */
+	public double[][] getAffine()
+	{
+		final double[][] affine = new double[ n ][ n ];
+		for ( int i = 0; i < n; ++i )
+			for ( int j = 0; j < n; ++j )
+				affine[ i ][ j ] = solution[ j * n + i ];
+		return affine;
+	}
+
+	/**
+	 * @return the translation b
+	 */
+	public double[] getTranslation()
+	{
+		final double[] translation = new double[ n ];
+		for ( int i = 0; i < n; ++i )
+			translation[ i ] = solution[ n * n + i ];
+		return translation;
+	}
+
+	/**
+	 * @return a {@link FlatThinplateSplineTransform} with the current
+	 *         coefficients
+	 */
+	public FlatThinplateSplineTransform getTransform()
+	{
+		return new FlatThinplateSplineTransform( getSourceLandmarks(), getKnotWeights(), getAffine(), getTranslation() );
+	}
+}
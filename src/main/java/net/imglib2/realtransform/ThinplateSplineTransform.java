@@ -65,7 +65,12 @@ public class ThinplateSplineTransform extends AbstractDifferentiableRealTransfor
 	/*
 	 * The jacobian matrix
 	 */
-	private AffineTransform jacobian;
+	final private AffineTransform jacobian;
+
+	final private double[][] jac;
+
+	/* flat coefficients for float apply and the jacobian, allocated on first use */
+	private FlatThinplateSplineTransform flat;
 
 	final static private ThinPlateR2LogRSplineKernelTransform init( final double[][] p, final double[][] q )
 	{
@@ -84,6 +89,8 @@ public class ThinplateSplineTransform extends AbstractDifferentiableRealTransfor
 		tmp = new double[ a.length ];
 		rpa = RealPoint.wrap( a );
 		estimateXfm = new double[ tps.getNumDims() ];
+		jacobian = new AffineTransform( a.length );
+		jac = new double[ a.length ][ a.length + 1 ];
 	}
 
 	public ThinplateSplineTransform( final double[][] p, final double[][] q )
@@ -105,6 +112,13 @@ public class ThinplateSplineTransform extends AbstractDifferentiableRealTransfor
 		}
 	}
 
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		/* tps.apply allocates temporary vectors, the flat sums do not */
+		flat().apply( source, target );
+	}
+
 	@Override
 	public void apply( final RealLocalizable source, final RealPositionable target )
 	{
@@ -114,11 +128,20 @@ public class ThinplateSplineTransform extends AbstractDifferentiableRealTransfor
 			target.setPosition( b[ d ], d );
 	}
 
+	public ThinPlateR2LogRSplineKernelTransform getKernelTransform()
+	{
+		return tps;
+	}
+
 	@Override
 	public ThinplateSplineTransform copy()
 	{
 		/* tps is stateless and constant and can therefore be reused */
-		return new ThinplateSplineTransform( tps );
+		final ThinplateSplineTransform copy = new ThinplateSplineTransform( tps );
+		if ( flat != null )
+			copy.flat = flat.copy();
+
+		return copy;
 	}
 
 	@Override
@@ -133,23 +156,44 @@ public class ThinplateSplineTransform extends AbstractDifferentiableRealTransfor
 		return tps.getNumDims();
 	}
 
+	/**
+	 * Returns the jacobian matrix at x.  The returned {@link AffineTransform}
+	 * is reused by subsequent calls.
+	 */
+	@Override
 	public AffineTransform jacobian( final double[] x )
 	{
-		double[][] jac = tps.jacobian( x );
-		double[] jflat = new double[ x.length * ( x.length + 1 ) ];
+		jacobian( x, jac );
+		jacobian.set( jac );
 
-		int k = 0;
-		for( int i = 0; i< x.length; i++ )
-			for( int j = 0; j< (x.length +1); j++ )
-				if( j < x.length )
-					jflat[k++] = jac[i][j];
-				else
-					k++;
+		return jacobian;
+	}
 
-		jacobian = new AffineTransform( x.length );
-		jacobian.set( jflat );
+	/**
+	 * Writes the jacobian matrix at x into jacobian without allocating.
+	 * The jacobian of the kernel r<sup>2</sup>log r of landmark p is
+	 * (2 log r + 1)(x - p)<sup>T</sup>, it is added to the jacobian of
+	 * the identity plus affine part for each landmark weighted by its
+	 * coefficients.
+	 *
+	 * @param x
+	 *            the point
+	 * @param jacobian
+	 *            the n x n jacobian to write into, [row][column], additional
+	 *            columns are left untouched
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		flat().jacobian( x, jacobian );
+	}
 
-		return jacobian;
+	private FlatThinplateSplineTransform flat()
+	{
+		if ( flat == null )
+			flat = new FlatThinplateSplineTransform( tps );
+
+		return flat;
 	}
 
 }
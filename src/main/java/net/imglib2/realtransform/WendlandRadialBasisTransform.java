@@ -0,0 +1,644 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.Arrays;
+
+import Jama.Matrix;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.inverse.AbstractDifferentiableRealTransform;
+
+/**
+ * A radial basis function {@link RealTransform} with compactly supported
+ * Wendland kernels that maps source landmarks p onto target landmarks q.
+ *
+ * The transform is an affine A x + b, fit to the landmarks by least
+ * squares, plus &Sigma; w<sub>l</sub> &phi;(|x - p<sub>l</sub>| / &rho;)
+ * that interpolates the residuals, where &phi; vanishes beyond the support
+ * radius &rho;.  Each landmark therefore changes the transform only within
+ * its support, and points farther than &rho; from all landmarks are
+ * transformed by the affine.  The Wendland kernels are positive definite in
+ * up to three dimensions, so the weights are the solution of a sparse
+ * symmetric positive definite system that is solved by conjugate
+ * gradients.
+ *
+ * Landmarks are binned into a uniform grid with cells no smaller than the
+ * support radius, such that both the system assembly and the evaluation
+ * only visit the neighboring cells of a point.  The evaluation cost thus
+ * depends on the landmark density but not on their total number.
+ *
+ * Copies share the coefficients.
+ */
+public class WendlandRadialBasisTransform extends AbstractDifferentiableRealTransform
+{
+	/**
+	 * Wendland kernels &phi;(r) for r = distance / support, 1 at 0 and 0
+	 * beyond 1.
+	 */
+	public enum Kernel
+	{
+		/** (1 - r)<sup>2</sup>, continuous */
+		C0
+		{
+			@Override
+			public double value( final double r )
+			{
+				if ( r >= 1 )
+					return 0;
+				final double s = 1 - r;
+				return s * s;
+			}
+
+			@Override
+			public double derivative( final double r )
+			{
+				if ( r >= 1 )
+					return 0;
+				return -2 * ( 1 - r );
+			}
+		},
+		/** (1 - r)<sup>4</sup> (4 r + 1), twice differentiable */
+		C2
+		{
+			@Override
+			public double value( final double r )
+			{
+				if ( r >= 1 )
+					return 0;
+				final double s = 1 - r;
+				final double s2 = s * s;
+				return s2 * s2 * ( 4 * r + 1 );
+			}
+
+			@Override
+			public double derivative( final double r )
+			{
+				if ( r >= 1 )
+					return 0;
+				final double s = 1 - r;
+				return -20 * r * s * s * s;
+			}
+		},
+		/** (1 - r)<sup>6</sup> (35 r<sup>2</sup> + 18 r + 3) / 3, four times differentiable */
+		C4
+		{
+			@Override
+			public double value( final double r )
+			{
+				if ( r >= 1 )
+					return 0;
+				final double s = 1 - r;
+				final double s3 = s * s * s;
+				return s3 * s3 * ( ( 35 * r + 18 ) * r + 3 ) / 3;
+			}
+
+			@Override
+			public double derivative( final double r )
+			{
+				if ( r >= 1 )
+					return 0;
+				final double s = 1 - r;
+				final double s2 = s * s;
+				return -56.0 / 3.0 * r * s2 * s2 * s * ( 5 * r + 1 );
+			}
+		};
+
+		public abstract double value( final double r );
+
+		/**
+		 * d&phi; / dr
+		 */
+		public abstract double derivative( final double r );
+	}
+
+	final static public double DEFAULT_TOLERANCE = 1e-12;
+
+	protected final int n;
+
+	protected final int numLandmarks;
+
+	protected final double support;
+
+	protected final Kernel kernel;
+
+	/* [landmark * n + d] */
+	protected final double[] landmarks;
+
+	protected final double[] weights;
+
+	/* A | b, row packed n x (n + 1) */
+	protected final double[] affine;
+
+	protected final double[] min;
+
+	protected final double[] cellSize;
+
+	protected final int[] numCells;
+
+	/* landmarks in cell i are cellLandmarks[cellStart[i]..cellStart[i+1]) */
+	protected final int[] cellStart;
+
+	protected final int[] cellLandmarks;
+
+	/* scratch */
+	protected final int[] lo;
+
+	protected final int[] hi;
+
+	protected final int[] c;
+
+	protected final double[] tmp;
+
+	protected final double[] result;
+
+	/**
+	 * @param p
+	 *            source landmarks, [dimension][landmark]
+	 * @param q
+	 *            target landmarks, [dimension][landmark]
+	 * @param support
+	 *            the support radius &rho; of the kernels
+	 * @param kernel
+	 *            the kernel
+	 * @param tolerance
+	 *            the relative residual at which the conjugate gradient solve
+	 *            stops
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the system cannot be solved, e.g. for duplicate
+	 *             landmarks with different targets
+	 */
+	public WendlandRadialBasisTransform(
+			final double[][] p,
+			final double[][] q,
+			final double support,
+			final Kernel kernel,
+			final double tolerance )
+	{
+		assert p.length == q.length && p[ 0 ].length == q[ 0 ].length : "Dimensions do not match.";
+		assert support > 0 : "Support must be positive.";
+
+		n = p.length;
+		numLandmarks = p[ 0 ].length;
+		this.support = support;
+		this.kernel = kernel;
+
+		landmarks = new double[ numLandmarks * n ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+				landmarks[ l * n + d ] = p[ d ][ l ];
+
+		affine = fitAffine( p, q );
+
+		/* grid with cells no smaller than the support and about two landmarks per cell */
+		min = new double[ n ];
+		cellSize = new double[ n ];
+		numCells = new int[ n ];
+		final int maxCellsPerDimension = ( int )Math.max( 1, Math.ceil( Math.pow( 0.5 * numLandmarks, 1.0 / n ) ) );
+		int totalCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			double max = Double.NEGATIVE_INFINITY;
+			min[ d ] = Double.POSITIVE_INFINITY;
+			for ( int l = 0; l < numLandmarks; ++l )
+			{
+				min[ d ] = Math.min( min[ d ], p[ d ][ l ] );
+				max = Math.max( max, p[ d ][ l ] );
+			}
+			cellSize[ d ] = Math.max( support, ( max - min[ d ] ) / maxCellsPerDimension );
+			numCells[ d ] = Math.min( maxCellsPerDimension, ( int )Math.floor( ( max - min[ d ] ) / cellSize[ d ] ) + 1 );
+			totalCells *= numCells[ d ];
+		}
+
+		cellStart = new int[ totalCells + 1 ];
+		cellLandmarks = new int[ numLandmarks ];
+		final int[] cells = new int[ numLandmarks ];
+		final double[] x = new double[ n ];
+		for ( int l = 0; l < numLandmarks; ++l )
+		{
+			System.arraycopy( landmarks, l * n, x, 0, n );
+			cells[ l ] = cellIndex( x );
+			++cellStart[ cells[ l ] + 1 ];
+		}
+		for ( int i = 0; i < totalCells; ++i )
+			cellStart[ i + 1 ] += cellStart[ i ];
+		final int[] count = new int[ totalCells ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			cellLandmarks[ cellStart[ cells[ l ] ] + count[ cells[ l ] ]++ ] = l;
+
+		lo = new int[ n ];
+		hi = new int[ n ];
+		c = new int[ n ];
+		tmp = new double[ n ];
+		result = new double[ n ];
+
+		weights = solve( q, tolerance );
+	}
+
+	public WendlandRadialBasisTransform( final double[][] p, final double[][] q, final double support, final Kernel kernel )
+	{
+		this( p, q, support, kernel, DEFAULT_TOLERANCE );
+	}
+
+	public WendlandRadialBasisTransform( final double[][] p, final double[][] q, final double support )
+	{
+		this( p, q, support, Kernel.C2 );
+	}
+
+	protected WendlandRadialBasisTransform( final WendlandRadialBasisTransform t )
+	{
+		n = t.n;
+		numLandmarks = t.numLandmarks;
+		support = t.support;
+		kernel = t.kernel;
+		landmarks = t.landmarks;
+		weights = t.weights;
+		affine = t.affine;
+		min = t.min;
+		cellSize = t.cellSize;
+		numCells = t.numCells;
+		cellStart = t.cellStart;
+		cellLandmarks = t.cellLandmarks;
+
+		lo = new int[ n ];
+		hi = new int[ n ];
+		c = new int[ n ];
+		tmp = new double[ n ];
+		result = new double[ n ];
+	}
+
+	/**
+	 * Least squares affine from p to q, a translation by the mean
+	 * displacement if the landmarks do not span the space.
+	 */
+	protected static double[] fitAffine( final double[][] p, final double[][] q )
+	{
+		final int n = p.length;
+		final int numLandmarks = p[ 0 ].length;
+		final double[] affine = new double[ n * ( n + 1 ) ];
+
+		final Matrix a = new Matrix( numLandmarks, n + 1 );
+		final Matrix b = new Matrix( numLandmarks, n );
+		for ( int l = 0; l < numLandmarks; ++l )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				a.set( l, d, p[ d ][ l ] );
+				b.set( l, d, q[ d ][ l ] );
+			}
+			a.set( l, n, 1 );
+		}
+
+		try
+		{
+			if ( numLandmarks < n + 1 )
+				throw new RuntimeException( "Too few landmarks." );
+
+			/* x is (n + 1) x n, the transpose of A | b */
+			final double[][] x = a.solve( b ).getArray();
+			for ( int i = 0; i < n; ++i )
+				for ( int j = 0; j <= n; ++j )
+					affine[ i * ( n + 1 ) + j ] = x[ j ][ i ];
+		}
+		catch ( final RuntimeException e )
+		{
+			for ( int i = 0; i < n; ++i )
+			{
+				double t = 0;
+				for ( int l = 0; l < numLandmarks; ++l )
+					t += q[ i ][ l ] - p[ i ][ l ];
+				affine[ i * ( n + 1 ) + i ] = 1;
+				affine[ i * ( n + 1 ) + n ] = t / numLandmarks;
+			}
+		}
+		return affine;
+	}
+
+	protected int cell( final double x, final int d )
+	{
+		return Math.max( 0, Math.min( numCells[ d ] - 1, ( int )Math.floor( ( x - min[ d ] ) / cellSize[ d ] ) ) );
+	}
+
+	protected int cellIndex( final double[] x )
+	{
+		int i = 0;
+		for ( int d = n - 1; d >= 0; --d )
+			i = i * numCells[ d ] + cell( x[ d ], d );
+		return i;
+	}
+
+	/**
+	 * Set the range of cells that can contain landmarks within the support of
+	 * x, i.e. the cell of x and its neighbors.
+	 */
+	protected void neighborCells( final double[] x )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final int cd = cell( x[ d ], d );
+			lo[ d ] = Math.max( 0, cd - 1 );
+			hi[ d ] = Math.min( numCells[ d ] - 1, cd + 1 );
+			c[ d ] = lo[ d ];
+		}
+	}
+
+	/**
+	 * Advance c to the next cell in [lo, hi].
+	 *
+	 * @return false if there is none
+	 */
+	protected boolean nextCell()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( ++c[ d ] <= hi[ d ] )
+				return true;
+			c[ d ] = lo[ d ];
+		}
+		return false;
+	}
+
+	protected int currentCell()
+	{
+		int i = 0;
+		for ( int d = n - 1; d >= 0; --d )
+			i = i * numCells[ d ] + c[ d ];
+		return i;
+	}
+
+	/**
+	 * Assemble the sparse kernel matrix and solve it for the residuals of the
+	 * affine with conjugate gradients.
+	 *
+	 * @return the weights, [landmark * n + d]
+	 */
+	protected double[] solve( final double[][] q, final double tolerance )
+	{
+		/* compressed sparse rows, the diagonal is 1 and not stored */
+		final int[] rowStart = new int[ numLandmarks + 1 ];
+		int[] columns = new int[ 16 * numLandmarks ];
+		double[] values = new double[ columns.length ];
+		final double[] x = new double[ n ];
+		int size = 0;
+		for ( int l = 0; l < numLandmarks; ++l )
+		{
+			System.arraycopy( landmarks, l * n, x, 0, n );
+			neighborCells( x );
+			do
+			{
+				final int i = currentCell();
+				for ( int k = cellStart[ i ]; k < cellStart[ i + 1 ]; ++k )
+				{
+					final int j = cellLandmarks[ k ];
+					if ( j == l )
+						continue;
+					final double phi = kernel.value( distance( x, j ) / support );
+					if ( phi == 0 )
+						continue;
+					if ( size == columns.length )
+					{
+						columns = Arrays.copyOf( columns, 2 * size );
+						values = Arrays.copyOf( values, 2 * size );
+					}
+					columns[ size ] = j;
+					values[ size++ ] = phi;
+				}
+			}
+			while ( nextCell() );
+			rowStart[ l + 1 ] = size;
+		}
+
+		final double[] weights = new double[ numLandmarks * n ];
+		final double[] b = new double[ numLandmarks ];
+		final double[] w = new double[ numLandmarks ];
+		final double[] r = new double[ numLandmarks ];
+		final double[] s = new double[ numLandmarks ];
+		final double[] ks = new double[ numLandmarks ];
+		final int maxIters = 10 * numLandmarks + 100;
+		for ( int i = 0; i < n; ++i )
+		{
+			final int o = i * ( n + 1 );
+			double bb = 0;
+			for ( int l = 0; l < numLandmarks; ++l )
+			{
+				double t = affine[ o + n ];
+				for ( int j = 0; j < n; ++j )
+					t += affine[ o + j ] * landmarks[ l * n + j ];
+				b[ l ] = q[ i ][ l ] - t;
+				bb += b[ l ] * b[ l ];
+				w[ l ] = 0;
+				r[ l ] = b[ l ];
+				s[ l ] = b[ l ];
+			}
+
+			double rr = bb;
+			final double threshold = tolerance * tolerance * bb;
+			int iter = 0;
+			for ( ; iter < maxIters && rr > threshold; ++iter )
+			{
+				double sks = 0;
+				for ( int l = 0; l < numLandmarks; ++l )
+				{
+					double t = s[ l ];
+					for ( int k = rowStart[ l ]; k < rowStart[ l + 1 ]; ++k )
+						t += values[ k ] * s[ columns[ k ] ];
+					ks[ l ] = t;
+					sks += s[ l ] * t;
+				}
+				if ( !( sks > 0 ) )
+					break;
+
+				final double alpha = rr / sks;
+				double rrNew = 0;
+				for ( int l = 0; l < numLandmarks; ++l )
+				{
+					w[ l ] += alpha * s[ l ];
+					r[ l ] -= alpha * ks[ l ];
+					rrNew += r[ l ] * r[ l ];
+				}
+				final double beta = rrNew / rr;
+				for ( int l = 0; l < numLandmarks; ++l )
+					s[ l ] = r[ l ] + beta * s[ l ];
+				rr = rrNew;
+			}
+			if ( rr > threshold )
+				throw new IllegalArgumentException( "Kernel system did not converge, landmarks may be duplicate." );
+
+			for ( int l = 0; l < numLandmarks; ++l )
+				weights[ l * n + i ] = w[ l ];
+		}
+		return weights;
+	}
+
+	protected double distance( final double[] x, final int l )
+	{
+		double r2 = 0;
+		for ( int d = 0, o = l * n; d < n; ++d, ++o )
+		{
+			final double dx = x[ d ] - landmarks[ o ];
+			r2 += dx * dx;
+		}
+		return Math.sqrt( r2 );
+	}
+
+	protected void applyToResult( final double[] x )
+	{
+		for ( int i = 0; i < n; ++i )
+		{
+			final int o = i * ( n + 1 );
+			double t = affine[ o + n ];
+			for ( int j = 0; j < n; ++j )
+				t += affine[ o + j ] * x[ j ];
+			result[ i ] = t;
+		}
+
+		neighborCells( x );
+		do
+		{
+			final int i = currentCell();
+			for ( int k = cellStart[ i ]; k < cellStart[ i + 1 ]; ++k )
+			{
+				final int l = cellLandmarks[ k ];
+				final double phi = kernel.value( distance( x, l ) / support );
+				if ( phi != 0 )
+					for ( int d = 0; d < n; ++d )
+						result[ d ] += phi * weights[ l * n + d ];
+			}
+		}
+		while ( nextCell() );
+	}
+
+	public double getSupport()
+	{
+		return support;
+	}
+
+	public Kernel getKernel()
+	{
+		return kernel;
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		applyToResult( source );
+		System.arraycopy( result, 0, target, 0, n );
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		assert source.length >= n && target.length >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source[ d ];
+		applyToResult( tmp );
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = ( float )result[ d ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		assert source.numDimensions() >= n && target.numDimensions() >= n : "Input dimensions too small.";
+
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = source.getDoublePosition( d );
+		applyToResult( tmp );
+		for ( int d = 0; d < n; ++d )
+			target.setPosition( result[ d ], d );
+	}
+
+	/**
+	 * Writes the jacobian at x into jacobian.  At the landmarks, the
+	 * {@link Kernel#C0} kernel is not differentiable and contributes 0.
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		assert x.length >= n : "Input dimensions too small.";
+
+		for ( int i = 0; i < n; ++i )
+			for ( int j = 0; j < n; ++j )
+				jacobian[ i ][ j ] = affine[ i * ( n + 1 ) + j ];
+
+		neighborCells( x );
+		do
+		{
+			final int i = currentCell();
+			for ( int k = cellStart[ i ]; k < cellStart[ i + 1 ]; ++k )
+			{
+				final int l = cellLandmarks[ k ];
+				final double r = distance( x, l );
+				if ( r == 0 )
+					continue;
+
+				/* d phi / d x_j = phi'( r / support ) / support * ( x_j - p_j ) / r */
+				final double dphi = kernel.derivative( r / support ) / ( support * r );
+				if ( dphi == 0 )
+					continue;
+
+				for ( int j = 0; j < n; ++j )
+				{
+					final double g = dphi * ( x[ j ] - landmarks[ l * n + j ] );
+					for ( int d = 0; d < n; ++d )
+						jacobian[ d ][ j ] += weights[ l * n + d ] * g;
+				}
+			}
+		}
+		while ( nextCell() );
+	}
+
+	@Override
+	public WendlandRadialBasisTransform copy()
+	{
+		return new WendlandRadialBasisTransform( this );
+	}
+}
@@ -4,14 +4,43 @@ import net.imglib2.realtransform.AffineTransform;
 
 public abstract class AbstractDifferentiableRealTransform implements DifferentiableRealTransform
 {
+	/* jacobian scratch, allocated on first use */
+	private double[][] jac = null;
+
+	private AffineTransform jacobian = null;
+
+	/* scratch for directionToward, allocated on first use */
+	private double[][] directionJacobian = null;
+
 	/**
 	 * Returns the jacobian matrix of this transform at the point x.
+	 * <p>
+	 * The default implementation writes
+	 * {@link #jacobian(double[], double[][])} into an {@link AffineTransform}
+	 * that is reused by subsequent calls, it requires equal source and target
+	 * dimensions.  Subclasses have to override at least one of the two
+	 * methods.
 	 * 
 	 * @param x
 	 *            the point
 	 * @return the jacobian
 	 */
-	public abstract AffineTransform jacobian( double[] x );
+	@Override
+	public AffineTransform jacobian( final double[] x )
+	{
+		assert numSourceDimensions() == numTargetDimensions() : "Jacobian is not square.";
+
+		final int n = numSourceDimensions();
+		if ( jacobian == null || jacobian.numDimensions() != n )
+		{
+			jac = new double[ n ][ n + 1 ];
+			jacobian = new AffineTransform( n );
+		}
+		jacobian( x, jac );
+		jacobian.set( jac );
+
+		return jacobian;
+	}
 
 	/**
 	 * Writes the direction <em>displacement</em> in which to move the input
@@ -29,29 +58,63 @@ public abstract class AbstractDifferentiableRealTransform implements Differentia
 	 */
 	public void directionToward( final double[] displacement, final double[] x, final double[] y )
 	{
-		directionToward( jacobian( x ), displacement, x, y );
+		final int n = x.length;
+		if ( directionJacobian == null || directionJacobian.length != n )
+			directionJacobian = new double[ n ][ n ];
+
+		jacobian( x, directionJacobian );
+		directionToward( directionJacobian, displacement, x, y );
 	}
 
-	public static void directionToward( final AffineTransform jacobian, final double[] displacement, final double[] x, final double[] y )
+	/**
+	 * Writes the normalized direction J<sup>T</sup> ( y - x ) into
+	 * displacement without allocating.
+	 *
+	 * @param jacobian
+	 *            the n x n jacobian, [row][column]
+	 * @param displacement
+	 *            the displacement to write into
+	 * @param x
+	 *            the source point
+	 * @param y
+	 *            the destination point
+	 */
+	public static void directionToward( final double[][] jacobian, final double[] displacement, final double[] x, final double[] y )
 	{
-		double[] err = new double[ x.length ];
-		for ( int i = 0; i < x.length; i++ )
-			err[ i ] = y[ i ] - x[ i ];
+		final int n = x.length;
+		double norm = 0.0;
+		for ( int i = 0; i < n; i++ )
+		{
+			double dir = 0.0;
+			for ( int j = 0; j < n; j++ )
+				dir += jacobian[ j ][ i ] * ( y[ j ] - x[ j ] );
+			displacement[ i ] = dir;
+			norm += dir * dir;
+		}
 
-		double[] dir = new double[ x.length ];
-		//jacobian.inverse().apply( err, dir );
-		matrixTranspose( jacobian ).apply( err, dir );
+		norm = Math.sqrt( norm );
+
+		for ( int i = 0; i < n; i++ )
+			displacement[ i ] /= norm;
+	}
 
+	public static void directionToward( final AffineTransform jacobian, final double[] displacement, final double[] x, final double[] y )
+	{
+		final int n = x.length;
 		double norm = 0.0;
-		for ( int i = 0; i < dir.length; i++ )
-			norm += ( dir[ i ] * dir[ i ] );
+		for ( int i = 0; i < n; i++ )
+		{
+			double dir = 0.0;
+			for ( int j = 0; j < n; j++ )
+				dir += jacobian.get( j, i ) * ( y[ j ] - x[ j ] );
+			displacement[ i ] = dir;
+			norm += dir * dir;
+		}
 
 		norm = Math.sqrt( norm );
 
-		for ( int i = 0; i < dir.length; i++ )
-			dir[ i ] /= norm;
-
-		System.arraycopy( dir, 0, displacement, 0, dir.length );
+		for ( int i = 0; i < n; i++ )
+			displacement[ i ] /= norm;
 
 		/* compute the directional derivative
 		  double[] directionalDerivative = new double[ dir.length ];
@@ -0,0 +1,448 @@
+package net.imglib2.realtransform.inverse;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+
+/**
+ * Base class for {@link InverseRealTransformSolver}s that take damped steps
+ * along the solution of a linear system J dx = F(x) - y where J is (an
+ * approximation of) the jacobian and y the target.  Steps are halved until
+ * they reduce the error.
+ * <p>
+ * All scratch space is allocated at construction.
+ */
+public abstract class AbstractInverseRealTransformSolver implements InverseRealTransformSolver
+{
+	protected final int ndims;
+
+	protected final DifferentiableRealTransform xfm;
+
+	protected final double[] estimate;
+
+	protected final double[] estimateXfm;
+
+	/* estimateXfm - target */
+	protected final double[] residual;
+
+	/* solution of the linear system */
+	protected final double[] step;
+
+	/* the last accepted step and the resulting change of the residual */
+	protected final double[] lastStep;
+
+	protected final double[] lastResidualChange;
+
+	protected final double[] trial;
+
+	protected final double[] trialXfm;
+
+	/* row packed ndims x ndims jacobian and a copy for the elimination */
+	protected final double[] jacobian;
+
+	protected final double[][] jacobianRows;
+
+	protected final double[] lu;
+
+	protected final double[] sourceTmp;
+
+	protected final WarmStart history;
+
+	protected boolean warmStart = false;
+
+	protected double tolerance = 0.5;
+
+	protected int maxIters = 100;
+
+	protected int stepSizeMaxTries = 10;
+
+	protected double error = Double.NaN;
+
+	protected int iterations = 0;
+
+	protected int lineSearchTries = 0;
+
+	protected IterativeInverseMetrics metrics = null;
+
+	public AbstractInverseRealTransformSolver( final int ndims, final DifferentiableRealTransform xfm )
+	{
+		this.ndims = ndims;
+		this.xfm = xfm;
+
+		estimate = new double[ ndims ];
+		estimateXfm = new double[ ndims ];
+		residual = new double[ ndims ];
+		step = new double[ ndims ];
+		lastStep = new double[ ndims ];
+		lastResidualChange = new double[ ndims ];
+		trial = new double[ ndims ];
+		trialXfm = new double[ ndims ];
+		jacobian = new double[ ndims * ndims ];
+		jacobianRows = new double[ ndims ][ ndims ];
+		lu = new double[ ndims * ndims ];
+		sourceTmp = new double[ ndims ];
+
+		history = new WarmStart( ndims );
+	}
+
+	public AbstractInverseRealTransformSolver( final DifferentiableRealTransform xfm )
+	{
+		this( xfm.numSourceDimensions(), xfm );
+	}
+
+	/**
+	 * Copy the settings of solver into this.
+	 */
+	protected void set( final AbstractInverseRealTransformSolver solver )
+	{
+		tolerance = solver.tolerance;
+		maxIters = solver.maxIters;
+		stepSizeMaxTries = solver.stepSizeMaxTries;
+		metrics = solver.metrics;
+		setWarmStart( solver.warmStart );
+	}
+
+	@Override
+	public void setTolerance( final double tolerance )
+	{
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public void setMaxIters( final int maxIters )
+	{
+		this.maxIters = maxIters;
+	}
+
+	public void setStepSizeMaxTries( final int stepSizeMaxTries )
+	{
+		this.stepSizeMaxTries = stepSizeMaxTries;
+	}
+
+	@Override
+	public void setWarmStart( final boolean warmStart )
+	{
+		this.warmStart = warmStart;
+		history.reset();
+	}
+
+	@Override
+	public boolean isWarmStart()
+	{
+		return warmStart;
+	}
+
+	@Override
+	public void setMetrics( final IterativeInverseMetrics metrics )
+	{
+		this.metrics = metrics;
+	}
+
+	@Override
+	public IterativeInverseMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	@Override
+	public double getError()
+	{
+		return error;
+	}
+
+	@Override
+	public double[] getEstimate()
+	{
+		return estimate;
+	}
+
+	/**
+	 * @return the number of iterations of the last estimate
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return ndims;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return ndims;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		inverseTolCoherent( source );
+		System.arraycopy( estimate, 0, target, 0, ndims );
+	}
+
+	@Override
+	public void apply( final float[] source, final float[] target )
+	{
+		for ( int i = 0; i < ndims; i++ )
+			sourceTmp[ i ] = source[ i ];
+
+		inverseTolCoherent( sourceTmp );
+
+		for ( int i = 0; i < ndims; i++ )
+			target[ i ] = ( float )estimate[ i ];
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		for ( int i = 0; i < ndims; i++ )
+			sourceTmp[ i ] = source.getDoublePosition( i );
+
+		inverseTolCoherent( sourceTmp );
+
+		for ( int i = 0; i < ndims; i++ )
+			target.setPosition( estimate[ i ], i );
+	}
+
+	/**
+	 * Run {@link #inverseTol} initialized with the target itself or, in
+	 * {@link #setWarmStart(boolean) warm start mode}, with the extrapolated
+	 * solution of the previous call.
+	 *
+	 * @see InverseRealTransformGradientDescent#setWarmStart(boolean)
+	 */
+	protected double inverseTolCoherent( final double[] target )
+	{
+		final double[] init = warmStart ? history.guess( target ) : target;
+
+		inverseTol( target, init, tolerance, maxIters );
+
+		if ( warmStart )
+			history.update( target, estimate, error < tolerance );
+
+		return error;
+	}
+
+	@Override
+	public double inverseTol( final double[] target, final double[] guess, final double tolerance, final int maxIters )
+	{
+		System.arraycopy( guess, 0, estimate, 0, ndims );
+		xfm.apply( estimate, estimateXfm );
+		error = updateResidual( target, estimateXfm, residual );
+
+		iterations = 0;
+		lineSearchTries = 0;
+		if ( error >= tolerance )
+		{
+			start();
+			while ( error >= tolerance && iterations < maxIters )
+			{
+				++iterations;
+				if ( !( direction() && lineSearch( target ) ) && !( restart() && direction() && lineSearch( target ) ) )
+					break;
+			}
+		}
+
+		if ( metrics != null )
+			metrics.record( iterations, lineSearchTries, error, error < tolerance );
+
+		return error;
+	}
+
+	/**
+	 * Prepare a new estimate, called once per {@link #inverseTol} after the
+	 * residual at the initial guess is known.
+	 */
+	protected abstract void start();
+
+	/**
+	 * Write the next step into {@link #step} such that
+	 * estimate - step is closer to the target.
+	 *
+	 * @return false if no step could be found
+	 */
+	protected abstract boolean direction();
+
+	/**
+	 * Called if the last step did not reduce the error, e.g. to replace
+	 * an approximate jacobian with the true one.
+	 *
+	 * @return true if another attempt is worthwhile
+	 */
+	protected abstract boolean restart();
+
+	/**
+	 * Try estimate - t * step for t = 1, 1/2, 1/4, ... and accept the first
+	 * that reduces the error.
+	 *
+	 * @return true if a step was accepted
+	 */
+	protected boolean lineSearch( final double[] target )
+	{
+		double t = 1.0;
+		for ( int k = 0; k < stepSizeMaxTries; ++k, t *= 0.5 )
+		{
+			++lineSearchTries;
+			for ( int i = 0; i < ndims; i++ )
+				trial[ i ] = estimate[ i ] - t * step[ i ];
+
+			xfm.apply( trial, trialXfm );
+
+			double trialError = 0;
+			for ( int i = 0; i < ndims; i++ )
+			{
+				final double r = trialXfm[ i ] - target[ i ];
+				trialError += r * r;
+			}
+			trialError = Math.sqrt( trialError );
+
+			if ( trialError < error )
+			{
+				for ( int i = 0; i < ndims; i++ )
+				{
+					lastStep[ i ] = trial[ i ] - estimate[ i ];
+					final double r = trialXfm[ i ] - target[ i ];
+					lastResidualChange[ i ] = r - residual[ i ];
+					residual[ i ] = r;
+				}
+				System.arraycopy( trial, 0, estimate, 0, ndims );
+				System.arraycopy( trialXfm, 0, estimateXfm, 0, ndims );
+				error = trialError;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected static double updateResidual( final double[] target, final double[] estimateXfm, final double[] residual )
+	{
+		double error = 0;
+		for ( int i = 0; i < residual.length; i++ )
+		{
+			residual[ i ] = estimateXfm[ i ] - target[ i ];
+			error += residual[ i ] * residual[ i ];
+		}
+		return Math.sqrt( error );
+	}
+
+	/**
+	 * Copy the jacobian of {@link #xfm} at estimate into {@link #jacobian}.
+	 */
+	protected void updateJacobian()
+	{
+		xfm.jacobian( estimate, jacobianRows );
+		for ( int r = 0, i = 0; r < ndims; ++r )
+			for ( int c = 0; c < ndims; ++c, ++i )
+				jacobian[ i ] = jacobianRows[ r ][ c ];
+	}
+
+	/**
+	 * Solve {@link #jacobian} * {@link #step} = {@link #residual}.
+	 *
+	 * @return false if the jacobian is singular
+	 */
+	protected boolean solveStep()
+	{
+		System.arraycopy( jacobian, 0, lu, 0, jacobian.length );
+		System.arraycopy( residual, 0, step, 0, ndims );
+		return solve( lu, step, ndims );
+	}
+
+	/**
+	 * Solve a x = b in place.  2D and 3D systems are solved by Cramer's rule,
+	 * larger systems by Gaussian elimination with partial pivoting that
+	 * overwrites a.
+	 *
+	 * @param a row packed n x n matrix
+	 * @param b the right hand side, set to the solution x
+	 * @param n the number of dimensions
+	 * @return false if a is singular
+	 */
+	public static boolean solve( final double[] a, final double[] b, final int n )
+	{
+		if ( n == 1 )
+		{
+			if ( a[ 0 ] == 0 )
+				return false;
+			b[ 0 ] /= a[ 0 ];
+			return true;
+		}
+		else if ( n == 2 )
+		{
+			final double det = a[ 0 ] * a[ 3 ] - a[ 1 ] * a[ 2 ];
+			if ( det == 0 || Double.isNaN( det ) )
+				return false;
+			final double x = ( a[ 3 ] * b[ 0 ] - a[ 1 ] * b[ 1 ] ) / det;
+			final double y = ( a[ 0 ] * b[ 1 ] - a[ 2 ] * b[ 0 ] ) / det;
+			b[ 0 ] = x;
+			b[ 1 ] = y;
+			return true;
+		}
+		else if ( n == 3 )
+		{
+			final double c00 = a[ 4 ] * a[ 8 ] - a[ 5 ] * a[ 7 ];
+			final double c01 = a[ 5 ] * a[ 6 ] - a[ 3 ] * a[ 8 ];
+			final double c02 = a[ 3 ] * a[ 7 ] - a[ 4 ] * a[ 6 ];
+			final double det = a[ 0 ] * c00 + a[ 1 ] * c01 + a[ 2 ] * c02;
+			if ( det == 0 || Double.isNaN( det ) )
+				return false;
+			final double b0 = b[ 0 ], b1 = b[ 1 ], b2 = b[ 2 ];
+			b[ 0 ] = ( b0 * c00
+					+ b1 * ( a[ 2 ] * a[ 7 ] - a[ 1 ] * a[ 8 ] )
+					+ b2 * ( a[ 1 ] * a[ 5 ] - a[ 2 ] * a[ 4 ] ) ) / det;
+			b[ 1 ] = ( b0 * c01
+					+ b1 * ( a[ 0 ] * a[ 8 ] - a[ 2 ] * a[ 6 ] )
+					+ b2 * ( a[ 2 ] * a[ 3 ] - a[ 0 ] * a[ 5 ] ) ) / det;
+			b[ 2 ] = ( b0 * c02
+					+ b1 * ( a[ 1 ] * a[ 6 ] - a[ 0 ] * a[ 7 ] )
+					+ b2 * ( a[ 0 ] * a[ 4 ] - a[ 1 ] * a[ 3 ] ) ) / det;
+			return true;
+		}
+
+		for ( int c = 0; c < n; ++c )
+		{
+			int pivot = c;
+			for ( int r = c + 1; r < n; ++r )
+				if ( Math.abs( a[ r * n + c ] ) > Math.abs( a[ pivot * n + c ] ) )
+					pivot = r;
+
+			if ( a[ pivot * n + c ] == 0 || Double.isNaN( a[ pivot * n + c ] ) )
+				return false;
+
+			if ( pivot != c )
+			{
+				for ( int k = c; k < n; ++k )
+				{
+					final double t = a[ c * n + k ];
+					a[ c * n + k ] = a[ pivot * n + k ];
+					a[ pivot * n + k ] = t;
+				}
+				final double t = b[ c ];
+				b[ c ] = b[ pivot ];
+				b[ pivot ] = t;
+			}
+
+			for ( int r = c + 1; r < n; ++r )
+			{
+				final double f = a[ r * n + c ] / a[ c * n + c ];
+				for ( int k = c; k < n; ++k )
+					a[ r * n + k ] -= f * a[ c * n + k ];
+				b[ r ] -= f * b[ c ];
+			}
+		}
+
+		for ( int r = n - 1; r >= 0; --r )
+		{
+			double s = b[ r ];
+			for ( int k = r + 1; k < n; ++k )
+				s -= a[ r * n + k ] * b[ k ];
+			b[ r ] = s / a[ r * n + r ];
+		}
+		return true;
+	}
+
+	@Override
+	public abstract AbstractInverseRealTransformSolver copy();
+}
@@ -24,6 +24,11 @@ public class BacktrackingLineSearch
 	double[] x_ap;
 	double[] y_ap;
 	double[] dir;
+
+	// scratch for iterativeInverse and squaredErrorAt
+	final double[] tmp;
+	final double[] tmpsrc;
+	final double[] displacement;
 	
 	double currentSquaredError;
 	
@@ -40,6 +45,10 @@ public class BacktrackingLineSearch
 	private double beta = 0.5;
 	private double initStepSize = 10;
 	private int lineSearchMaxTries = 16;		
+
+	private IterativeInverseMetrics metrics = null;
+
+	private int lineSearchTries = 0;
 	
 	protected static Logger logger = LogManager.getLogger( 
 			BacktrackingLineSearch.class.getName() );
@@ -50,6 +59,9 @@ public class BacktrackingLineSearch
 		y = new double[ nd ];
 		x_ap = new double[ nd ];
 		y_ap = new double[ nd ];
+		tmp = new double[ nd ];
+		tmpsrc = new double[ nd ];
+		displacement = new double[ nd ];
 	}
 
 	public BacktrackingLineSearch( final DifferentiableRealTransform fwdXfm )
@@ -59,6 +71,9 @@ public class BacktrackingLineSearch
 		y = new double[ nd ];
 		x_ap = new double[ nd ];
 		y_ap = new double[ nd ];
+		tmp = new double[ nd ];
+		tmpsrc = new double[ nd ];
+		displacement = new double[ nd ];
 	}
 
 	public void setForwardTransform( final DifferentiableRealTransform fwdXfm )
@@ -92,6 +107,22 @@ public class BacktrackingLineSearch
 		this.lineSearchMaxTries = lineSearchMaxTries;
 	}
 
+	/**
+	 * Record statistics of every {@link #iterativeInverse} into metrics, null
+	 * to disable.
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics( final IterativeInverseMetrics metrics )
+	{
+		this.metrics = metrics;
+	}
+
+	public IterativeInverseMetrics getMetrics()
+	{
+		return metrics;
+	}
+
 	public void setEpsilon( final double eps )
 	{
 		this.eps = eps;
@@ -147,7 +178,7 @@ public class BacktrackingLineSearch
 	 */
 	public double squaredErrorAt( double[] source )
 	{
-		double[] srcXfm = new double[ nd ];
+		final double[] srcXfm = tmp;
 		fwdXfm.apply( source, srcXfm );
 		double squaredError = 0;
 		for ( int d = 0; d < nd; d++ )
@@ -183,6 +214,7 @@ public class BacktrackingLineSearch
 		// boolean success = false;
 		while ( k < maxtries )
 		{
+			++lineSearchTries;
 			if ( armijoCondition( c, t ) )
 			{
 				// success = true;
@@ -267,17 +299,9 @@ public class BacktrackingLineSearch
 
 		double stepSize = initStepSize;		
 		
-		// temporary destination
-		double[] tmp = new double[ nd ];
-		
-		// temporary src
-		double[] tmpsrc = new double[ nd ];
-				
-		// the displacement
-		double[] displacement = new double[ nd ];
-		
 		double olderror = Double.MAX_VALUE;
 		double currentError = 0;
+		lineSearchTries = 0;
 
 		int i = 0;
 		while( i < maxIters )
@@ -309,6 +333,9 @@ public class BacktrackingLineSearch
 			if( currentError > olderror )
 			{
 //				System.out.println( "breaking early");
+				if ( metrics != null )
+					metrics.record( i + 1, lineSearchTries, Math.sqrt( currentError ), currentError < epsSquared );
+
 				// make sure to return error (not squared)
 				return Math.sqrt( currentError );
 			}
@@ -331,6 +358,9 @@ public class BacktrackingLineSearch
 
 		currentSquaredError = currentError;
 
+		if ( metrics != null )
+			metrics.record( Math.min( i + 1, maxIters ), lineSearchTries, Math.sqrt( currentError ), currentError < epsSquared );
+
 		// make sure to return error (not squared)		
 		return Math.sqrt( currentError );
 	}
@@ -26,6 +26,28 @@ public interface DifferentiableRealTransform extends RealTransform
 	 */
 	public AffineTransform jacobian( double[] x );
 
+	/**
+	 * Writes the jacobian matrix of this transform at the point x into
+	 * jacobian.  Implementations should do this without allocating, the
+	 * default implementation copies the result of {@link #jacobian(double[])}.
+	 * Only the leading {@link #numTargetDimensions()} x
+	 * {@link #numSourceDimensions()} block of jacobian is written.
+	 *
+	 * @param x
+	 *            the point
+	 * @param jacobian
+	 *            the m x n jacobian to write into, [row][column]
+	 */
+	public default void jacobian( final double[] x, final double[][] jacobian )
+	{
+		final AffineTransform j = jacobian( x );
+		final int m = numTargetDimensions();
+		final int n = numSourceDimensions();
+		for ( int r = 0; r < m; r++ )
+			for ( int c = 0; c < n; c++ )
+				jacobian[ r ][ c ] = j.get( r, c );
+	}
+
 	/**
 	 * Writes the direction <em>displacement</em> in which to move the input
 	 * source point <em>x</em> in order that F( x + d ) is closer to the
@@ -40,7 +62,10 @@ public interface DifferentiableRealTransform extends RealTransform
 	 * @param y
 	 *            the destination point
 	 */
-	public void directionToward( final double[] displacement, final double[] x, final double[] y );
+	public default void directionToward( final double[] displacement, final double[] x, final double[] y )
+	{
+		AbstractDifferentiableRealTransform.directionToward( jacobian( x ), displacement, x, y );
+	}
 
 	@Override
 	public DifferentiableRealTransform copy(); 
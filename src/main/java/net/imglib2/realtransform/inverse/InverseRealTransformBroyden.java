@@ -0,0 +1,94 @@
+package net.imglib2.realtransform.inverse;
+
+/**
+ * Estimates the inverse of a {@link DifferentiableRealTransform} by damped
+ * quasi-Newton iterations with Broyden's rank-1 update.  The jacobian is
+ * evaluated only at the initial guess and then updated from the observed
+ * change of the residual, so that each iteration costs a single transform
+ * evaluation if the full step is accepted.  Convergence is superlinear.
+ * <p>
+ * If a step does not reduce the error, the jacobian is re-evaluated at the
+ * current estimate.
+ */
+public class InverseRealTransformBroyden extends AbstractInverseRealTransformSolver
+{
+	/* true if the jacobian has been updated since it was last evaluated */
+	protected boolean updated = false;
+
+	public InverseRealTransformBroyden( final int ndims, final DifferentiableRealTransform xfm )
+	{
+		super( ndims, xfm );
+	}
+
+	public InverseRealTransformBroyden( final DifferentiableRealTransform xfm )
+	{
+		super( xfm );
+	}
+
+	@Override
+	protected void start()
+	{
+		updateJacobian();
+		updated = false;
+	}
+
+	@Override
+	protected boolean direction()
+	{
+		if ( !solveStep() )
+		{
+			if ( !restart() || !solveStep() )
+				System.arraycopy( residual, 0, step, 0, ndims );
+		}
+		return true;
+	}
+
+	@Override
+	protected boolean restart()
+	{
+		if ( !updated )
+			return false;
+
+		updateJacobian();
+		updated = false;
+		return true;
+	}
+
+	/**
+	 * Accept a step and update the jacobian J by
+	 * J += ( dF - J dx ) dx<sup>T</sup> / ( dx<sup>T</sup> dx ).
+	 */
+	@Override
+	protected boolean lineSearch( final double[] target )
+	{
+		if ( !super.lineSearch( target ) )
+			return false;
+
+		double dxdx = 0;
+		for ( int i = 0; i < ndims; i++ )
+			dxdx += lastStep[ i ] * lastStep[ i ];
+
+		if ( dxdx > 0 )
+		{
+			for ( int r = 0; r < ndims; ++r )
+			{
+				double u = lastResidualChange[ r ];
+				for ( int c = 0; c < ndims; ++c )
+					u -= jacobian[ r * ndims + c ] * lastStep[ c ];
+				u /= dxdx;
+				for ( int c = 0; c < ndims; ++c )
+					jacobian[ r * ndims + c ] += u * lastStep[ c ];
+			}
+			updated = true;
+		}
+		return true;
+	}
+
+	@Override
+	public InverseRealTransformBroyden copy()
+	{
+		final InverseRealTransformBroyden copy = new InverseRealTransformBroyden( ndims, xfm.copy() );
+		copy.set( this );
+		return copy;
+	}
+}
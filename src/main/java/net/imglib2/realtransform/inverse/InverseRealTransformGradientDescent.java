@@ -3,14 +3,13 @@ package net.imglib2.realtransform.inverse;
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
 import net.imglib2.realtransform.AffineTransform;
-import net.imglib2.realtransform.RealTransform;
 
 import java.util.Arrays;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-public class InverseRealTransformGradientDescent implements RealTransform
+public class InverseRealTransformGradientDescent implements InverseRealTransformSolver
 {
 	int ndims;
 
@@ -33,8 +32,22 @@ public class InverseRealTransformGradientDescent implements RealTransform
 
 	double[] target;
 
+	final double[] sourceTmp; // scratch for float and RealLocalizable apply
+
+	final double[] xAp; // scratch for the line search
+
+	final double[] phixAp;
+
+	final WarmStart history;
+
+	boolean warmStart = false;
+
 	boolean fixZ = false;
 
+	IterativeInverseMetrics metrics = null;
+
+	int lineSearchTries = 0;
+
 	double error = 9999.0;
 
 	double stepSz = 1.0;
@@ -76,6 +89,12 @@ public class InverseRealTransformGradientDescent implements RealTransform
 		target = new double[ ndims ];
 		estimate = new double[ ndims ];
 		estimateXfm = new double[ ndims ];
+
+		sourceTmp = new double[ ndims ];
+		xAp = new double[ ndims ];
+		phixAp = new double[ ndims ];
+
+		history = new WarmStart( ndims );
 	}
 
 	public void setBeta( double beta )
@@ -98,6 +117,37 @@ public class InverseRealTransformGradientDescent implements RealTransform
 		this.maxIters = maxIters;
 	}
 
+	/**
+	 * In warm start mode, each apply is initialized with a guess
+	 * extrapolated from the last converged applies, see {@link WarmStart}.
+	 * For coherent queries, this is a far better guess than the target
+	 * itself.
+	 *
+	 * @param warmStart
+	 */
+	public void setWarmStart( final boolean warmStart )
+	{
+		this.warmStart = warmStart;
+		history.reset();
+	}
+
+	public boolean isWarmStart()
+	{
+		return warmStart;
+	}
+
+	@Override
+	public void setMetrics( final IterativeInverseMetrics metrics )
+	{
+		this.metrics = metrics;
+	}
+
+	@Override
+	public IterativeInverseMetrics getMetrics()
+	{
+		return metrics;
+	}
+
 	public void setFixZ( boolean fixZ )
 	{
 		this.fixZ = fixZ;
@@ -180,13 +230,15 @@ public class InverseRealTransformGradientDescent implements RealTransform
 	}
 
 	@Override
-	public RealTransform copy()
+	public InverseRealTransformGradientDescent copy()
 	{
-		InverseRealTransformGradientDescent copy = new InverseRealTransformGradientDescent( ndims, xfm );
+		InverseRealTransformGradientDescent copy = new InverseRealTransformGradientDescent( ndims, xfm.copy() );
 		copy.setBeta( this.beta );
 		copy.setC( this.c );
 		copy.setTolerance( this.tolerance );
 		copy.setMaxIters( this.maxIters );
+		copy.setWarmStart( this.warmStart );
+		copy.setMetrics( this.metrics );
 		return copy;
 	}
 
@@ -198,33 +250,49 @@ public class InverseRealTransformGradientDescent implements RealTransform
 	public void apply( final double[] s, final double[] t )
 	{
 		// invTol sets the error
-		inverseTol( s, s, tolerance, maxIters );
+		inverseTolCoherent( s );
 
 		// copy estimate into t
 		System.arraycopy( estimate, 0, t, 0, t.length );
 	}
 
-	@Deprecated
 	public void apply( final float[] src, final float[] tgt )
 	{
-		double[] srcd = new double[ src.length ];
-		double[] tgtd = new double[ tgt.length ];
-		for ( int i = 0; i < src.length; i++ )
-			srcd[ i ] = src[ i ];
+		for ( int i = 0; i < ndims; i++ )
+			sourceTmp[ i ] = src[ i ];
 
-		apply( srcd, tgtd );
+		inverseTolCoherent( sourceTmp );
 
-		for ( int i = 0; i < tgt.length; i++ )
-			tgt[ i ] = ( float ) tgtd[ i ];
+		for ( int i = 0; i < ndims; i++ )
+			tgt[ i ] = ( float ) estimate[ i ];
 	}
 
 	public void apply( final RealLocalizable src, final RealPositionable tgt )
 	{
-		double[] srcd = new double[ src.numDimensions() ];
-		double[] tgtd = new double[ tgt.numDimensions() ];
-		src.localize( srcd );
-		apply( srcd, tgtd );
-		tgt.setPosition( tgtd );
+		for ( int i = 0; i < ndims; i++ )
+			sourceTmp[ i ] = src.getDoublePosition( i );
+
+		inverseTolCoherent( sourceTmp );
+
+		for ( int i = 0; i < ndims; i++ )
+			tgt.setPosition( estimate[ i ], i );
+	}
+
+	/**
+	 * Run {@link #inverseTol} initialized with the target itself or, in
+	 * {@link #setWarmStart(boolean) warm start mode}, with the extrapolated
+	 * solution of the previous call.
+	 */
+	protected double inverseTolCoherent( final double[] target )
+	{
+		final double[] init = warmStart ? history.guess( target ) : target;
+
+		inverseTol( target, init, tolerance, maxIters );
+
+		if ( warmStart )
+			history.update( target, estimate, error < tolerance );
+
+		return error;
 	}
 
 	public double inverseTol( final double[] target, final double[] guess, final double tolerance, final int maxIters )
@@ -249,6 +317,7 @@ public class InverseRealTransformGradientDescent implements RealTransform
 
 		double t = 1.0;
 		int k = 0;
+		lineSearchTries = 0;
 		while ( error >= tolerance && k < maxIters )
 		{
 
@@ -278,6 +347,9 @@ public class InverseRealTransformGradientDescent implements RealTransform
 			k++;
 		}
 
+		if ( metrics != null )
+			metrics.record( k, lineSearchTries, error, error < tolerance );
+
 		return error;
 	}
 
@@ -309,6 +381,7 @@ public class InverseRealTransformGradientDescent implements RealTransform
 		// boolean success = false;
 		while ( k < stepSizeMaxTries )
 		{
+			++lineSearchTries;
 			if ( armijoCondition( c, t ) )
 			{
 				// success = true;
@@ -351,6 +424,7 @@ public class InverseRealTransformGradientDescent implements RealTransform
 		// boolean success = false;
 		while ( k < maxtries )
 		{
+			++lineSearchTries;
 			if ( armijoCondition( c, t ) )
 			{
 				// success = true;
@@ -379,7 +453,7 @@ public class InverseRealTransformGradientDescent implements RealTransform
 		double[] d = dir;
 		double[] x = estimate; // give a convenient name
 
-		double[] x_ap = new double[ ndims ];
+		double[] x_ap = xAp;
 		for ( int i = 0; i < ndims; i++ )
 			x_ap[ i ] = x[ i ] + t * d[ i ];
 
@@ -387,7 +461,7 @@ public class InverseRealTransformGradientDescent implements RealTransform
 		// double[] phix = xfm.apply( x );
 		// TODO make sure estimateXfm is updated at the correct time
 		double[] phix = estimateXfm;
-		double[] phix_ap = new double[ this.ndims ];
+		double[] phix_ap = phixAp;
 		xfm.apply( x_ap, phix_ap );
 
 		double fx = squaredError( phix );
@@ -0,0 +1,48 @@
+package net.imglib2.realtransform.inverse;
+
+/**
+ * Estimates the inverse of a {@link DifferentiableRealTransform} by damped
+ * Newton iterations.  The jacobian is evaluated at every estimate, so
+ * convergence is quadratic close to the solution.
+ * <p>
+ * If the jacobian is singular, the residual itself is used as step.
+ */
+public class InverseRealTransformNewton extends AbstractInverseRealTransformSolver
+{
+	public InverseRealTransformNewton( final int ndims, final DifferentiableRealTransform xfm )
+	{
+		super( ndims, xfm );
+	}
+
+	public InverseRealTransformNewton( final DifferentiableRealTransform xfm )
+	{
+		super( xfm );
+	}
+
+	@Override
+	protected void start()
+	{}
+
+	@Override
+	protected boolean direction()
+	{
+		updateJacobian();
+		if ( !solveStep() )
+			System.arraycopy( residual, 0, step, 0, ndims );
+		return true;
+	}
+
+	@Override
+	protected boolean restart()
+	{
+		return false;
+	}
+
+	@Override
+	public InverseRealTransformNewton copy()
+	{
+		final InverseRealTransformNewton copy = new InverseRealTransformNewton( ndims, xfm.copy() );
+		copy.set( this );
+		return copy;
+	}
+}
@@ -0,0 +1,79 @@
+package net.imglib2.realtransform.inverse;
+
+import net.imglib2.realtransform.RealTransform;
+
+/**
+ * Iteratively estimates the inverse of a {@link DifferentiableRealTransform}.
+ * Applying the solver to a target point yields the source point that the
+ * transform maps closest to it.
+ * <p>
+ * Solvers store their state, use a {@link #copy()} per thread.
+ *
+ * @see InverseRealTransformGradientDescent
+ * @see InverseRealTransformNewton
+ * @see InverseRealTransformBroyden
+ */
+public interface InverseRealTransformSolver extends RealTransform
+{
+	/**
+	 * Stop iterating when the distance between the transformed estimate and
+	 * the target is below tolerance.
+	 *
+	 * @param tolerance
+	 */
+	public void setTolerance( final double tolerance );
+
+	public void setMaxIters( final int maxIters );
+
+	/**
+	 * Initialize each apply with the extrapolated solution of the previous
+	 * one instead of the target itself.  Use for coherent queries only, e.g.
+	 * in raster order.  For smooth transforms,
+	 * {@link InverseRealTransformNewton} then typically needs one to three
+	 * iterations per query, gradient descent saves iterations but still needs
+	 * many more.
+	 *
+	 * @param warmStart
+	 */
+	public void setWarmStart( final boolean warmStart );
+
+	public boolean isWarmStart();
+
+	/**
+	 * Record statistics of every estimate into metrics, null to disable.
+	 * Copies share the metrics.
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics( final IterativeInverseMetrics metrics );
+
+	public IterativeInverseMetrics getMetrics();
+
+	/**
+	 * @return the remaining error of the last estimate
+	 */
+	public double getError();
+
+	/**
+	 * @return the last estimate
+	 */
+	public double[] getEstimate();
+
+	/**
+	 * Estimate the source point that is mapped to target starting at guess.
+	 *
+	 * @param target
+	 *            the target point
+	 * @param guess
+	 *            the initial estimate
+	 * @param tolerance
+	 *            the error tolerance
+	 * @param maxIters
+	 *            maximum number of iterations
+	 * @return the remaining error
+	 */
+	public double inverseTol( final double[] target, final double[] guess, final double tolerance, final int maxIters );
+
+	@Override
+	public InverseRealTransformSolver copy();
+}
@@ -19,6 +19,10 @@ public class InvertibleTransformByGradientDescent implements InvertibleRealTrans
 
 	final BacktrackingLineSearch inverseTransform;
 
+	final double[] pd;
+
+	final double[] qd;
+
 	public InvertibleTransformByGradientDescent( final DifferentiableRealTransform forwardTransform )
 	{
 		this( forwardTransform, false );
@@ -35,6 +39,10 @@ public class InvertibleTransformByGradientDescent implements InvertibleRealTrans
 		this.inverseTransform = inverseTransform;
 
 		this.isInverse = isInverse;
+
+		final int nd = Math.max( forwardTransform.numSourceDimensions(), forwardTransform.numTargetDimensions() );
+		pd = new double[ nd ];
+		qd = new double[ nd ];
 	}
 
 	@Override
@@ -46,17 +54,40 @@ public class InvertibleTransformByGradientDescent implements InvertibleRealTrans
 			forwardTransform.apply( p, q );
 	}
 
+	/**
+	 * Reads the source from p and writes the target into q.  The iterative
+	 * inverse starts at the initial content of q.
+	 */
+	@Override
+	public void apply( final float[] p, final float[] q )
+	{
+		final int ns = numSourceDimensions();
+		final int nt = numTargetDimensions();
+		copy( p, pd, ns );
+		if ( isInverse )
+		{
+			copy( q, qd, nt );
+			inverseTransform.iterativeInverse( qd, pd );
+		}
+		else
+			forwardTransform.apply( pd, qd );
+		copy( qd, q, nt );
+	}
+
 	@Override
 	public void apply( RealLocalizable p, RealPositionable q )
 	{
 		if ( isInverse )
 		{
-			double[] pd = new double[ p.numDimensions() ];
-			double[] qd = new double[ p.numDimensions() ];
+			for ( int d = 0; d < pd.length; d++ )
+			{
+				pd[ d ] = p.getDoublePosition( d );
+				qd[ d ] = 0;
+			}
 
-			p.localize( pd );
 			inverseTransform.iterativeInverse( pd, qd );
-			q.setPosition( qd );
+			for ( int d = 0; d < qd.length; d++ )
+				q.setPosition( qd[ d ], d );
 		}
 		else
 			forwardTransform.apply( p, q );
@@ -71,6 +102,26 @@ public class InvertibleTransformByGradientDescent implements InvertibleRealTrans
 			inverseTransform.iterativeInverse( p, q );
 	}
 
+	/**
+	 * Reads the target from q and writes the source into p.  The iterative
+	 * inverse starts at the initial content of p.
+	 */
+	@Override
+	public void applyInverse( final float[] p, final float[] q )
+	{
+		final int ns = numSourceDimensions();
+		final int nt = numTargetDimensions();
+		copy( q, qd, nt );
+		if ( isInverse )
+			forwardTransform.apply( qd, pd );
+		else
+		{
+			copy( p, pd, ns );
+			inverseTransform.iterativeInverse( pd, qd );
+		}
+		copy( pd, p, ns );
+	}
+
 	@Override
 	public void applyInverse( RealPositionable p, RealLocalizable q )
 	{
@@ -78,15 +129,30 @@ public class InvertibleTransformByGradientDescent implements InvertibleRealTrans
 			forwardTransform.apply( q, p );
 		else
 		{
-			double[] pd = new double[ p.numDimensions() ];
-			double[] qd = new double[ p.numDimensions() ];
+			for ( int d = 0; d < qd.length; d++ )
+			{
+				qd[ d ] = q.getDoublePosition( d );
+				pd[ d ] = 0;
+			}
 
-			q.localize( qd );
 			inverseTransform.iterativeInverse( qd, pd );
-			p.setPosition( pd );
+			for ( int d = 0; d < pd.length; d++ )
+				p.setPosition( pd[ d ], d );
 		}
 	}
 
+	private static void copy( final float[] src, final double[] dst, final int n )
+	{
+		for ( int d = 0; d < n; d++ )
+			dst[ d ] = src[ d ];
+	}
+
+	private static void copy( final double[] src, final float[] dst, final int n )
+	{
+		for ( int d = 0; d < n; d++ )
+			dst[ d ] = ( float ) src[ d ];
+	}
+
 	@Override
 	public InvertibleTransformByGradientDescent copy()
 	{
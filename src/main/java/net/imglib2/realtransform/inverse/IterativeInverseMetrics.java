@@ -0,0 +1,249 @@
+package net.imglib2.realtransform.inverse;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Opt-in statistics of iterative inverse estimates: number of queries,
+ * iterations, line search tries, non-converged queries and the distribution
+ * of iterations and final errors.
+ * <p>
+ * One instance is typically attached to a solver with
+ * {@link InverseRealTransformSolver#setMetrics(IterativeInverseMetrics)} and
+ * shared by all its copies.  Each thread records into its own counters, so
+ * recording is uncontended, and the getters aggregate over all threads.
+ * Aggregates are not synchronized with concurrent recording, i.e. they may
+ * be slightly behind while queries are running.  Counters of terminated
+ * threads are folded into one retired aggregate whenever a new thread starts
+ * recording, so threads that come and go do not accumulate counters.
+ */
+public class IterativeInverseMetrics
+{
+	/**
+	 * Iterations are binned as 0, 1, ..., {@link #ITERATION_BINS} - 2 and
+	 * the last bin collects everything above.
+	 */
+	final static public int ITERATION_BINS = 64;
+
+	/**
+	 * Final errors are binned by decade, bin 0 collects everything below
+	 * {@link #MIN_ERROR}, the last bin everything from
+	 * MIN_ERROR * 10<sup>ERROR_BINS - 2</sup> up.
+	 */
+	final static public int ERROR_BINS = 16;
+
+	final static public double MIN_ERROR = 1e-10;
+
+	protected static class Counters
+	{
+		/* the recording thread, null for the retired aggregate */
+		protected final WeakReference< Thread > owner;
+
+		protected long numQueries = 0;
+
+		protected long numNotConverged = 0;
+
+		protected long numIterations = 0;
+
+		protected long numLineSearchTries = 0;
+
+		protected double maxError = 0;
+
+		protected final long[] iterationHistogram = new long[ ITERATION_BINS ];
+
+		protected final long[] errorHistogram = new long[ ERROR_BINS ];
+
+		protected Counters( final Thread owner )
+		{
+			this.owner = owner == null ? null : new WeakReference<>( owner );
+		}
+
+		protected boolean isRetired()
+		{
+			final Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+
+		protected void add( final Counters c )
+		{
+			numQueries += c.numQueries;
+			numNotConverged += c.numNotConverged;
+			numIterations += c.numIterations;
+			numLineSearchTries += c.numLineSearchTries;
+			maxError = Math.max( maxError, c.maxError );
+			for ( int i = 0; i < ITERATION_BINS; ++i )
+				iterationHistogram[ i ] += c.iterationHistogram[ i ];
+			for ( int i = 0; i < ERROR_BINS; ++i )
+				errorHistogram[ i ] += c.errorHistogram[ i ];
+		}
+
+		protected void reset()
+		{
+			numQueries = 0;
+			numNotConverged = 0;
+			numIterations = 0;
+			numLineSearchTries = 0;
+			maxError = 0;
+			Arrays.fill( iterationHistogram, 0 );
+			Arrays.fill( errorHistogram, 0 );
+		}
+	}
+
+	/* counters of running threads, guarded by this */
+	protected final ArrayList< Counters > allCounters = new ArrayList<>();
+
+	/* counters of terminated threads, guarded by this */
+	protected final Counters retired = new Counters( null );
+
+	protected final ThreadLocal< Counters > counters = ThreadLocal.withInitial( () -> {
+		final Counters c = new Counters( Thread.currentThread() );
+		register( c );
+		return c;
+	} );
+
+	protected synchronized void register( final Counters c )
+	{
+		for ( final Iterator< Counters > i = allCounters.iterator(); i.hasNext(); )
+		{
+			final Counters other = i.next();
+			if ( other.isRetired() )
+			{
+				retired.add( other );
+				i.remove();
+			}
+		}
+		allCounters.add( c );
+	}
+
+	/**
+	 * @return the sum of the counters of all threads
+	 */
+	protected synchronized Counters total()
+	{
+		final Counters total = new Counters( null );
+		total.add( retired );
+		for ( final Counters c : allCounters )
+			total.add( c );
+		return total;
+	}
+
+	/**
+	 * Record one inverse estimate.
+	 *
+	 * @param iterations
+	 *            number of iterations
+	 * @param lineSearchTries
+	 *            number of step sizes tried over all iterations
+	 * @param error
+	 *            the final error
+	 * @param converged
+	 *            whether the error is below the tolerance
+	 */
+	public void record( final int iterations, final int lineSearchTries, final double error, final boolean converged )
+	{
+		final Counters c = counters.get();
+		++c.numQueries;
+		if ( !converged )
+			++c.numNotConverged;
+		c.numIterations += iterations;
+		c.numLineSearchTries += lineSearchTries;
+		if ( error > c.maxError )
+			c.maxError = error;
+		++c.iterationHistogram[ Math.min( Math.max( iterations, 0 ), ITERATION_BINS - 1 ) ];
+		++c.errorHistogram[ errorBin( error ) ];
+	}
+
+	/**
+	 * @return the bin of {@link #getErrorHistogram()} for error
+	 */
+	public static int errorBin( final double error )
+	{
+		if ( !( error >= MIN_ERROR ) )
+			return Double.isNaN( error ) ? ERROR_BINS - 1 : 0;
+
+		return ( int )Math.min( ERROR_BINS - 1, 1 + Math.floor( Math.log10( error / MIN_ERROR ) ) );
+	}
+
+	public long getNumQueries()
+	{
+		return total().numQueries;
+	}
+
+	/**
+	 * @return the number of queries that ended with an error above the
+	 *         tolerance, e.g. because they reached the maximum number of
+	 *         iterations
+	 */
+	public long getNumNotConverged()
+	{
+		return total().numNotConverged;
+	}
+
+	public long getNumIterations()
+	{
+		return total().numIterations;
+	}
+
+	public long getNumLineSearchTries()
+	{
+		return total().numLineSearchTries;
+	}
+
+	/**
+	 * @return the mean number of iterations per query, 0 if there were no
+	 *         queries
+	 */
+	public double getMeanIterations()
+	{
+		return meanIterations( total() );
+	}
+
+	protected static double meanIterations( final Counters c )
+	{
+		return c.numQueries == 0 ? 0 : ( double )c.numIterations / c.numQueries;
+	}
+
+	public double getMaxError()
+	{
+		return total().maxError;
+	}
+
+	/**
+	 * @return number of queries per iteration count
+	 * @see #ITERATION_BINS
+	 */
+	public long[] getIterationHistogram()
+	{
+		return total().iterationHistogram;
+	}
+
+	/**
+	 * @return number of queries per decade of the final error
+	 * @see #ERROR_BINS
+	 */
+	public long[] getErrorHistogram()
+	{
+		return total().errorHistogram;
+	}
+
+	/**
+	 * Clear all counters.  Should not be called while queries are running.
+	 */
+	public synchronized void reset()
+	{
+		retired.reset();
+		for ( final Counters c : allCounters )
+			c.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		final Counters c = total();
+		return String.format(
+				"queries: %d, not converged: %d, mean iterations: %.2f, line search tries: %d, max error: %g",
+				c.numQueries, c.numNotConverged, meanIterations( c ), c.numLineSearchTries, c.maxError );
+	}
+}
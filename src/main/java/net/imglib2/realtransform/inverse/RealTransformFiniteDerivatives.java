@@ -20,6 +20,15 @@ public class RealTransformFiniteDerivatives extends AbstractDifferentiableRealTr
 
 	protected double step;
 
+	/* scratch */
+	protected final double[] p;
+
+	protected final double[] q;
+
+	protected final double[] qc;
+
+	protected final double[][] newjac;
+
 	public RealTransformFiniteDerivatives( final RealTransform transform )
 	{
 		this.transform = transform;
@@ -27,6 +36,11 @@ public class RealTransformFiniteDerivatives extends AbstractDifferentiableRealTr
 		int tgtD = transform.numTargetDimensions();
 		jacobian = new AffineTransform( srcD > tgtD ? srcD : tgtD );
 		step = 0.01;
+
+		p = new double[ srcD ];
+		q = new double[ Math.max( srcD, tgtD ) ];
+		qc = new double[ Math.max( srcD, tgtD ) ];
+		newjac = new double[ srcD ][ srcD + 1 ];
 	}
 
 	public void setStep( double step )
@@ -49,6 +63,11 @@ public class RealTransformFiniteDerivatives extends AbstractDifferentiableRealTr
 		transform.apply( source, target );
 	}
 
+	public void apply( float[] source, float[] target )
+	{
+		transform.apply( source, target );
+	}
+
 	public void apply( RealLocalizable source, RealPositionable target )
 	{
 		transform.apply( source, target );
@@ -56,7 +75,7 @@ public class RealTransformFiniteDerivatives extends AbstractDifferentiableRealTr
 
 	public RealTransformFiniteDerivatives copy()
 	{
-		return new RealTransformFiniteDerivatives( transform );
+		return new RealTransformFiniteDerivatives( transform.copy() );
 	}
 
 	/**
@@ -69,12 +88,26 @@ public class RealTransformFiniteDerivatives extends AbstractDifferentiableRealTr
 	 */
 	public AffineTransform jacobian( double[] x )
 	{
-		int ndims = numSourceDimensions();
-		double[] p = new double[ ndims ];
-		double[] q = new double[ ndims ];
-		double[] qc = new double[ ndims ];
+		jacobian( x, newjac );
+		jacobian.set( newjac );
 
-		double[][] newjac = new double[ ndims ][ ndims+1 ];
+		return jacobian;
+	}
+
+	/**
+	 * Estimates the jacobian matrix at x of the wrapped RealTransform by
+	 * forward differences without allocating.
+	 *
+	 * @param x
+	 *            the point at which to estimate the jacobian
+	 * @param jacobian
+	 *            the n x n jacobian to write into, [row][column], additional
+	 *            columns are left untouched
+	 */
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		int ndims = numSourceDimensions();
 
 		transform.apply( x, qc );
 
@@ -90,12 +123,9 @@ public class RealTransformFiniteDerivatives extends AbstractDifferentiableRealTr
 
 			for ( int j = 0; j < ndims; j++ )
 			{
-				newjac[ j ][ i ] = ( q[ j ] - qc[ j ] ) / step;
+				jacobian[ j ][ i ] = ( q[ j ] - qc[ j ] ) / step;
 			}
 		}
-		jacobian.set( newjac );
-
-		return jacobian;
 	}
 	
 }
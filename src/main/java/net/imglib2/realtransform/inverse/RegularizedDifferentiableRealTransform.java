@@ -44,6 +44,14 @@ public class RegularizedDifferentiableRealTransform extends AbstractDifferentiab
 		return jac;
 	}
 
+	@Override
+	public void jacobian( final double[] x, final double[][] jacobian )
+	{
+		dxfm.jacobian( x, jacobian );
+		for ( int i = 0; i < jacobian.length; i++ )
+			jacobian[ i ][ i ] = epsilon + ( 1 - epsilon ) * jacobian[ i ][ i ];
+	}
+
 	public int numSourceDimensions()
 	{
 		return dxfm.numSourceDimensions();
@@ -59,6 +67,11 @@ public class RegularizedDifferentiableRealTransform extends AbstractDifferentiab
 		dxfm.apply( source, target );
 	}
 
+	public void apply( float[] source, float[] target )
+	{
+		dxfm.apply( source, target );
+	}
+
 	public void apply( RealLocalizable source, RealPositionable target )
 	{
 		dxfm.apply( source, target );
@@ -0,0 +1,99 @@
+package net.imglib2.realtransform.inverse;
+
+/**
+ * Initial guesses for coherent inverse queries, extrapolated from the
+ * targets and solutions of the last two converged inverses.
+ *
+ * The guess for a new target is the previous solution shifted by the
+ * difference of the targets, i.e. it assumes that the displacement at the
+ * new point is the same as at the previous one.  If the last three targets
+ * are equidistant on a line, e.g. neighboring pixels in raster order, the
+ * previous two solutions are extrapolated linearly instead.  Without a
+ * converged previous inverse, the guess is the target itself.
+ *
+ * Instances hold state and must not be shared between threads.
+ */
+public class WarmStart
+{
+	protected final int ndims;
+
+	protected final double[] previousTarget;
+
+	protected final double[] previousEstimate;
+
+	protected final double[] olderTarget;
+
+	protected final double[] olderEstimate;
+
+	protected final double[] guess;
+
+	protected int numPrevious = 0;
+
+	public WarmStart( final int ndims )
+	{
+		this.ndims = ndims;
+		previousTarget = new double[ ndims ];
+		previousEstimate = new double[ ndims ];
+		olderTarget = new double[ ndims ];
+		olderEstimate = new double[ ndims ];
+		guess = new double[ ndims ];
+	}
+
+	/**
+	 * Forget all previous inverses.
+	 */
+	public void reset()
+	{
+		numPrevious = 0;
+	}
+
+	/**
+	 * @param target
+	 *            the target of the next inverse
+	 *
+	 * @return the initial guess, reused by the next call, or target itself
+	 */
+	public double[] guess( final double[] target )
+	{
+		if ( numPrevious == 0 )
+			return target;
+
+		boolean equidistant = numPrevious > 1;
+		for ( int i = 0; i < ndims && equidistant; i++ )
+			equidistant = target[ i ] - previousTarget[ i ] == previousTarget[ i ] - olderTarget[ i ];
+
+		if ( equidistant )
+			for ( int i = 0; i < ndims; i++ )
+				guess[ i ] = 2 * previousEstimate[ i ] - olderEstimate[ i ];
+		else
+			for ( int i = 0; i < ndims; i++ )
+				guess[ i ] = previousEstimate[ i ] + target[ i ] - previousTarget[ i ];
+
+		return guess;
+	}
+
+	/**
+	 * Record the result of an inverse.  An inverse that did not converge
+	 * resets the history.
+	 *
+	 * @param target
+	 *            the target
+	 * @param estimate
+	 *            the solution
+	 * @param converged
+	 *            whether the solution is within tolerance
+	 */
+	public void update( final double[] target, final double[] estimate, final boolean converged )
+	{
+		if ( converged )
+		{
+			System.arraycopy( previousTarget, 0, olderTarget, 0, ndims );
+			System.arraycopy( previousEstimate, 0, olderEstimate, 0, ndims );
+			System.arraycopy( target, 0, previousTarget, 0, ndims );
+			System.arraycopy( estimate, 0, previousEstimate, 0, ndims );
+			numPrevious = Math.min( numPrevious + 1, 2 );
+		}
+		else
+			numPrevious = 0;
+	}
+}
@@ -1,5 +1,7 @@
 package net.imglib2.realtransform.inverse;
 
+import java.util.function.Function;
+
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPositionable;
 import net.imglib2.realtransform.InverseRealTransform;
@@ -12,36 +14,61 @@ public class WrappedIterativeInvertibleRealTransform< T extends RealTransform >
 
 	protected final DifferentiableRealTransform differentiableTransform;
 
+	/**
+	 * The gradient descent solver, null if the inverse is estimated by
+	 * another solver.
+	 */
 	protected final InverseRealTransformGradientDescent inverseTransform;
 
+	protected final InverseRealTransformSolver solver;
+
 	public WrappedIterativeInvertibleRealTransform( final T xfm )
 	{
-		this.forwardTransform = xfm;
+		this( xfm, d -> new InverseRealTransformGradientDescent( xfm.numSourceDimensions(), d ) );
+	}
 
-		if( xfm instanceof DifferentiableRealTransform )
-		{
-			differentiableTransform = (DifferentiableRealTransform) xfm;
-		}
-		else
-		{
-			differentiableTransform = new RealTransformFiniteDerivatives( xfm );
-		}
+	/**
+	 * Estimate the inverse with a custom solver, e.g.
+	 * {@code new WrappedIterativeInvertibleRealTransform<>( xfm, InverseRealTransformNewton::new )}.
+	 *
+	 * @param xfm
+	 *            the transform
+	 * @param solverFactory
+	 *            creates the solver for the differentiable transform, i.e.
+	 *            xfm itself or its finite differences approximation
+	 */
+	public WrappedIterativeInvertibleRealTransform( final T xfm, final Function< DifferentiableRealTransform, ? extends InverseRealTransformSolver > solverFactory )
+	{
+		this( xfm, differentiable( xfm ), solverFactory );
+	}
+
+	protected WrappedIterativeInvertibleRealTransform( final T xfm, final InverseRealTransformGradientDescent inverse )
+	{
+		this( xfm, ( InverseRealTransformSolver )inverse );
+	}
 
-		inverseTransform = new InverseRealTransformGradientDescent( xfm.numSourceDimensions(), differentiableTransform );
+	protected WrappedIterativeInvertibleRealTransform( final T xfm, InverseRealTransformSolver inverse )
+	{
+		this( xfm, differentiable( xfm ), d -> inverse );
 	}
 
-	private WrappedIterativeInvertibleRealTransform( final T xfm, InverseRealTransformGradientDescent inverse )
+	private WrappedIterativeInvertibleRealTransform(
+			final T xfm,
+			final DifferentiableRealTransform differentiableTransform,
+			final Function< DifferentiableRealTransform, ? extends InverseRealTransformSolver > solverFactory )
 	{
 		this.forwardTransform = xfm;
+		this.differentiableTransform = differentiableTransform;
+		solver = solverFactory.apply( differentiableTransform );
+		inverseTransform = solver instanceof InverseRealTransformGradientDescent ? ( InverseRealTransformGradientDescent )solver : null;
+	}
+
+	private static DifferentiableRealTransform differentiable( final RealTransform xfm )
+	{
 		if( xfm instanceof DifferentiableRealTransform )
-		{
-			differentiableTransform = (DifferentiableRealTransform) xfm;
-		}
+			return (DifferentiableRealTransform) xfm;
 		else
-		{
-			differentiableTransform = new RealTransformFiniteDerivatives( xfm );
-		}
-		this.inverseTransform = inverse;
+			return new RealTransformFiniteDerivatives( xfm );
 	}
 
 	public T getTransform()
@@ -67,6 +94,12 @@ public class WrappedIterativeInvertibleRealTransform< T extends RealTransform >
 		forwardTransform.apply( source, target );
 	}
 
+	@Override
+	public void apply( float[] source, float[] target )
+	{
+		forwardTransform.apply( source, target );
+	}
+
 	@Override
 	public void apply( RealLocalizable source, RealPositionable target )
 	{
@@ -76,13 +109,19 @@ public class WrappedIterativeInvertibleRealTransform< T extends RealTransform >
 	@Override
 	public void applyInverse( double[] source, double[] target )
 	{
-		inverseTransform.apply( target, source );
+		solver.apply( target, source );
+	}
+
+	@Override
+	public void applyInverse( float[] source, float[] target )
+	{
+		solver.apply( target, source );
 	}
 
 	@Override
 	public void applyInverse( RealPositionable source, RealLocalizable target )
 	{
-		inverseTransform.apply( target, source );
+		solver.apply( target, source );
 	}
 
 	@Override
@@ -91,15 +130,68 @@ public class WrappedIterativeInvertibleRealTransform< T extends RealTransform >
 		return new InverseRealTransform( this );
 	}
 
+	/**
+	 * @return the gradient descent solver
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the inverse is estimated by another solver
+	 *
+	 * @deprecated use {@link #getSolver()}, gradient descent specific
+	 *             settings are available from a cast
+	 */
+	@Deprecated
 	public InverseRealTransformGradientDescent getOptimzer()
 	{
+		if ( inverseTransform == null )
+			throw new UnsupportedOperationException( "The inverse is not estimated by gradient descent, use getSolver()." );
+
 		return inverseTransform;
 	}
 
+	/**
+	 * @return the solver that estimates the inverse
+	 */
+	public InverseRealTransformSolver getSolver()
+	{
+		return solver;
+	}
+
+	/**
+	 * Initialize each inverse with the extrapolated solution of the previous
+	 * one.  Use for coherent queries only, e.g. in raster order.
+	 *
+	 * @see InverseRealTransformSolver#setWarmStart(boolean)
+	 */
+	public void setWarmStart( final boolean warmStart )
+	{
+		solver.setWarmStart( warmStart );
+	}
+
+	public boolean isWarmStart()
+	{
+		return solver.isWarmStart();
+	}
+
+	/**
+	 * Record statistics of all inverse estimates of this transform and its
+	 * copies into metrics, null to disable.
+	 *
+	 * @see InverseRealTransformSolver#setMetrics(IterativeInverseMetrics)
+	 */
+	public void setMetrics( final IterativeInverseMetrics metrics )
+	{
+		solver.setMetrics( metrics );
+	}
+
+	public IterativeInverseMetrics getMetrics()
+	{
+		return solver.getMetrics();
+	}
+
 	@SuppressWarnings( "unchecked" )
 	@Override
 	public WrappedIterativeInvertibleRealTransform<T> copy()
 	{
-		return new WrappedIterativeInvertibleRealTransform< T >( (T)forwardTransform.copy(), (InverseRealTransformGradientDescent)inverseTransform.copy() );
+		return new WrappedIterativeInvertibleRealTransform< T >( (T)forwardTransform.copy(), solver.copy() );
 	}
 }
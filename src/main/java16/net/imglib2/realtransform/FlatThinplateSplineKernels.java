@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.realtransform;
+
+/**
+ * Selects the thin plate spline kernel sums for
+ * {@link FlatThinplateSplineTransform}.  This is the Java 16 version of the
+ * multi-release jar.  It uses {@link FlatThinplateSplineVectorKernels} if the
+ * jdk.incubator.vector module was resolved at startup (e.g. with
+ * <code>--add-modules jdk.incubator.vector</code>) and the preferred vector
+ * species holds more than one double, and
+ * {@link FlatThinplateSplineScalarKernels} otherwise.
+ */
+final class FlatThinplateSplineKernels
+{
+	private static final boolean VECTORIZED =
+			ModuleLayer.boot().findModule( "jdk.incubator.vector" ).isPresent() &&
+			FlatThinplateSplineVectorKernels.isSupported();
+
+	private FlatThinplateSplineKernels()
+	{}
+
+	static boolean isVectorized()
+	{
+		return VECTORIZED;
+	}
+
+	static void kernels( final double[][] landmarks, final int n, final double[] x, final int start, final int end, final double[] kernel )
+	{
+		if ( VECTORIZED )
+			FlatThinplateSplineVectorKernels.kernels( landmarks, n, x, start, end, kernel );
+		else
+			FlatThinplateSplineScalarKernels.kernels( landmarks, n, x, start, end, kernel );
+	}
+
+	static double dot( final double[] kernel, final double[] w, final int start, final int size )
+	{
+		return VECTORIZED ?
+				FlatThinplateSplineVectorKernels.dot( kernel, w, start, size ) :
+				FlatThinplateSplineScalarKernels.dot( kernel, w, start, size );
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.realtransform;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Thin plate spline kernel sums for {@link FlatThinplateSplineTransform}
+ * with the Vector API.  Squared distances, kernels and weighted sums are
+ * evaluated for as many landmarks at once as the preferred species holds,
+ * the remainder of each block is evaluated by the scalar loops.  Only loaded
+ * through {@link FlatThinplateSplineKernels} if jdk.incubator.vector is
+ * available.
+ */
+final class FlatThinplateSplineVectorKernels
+{
+	private static final VectorSpecies< Double > SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private FlatThinplateSplineVectorKernels()
+	{}
+
+	static boolean isSupported()
+	{
+		return SPECIES.length() > 1;
+	}
+
+	/**
+	 * Write U(|x - p<sub>l</sub>|) for the landmarks [start, end) into
+	 * kernel[0, end - start).
+	 */
+	static void kernels( final double[][] landmarks, final int n, final double[] x, final int start, final int end, final double[] kernel )
+	{
+		final int size = end - start;
+		final int bound = SPECIES.loopBound( size );
+
+		int k = 0;
+		for ( int l = start; k < bound; k += SPECIES.length(), l += SPECIES.length() )
+		{
+			DoubleVector r2 = DoubleVector.zero( SPECIES );
+			for ( int d = 0; d < n; ++d )
+			{
+				final DoubleVector dx = DoubleVector.broadcast( SPECIES, x[ d ] ).sub( DoubleVector.fromArray( SPECIES, landmarks[ d ], l ) );
+				r2 = dx.fma( dx, r2 );
+			}
+
+			/* U = r^2 log r = 0.5 r^2 log r^2, 0 at the landmark */
+			final VectorMask< Double > atLandmark = r2.compare( VectorOperators.LE, 0 );
+			r2.mul( 0.5 ).mul( r2.lanewise( VectorOperators.LOG ) ).blend( 0, atLandmark ).intoArray( kernel, k );
+		}
+
+		for ( int l = start + k; k < size; ++k, ++l )
+		{
+			double r2 = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double dx = x[ d ] - landmarks[ d ][ l ];
+				r2 += dx * dx;
+			}
+			kernel[ k ] = r2 > 0 ? 0.5 * r2 * Math.log( r2 ) : 0;
+		}
+	}
+
+	/**
+	 * &Sigma; kernel[k] w[start + k] with one partial sum per lane.
+	 */
+	static double dot( final double[] kernel, final double[] w, final int start, final int size )
+	{
+		final int bound = SPECIES.loopBound( size );
+
+		DoubleVector sum = DoubleVector.zero( SPECIES );
+		int k = 0;
+		for ( int l = start; k < bound; k += SPECIES.length(), l += SPECIES.length() )
+			sum = DoubleVector.fromArray( SPECIES, kernel, k ).fma( DoubleVector.fromArray( SPECIES, w, l ), sum );
+
+		double s = sum.reduceLanes( VectorOperators.ADD );
+		for ( int l = start + k; k < size; ++k, ++l )
+			s += kernel[ k ] * w[ l ];
+
+		return s;
+	}
+}
@@ -0,0 +1,74 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.FinalRealInterval;
+
+public class AdaptiveGridTransformTest
+{
+	private static final double EPS = 1e-9;
+
+	private static final FinalRealInterval INTERVAL = new FinalRealInterval( new double[] { -50, 0 }, new double[] { 50, 80 } );
+
+	@Test
+	public void testAffine()
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+
+		/* n-linear interpolation of an affine is exact, no refinement */
+		final AdaptiveGridTransform approximation = new AdaptiveGridTransform.Builder( affine, INTERVAL ).tolerance( 1e-6 ).build();
+		assertEquals( 1, approximation.numNodes() );
+		assertEquals( 1, approximation.numLeaves() );
+		assertEquals( 0, approximation.getMaxError(), EPS );
+
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		final double[] p = new double[] { 12.5, 33.3 };
+		approximation.apply( p, q );
+		affine.apply( p, r );
+		assertArrayEquals( r, q, EPS );
+	}
+
+	@Test
+	public void testPolynomial()
+	{
+		final PolynomialTransform2D polynomial = new PolynomialTransform2D();
+		polynomial.set( 1, 0.1, 0.2, 0.01, 0.02, 0.003, 2, 0.3, 0.4, 0.004, 0.005, 0.006 );
+
+		final double tolerance = 0.01;
+		final AdaptiveGridTransform approximation = new AdaptiveGridTransform.Builder( polynomial, INTERVAL )
+				.tolerance( tolerance )
+				.maxDepth( 12 )
+				.build();
+
+		assertTrue( approximation.getMaxError() <= tolerance );
+		assertTrue( approximation.numNodes() > 1 );
+		assertEquals( ( approximation.numNodes() - 1 ) / 4 * 3 + 1, approximation.numLeaves() );
+
+		final AdaptiveGridTransform copy = approximation.copy();
+		final Random rnd = new Random( 0 );
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			p[ 0 ] = -50 + 100 * rnd.nextDouble();
+			p[ 1 ] = 80 * rnd.nextDouble();
+			polynomial.apply( p, r );
+			copy.apply( p, q );
+			assertArrayEquals( r, q, 2 * tolerance );
+		}
+
+		/* outside of the interval, the transform is used */
+		p[ 0 ] = 70;
+		p[ 1 ] = -3;
+		polynomial.apply( p, r );
+		approximation.apply( p, q );
+		assertArrayEquals( r, q, EPS );
+	}
+}
@@ -0,0 +1,101 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.type.numeric.real.DoubleType;
+
+public class AffineRandomAccessibleTest
+{
+	private static final double EPS = 1e-9;
+
+	private static AffineTransform3D affine()
+	{
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set(
+				1.1, 0.1, -0.3, 5,
+				0.2, 0.9, 0.05, -3,
+				-0.1, 0.3, 1.2, 7 );
+		return affine;
+	}
+
+	@Test
+	public void testRelativeMoves()
+	{
+		final AffineTransform3D affine = affine();
+		final double[] p = new double[ 3 ];
+		final double[] q = new double[ 3 ];
+		for ( int d = 0; d < 3; ++d )
+		{
+			final AffineRandomAccessible< DoubleType, AffineGet > ra = new AffineRandomAccessible<>( new RealPositionRealRandomAccessible( 3, d ), affine );
+			final RandomAccess< DoubleType > access = ra.randomAccess();
+			access.setPosition( new long[] { 2, -1, 4 } );
+
+			final long[] steps = new long[] { 1, -1, -1, 3, 3, -2, 3, 0 };
+			for ( int e = 0; e < 3; ++e )
+			{
+				for ( final long step : steps )
+				{
+					if ( step == 1 )
+						access.fwd( e );
+					else if ( step == -1 )
+						access.bck( e );
+					else
+						access.move( step, e );
+					access.localize( p );
+					affine.apply( p, q );
+					assertEquals( q[ d ], access.get().get(), EPS );
+				}
+				access.setPosition( 5, e );
+				access.localize( p );
+				affine.apply( p, q );
+				assertEquals( q[ d ], access.get().get(), EPS );
+			}
+
+			final RandomAccess< DoubleType > copy = access.copyRandomAccess();
+			copy.move( 3, 0 );
+			copy.bck( 2 );
+			copy.localize( p );
+			affine.apply( p, q );
+			assertEquals( q[ d ], copy.get().get(), EPS );
+		}
+	}
+
+	@Test
+	public void testRealRelativeMoves()
+	{
+		final AffineTransform3D affine = affine();
+		final double[] p = new double[ 3 ];
+		final double[] q = new double[ 3 ];
+		for ( int d = 0; d < 3; ++d )
+		{
+			final AffineRealRandomAccessible< DoubleType, AffineGet > rra = new AffineRealRandomAccessible<>( new RealPositionRealRandomAccessible( 3, d ), affine );
+			final RealRandomAccess< DoubleType > access = rra.realRandomAccess();
+			access.setPosition( new double[] { 0.5, -1.25, 4 } );
+			final double[] steps = new double[] { 1, -1, -1, 0.75, 0.75, -2, 0.75, 0 };
+			for ( int e = 0; e < 3; ++e )
+			{
+				for ( final double step : steps )
+				{
+					if ( step == 1 )
+						access.fwd( e );
+					else if ( step == -1 )
+						access.bck( e );
+					else
+						access.move( step, e );
+					access.localize( p );
+					affine.apply( p, q );
+					assertEquals( q[ d ], access.get().get(), EPS );
+				}
+				access.setPosition( 2.5, e );
+				access.move( 3, e );
+				access.localize( p );
+				affine.apply( p, q );
+				assertEquals( q[ d ], access.get().get(), EPS );
+			}
+		}
+	}
+}
@@ -169,4 +169,44 @@ public class AffineTransform3DTest
 		assertArrayEquals( backToOriginal.inverse().getRowPackedCopy(), affine.inverse().getRowPackedCopy(), 0.001 );
 	}
 
+	@Test
+	public void testApplyBatch()
+	{
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set(
+				rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(),
+				rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(),
+				rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() );
+
+		final int count = 100;
+		final double[] interleaved = new double[ count * 3 ];
+		final double[][] soa = new double[ 3 ][ count ];
+		for ( int i = 0; i < count; ++i )
+			for ( int d = 0; d < 3; ++d )
+				soa[ d ][ i ] = interleaved[ i * 3 + d ] = rnd.nextDouble();
+
+		final double[] expected = new double[ count * 3 ];
+		final double[] x = new double[ 3 ];
+		for ( int i = 0; i < count; ++i )
+		{
+			System.arraycopy( interleaved, i * 3, x, 0, 3 );
+			affine.apply( x, x );
+			System.arraycopy( x, 0, expected, i * 3, 3 );
+		}
+
+		final double[] target = new double[ count * 3 ];
+		affine.apply( interleaved, target, 0, count );
+		assertArrayEquals( expected, target, 0.0 );
+
+		/* in place and with offset */
+		affine.apply( interleaved, interleaved, 10, count - 10 );
+		for ( int i = 0; i < count * 3; ++i )
+			assertEquals( i < 30 ? soa[ i % 3 ][ i / 3 ] : expected[ i ], interleaved[ i ], 0.0 );
+
+		affine.apply( soa, soa, 0, count );
+		for ( int i = 0; i < count; ++i )
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( expected[ i * 3 + d ], soa[ d ][ i ], 0.0 );
+	}
+
 }
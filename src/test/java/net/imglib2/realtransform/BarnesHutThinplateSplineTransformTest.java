@@ -0,0 +1,84 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BarnesHutThinplateSplineTransformTest
+{
+	private static final int N = 2000;
+
+	private final ThinplateSplineReference reference = new ThinplateSplineReference( N, 1 );
+
+	private double maxError( final RealTransform transform, final Random rnd, final double extent )
+	{
+		final double[] x = new double[ 3 ];
+		final double[] y = new double[ 3 ];
+		final double[] z = new double[ 3 ];
+		double max = 0;
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = extent * ( rnd.nextDouble() - 0.25 );
+			transform.apply( x, y );
+			reference.apply( x, z );
+			for ( int d = 0; d < 3; ++d )
+				max = Math.max( max, Math.abs( y[ d ] - z[ d ] ) );
+		}
+		return max;
+	}
+
+	@Test
+	public void testExact()
+	{
+		final BarnesHutThinplateSplineTransform transform = new BarnesHutThinplateSplineTransform( reference.landmarks, reference.weights, reference.affine, reference.translation, 0, 8 );
+		assertTrue( transform.numNodes() > N / 8 );
+		assertEquals( 0, maxError( transform, new Random( 2 ), 150 ), 1e-9 );
+
+		/* landmarks themselves */
+		final double[] x = new double[ 3 ];
+		final double[] y = new double[ 3 ];
+		final double[] z = new double[ 3 ];
+		for ( int l = 0; l < N; l += 97 )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = reference.landmarks[ d ][ l ];
+			transform.apply( x, y );
+			reference.apply( x, z );
+			assertArrayEquals( z, y, 1e-9 );
+		}
+	}
+
+	@Test
+	public void testAccuracy()
+	{
+		for ( final double accuracy : new double[] { 1, 1e-1, 1e-2, 1e-3 } )
+		{
+			final BarnesHutThinplateSplineTransform transform = new BarnesHutThinplateSplineTransform( reference.landmarks, reference.weights, reference.affine, reference.translation, accuracy, 8 );
+			assertTrue( "accuracy " + accuracy, maxError( transform, new Random( 3 ), 150 ) < accuracy );
+			assertTrue( "copy accuracy " + accuracy, maxError( transform.copy(), new Random( 4 ), 400 ) < accuracy );
+		}
+	}
+
+	@Test
+	public void testFloatAndLocalizable()
+	{
+		final BarnesHutThinplateSplineTransform transform = new BarnesHutThinplateSplineTransform( reference.landmarks, reference.weights, null, null, 1e-3, 8 );
+		final double[] x = { 12.5, 60.25, 33 };
+		final double[] y = new double[ 3 ];
+		transform.apply( x, y );
+
+		final float[] xf = { 12.5f, 60.25f, 33f };
+		final float[] yf = new float[ 3 ];
+		transform.apply( xf, yf );
+		for ( int d = 0; d < 3; ++d )
+			assertEquals( y[ d ], yf[ d ], 1e-3 );
+
+		final net.imglib2.RealPoint p = new net.imglib2.RealPoint( x );
+		transform.apply( p, p );
+		for ( int d = 0; d < 3; ++d )
+			assertEquals( y[ d ], p.getDoublePosition( d ), 1e-12 );
+	}
+}
@@ -0,0 +1,118 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.type.numeric.real.DoubleType;
+
+public class BlockResamplerTest
+{
+	private static final double EPS = 1e-9;
+
+	private static void assertResampled( final InvertibleRealTransform transformFromSource, final int[] blockSize ) throws Exception
+	{
+		assertResampled( transformFromSource, blockSize, 0 );
+	}
+
+	/**
+	 * @param numTasks the number of tasks, 0 for the default
+	 */
+	private static void assertResampled( final InvertibleRealTransform transformFromSource, final int[] blockSize, final int numTasks ) throws Exception
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final double[] p = new double[ 2 ];
+			final double[] q = new double[ 2 ];
+			for ( int d = 0; d < 2; ++d )
+			{
+				final ArrayImg< DoubleType, DoubleArray > target = ArrayImgs.doubles( 37, 23 );
+				final FinalInterval interval = new FinalInterval( new long[] { 1, 2 }, new long[] { 35, 22 } );
+				if ( blockSize == null )
+					RealViews.resample( new RealPositionRealRandomAccessible( 2, d ), transformFromSource, interval, target, service );
+				else if ( numTasks == 0 )
+					BlockResampler.resample(
+							RealViews.transform( new RealPositionRealRandomAccessible( 2, d ), transformFromSource ),
+							interval,
+							target,
+							blockSize,
+							service );
+				else
+					BlockResampler.resample(
+							RealViews.transform( new RealPositionRealRandomAccessible( 2, d ), transformFromSource ),
+							interval,
+							target,
+							blockSize,
+							service,
+							numTasks );
+
+				final Cursor< DoubleType > c = target.localizingCursor();
+				while ( c.hasNext() )
+				{
+					c.fwd();
+					c.localize( p );
+					if ( p[ 0 ] < 1 || p[ 0 ] > 35 || p[ 1 ] < 2 )
+						assertEquals( 0, c.get().get(), 0 );
+					else
+					{
+						transformFromSource.applyInverse( q, p );
+						assertEquals( q[ d ], c.get().get(), EPS );
+					}
+				}
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testAffine() throws Exception
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+		assertResampled( affine, null );
+		assertResampled( affine, new int[] { 8, 5 } );
+		assertResampled( affine, new int[] { 8, 5 }, 1 );
+		assertResampled( affine, new int[] { 8, 5 }, 16 );
+	}
+
+	@Test
+	public void testInvalidBlockSize() throws Exception
+	{
+		try
+		{
+			BlockResampler.resample(
+					RealViews.transform( new RealPositionRealRandomAccessible( 2, 0 ), new AffineTransform2D() ),
+					new FinalInterval( 10, 10 ),
+					ArrayImgs.doubles( 10, 10 ),
+					new int[] { 8, 0 },
+					null );
+			fail( "Empty block accepted." );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+	}
+
+	@Test
+	public void testSequence() throws Exception
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+		final InvertibleRealTransformSequence sequence = new InvertibleRealTransformSequence();
+		sequence.add( affine );
+		sequence.add( new Scale2D( 0.5, 2 ) );
+		assertResampled( sequence, null );
+		assertResampled( sequence, new int[] { 4, 7 } );
+	}
+}
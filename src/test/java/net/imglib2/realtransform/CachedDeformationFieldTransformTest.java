@@ -0,0 +1,153 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class CachedDeformationFieldTransformTest
+{
+	private static final double EPS = 1e-9;
+
+	private static AffineTransform2D affine()
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+		return affine;
+	}
+
+	@Test
+	public void testAffine()
+	{
+		/* offsets of an affine are linear, i.e. interpolation is exact */
+		final AffineTransform2D affine = affine();
+		final CachedDeformationFieldTransform cached = new CachedDeformationFieldTransform( affine, 2.5, 1.5 );
+
+		final Random rnd = new Random( 0 );
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			p[ 0 ] = 400 * rnd.nextDouble() - 200;
+			p[ 1 ] = 400 * rnd.nextDouble() - 200;
+			affine.apply( p, r );
+			cached.apply( p, q );
+			assertArrayEquals( r, q, EPS );
+		}
+	}
+
+	@Test
+	public void testApproximation()
+	{
+		final PolarToCartesianTransform2D polar = new PolarToCartesianTransform2D();
+		final CachedDeformationFieldTransform cached = new CachedDeformationFieldTransform(
+				polar,
+				new double[] { 0, -4 },
+				new double[] { 0.5, 0.01 },
+				new int[] { 16, 16 },
+				1 << 20 );
+
+		final double[] p = new double[] { 10.3, 0.77 };
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		polar.apply( p, r );
+		cached.apply( p, q );
+
+		/* interpolation error of a grid with 0.01 rad spacing at radius 10 */
+		assertArrayEquals( r, q, 1e-3 );
+	}
+
+	@Test
+	public void testCacheBudget()
+	{
+		/* 5x5 nodes with 2 doubles each, 400 bytes per block */
+		final CachedDeformationFieldTransform cached = new CachedDeformationFieldTransform(
+				affine(),
+				new double[ 2 ],
+				new double[] { 1, 1 },
+				new int[] { 4, 4 },
+				3 * 400 );
+
+		final double[] q = new double[ 2 ];
+		for ( int i = 0; i < 10; ++i )
+			cached.apply( new double[] { 4 * i + 1.5, 1.5 }, q );
+
+		assertEquals( 3, cached.numCachedBlocks() );
+	}
+
+	@Test
+	public void testBlockBoundary()
+	{
+		final AffineTransform2D affine = affine();
+		final CachedDeformationFieldTransform cached = new CachedDeformationFieldTransform(
+				affine,
+				new double[ 2 ],
+				new double[] { 1, 1 },
+				new int[] { 4, 4 },
+				1 << 20 );
+
+		/* all four neighbors of a point in the last cell of a block are in that block */
+		final double[] p = new double[] { 3.5, 3.25 };
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		cached.apply( p, q );
+		affine.apply( p, r );
+		assertArrayEquals( r, q, EPS );
+		assertEquals( 1, cached.numCachedBlocks() );
+
+		p[ 0 ] = 4.5;
+		cached.apply( p, q );
+		affine.apply( p, r );
+		assertArrayEquals( r, q, EPS );
+		assertEquals( 2, cached.numCachedBlocks() );
+	}
+
+	@Test
+	public void testConcurrentCopies() throws Exception
+	{
+		final AffineTransform2D affine = affine();
+		final CachedDeformationFieldTransform cached = new CachedDeformationFieldTransform( affine, 1, 1 );
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final List< Future< Boolean > > futures = new ArrayList<>();
+			for ( int t = 0; t < 8; ++t )
+			{
+				final CachedDeformationFieldTransform copy = cached.copy();
+				final long seed = t;
+				futures.add( service.submit( () -> {
+					final Random rnd = new Random( seed );
+					final double[] p = new double[ 2 ];
+					final double[] q = new double[ 2 ];
+					final double[] r = new double[ 2 ];
+					for ( int i = 0; i < 10000; ++i )
+					{
+						p[ 0 ] = 200 * rnd.nextDouble();
+						p[ 1 ] = 200 * rnd.nextDouble();
+						copy.apply( p, q );
+						affine.apply( p, r );
+						if ( Math.abs( q[ 0 ] - r[ 0 ] ) > EPS || Math.abs( q[ 1 ] - r[ 1 ] ) > EPS )
+							return false;
+					}
+					return true;
+				} ) );
+			}
+			for ( final Future< Boolean > future : futures )
+				assertTrue( future.get() );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+
+		/* 200x200 nodes in blocks of 32x32, shared by all copies */
+		assertEquals( 49, cached.numCachedBlocks() );
+	}
+}
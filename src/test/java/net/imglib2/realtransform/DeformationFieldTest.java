@@ -33,6 +33,10 @@
  */
 package net.imglib2.realtransform;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -201,6 +205,102 @@ public class DeformationFieldTest
 		Assert.assertArrayEquals( p, q, EPS );
 	}
 
+	@Test
+	public void testPrecomputedInverse() throws InterruptedException, ExecutionException
+	{
+		final InvertibleDeformationFieldTransform< FloatType > dfieldGradInv = new InvertibleDeformationFieldTransform<>( defgrad );
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		final double residual = dfieldGradInv.precomputeInverse( new FinalInterval( 11, 11 ), 100, EPS / 2, service );
+		service.shutdown();
+
+		Assert.assertTrue( dfieldGradInv.hasPrecomputedInverse() );
+		Assert.assertTrue( residual < EPS / 2 );
+		Assert.assertEquals( residual, dfieldGradInv.getInverseResidual(), 0 );
+
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		final InvertibleDeformationFieldTransform< FloatType > copy = dfieldGradInv.copy();
+		for ( double y = 0; y <= 10; y += 0.7 )
+			for ( double x = 0; x <= 5; x += 0.3 )
+			{
+				p[ 0 ] = x;
+				p[ 1 ] = y;
+				dfieldGradInv.apply( p, q );
+				dfieldGradInv.applyInverse( r, q );
+				Assert.assertArrayEquals( p, r, EPS );
+
+				copy.applyInverse( r, q );
+				Assert.assertArrayEquals( p, r, EPS );
+			}
+	}
+
+	@Test
+	public void testPrecomputedInverseInCallingThread() throws InterruptedException, ExecutionException
+	{
+		final InvertibleDeformationFieldTransform< FloatType > inline = new InvertibleDeformationFieldTransform<>( defgrad );
+		final double residual = inline.precomputeInverse( new FinalInterval( 11, 11 ), 100, EPS / 2, null );
+		Assert.assertTrue( inline.hasPrecomputedInverse() );
+
+		final InvertibleDeformationFieldTransform< FloatType > parallel = new InvertibleDeformationFieldTransform<>( defgrad );
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		Assert.assertEquals( residual, parallel.precomputeInverse( new FinalInterval( 11, 11 ), 100, EPS / 2, service ), 0 );
+		service.shutdown();
+
+		final double[] q = new double[] { 7.3, 4.1 };
+		final double[] r = new double[ 2 ];
+		final double[] s = new double[ 2 ];
+		inline.applyInverse( r, q );
+		parallel.applyInverse( s, q );
+		Assert.assertArrayEquals( r, s, 0 );
+	}
+
+	@Test
+	public void testVectorField()
+	{
+		final ArrayImg< FloatType, ? > interleaved = ArrayImgs.floats( 2, 11, 11 );
+		final ArrayImg< FloatType, ? > planar = ArrayImgs.floats( 11, 11, 2 );
+		final Cursor< FloatType > c = interleaved.localizingCursor();
+		final RandomAccess< FloatType > ra = planar.randomAccess();
+		while( c.hasNext() )
+		{
+			c.fwd();
+			final int d = c.getIntPosition( 0 );
+			final float v = d == 0 ? 0.5f * c.getFloatPosition( 1 ) - 0.25f * c.getFloatPosition( 2 ) : c.getFloatPosition( 1 ) * c.getFloatPosition( 2 ) / 10;
+			c.get().set( v );
+			ra.setPosition( new int[]{ c.getIntPosition( 1 ), c.getIntPosition( 2 ), d } );
+			ra.get().set( v );
+		}
+
+		final DeformationFieldTransform< FloatType > components = new DeformationFieldTransform<>(
+				Views.hyperSlice( planar, 2, 0 ),
+				Views.hyperSlice( planar, 2, 1 ) );
+		final DeformationFieldTransform< FloatType > vectorFirst = new DeformationFieldTransform<>( interleaved, 0 );
+		final DeformationFieldTransform< FloatType > vectorLast = new DeformationFieldTransform<>( planar, 2 );
+		final PositionFieldTransform< FloatType > positions = new PositionFieldTransform<>( interleaved, 0 );
+
+		Assert.assertEquals( 2, vectorFirst.numSourceDimensions() );
+		Assert.assertEquals( 2, vectorLast.numTargetDimensions() );
+
+		final double[][] points = new double[][]{ { 3.3, 4.7 }, { 0, 10 }, { -2, 5.5 }, { 12.5, 3.25 } };
+		final double[] expected = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		for( final double[] p : points )
+		{
+			components.apply( p, expected );
+
+			vectorFirst.apply( p, q );
+			Assert.assertArrayEquals( expected, q, EPS );
+
+			vectorLast.copy().apply( p, q );
+			Assert.assertArrayEquals( expected, q, EPS );
+
+			positions.apply( p, q );
+			for( int d = 0; d < 2; ++d )
+				Assert.assertEquals( expected[ d ] - p[ d ], q[ d ], EPS );
+		}
+	}
+
 	@Before
 	public void setUp()
 	{
@@ -0,0 +1,157 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FlatThinplateSplineTransformTest
+{
+	/* not a multiple of the block size */
+	private static final int N = 1001;
+
+	private final ThinplateSplineReference reference = new ThinplateSplineReference( N, 1 );
+
+	@Test
+	public void testApply()
+	{
+		final FlatThinplateSplineTransform transform = new FlatThinplateSplineTransform( reference.landmarks, reference.weights, reference.affine, reference.translation );
+		final Random rnd = new Random( 2 );
+		final double[] x = new double[ 3 ];
+		final double[] y = new double[ 3 ];
+		final double[] z = new double[ 3 ];
+		for ( int i = 0; i < 100; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = 150 * rnd.nextDouble() - 25;
+			transform.apply( x, y );
+			reference.apply( x, z );
+			assertArrayEquals( z, y, 1e-9 );
+
+			transform.copy().apply( x, x );
+			assertArrayEquals( z, x, 1e-9 );
+		}
+
+		for ( int l = 0; l < N; l += 97 )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = reference.landmarks[ d ][ l ];
+			transform.apply( x, y );
+			reference.apply( x, z );
+			assertArrayEquals( z, y, 1e-9 );
+		}
+	}
+
+	@Test
+	public void testBatches()
+	{
+		final FlatThinplateSplineTransform transform = new FlatThinplateSplineTransform( reference.landmarks, reference.weights, reference.affine, reference.translation );
+		final Random rnd = new Random( 3 );
+		final int count = 20;
+		final double[] interleaved = new double[ 3 * ( count + 1 ) ];
+		final double[][] soa = new double[ 3 ][ count + 1 ];
+		for ( int i = 0; i < interleaved.length; ++i )
+		{
+			interleaved[ i ] = 100 * rnd.nextDouble();
+			soa[ i % 3 ][ i / 3 ] = interleaved[ i ];
+		}
+		final double[] expected = new double[ 3 * ( count + 1 ) ];
+		final double[] x = new double[ 3 ];
+		final double[] y = new double[ 3 ];
+		for ( int i = 1; i <= count; ++i )
+		{
+			System.arraycopy( interleaved, 3 * i, x, 0, 3 );
+			reference.apply( x, y );
+			System.arraycopy( y, 0, expected, 3 * i, 3 );
+		}
+
+		transform.apply( interleaved, interleaved, 1, count );
+		transform.apply( soa, soa, 1, count );
+		for ( int i = 3; i < expected.length; ++i )
+		{
+			assertEquals( expected[ i ], interleaved[ i ], 1e-9 );
+			assertEquals( expected[ i ], soa[ i % 3 ][ i / 3 ], 1e-9 );
+		}
+	}
+
+	@Test
+	public void testJacobian()
+	{
+		final FlatThinplateSplineTransform transform = new FlatThinplateSplineTransform( reference.landmarks, reference.weights, reference.affine, reference.translation );
+		final double[] x = { 31.5, 47.25, 80 };
+		final double[][] jacobian = new double[ 3 ][ 4 ];
+		transform.jacobian( x, jacobian );
+
+		final double h = 1e-5;
+		final double[] xp = new double[ 3 ];
+		final double[] yp = new double[ 3 ];
+		final double[] ym = new double[ 3 ];
+		for ( int j = 0; j < 3; ++j )
+		{
+			System.arraycopy( x, 0, xp, 0, 3 );
+			xp[ j ] += h;
+			reference.apply( xp, yp );
+			xp[ j ] -= 2 * h;
+			reference.apply( xp, ym );
+			for ( int i = 0; i < 3; ++i )
+				assertEquals( ( yp[ i ] - ym[ i ] ) / ( 2 * h ), jacobian[ i ][ j ], 1e-6 );
+		}
+	}
+
+	private static void assertEquivalent( final ThinplateSplineTransform expected, final FlatThinplateSplineTransform transform )
+	{
+		final Random rnd = new Random( 5 );
+		final double[] x = new double[ 3 ];
+		final double[] y = new double[ 3 ];
+		final double[] z = new double[ 3 ];
+		final double[][] jacobian = new double[ 3 ][ 4 ];
+		final double[][] expectedJacobian = new double[ 3 ][ 4 ];
+		for ( int i = 0; i < 100; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = 150 * rnd.nextDouble() - 25;
+			expected.apply( x, z );
+			transform.apply( x, y );
+			assertArrayEquals( z, y, 1e-8 );
+
+			expected.jacobian( x, expectedJacobian );
+			transform.jacobian( x, jacobian );
+			for ( int r = 0; r < 3; ++r )
+				for ( int c = 0; c < 3; ++c )
+					assertEquals( expectedJacobian[ r ][ c ], jacobian[ r ][ c ], 1e-8 );
+		}
+	}
+
+	@Test
+	public void testEquivalence()
+	{
+		final Random rnd = new Random( 4 );
+		final int numLandmarks = 50;
+		final double[][] p = new double[ 3 ][ numLandmarks ];
+		final double[][] q = new double[ 3 ][ numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < 3; ++d )
+			{
+				p[ d ][ l ] = 100 * rnd.nextDouble();
+				q[ d ][ l ] = p[ d ][ l ] + 10 * ( rnd.nextDouble() - 0.5 );
+			}
+
+		final ThinplateSplineTransform tps = new ThinplateSplineTransform( p, q );
+		final FlatThinplateSplineTransform fromTps = new FlatThinplateSplineTransform( tps );
+		final FlatThinplateSplineTransform fromLandmarks = new FlatThinplateSplineTransform( p, q );
+		assertEquivalent( tps, fromTps );
+		assertEquivalent( tps, fromLandmarks );
+
+		final double[] x = new double[ 3 ];
+		final double[] y = new double[ 3 ];
+		for ( int l = 0; l < numLandmarks; ++l )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = p[ d ][ l ];
+			fromLandmarks.apply( x, y );
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( q[ d ][ l ], y[ d ], 1e-6 );
+		}
+	}
+}
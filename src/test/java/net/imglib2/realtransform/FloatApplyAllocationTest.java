@@ -0,0 +1,223 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.realtransform.inverse.InverseRealTransformBroyden;
+import net.imglib2.realtransform.inverse.InverseRealTransformNewton;
+import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Makes sure that applying transforms to float vectors does not create
+ * garbage.
+ */
+public class FloatApplyAllocationTest
+{
+	private static final int WARMUP = 10000;
+
+	private static final int CALLS = 100000;
+
+	private com.sun.management.ThreadMXBean bean;
+
+	@Before
+	public void setUp()
+	{
+		final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue( threadBean instanceof com.sun.management.ThreadMXBean );
+
+		bean = ( com.sun.management.ThreadMXBean ) threadBean;
+		Assume.assumeTrue( bean.isThreadAllocatedMemorySupported() );
+		bean.setThreadAllocatedMemoryEnabled( true );
+	}
+
+	private long allocatedBytes( final RealTransform transform, final float[] p, final float[] q )
+	{
+		final long id = Thread.currentThread().getId();
+		for ( int i = 0; i < WARMUP; ++i )
+			transform.apply( p, q );
+
+		final long before = bean.getThreadAllocatedBytes( id );
+		for ( int i = 0; i < CALLS; ++i )
+			transform.apply( p, q );
+
+		return bean.getThreadAllocatedBytes( id ) - before;
+	}
+
+	private long allocatedInverseBytes( final InvertibleRealTransform transform, final float[] p, final float[] q )
+	{
+		final long id = Thread.currentThread().getId();
+		for ( int i = 0; i < WARMUP; ++i )
+			transform.applyInverse( p, q );
+
+		final long before = bean.getThreadAllocatedBytes( id );
+		for ( int i = 0; i < CALLS; ++i )
+			transform.applyInverse( p, q );
+
+		return bean.getThreadAllocatedBytes( id ) - before;
+	}
+
+	private void assertNoAllocation( final RealTransform transform )
+	{
+		final int n = Math.max( transform.numSourceDimensions(), transform.numTargetDimensions() );
+		final float[] p = new float[ n ];
+		final float[] q = new float[ n ];
+		for ( int d = 0; d < n; ++d )
+			p[ d ] = d + 1;
+
+		/* less than one byte per call, i.e. nothing but measurement noise */
+		assertTrue( transform.getClass().getSimpleName() + " apply allocates", allocatedBytes( transform, p, q ) < CALLS );
+
+		if ( transform instanceof InvertibleRealTransform )
+			assertTrue( transform.getClass().getSimpleName() + " applyInverse allocates", allocatedInverseBytes( ( InvertibleRealTransform ) transform, p, q ) < CALLS );
+	}
+
+	private static AffineTransform3D affine3D()
+	{
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.scale( 0.3 );
+		affine.setTranslation( 5, -5, 0 );
+		affine.rotate( 0, 0.1 );
+		affine.rotate( 1, 0.2 );
+		return affine;
+	}
+
+	/**
+	 * A smooth 2d deformation field over [0, 10]<sup>2</sup>, interleaved
+	 * with the vector as the first axis.
+	 */
+	private static ArrayImg< FloatType, ? > field()
+	{
+		final ArrayImg< FloatType, ? > field = ArrayImgs.floats( 2, 11, 11 );
+		final Cursor< FloatType > c = field.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final float x = c.getFloatPosition( 1 );
+			final float y = c.getFloatPosition( 2 );
+			c.get().set( c.getIntPosition( 0 ) == 0 ? 0.1f * y + 0.5f : 0.01f * x * y );
+		}
+		return field;
+	}
+
+	@Test
+	public void testAffine()
+	{
+		assertNoAllocation( affine3D() );
+
+		final AffineTransform2D affine2D = new AffineTransform2D();
+		affine2D.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+		assertNoAllocation( affine2D );
+
+		final AffineTransform affine = new AffineTransform( 3 );
+		affine.set( affine3D().getRowPackedCopy() );
+		assertNoAllocation( affine );
+	}
+
+	@Test
+	public void testScaleAndTranslation()
+	{
+		assertNoAllocation( new Scale( 1, 2, 3, 4 ) );
+		assertNoAllocation( new Scale3D( 1, 2, 3 ) );
+		assertNoAllocation( new Translation( 1, 2, 3, 4 ) );
+		assertNoAllocation( new Translation3D( 1, 2, 3 ) );
+		assertNoAllocation( new ScaleAndTranslation( new double[] { 1, 2, 3 }, new double[] { 4, 5, 6 } ) );
+	}
+
+	@Test
+	public void testWrappers()
+	{
+		final InvertibleRealTransformSequence sequence = new InvertibleRealTransformSequence();
+		sequence.add( affine3D() );
+		sequence.add( new Scale3D( 1, 2, 3 ) );
+		sequence.add( new Translation3D( 1, 2, 3 ) );
+		assertNoAllocation( sequence );
+		assertNoAllocation( sequence.inverse() );
+
+		final AffineTransform3D affine = affine3D();
+		assertNoAllocation( new ExplicitInvertibleRealTransform( affine, affine.inverse() ) );
+
+		final PolynomialTransform2D polynomial = new PolynomialTransform2D();
+		polynomial.set( 1, 0.1, 0.2, 0.01, 0.02, 0.03, 2, 0.3, 0.4, 0.04, 0.05, 0.06 );
+		assertNoAllocation( polynomial );
+	}
+
+	@Test
+	public void testIterativeInverse()
+	{
+		final PolynomialTransform2D polynomial = new PolynomialTransform2D();
+		polynomial.set( 1, 1.1, 0.2, 0.01, 0.02, 0.03, 2, 0.1, 0.9, 0.04, 0.05, 0.06 );
+
+		final WrappedIterativeInvertibleRealTransform< PolynomialTransform2D > gradientDescent = new WrappedIterativeInvertibleRealTransform<>( polynomial );
+		gradientDescent.getSolver().setTolerance( 1e-6 );
+		assertNoAllocation( gradientDescent );
+		assertNoAllocation( new WrappedIterativeInvertibleRealTransform<>( polynomial, InverseRealTransformNewton::new ) );
+		assertNoAllocation( new WrappedIterativeInvertibleRealTransform<>( polynomial, InverseRealTransformBroyden::new ) );
+	}
+
+	@Test
+	public void testThinplateSpline()
+	{
+		final double[][] p = new double[][] { { 0, 10, 0, 10, 5 }, { 0, 0, 10, 10, 5 } };
+		final double[][] q = new double[][] { { 1, 11, 0, 10, 6 }, { 0, 1, 10, 11, 4 } };
+		assertNoAllocation( new ThinplateSplineTransform( p, q ) );
+		assertNoAllocation( new FlatThinplateSplineTransform( p, q ) );
+	}
+
+	@Test
+	public void testPerspective()
+	{
+		final HomographyTransform2D homography = new HomographyTransform2D();
+		homography.set( 1.1, 0.1, 3, -0.2, 0.9, 4, 0.001, 0.002, 1 );
+		assertNoAllocation( homography );
+
+		assertNoAllocation( Perspective3D.getInstance() );
+		assertNoAllocation( InversePerspective3D.getInstance() );
+	}
+
+	@Test
+	public void testPolarAndSpherical()
+	{
+		assertNoAllocation( new PolarToCartesianTransform2D() );
+		assertNoAllocation( new ScaledPolarToTranslatedCartesianTransform2D( 1, 2, 0.5, 0.1 ) );
+		assertNoAllocation( SphericalToCartesianTransform3D.getInstance() );
+	}
+
+	@Test
+	public void testFields()
+	{
+		final ArrayImg< FloatType, ? > field = field();
+		assertNoAllocation( new DeformationFieldTransform<>( field, 0 ) );
+		assertNoAllocation( new PositionFieldTransform<>( field, 0 ) );
+		assertNoAllocation( new DeformationFieldTransform<>(
+				Views.hyperSlice( field, 0, 0 ),
+				Views.hyperSlice( field, 0, 1 ) ) );
+	}
+
+	@Test
+	public void testInvertibleDeformationField() throws InterruptedException, ExecutionException
+	{
+		final InvertibleDeformationFieldTransform< FloatType > iterative = new InvertibleDeformationFieldTransform<>( new DeformationFieldTransform<>( field(), 0 ) );
+		assertNoAllocation( iterative );
+
+		final InvertibleDeformationFieldTransform< FloatType > precomputed = new InvertibleDeformationFieldTransform<>( new DeformationFieldTransform<>( field(), 0 ) );
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		precomputed.precomputeInverse( new FinalInterval( 11, 11 ), service );
+		service.shutdown();
+		assertNoAllocation( precomputed );
+	}
+}
@@ -0,0 +1,155 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+public class InterleavedDeformationFieldTest
+{
+	private static final double EPS = 1e-9;
+
+	private static final long[] DIMENSIONS = { 5, 4, 3 };
+
+	private static final long[] MIN = { -2, 1, 0 };
+
+	/* offsets that are linear in the position, i.e. exactly represented by
+	 * n-linear interpolation */
+	private static double offset( final double[] x, final int d )
+	{
+		return 0.5 * x[ 0 ] - 0.25 * x[ 1 ] + 0.1 * ( d + 1 ) * x[ 2 ] + d;
+	}
+
+	private static double[] field()
+	{
+		final double[] field = new double[ 3 * 5 * 4 * 3 ];
+		final double[] x = new double[ 3 ];
+		int i = 0;
+		for ( int z = 0; z < DIMENSIONS[ 2 ]; ++z )
+			for ( int y = 0; y < DIMENSIONS[ 1 ]; ++y )
+				for ( int xx = 0; xx < DIMENSIONS[ 0 ]; ++xx )
+				{
+					x[ 0 ] = xx + MIN[ 0 ];
+					x[ 1 ] = y + MIN[ 1 ];
+					x[ 2 ] = z + MIN[ 2 ];
+					for ( int d = 0; d < 3; ++d )
+						field[ i++ ] = offset( x, d );
+				}
+		return field;
+	}
+
+	private static void assertField( final RealTransform transform )
+	{
+		final double[][] points = {
+				{ -1.5, 1.25, 0.5 },
+				{ 0.3, 2.7, 1.9 },
+				{ 2, 4, 2 },
+				{ -5, 0, 1.5 },
+				{ 7, 10, -3 } };
+		final double[] q = new double[ 3 ];
+		final double[] clamped = new double[ 3 ];
+		final float[] pf = new float[ 3 ];
+		final float[] qf = new float[ 3 ];
+		for ( final double[] p : points )
+		{
+			for ( int d = 0; d < 3; ++d )
+				clamped[ d ] = Math.max( MIN[ d ], Math.min( MIN[ d ] + DIMENSIONS[ d ] - 1, p[ d ] ) );
+
+			transform.apply( p, q );
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( p[ d ] + offset( clamped, d ), q[ d ], EPS );
+
+			for ( int d = 0; d < 3; ++d )
+				pf[ d ] = ( float )p[ d ];
+			transform.apply( pf, qf );
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( p[ d ] + offset( clamped, d ), qf[ d ], 1e-5 );
+
+			final double[] inPlace = p.clone();
+			transform.apply( inPlace, inPlace );
+			assertArrayEquals( q, inPlace, EPS );
+		}
+	}
+
+	@Test
+	public void testDouble()
+	{
+		final FinalInterval interval = new FinalInterval( MIN, new long[] { 2, 4, 2 } );
+		final DoubleInterleavedDeformationFieldTransform transform = new DoubleInterleavedDeformationFieldTransform( field(), interval );
+		assertField( transform );
+		assertField( transform.copy() );
+	}
+
+	@Test
+	public void testFloat()
+	{
+		final double[] field = field();
+		final float[] floatField = new float[ field.length ];
+		for ( int i = 0; i < field.length; ++i )
+			floatField[ i ] = ( float )field[ i ];
+
+		final FinalInterval interval = new FinalInterval( MIN, new long[] { 2, 4, 2 } );
+		final FloatInterleavedDeformationFieldTransform transform = new FloatInterleavedDeformationFieldTransform( floatField, interval );
+
+		final double[] p = { 0.3, 2.7, 1.9 };
+		final double[] q = new double[ 3 ];
+		transform.apply( p, q );
+		for ( int d = 0; d < 3; ++d )
+			assertEquals( p[ d ] + offset( p, d ), q[ d ], 1e-5 );
+	}
+
+	@Test
+	public void testQuantized()
+	{
+		final FinalInterval interval = new FinalInterval( MIN, new long[] { 2, 4, 2 } );
+		final DoubleInterleavedDeformationFieldTransform reference = new DoubleInterleavedDeformationFieldTransform( field(), interval );
+		final QuantizedInterleavedDeformationFieldTransform quantized = QuantizedInterleavedDeformationFieldTransform.quantize( reference );
+
+		/* all components span less than 8, i.e. the error is below 8 / 2^17 */
+		final double[][] points = { { -1.5, 1.25, 0.5 }, { 0.3, 2.7, 1.9 }, { 7, 10, -3 } };
+		final double[] q = new double[ 3 ];
+		final double[] r = new double[ 3 ];
+		for ( final double[] p : points )
+		{
+			reference.apply( p, r );
+			quantized.apply( p, q );
+			assertArrayEquals( r, q, 8.0 / ( 1 << 17 ) );
+			quantized.copy().apply( p, q );
+			assertArrayEquals( r, q, 8.0 / ( 1 << 17 ) );
+		}
+	}
+
+	@Test
+	public void testSingletonDimension()
+	{
+		final double[] field = { 1, 2, 3, 4 };
+		final DoubleInterleavedDeformationFieldTransform transform = new DoubleInterleavedDeformationFieldTransform( field, 2, 1 );
+		final double[] q = new double[ 2 ];
+		transform.apply( new double[] { 0.5, 3 }, q );
+		assertArrayEquals( new double[] { 2.5, 6 }, q, EPS );
+	}
+
+	@Test
+	public void testCopyOf()
+	{
+		final ArrayImg< DoubleType, DoubleArray > field = ArrayImgs.doubles( field(), 3, 5, 4, 3 );
+		final DoubleInterleavedDeformationFieldTransform copy = DoubleInterleavedDeformationFieldTransform.copyOf(
+				Views.hyperSlice( field, 0, 0 ),
+				Views.hyperSlice( field, 0, 1 ),
+				Views.hyperSlice( field, 0, 2 ) );
+		final DoubleInterleavedDeformationFieldTransform reference = new DoubleInterleavedDeformationFieldTransform( field(), DIMENSIONS );
+
+		final double[] p = { 0.3, 2.7, 1.9 };
+		final double[] q = new double[ 3 ];
+		final double[] r = new double[ 3 ];
+		copy.apply( p, q );
+		reference.apply( p, r );
+		assertArrayEquals( r, q, EPS );
+	}
+}
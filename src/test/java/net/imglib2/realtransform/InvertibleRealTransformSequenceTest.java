@@ -262,4 +262,34 @@ public class InvertibleRealTransformSequenceTest
 		lCopy.applyInverse( x1, y );
 		Assert.assertArrayEquals( x, x1, 0.001 );
 	}
+
+	@Test
+	public void testFlatten()
+	{
+		/* a1, ( a2, a3 )^-1^-1 as nested sequences */
+		final InvertibleRealTransformSequence inner = new InvertibleRealTransformSequence();
+		inner.add( a3.inverse() );
+		inner.add( a2.inverse() );
+		final InvertibleRealTransformSequence l = new InvertibleRealTransformSequence();
+		l.add( a1 );
+		l.add( inner.inverse() );
+
+		final InvertibleRealTransformSequence flat = InvertibleRealTransformSequence.flatten( l );
+		Assert.assertEquals( 3, flat.transforms.size() );
+		for ( final InvertibleRealTransform t : flat.transforms )
+			Assert.assertFalse( t instanceof InverseRealTransform );
+
+		final double[] y1 = new double[ 3 ];
+		flat.apply( x, y1 );
+		Assert.assertArrayEquals( y, y1, 0.001 );
+
+		final double[] x1 = new double[ 3 ];
+		flat.applyInverse( x1, y );
+		Assert.assertArrayEquals( x, x1, 0.001 );
+
+		/* everything is affine */
+		Assert.assertEquals( 1, l.compile().transforms.size() );
+		l.compile().apply( x, y1 );
+		Assert.assertArrayEquals( y, y1, 0.001 );
+	}
 }
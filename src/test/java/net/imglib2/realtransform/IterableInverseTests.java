@@ -1,12 +1,21 @@
 package net.imglib2.realtransform;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.imglib2.RealLocalizable;
 import net.imglib2.RealPoint;
+import net.imglib2.RealPositionable;
 import net.imglib2.position.FunctionRealRandomAccessible;
+import net.imglib2.realtransform.inverse.AbstractInverseRealTransformSolver;
 import net.imglib2.realtransform.inverse.DifferentiableRealTransform;
+import net.imglib2.realtransform.inverse.InverseRealTransformBroyden;
 import net.imglib2.realtransform.inverse.InverseRealTransformGradientDescent;
+import net.imglib2.realtransform.inverse.InverseRealTransformNewton;
+import net.imglib2.realtransform.inverse.InvertibleTransformByGradientDescent;
+import net.imglib2.realtransform.inverse.IterativeInverseMetrics;
 import net.imglib2.realtransform.inverse.RealTransformFiniteDerivatives;
 import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
 import net.imglib2.type.numeric.real.FloatType;
@@ -254,6 +263,303 @@ public class IterableInverseTests
 		Assert.assertTrue( "tps warp inv pts " + i, almostEqual( xp, yip, MIDEPS ) );
 	}
 
+	/**
+	 * A smooth deformation that counts its applications.
+	 */
+	static class CountingDeformation implements RealTransform
+	{
+		long count = 0;
+
+		@Override
+		public int numSourceDimensions()
+		{
+			return 2;
+		}
+
+		@Override
+		public int numTargetDimensions()
+		{
+			return 2;
+		}
+
+		@Override
+		public void apply( final double[] source, final double[] target )
+		{
+			++count;
+			final double x = source[ 0 ];
+			final double y = source[ 1 ];
+			target[ 0 ] = x + 4 * Math.sin( y / 10 );
+			target[ 1 ] = y + 3 * Math.cos( x / 8 );
+		}
+
+		@Override
+		public void apply( final RealLocalizable source, final RealPositionable target )
+		{
+			final double[] p = new double[ 2 ];
+			source.localize( p );
+			apply( p, p );
+			target.setPosition( p );
+		}
+
+		@Override
+		public RealTransform copy()
+		{
+			return this;
+		}
+	}
+
+	@Test
+	public void testWarmStart()
+	{
+		final CountingDeformation cold = new CountingDeformation();
+		final CountingDeformation warm = new CountingDeformation();
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > coldInv = new WrappedIterativeInvertibleRealTransform<>( cold );
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > warmInv = new WrappedIterativeInvertibleRealTransform<>( warm );
+		coldInv.getSolver().setTolerance( EPS );
+		warmInv.getSolver().setTolerance( EPS );
+		warmInv.setWarmStart( true );
+		Assert.assertTrue( warmInv.isWarmStart() );
+		Assert.assertTrue( warmInv.copy().isWarmStart() );
+
+		final double[] y = new double[ 2 ];
+		final double[] xCold = new double[ 2 ];
+		final double[] xWarm = new double[ 2 ];
+		final double[] yWarm = new double[ 2 ];
+		for ( int j = 0; j < 40; ++j )
+			for ( int i = 0; i < 40; ++i )
+			{
+				y[ 0 ] = i;
+				y[ 1 ] = j;
+				coldInv.applyInverse( xCold, y );
+				warmInv.applyInverse( xWarm, y );
+				Assert.assertArrayEquals( xCold, xWarm, MIDEPS );
+
+				warm.apply( xWarm, yWarm );
+				Assert.assertArrayEquals( y, yWarm, EPS );
+			}
+
+		Assert.assertTrue( "warm " + warm.count + " cold " + cold.count, 4 * warm.count < 3 * cold.count );
+	}
+
+	@Test
+	public void testWarmStartNewton()
+	{
+		final IterativeInverseMetrics coldMetrics = new IterativeInverseMetrics();
+		final IterativeInverseMetrics warmMetrics = new IterativeInverseMetrics();
+		final CountingDeformation deformation = new CountingDeformation();
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > coldInv = new WrappedIterativeInvertibleRealTransform<>( deformation, InverseRealTransformNewton::new );
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > warmInv = new WrappedIterativeInvertibleRealTransform<>( deformation, InverseRealTransformNewton::new );
+		coldInv.getSolver().setTolerance( EPS );
+		warmInv.getSolver().setTolerance( EPS );
+		warmInv.setWarmStart( true );
+		coldInv.setMetrics( coldMetrics );
+		warmInv.setMetrics( warmMetrics );
+
+		final double[] y = new double[ 2 ];
+		final double[] xCold = new double[ 2 ];
+		final double[] xWarm = new double[ 2 ];
+		final double[] yWarm = new double[ 2 ];
+		for ( int j = 0; j < 40; ++j )
+			for ( int i = 0; i < 40; ++i )
+			{
+				y[ 0 ] = i;
+				y[ 1 ] = j;
+				coldInv.applyInverse( xCold, y );
+				warmInv.applyInverse( xWarm, y );
+				Assert.assertArrayEquals( xCold, xWarm, MIDEPS );
+
+				deformation.apply( xWarm, yWarm );
+				Assert.assertArrayEquals( y, yWarm, EPS );
+			}
+
+		/* coherent queries converge in a few Newton steps from the extrapolated guess */
+		Assert.assertEquals( 0, warmMetrics.getNumNotConverged() );
+		Assert.assertTrue( warmMetrics.toString(), warmMetrics.getMeanIterations() <= 3 );
+		Assert.assertTrue( "warm " + warmMetrics + " cold " + coldMetrics, warmMetrics.getMeanIterations() < coldMetrics.getMeanIterations() );
+	}
+
+	@Test
+	public void testCopiesAreIndependent()
+	{
+		final CountingDeformation deformation = new CountingDeformation()
+		{
+			@Override
+			public RealTransform copy()
+			{
+				return new CountingDeformation();
+			}
+		};
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > inverse = new WrappedIterativeInvertibleRealTransform<>( deformation );
+		inverse.getSolver().setTolerance( EPS );
+
+		/* copies for other threads must not share the transform or its scratch */
+		final double[] x = new double[ 2 ];
+		inverse.copy().applyInverse( x, new double[] { 10, 20 } );
+		Assert.assertEquals( 0, deformation.count );
+
+		final double[] y = new double[ 2 ];
+		deformation.apply( x, y );
+		Assert.assertArrayEquals( new double[] { 10, 20 }, y, EPS );
+	}
+
+	@SuppressWarnings( "deprecation" )
+	@Test
+	public void testOptimizer()
+	{
+		final CountingDeformation deformation = new CountingDeformation();
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > gradientDescent = new WrappedIterativeInvertibleRealTransform<>( deformation );
+		Assert.assertSame( gradientDescent.getSolver(), gradientDescent.getOptimzer() );
+
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > newton = new WrappedIterativeInvertibleRealTransform<>( deformation, InverseRealTransformNewton::new );
+		try
+		{
+			newton.getOptimzer();
+			Assert.fail( "Newton solver returned as gradient descent." );
+		}
+		catch ( final UnsupportedOperationException e )
+		{}
+	}
+
+	@Test
+	public void testSolvers()
+	{
+		final CountingDeformation gradientDescent = new CountingDeformation();
+		final CountingDeformation newton = new CountingDeformation();
+		final CountingDeformation broyden = new CountingDeformation();
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > gradientDescentInv = new WrappedIterativeInvertibleRealTransform<>( gradientDescent );
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > newtonInv = new WrappedIterativeInvertibleRealTransform<>( newton, InverseRealTransformNewton::new );
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > broydenInv = new WrappedIterativeInvertibleRealTransform<>( broyden, InverseRealTransformBroyden::new );
+		gradientDescentInv.getSolver().setTolerance( EPS );
+		newtonInv.getSolver().setTolerance( EPS );
+		broydenInv.getSolver().setTolerance( EPS );
+
+		final double[] y = new double[ 2 ];
+		final double[] x = new double[ 2 ];
+		final double[] yNewton = new double[ 2 ];
+		final double[] xNewton = new double[ 2 ];
+		final double[] xBroyden = new double[ 2 ];
+		for ( int j = 0; j < 40; ++j )
+			for ( int i = 0; i < 40; ++i )
+			{
+				y[ 0 ] = i;
+				y[ 1 ] = j;
+				gradientDescentInv.applyInverse( x, y );
+				newtonInv.applyInverse( xNewton, y );
+				broydenInv.copy().applyInverse( xBroyden, y );
+				Assert.assertArrayEquals( x, xNewton, MIDEPS );
+				Assert.assertArrayEquals( x, xBroyden, MIDEPS );
+
+				newton.apply( xNewton, yNewton );
+				Assert.assertArrayEquals( y, yNewton, EPS );
+			}
+
+		Assert.assertTrue( "newton " + newton.count + " gradient descent " + gradientDescent.count, 3 * newton.count < gradientDescent.count );
+		Assert.assertTrue( "broyden " + broyden.count + " gradient descent " + gradientDescent.count, 3 * broyden.count < gradientDescent.count );
+	}
+
+	@Test
+	public void testMetrics() throws InterruptedException
+	{
+		final IterativeInverseMetrics metrics = new IterativeInverseMetrics();
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > inv = new WrappedIterativeInvertibleRealTransform<>( new CountingDeformation(), InverseRealTransformNewton::new );
+		inv.getSolver().setTolerance( EPS );
+		inv.setMetrics( metrics );
+
+		/* copies in other threads record into the same metrics */
+		final Thread[] threads = new Thread[ 4 ];
+		for ( int t = 0; t < threads.length; ++t )
+		{
+			final WrappedIterativeInvertibleRealTransform< CountingDeformation > copy = inv.copy();
+			final int j0 = 10 * t;
+			threads[ t ] = new Thread( () -> {
+				final double[] x = new double[ 2 ];
+				for ( int j = j0; j < j0 + 10; ++j )
+					for ( int i = 0; i < 40; ++i )
+						copy.applyInverse( x, new double[] { i, j } );
+			} );
+			threads[ t ].start();
+		}
+		for ( final Thread thread : threads )
+			thread.join();
+
+		Assert.assertEquals( 1600, metrics.getNumQueries() );
+		Assert.assertEquals( 0, metrics.getNumNotConverged() );
+		Assert.assertTrue( metrics.getMaxError() < EPS );
+		Assert.assertTrue( metrics.getNumLineSearchTries() >= metrics.getNumIterations() );
+		Assert.assertEquals( 1600, Arrays.stream( metrics.getIterationHistogram() ).sum() );
+		Assert.assertEquals( 1600, Arrays.stream( metrics.getErrorHistogram() ).sum() );
+		Assert.assertEquals( 0, metrics.getErrorHistogram()[ IterativeInverseMetrics.errorBin( EPS ) + 1 ] );
+
+		/* a single gradient descent step does not converge */
+		final WrappedIterativeInvertibleRealTransform< CountingDeformation > gradientDescent = new WrappedIterativeInvertibleRealTransform<>( new CountingDeformation() );
+		gradientDescent.getSolver().setTolerance( EPS );
+		gradientDescent.getSolver().setMaxIters( 1 );
+		gradientDescent.setMetrics( metrics );
+		metrics.reset();
+		gradientDescent.applyInverse( new double[ 2 ], new double[] { 20, 20 } );
+		Assert.assertEquals( 1, metrics.getNumQueries() );
+		Assert.assertEquals( 1, metrics.getNumNotConverged() );
+		Assert.assertEquals( 1, metrics.getIterationHistogram()[ 1 ] );
+	}
+
+	static class ThreadCountingMetrics extends IterativeInverseMetrics
+	{
+		synchronized int numThreadCounters()
+		{
+			return allCounters.size();
+		}
+	}
+
+	@Test
+	public void testMetricsOfTerminatedThreads() throws InterruptedException
+	{
+		final ThreadCountingMetrics metrics = new ThreadCountingMetrics();
+		Assert.assertEquals( 0, metrics.getMeanIterations(), 0 );
+		Assert.assertFalse( metrics.toString().contains( "NaN" ) );
+
+		/* threads that come and go are folded into one aggregate */
+		for ( int t = 0; t < 100; ++t )
+		{
+			final Thread thread = new Thread( () -> metrics.record( 2, 3, EPS / 2, true ) );
+			thread.start();
+			thread.join();
+		}
+		Assert.assertTrue( metrics.numThreadCounters() <= 1 );
+		Assert.assertEquals( 100, metrics.getNumQueries() );
+		Assert.assertEquals( 300, metrics.getNumLineSearchTries() );
+		Assert.assertEquals( 2, metrics.getMeanIterations(), 0 );
+		Assert.assertEquals( 100, metrics.getIterationHistogram()[ 2 ] );
+
+		metrics.reset();
+		Assert.assertEquals( 0, metrics.getNumQueries() );
+		Assert.assertEquals( 0, metrics.getMeanIterations(), 0 );
+	}
+
+	@Test
+	public void testSolve()
+	{
+		for ( int n = 1; n <= 5; ++n )
+		{
+			final double[] a = new double[ n * n ];
+			final double[] x = new double[ n ];
+			final double[] b = new double[ n ];
+			for ( int r = 0; r < n; ++r )
+			{
+				x[ r ] = r - 1.5;
+				for ( int c = 0; c < n; ++c )
+					a[ r * n + c ] = r == c ? 2 + r : Math.sin( r + 2 * c );
+			}
+			for ( int r = 0; r < n; ++r )
+				for ( int c = 0; c < n; ++c )
+					b[ r ] += a[ r * n + c ] * x[ c ];
+
+			Assert.assertTrue( AbstractInverseRealTransformSolver.solve( a, b, n ) );
+			Assert.assertArrayEquals( "n = " + n, x, b, 1e-9 );
+		}
+
+		Assert.assertFalse( AbstractInverseRealTransformSolver.solve( new double[] { 1, 2, 2, 4 }, new double[ 2 ], 2 ) );
+	}
+
 	@Test
 	public void testAffineInverse()
 	{
@@ -286,6 +592,75 @@ public class IterableInverseTests
 		Assert.assertArrayEquals( "rotation matrix inverse", p, q, EPS );
 	}
 
+	@Test
+	public void testGradientDescentFloat()
+	{
+		final PolynomialTransform2D polynomial = new PolynomialTransform2D();
+		polynomial.set( 1, 1.1, 0.2, 0.01, 0.02, 0.03, 2, 0.1, 0.9, 0.04, 0.05, 0.06 );
+		final InvertibleTransformByGradientDescent gradientDescent = new InvertibleTransformByGradientDescent( polynomial );
+
+		final double[] x = { 1.5, -0.5 };
+		final double[] y = new double[ 2 ];
+		polynomial.apply( x, y );
+
+		final float[] p = { 1.5f, -0.5f };
+		final float[] q = new float[ 2 ];
+		gradientDescent.apply( p, q );
+		Assert.assertArrayEquals( "source unchanged", new float[] { 1.5f, -0.5f }, p, 0 );
+		Assert.assertArrayEquals( "float apply", new float[] { ( float )y[ 0 ], ( float )y[ 1 ] }, q, 1e-5f );
+
+		/* same initial estimate as the double inverse */
+		final double[] xd = { 1, 0 };
+		gradientDescent.applyInverse( xd, new double[] { q[ 0 ], q[ 1 ] } );
+		final float[] qCopy = q.clone();
+		p[ 0 ] = 1;
+		p[ 1 ] = 0;
+		gradientDescent.applyInverse( p, q );
+		Assert.assertArrayEquals( "target unchanged", qCopy, q, 0 );
+		Assert.assertArrayEquals( "float applyInverse", new float[] { ( float )xd[ 0 ], ( float )xd[ 1 ] }, p, 1e-5f );
+
+		/* 3d to 2d, arrays of exactly the transform dimensions */
+		final RealTransform projection = new RealTransform()
+		{
+			@Override
+			public int numSourceDimensions()
+			{
+				return 3;
+			}
+
+			@Override
+			public int numTargetDimensions()
+			{
+				return 2;
+			}
+
+			@Override
+			public void apply( final double[] source, final double[] target )
+			{
+				target[ 0 ] = source[ 0 ] + source[ 2 ];
+				target[ 1 ] = source[ 1 ] - source[ 2 ];
+			}
+
+			@Override
+			public void apply( final RealLocalizable source, final RealPositionable target )
+			{
+				target.setPosition( source.getDoublePosition( 0 ) + source.getDoublePosition( 2 ), 0 );
+				target.setPosition( source.getDoublePosition( 1 ) - source.getDoublePosition( 2 ), 1 );
+			}
+
+			@Override
+			public RealTransform copy()
+			{
+				return this;
+			}
+		};
+		final float[] p3 = { 1, 2, 3 };
+		final float[] q2 = new float[ 2 ];
+		new InvertibleTransformByGradientDescent( new RealTransformFiniteDerivatives( projection ) ).apply( p3, q2 );
+		Assert.assertArrayEquals( "projection source unchanged", new float[] { 1, 2, 3 }, p3, 0 );
+		Assert.assertArrayEquals( "projection", new float[] { 4, -1 }, q2, 1e-6f );
+	}
+
 	private class IterativeAffineInverse extends AffineTransform implements DifferentiableRealTransform
 	{
 		final AffineTransform jacobian;
@@ -0,0 +1,311 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.WendlandRadialBasisTransform.Kernel;
+import net.imglib2.realtransform.inverse.DifferentiableRealTransform;
+
+/**
+ * Compares analytic jacobians with central differences.
+ */
+public class JacobianTest
+{
+	private static final double STEP = 1e-6;
+
+	private static final double EPS = 1e-5;
+
+	private static double[][] centralDifferences( final RealTransform transform, final double[] x )
+	{
+		final int n = transform.numSourceDimensions();
+		final int m = transform.numTargetDimensions();
+		final double[][] jacobian = new double[ m ][ n ];
+		final double[] p = x.clone();
+		final double[] forward = new double[ m ];
+		final double[] backward = new double[ m ];
+		for ( int j = 0; j < n; ++j )
+		{
+			p[ j ] = x[ j ] + STEP;
+			transform.apply( p, forward );
+			p[ j ] = x[ j ] - STEP;
+			transform.apply( p, backward );
+			p[ j ] = x[ j ];
+			for ( int i = 0; i < m; ++i )
+				jacobian[ i ][ j ] = ( forward[ i ] - backward[ i ] ) / ( 2 * STEP );
+		}
+		return jacobian;
+	}
+
+	private static void assertJacobian( final DifferentiableRealTransform transform, final double... x )
+	{
+		final String name = transform.getClass().getSimpleName();
+		final double[][] expected = centralDifferences( transform, x );
+		final int n = transform.numSourceDimensions();
+		final int m = transform.numTargetDimensions();
+
+		final double[][] jacobian = new double[ m ][ n + 1 ];
+		transform.jacobian( x, jacobian );
+		final AffineTransform affine = transform.jacobian( x );
+		for ( int i = 0; i < m; ++i )
+			for ( int j = 0; j < n; ++j )
+			{
+				final double tolerance = EPS * Math.max( 1, Math.abs( expected[ i ][ j ] ) );
+				assertEquals( name + " [" + i + "][" + j + "]", expected[ i ][ j ], jacobian[ i ][ j ], tolerance );
+				assertEquals( name + " [" + i + "][" + j + "]", expected[ i ][ j ], affine.get( i, j ), tolerance );
+			}
+	}
+
+	private static PolynomialTransform2D polynomial()
+	{
+		final PolynomialTransform2D polynomial = new PolynomialTransform2D();
+		polynomial.set(
+				1, 1.1, 0.2, 0.01, 0.02, 0.03, 0.001, 0.002, 0.003, 0.004,
+				2, 0.1, 0.9, 0.04, 0.05, 0.06, 0.005, 0.006, 0.007, 0.008 );
+		return polynomial;
+	}
+
+	@Test
+	public void testPolynomial()
+	{
+		final PolynomialTransform2D polynomial = polynomial();
+		assertJacobian( polynomial, 1.3, -0.7 );
+		assertJacobian( polynomial, -5.2, 3.1 );
+		assertJacobian( polynomial.copy(), 0, 0 );
+	}
+
+	@Test
+	public void testHomography()
+	{
+		final HomographyTransform2D homography = new HomographyTransform2D();
+		homography.set(
+				1.1, 0.1, 3,
+				-0.2, 0.9, 4,
+				0.001, -0.002, 1 );
+		assertJacobian( homography, 1.3, -0.7 );
+		assertJacobian( homography, 120, 80 );
+	}
+
+	@Test
+	public void testPerspective()
+	{
+		assertJacobian( Perspective3D.getInstance(), 1.3, -0.7, 2.5 );
+		assertJacobian( InversePerspective3D.getInstance(), 1.3, -0.7, 2.5 );
+	}
+
+	@Test
+	public void testPolar()
+	{
+		assertJacobian( new PolarToCartesianTransform2D(), 3.5, 0.7 );
+		assertJacobian( new ScaledPolarToTranslatedCartesianTransform2D( 10, 20, 0.5, 2 ), 3.5, 0.7 );
+		assertJacobian( SphericalToCartesianTransform3D.getInstance(), 3.5, 0.7, -2.1 );
+	}
+
+	@Test
+	public void testInterleavedDeformationField()
+	{
+		final Random rnd = new Random( 1234 );
+		final double[] field = new double[ 2 * 5 * 4 ];
+		for ( int i = 0; i < field.length; ++i )
+			field[ i ] = 4 * rnd.nextDouble() - 2;
+
+		final FinalInterval interval = new FinalInterval( new long[] { -1, 2 }, new long[] { 3, 5 } );
+		final DoubleInterleavedDeformationFieldTransform transform = new DoubleInterleavedDeformationFieldTransform( field, interval );
+		final QuantizedInterleavedDeformationFieldTransform quantized = QuantizedInterleavedDeformationFieldTransform.quantize( transform );
+		for ( final AbstractInterleavedDeformationFieldTransform t : new AbstractInterleavedDeformationFieldTransform[] { transform, quantized } )
+		{
+			assertJacobian( t, 0.3, 3.6 );
+			assertJacobian( t, 2.7, 4.2 );
+			/* outside, clamped along one or both dimensions */
+			assertJacobian( t, -3.5, 3.2 );
+			assertJacobian( t, 1.5, 7.4 );
+			assertJacobian( t, 10.5, -7.4 );
+		}
+	}
+
+	@Test
+	public void testWendland()
+	{
+		final Random rnd = new Random( 1234 );
+		final double[][] p = new double[ 2 ][ 50 ];
+		final double[][] q = new double[ 2 ][ 50 ];
+		for ( int l = 0; l < 50; ++l )
+			for ( int d = 0; d < 2; ++d )
+			{
+				p[ d ][ l ] = 100 * rnd.nextDouble();
+				q[ d ][ l ] = 1.1 * p[ d ][ l ] + 5 * rnd.nextDouble();
+			}
+
+		for ( final Kernel kernel : Kernel.values() )
+		{
+			final WendlandRadialBasisTransform transform = new WendlandRadialBasisTransform( p, q, 30, kernel );
+			assertJacobian( transform, 45.3, 52.7 );
+			assertJacobian( transform, 12.1, 87.9 );
+		}
+	}
+
+	@Test
+	public void testSequence()
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+
+		final PolynomialTransform2D polynomial = polynomial();
+
+		/* not differentiable, estimated by central differences */
+		final ExplicitInvertibleRealTransform wrapped = new ExplicitInvertibleRealTransform( new PolarToCartesianTransform2D(), affine.inverse() );
+
+		final RealTransformSequence sequence = new RealTransformSequence();
+		sequence.add( affine );
+		sequence.add( polynomial );
+		sequence.add( new Scale2D( 0.01, 0.02 ) );
+		sequence.add( wrapped );
+		assertJacobian( sequence, 1.3, -0.7 );
+		assertJacobian( sequence.copy(), 1.3, -0.7 );
+	}
+
+	@Test
+	public void testFixedSequence()
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+
+		final PolynomialTransform2D polynomial = polynomial();
+		final Scale2D scale = new Scale2D( 0.01, 0.02 );
+
+		/* not differentiable, estimated by central differences */
+		final ExplicitInvertibleRealTransform wrapped = new ExplicitInvertibleRealTransform( new PolarToCartesianTransform2D(), affine.inverse() );
+
+		assertJacobian( new FixedRealTransformSequence( affine, polynomial ), 1.3, -0.7 );
+		assertJacobian( new FixedRealTransformSequence( affine, polynomial, scale ), 1.3, -0.7 );
+
+		final FixedRealTransformSequence sequence = new FixedRealTransformSequence( affine, polynomial, scale, wrapped );
+		assertJacobian( sequence, 1.3, -0.7 );
+		assertJacobian( sequence.copy(), 1.3, -0.7 );
+	}
+
+	/**
+	 * (x + 0.1 y<sup>2</sup> + 3, y + 0.2 x y - 2), relies on the default
+	 * {@link DifferentiableRealTransform#jacobian(double[], double[][])}.
+	 */
+	private static class DefaultJacobianTransform implements DifferentiableRealTransform
+	{
+		@Override
+		public int numSourceDimensions()
+		{
+			return 2;
+		}
+
+		@Override
+		public int numTargetDimensions()
+		{
+			return 2;
+		}
+
+		@Override
+		public void apply( final double[] source, final double[] target )
+		{
+			final double x = source[ 0 ];
+			final double y = source[ 1 ];
+			target[ 0 ] = x + 0.1 * y * y + 3;
+			target[ 1 ] = y + 0.2 * x * y - 2;
+		}
+
+		@Override
+		public void apply( final RealLocalizable source, final RealPositionable target )
+		{
+			final double[] p = { source.getDoublePosition( 0 ), source.getDoublePosition( 1 ) };
+			apply( p, p );
+			target.setPosition( p );
+		}
+
+		@Override
+		public AffineTransform jacobian( final double[] x )
+		{
+			final AffineTransform jacobian = new AffineTransform( 2 );
+			jacobian.set( new double[][] {
+					{ 1, 0.2 * x[ 1 ], 3 },
+					{ 0.2 * x[ 1 ], 1 + 0.2 * x[ 0 ], -2 } } );
+			return jacobian;
+		}
+
+		@Override
+		public DefaultJacobianTransform copy()
+		{
+			return this;
+		}
+	}
+
+	@Test
+	public void testDefaultJacobianInMixedDimensions()
+	{
+		/* 3D to 2D, estimated by central differences */
+		final RealTransform projection = new RealTransform()
+		{
+			@Override
+			public int numSourceDimensions()
+			{
+				return 3;
+			}
+
+			@Override
+			public int numTargetDimensions()
+			{
+				return 2;
+			}
+
+			@Override
+			public void apply( final double[] source, final double[] target )
+			{
+				final double z = source[ 2 ];
+				target[ 0 ] = source[ 0 ] + 0.5 * z;
+				target[ 1 ] = source[ 1 ] - 0.3 * z;
+			}
+
+			@Override
+			public void apply( final RealLocalizable source, final RealPositionable target )
+			{
+				final double[] p = new double[ 3 ];
+				source.localize( p );
+				apply( p, p );
+				target.setPosition( p[ 0 ], 0 );
+				target.setPosition( p[ 1 ], 1 );
+			}
+
+			@Override
+			public RealTransform copy()
+			{
+				return this;
+			}
+		};
+
+		final RealTransformSequence sequence = new RealTransformSequence();
+		sequence.add( projection );
+		sequence.add( new DefaultJacobianTransform() );
+
+		final double[] x = { 1.3, -0.7, 2.5 };
+		final double[][] expected = centralDifferences( sequence, x );
+		final double[][] jacobian = new double[ 2 ][ 3 ];
+		sequence.jacobian( x, jacobian );
+		for ( int i = 0; i < 2; ++i )
+			assertArrayEquals( expected[ i ], jacobian[ i ], EPS );
+
+		/* the translation is not written into a larger jacobian */
+		final double[][] larger = new double[ 3 ][ 4 ];
+		new DefaultJacobianTransform().jacobian( x, larger );
+		assertEquals( 0, larger[ 0 ][ 2 ], 0 );
+		assertEquals( 0, larger[ 2 ][ 0 ], 0 );
+	}
+
+	@Test
+	public void testInterpolated()
+	{
+		final InterpolatedRealTransform interpolated = new InterpolatedRealTransform( polynomial(), new PolarToCartesianTransform2D(), 0.3 );
+		assertJacobian( interpolated, 1.3, -0.7 );
+	}
+}
@@ -0,0 +1,101 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class MappedVectorFieldTest
+{
+	private static final double EPS = 1e-5;
+
+	private static final long[] DIMENSIONS = { 5, 4, 3 };
+
+	private File file;
+
+	private float[] field;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		field = new float[ 3 * 5 * 4 * 3 ];
+		for ( int i = 0; i < field.length; ++i )
+			field[ i ] = ( float )Math.sin( i * 0.1 );
+
+		final ByteBuffer bytes = ByteBuffer.allocate( field.length * Float.BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+		bytes.asFloatBuffer().put( field );
+
+		file = File.createTempFile( "field", ".raw" );
+		try ( final RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+		{
+			raf.write( bytes.array() );
+		}
+	}
+
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException
+	{
+		try ( final MappedVectorField mapped = new MappedVectorField( file, ByteOrder.LITTLE_ENDIAN, 1, 2, DIMENSIONS ) )
+		{
+			assertEquals( 4, mapped.numDimensions() );
+			assertEquals( 3, mapped.dimension( 0 ) );
+			assertEquals( 3, mapped.dimension( 3 ) );
+
+			final RandomAccess< FloatType > access = mapped.randomAccess();
+			int i = 0;
+			for ( int z = 0; z < 3; ++z )
+				for ( int y = 0; y < 4; ++y )
+					for ( int x = 0; x < 5; ++x )
+						for ( int d = 0; d < 3; ++d )
+						{
+							access.setPosition( new int[] { d, x, y, z } );
+							assertEquals( field[ i++ ], access.get().get(), 0 );
+						}
+
+			/* one plane per chunk, at most two mapped */
+			assertEquals( 2, mapped.numCachedChunks() );
+
+			access.setPosition( new int[] { 1, 2, 3, 0 } );
+			final RandomAccess< FloatType > copy = access.copyRandomAccess();
+			access.setPosition( 2, 3 );
+			assertEquals( field[ 1 + 3 * ( 2 + 5 * 3 ) ], copy.get().get(), 0 );
+			assertEquals( field[ 1 + 3 * ( 2 + 5 * ( 3 + 4 * 2 ) ) ], access.get().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testDeformationField() throws IOException
+	{
+		try ( final MappedVectorField mapped = new MappedVectorField( file, ByteOrder.LITTLE_ENDIAN, DIMENSIONS ) )
+		{
+			final RealTransform transform = mapped.deformationFieldTransform();
+			final FloatInterleavedDeformationFieldTransform reference = new FloatInterleavedDeformationFieldTransform( field, DIMENSIONS );
+
+			final double[][] points = { { 0.5, 1.5, 1.25 }, { 3.7, 2.2, 0.1 }, { -1, 5, 2 } };
+			final double[] q = new double[ 3 ];
+			final double[] r = new double[ 3 ];
+			for ( final double[] p : points )
+			{
+				transform.apply( p, q );
+				reference.apply( p, r );
+				assertArrayEquals( r, q, EPS );
+			}
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PiecewiseAffineTransformTest
+{
+	private static final double EPS = 1e-9;
+
+	private static final int K = 8;
+
+	private final double[][] source;
+
+	private final double[][] target;
+
+	private final int[][] triangles;
+
+	/**
+	 * A K x K grid of squares with size 10, each split into two triangles,
+	 * and randomly displaced target vertices.
+	 */
+	public PiecewiseAffineTransformTest()
+	{
+		final Random rnd = new Random( 1 );
+		source = new double[ ( K + 1 ) * ( K + 1 ) ][];
+		target = new double[ source.length ][];
+		for ( int y = 0, i = 0; y <= K; ++y )
+			for ( int x = 0; x <= K; ++x, ++i )
+			{
+				source[ i ] = new double[] { 10 * x, 10 * y };
+				target[ i ] = new double[] { 10 * x + 5 + 2 * rnd.nextDouble(), 10 * y - 3 + 2 * rnd.nextDouble() };
+			}
+
+		triangles = new int[ 2 * K * K ][];
+		for ( int y = 0, i = 0; y < K; ++y )
+			for ( int x = 0; x < K; ++x )
+			{
+				final int v = y * ( K + 1 ) + x;
+				triangles[ i++ ] = new int[] { v, v + 1, v + K + 2 };
+				triangles[ i++ ] = new int[] { v, v + K + 2, v + K + 1 };
+			}
+	}
+
+	@Test
+	public void testVerticesAndCentroids()
+	{
+		final PiecewiseAffineTransform transform = new PiecewiseAffineTransform( source, target, triangles );
+		final double[] q = new double[ 2 ];
+
+		for ( int i = 0; i < source.length; ++i )
+		{
+			transform.apply( source[ i ], q );
+			assertArrayEquals( target[ i ], q, EPS );
+		}
+
+		/* affine per triangle maps centroids to centroids */
+		for ( final int[] triangle : triangles )
+		{
+			final double[] p = new double[ 2 ];
+			final double[] c = new double[ 2 ];
+			for ( final int v : triangle )
+				for ( int d = 0; d < 2; ++d )
+				{
+					p[ d ] += source[ v ][ d ] / 3;
+					c[ d ] += target[ v ][ d ] / 3;
+				}
+			transform.apply( p, q );
+			assertArrayEquals( c, q, EPS );
+		}
+	}
+
+	@Test
+	public void testInverse()
+	{
+		final PiecewiseAffineTransform transform = new PiecewiseAffineTransform( source, target, triangles );
+		final PiecewiseAffineTransform inverse = transform.inverse();
+		final Random rnd = new Random( 2 );
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		final float[] pf = new float[ 2 ];
+		final float[] qf = new float[ 2 ];
+
+		for ( int i = 0; i < 1000; ++i )
+		{
+			p[ 0 ] = 10 * K * rnd.nextDouble();
+			p[ 1 ] = 10 * K * rnd.nextDouble();
+			transform.apply( p, q );
+			transform.applyInverse( r, q );
+			assertArrayEquals( p, r, 1e-6 );
+
+			inverse.apply( q, r );
+			assertArrayEquals( p, r, 1e-6 );
+
+			pf[ 0 ] = ( float )p[ 0 ];
+			pf[ 1 ] = ( float )p[ 1 ];
+			transform.apply( pf, qf );
+			assertEquals( q[ 0 ], qf[ 0 ], 1e-3 );
+			assertEquals( q[ 1 ], qf[ 1 ], 1e-3 );
+		}
+	}
+
+	@Test
+	public void testScanlineAndCopy()
+	{
+		final PiecewiseAffineTransform transform = new PiecewiseAffineTransform( source, target, triangles );
+		final PiecewiseAffineTransform copy = transform.copy();
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		final double[] r = new double[ 2 ];
+		final double[] s = new double[ 2 ];
+
+		/* alternate copies so that their last simplices diverge */
+		for ( double y = 0.5; y < 10 * K; y += 7.3 )
+			for ( double x = -5; x < 10 * K + 5; x += 0.7 )
+			{
+				p[ 0 ] = x;
+				p[ 1 ] = y;
+				transform.apply( p, q );
+				new PiecewiseAffineTransform( source, target, triangles ).apply( p, s );
+				assertArrayEquals( s, q, EPS );
+
+				p[ 1 ] = 10 * K - y;
+				copy.apply( p, r );
+				new PiecewiseAffineTransform( source, target, triangles ).apply( p, s );
+				assertArrayEquals( s, r, EPS );
+			}
+	}
+
+	@Test
+	public void testTetrahedra()
+	{
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set( 1.1, 0.1, 0.2, 3, -0.2, 0.9, 0.1, 4, 0.05, -0.1, 1.2, -2 );
+
+		/* unit cube split into six tetrahedra along its diagonal */
+		final double[][] cubeSource = new double[ 8 ][];
+		final double[][] cubeTarget = new double[ 8 ][];
+		for ( int i = 0; i < 8; ++i )
+		{
+			cubeSource[ i ] = new double[] { i & 1, ( i >> 1 ) & 1, ( i >> 2 ) & 1 };
+			cubeTarget[ i ] = new double[ 3 ];
+			affine.apply( cubeSource[ i ], cubeTarget[ i ] );
+		}
+		final int[][] tetrahedra = {
+				{ 0, 1, 3, 7 }, { 0, 3, 2, 7 }, { 0, 2, 6, 7 },
+				{ 0, 6, 4, 7 }, { 0, 4, 5, 7 }, { 0, 5, 1, 7 } };
+
+		final PiecewiseAffineTransform transform = new PiecewiseAffineTransform( cubeSource, cubeTarget, tetrahedra );
+		final Random rnd = new Random( 3 );
+		final double[] p = new double[ 3 ];
+		final double[] q = new double[ 3 ];
+		final double[] r = new double[ 3 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				p[ d ] = rnd.nextDouble();
+			transform.apply( p, q );
+			affine.apply( p, r );
+			assertArrayEquals( r, q, EPS );
+
+			transform.applyInverse( r, q );
+			assertArrayEquals( p, r, EPS );
+		}
+	}
+
+	private static double segmentDistance( final double[] p, final double[] a, final double[] b )
+	{
+		final double ex = b[ 0 ] - a[ 0 ];
+		final double ey = b[ 1 ] - a[ 1 ];
+		final double t = Math.max( 0, Math.min( 1, ( ( p[ 0 ] - a[ 0 ] ) * ex + ( p[ 1 ] - a[ 1 ] ) * ey ) / ( ex * ex + ey * ey ) ) );
+		return Math.hypot( p[ 0 ] - a[ 0 ] - t * ex, p[ 1 ] - a[ 1 ] - t * ey );
+	}
+
+	/**
+	 * @return the barycentric coordinates of p in triangle t
+	 */
+	private double[] barycentric( final int[] t, final double[] p )
+	{
+		final double[] a = source[ t[ 0 ] ];
+		final double[] b = source[ t[ 1 ] ];
+		final double[] c = source[ t[ 2 ] ];
+		final double det = ( b[ 0 ] - a[ 0 ] ) * ( c[ 1 ] - a[ 1 ] ) - ( c[ 0 ] - a[ 0 ] ) * ( b[ 1 ] - a[ 1 ] );
+		final double l1 = ( ( p[ 0 ] - a[ 0 ] ) * ( c[ 1 ] - a[ 1 ] ) - ( c[ 0 ] - a[ 0 ] ) * ( p[ 1 ] - a[ 1 ] ) ) / det;
+		final double l2 = ( ( b[ 0 ] - a[ 0 ] ) * ( p[ 1 ] - a[ 1 ] ) - ( p[ 0 ] - a[ 0 ] ) * ( b[ 1 ] - a[ 1 ] ) ) / det;
+		return new double[] { 1 - l1 - l2, l1, l2 };
+	}
+
+	private double distance( final int[] t, final double[] p )
+	{
+		final double[] l = barycentric( t, p );
+		if ( l[ 0 ] >= 0 && l[ 1 ] >= 0 && l[ 2 ] >= 0 )
+			return 0;
+		return Math.min(
+				segmentDistance( p, source[ t[ 0 ] ], source[ t[ 1 ] ] ),
+				Math.min(
+						segmentDistance( p, source[ t[ 1 ] ], source[ t[ 2 ] ] ),
+						segmentDistance( p, source[ t[ 2 ] ], source[ t[ 0 ] ] ) ) );
+	}
+
+	@Test
+	public void testClosestSimplex()
+	{
+		/* a hole of 3 x 3 squares in the middle of the mesh */
+		final int[][] holed = new int[ triangles.length - 18 ][];
+		for ( int y = 0, i = 0, j = 0; y < K; ++y )
+			for ( int x = 0; x < K; ++x, j += 2 )
+				if ( x < 2 || x > 4 || y < 2 || y > 4 )
+				{
+					holed[ i++ ] = triangles[ j ];
+					holed[ i++ ] = triangles[ j + 1 ];
+				}
+
+		final PiecewiseAffineTransform transform = new PiecewiseAffineTransform( source, target, holed );
+		final Random rnd = new Random( 4 );
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			p[ 0 ] = 10 * K * ( 1.4 * rnd.nextDouble() - 0.2 );
+			p[ 1 ] = 10 * K * ( 1.4 * rnd.nextDouble() - 0.2 );
+			transform.apply( p, q );
+
+			double min = Double.POSITIVE_INFINITY;
+			for ( final int[] t : holed )
+				min = Math.min( min, distance( t, p ) );
+
+			/* any of the closest triangles, they may share a vertex or an edge */
+			boolean found = false;
+			for ( final int[] t : holed )
+			{
+				if ( distance( t, p ) > min + 1e-9 )
+					continue;
+				final double[] l = barycentric( t, p );
+				boolean matches = true;
+				for ( int d = 0; d < 2; ++d )
+				{
+					final double expected = l[ 0 ] * target[ t[ 0 ] ][ d ] + l[ 1 ] * target[ t[ 1 ] ][ d ] + l[ 2 ] * target[ t[ 2 ] ][ d ];
+					matches &= Math.abs( expected - q[ d ] ) < 1e-6;
+				}
+				found |= matches;
+			}
+			assertTrue( "Not mapped by a closest triangle at " + p[ 0 ] + ", " + p[ 1 ], found );
+		}
+	}
+
+	@Test
+	public void testDegenerate()
+	{
+		final double[][] vertices = { { 0, 0 }, { 1, 1 }, { 2, 2 } };
+		try
+		{
+			new PiecewiseAffineTransform( vertices, vertices, new int[][] { { 0, 1, 2 } } );
+			fail( "Degenerate simplex accepted." );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+	}
+}
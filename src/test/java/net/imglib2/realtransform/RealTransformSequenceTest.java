@@ -178,4 +178,106 @@ public class RealTransformSequenceTest
 		lCopy.apply( x, y1 );
 		Assert.assertArrayEquals( y, y1, 0.001 );
 	}
+
+	@Test
+	public void testApplyBatch()
+	{
+		final RealTransformSequence l = new RealTransformSequence();
+		add( l );
+
+		final int count = 2500;
+		final double[] source = new double[ count * 3 ];
+		final double[][] soa = new double[ 3 ][ count ];
+		for ( int i = 0; i < count; ++i )
+			for ( int d = 0; d < 3; ++d )
+				soa[ d ][ i ] = source[ i * 3 + d ] = r();
+
+		final double[] target = new double[ count * 3 ];
+		l.apply( source, target, 0, count );
+		l.apply( soa, soa, 0, count );
+
+		final double[] x1 = new double[ 3 ];
+		final double[] y1 = new double[ 3 ];
+		for ( int i = 0; i < count; ++i )
+		{
+			System.arraycopy( source, i * 3, x1, 0, 3 );
+			a123.apply( x1, y1 );
+			for ( int d = 0; d < 3; ++d )
+			{
+				Assert.assertEquals( y1[ d ], target[ i * 3 + d ], 0.001 );
+				Assert.assertEquals( y1[ d ], soa[ d ][ i ], 0.001 );
+			}
+		}
+	}
+
+	@Test
+	public void testCompile()
+	{
+		final RealTransformSequence l = new RealTransformSequence();
+		l.add( new Scale3D( 1, 1, 1 ) );
+		l.add( a1 );
+		l.add( new Translation3D( 1, 2, 3 ) );
+		l.add( new ExplicitInvertibleRealTransform( a2, a2.inverse() ) );
+		l.add( a3 );
+		l.add( new Scale3D( 2, 3, 4 ) );
+
+		final RealTransformSequence compiled = l.compile();
+		Assert.assertEquals( 3, compiled.transforms.size() );
+		Assert.assertSame( compiled, l.compile() );
+
+		final double[] y1 = new double[ 3 ];
+		final double[] y2 = new double[ 3 ];
+		l.apply( x, y1 );
+		compiled.apply( x, y2 );
+		Assert.assertArrayEquals( y1, y2, 0.001 );
+
+		/* add invalidates the compiled sequence */
+		l.add( new Translation3D( 1, 2, 3 ) );
+		Assert.assertNotSame( compiled, l.compile() );
+		Assert.assertEquals( 3, l.compile().transforms.size() );
+		l.apply( x, y1 );
+		l.compile().apply( x, y2 );
+		Assert.assertArrayEquals( y1, y2, 0.001 );
+
+		/* identities only */
+		final RealTransformSequence identities = new RealTransformSequence();
+		identities.add( new Scale3D( 1, 1, 1 ) );
+		identities.add( new Translation3D() );
+		Assert.assertEquals( 1, identities.compile().transforms.size() );
+		Assert.assertEquals( 3, identities.compile().numSourceDimensions() );
+	}
+
+	@Test
+	public void testSpecialize()
+	{
+		final RealTransformSequence l = new RealTransformSequence();
+		l.add( a1 );
+		l.add( new InverseRealTransform( a2.inverse() ) );
+		l.add( a3 );
+
+		final double[] y1 = new double[ 3 ];
+		final RealTransform single = l.specialize();
+		Assert.assertTrue( single instanceof AffineGet );
+		single.apply( x, y1 );
+		Assert.assertArrayEquals( y, y1, 0.001 );
+
+		final RealTransformSequence nested = new RealTransformSequence();
+		nested.add( new ExplicitInvertibleRealTransform( a1, a1.inverse() ) );
+		nested.add( l );
+		nested.add( new ExplicitInvertibleRealTransform( a2, a2.inverse() ) );
+		final RealTransform fixed = nested.specialize();
+		Assert.assertTrue( fixed instanceof FixedRealTransformSequence );
+		Assert.assertEquals( 3, ( ( FixedRealTransformSequence ) fixed ).size() );
+
+		final double[] y2 = new double[ 3 ];
+		final float[] yf = new float[ 3 ];
+		nested.apply( x, y1 );
+		fixed.apply( x, y2 );
+		Assert.assertArrayEquals( y1, y2, 0.001 );
+		fixed.copy().apply( px, RealPoint.wrap( y2 ) );
+		Assert.assertArrayEquals( y1, y2, 0.001 );
+		fixed.apply( new float[] { ( float ) x[ 0 ], ( float ) x[ 1 ], ( float ) x[ 2 ] }, yf );
+		for ( int d = 0; d < 3; ++d )
+			Assert.assertEquals( y1[ d ], yf[ d ], 1e-5 * Math.abs( y1[ d ] ) );
+	}
 }
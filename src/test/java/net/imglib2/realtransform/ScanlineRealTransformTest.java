@@ -0,0 +1,92 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.real.DoubleType;
+
+public class ScanlineRealTransformTest
+{
+	private static final double EPS = 1e-9;
+
+	private static void assertScanlines( final ScanlineRealTransform transform )
+	{
+		final double[] p = new double[] { 3, -2 };
+		final double[] q = new double[ 2 ];
+		final double[] qs = new double[ 2 ];
+
+		final ScanlineRealTransform scanline = transform.copy();
+		scanline.startScanline( p, qs );
+		transform.apply( p, q );
+		assertArrayEquals( q, qs, EPS );
+
+		final long[] steps = new long[] { 1, 1, 1, -1, 5, -3, 1, 1 };
+		for ( int d = 0; d < 2; ++d )
+		{
+			for ( final long step : steps )
+			{
+				p[ d ] += step;
+				scanline.advanceScanline( step, d, qs );
+				transform.apply( p, q );
+				assertArrayEquals( q, qs, EPS );
+			}
+		}
+	}
+
+	private static void assertRandomAccess( final RealTransform transform )
+	{
+		final double[] p = new double[ 2 ];
+		final double[] q = new double[ 2 ];
+		for ( int d = 0; d < 2; ++d )
+		{
+			final RealTransformRandomAccessible< DoubleType, RealTransform > rra = new RealTransformRandomAccessible<>( new RealPositionRealRandomAccessible( 2, d ), transform );
+			final RandomAccess< DoubleType > access = rra.randomAccess();
+
+			/* serpentine with row jumps and repeated reads */
+			for ( int y = 0; y < 8; ++y )
+			{
+				for ( int x = 0; x < 8; ++x )
+				{
+					access.setPosition( ( y % 2 == 0 ) ? x : 7 - x, 0 );
+					access.setPosition( y, 1 );
+					access.localize( p );
+					transform.apply( p, q );
+					assertEquals( q[ d ], access.get().get(), EPS );
+					assertEquals( q[ d ], access.get().get(), EPS );
+				}
+			}
+
+			access.setPosition( new long[] { 2, 3 } );
+			access.move( 4, 0 );
+			access.move( -2, 1 );
+			access.localize( p );
+			transform.apply( p, q );
+			assertEquals( q[ d ], access.get().get(), EPS );
+		}
+	}
+
+	@Test
+	public void testHomography()
+	{
+		final HomographyTransform2D homography = new HomographyTransform2D();
+		homography.set(
+				1.1, 0.1, 3,
+				-0.2, 0.9, 4,
+				0.001, 0.002, 1 );
+		assertScanlines( homography );
+		assertRandomAccess( homography );
+	}
+
+	@Test
+	public void testPolar()
+	{
+		assertScanlines( new PolarToCartesianTransform2D() );
+		assertRandomAccess( new PolarToCartesianTransform2D() );
+
+		final ScaledPolarToTranslatedCartesianTransform2D polar = new ScaledPolarToTranslatedCartesianTransform2D( 10, 20, 2, 16 );
+		assertScanlines( polar );
+		assertRandomAccess( polar );
+	}
+}
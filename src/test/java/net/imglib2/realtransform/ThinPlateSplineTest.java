@@ -36,6 +36,8 @@ package net.imglib2.realtransform;
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.imglib2.realtransform.inverse.RealTransformFiniteDerivatives;
+
 public class ThinPlateSplineTest
 {
 	final double EPS = 1e-5;
@@ -74,4 +76,35 @@ public class ThinPlateSplineTest
 		}
 
 	}
+
+	@Test
+	public void testJacobian()
+	{
+		final double[][] srcPts = new double[][] {
+			{ -1.0, 0.0, 1.0, 0.0, -1.0, 1.0, 0.3 }, // x
+			{ 0.0, -1.0, 0.0, 1.0, -1.0, 1.0, 0.2 } }; // y
+
+		final double[][] tgtPts = new double[][] {
+			{ -2.0, -1.0, 0.0, -1.2, -2.0, 0.1, -0.6 }, // x
+			{ -2.0, -3.0, -2.1, -1.0, -3.0, -1.0, -1.7 } }; // y
+
+		final ThinplateSplineTransform tps = new ThinplateSplineTransform( srcPts, tgtPts );
+		final RealTransformFiniteDerivatives finiteDerivatives = new RealTransformFiniteDerivatives( tps );
+		finiteDerivatives.setStep( 1e-6 );
+
+		final double[][] jacobian = new double[ 2 ][ 2 ];
+		final double[][] estimate = new double[ 2 ][ 2 ];
+		for ( final double[] x : new double[][] { { 0.5, 0.5 }, { -0.7, 0.1 }, { 2.0, -1.5 }, { 0.0, 0.0 } } )
+		{
+			tps.jacobian( x, jacobian );
+			finiteDerivatives.jacobian( x, estimate );
+			for ( int i = 0; i < 2; i++ )
+				Assert.assertArrayEquals( "jacobian row " + i, estimate[ i ], jacobian[ i ], 1e-4 );
+
+			final AffineTransform affine = tps.jacobian( x );
+			for ( int i = 0; i < 2; i++ )
+				for ( int j = 0; j < 2; j++ )
+					Assert.assertEquals( jacobian[ i ][ j ], affine.get( i, j ), 0 );
+		}
+	}
 }
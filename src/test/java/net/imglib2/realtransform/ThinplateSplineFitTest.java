@@ -0,0 +1,178 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ThinplateSplineFitTest
+{
+	/* relative, the kernel matrix of landmarks this far apart is not well conditioned */
+	private static final double EPS = 1e-6;
+
+	/* more than two blocks */
+	private static final int N = 150;
+
+	private static double[][][] landmarks( final int n, final int numLandmarks, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final double[][] p = new double[ n ][ numLandmarks ];
+		final double[][] q = new double[ n ][ numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+			{
+				p[ d ][ l ] = 100 * rnd.nextDouble();
+				q[ d ][ l ] = 1.1 * p[ d ][ l ] + 5 * rnd.nextDouble();
+			}
+		return new double[][][] { p, q };
+	}
+
+	private static void assertInterpolates( final ThinplateSplineFit fit )
+	{
+		final double[][] p = fit.getSourceLandmarks();
+		final double[][] q = fit.getTargetLandmarks();
+		final RealTransform transform = fit.getTransform();
+		final int n = fit.numDimensions();
+		final double[] x = new double[ n ];
+		final double[] y = new double[ n ];
+		final double[] z = new double[ n ];
+		for ( int l = 0; l < fit.numLandmarks(); ++l )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				x[ d ] = p[ d ][ l ];
+				z[ d ] = q[ d ][ l ];
+			}
+			transform.apply( x, y );
+			assertArrayEquals( z, y, 1e-6 );
+		}
+	}
+
+	private static void assertSameCoefficients( final ThinplateSplineFit expected, final ThinplateSplineFit actual )
+	{
+		assertEquals( expected.numLandmarks(), actual.numLandmarks() );
+		final double[][] pe = expected.getSourceLandmarks();
+		final double[][] pa = actual.getSourceLandmarks();
+		for ( int d = 0; d < pe.length; ++d )
+			assertArrayEquals( pe[ d ], pa[ d ], 0 );
+		final double[] we = expected.getKnotWeights();
+		double max = 0;
+		for ( final double w : we )
+			max = Math.max( max, Math.abs( w ) );
+		assertArrayEquals( we, actual.getKnotWeights(), EPS * max );
+
+		final double[] te = expected.getTranslation();
+		final double[] ta = actual.getTranslation();
+		final double[][] ae = expected.getAffine();
+		final double[][] aa = actual.getAffine();
+		for ( int d = 0; d < ae.length; ++d )
+		{
+			assertEquals( te[ d ], ta[ d ], EPS * Math.max( 1, Math.abs( te[ d ] ) ) );
+			assertArrayEquals( ae[ d ], aa[ d ], EPS );
+		}
+	}
+
+	@Test
+	public void testFit() throws InterruptedException, ExecutionException
+	{
+		final double[][][] pq = landmarks( 3, N, 1 );
+		final ThinplateSplineFit fit = new ThinplateSplineFit( pq[ 0 ], pq[ 1 ] );
+		assertInterpolates( fit );
+
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			assertSameCoefficients( fit, new ThinplateSplineFit( pq[ 0 ], pq[ 1 ], service ) );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testIncremental() throws InterruptedException, ExecutionException
+	{
+		final double[][][] pq = landmarks( 2, N, 2 );
+		final double[][] p = new double[ 2 ][ 10 ];
+		final double[][] q = new double[ 2 ][ 10 ];
+		for ( int d = 0; d < 2; ++d )
+		{
+			System.arraycopy( pq[ 0 ][ d ], 0, p[ d ], 0, 10 );
+			System.arraycopy( pq[ 1 ][ d ], 0, q[ d ], 0, 10 );
+		}
+
+		/* grow beyond the initial capacity */
+		final ThinplateSplineFit fit = new ThinplateSplineFit( p, q );
+		for ( int l = 10; l < N; ++l )
+			assertEquals( l, fit.add( new double[] { pq[ 0 ][ 0 ][ l ], pq[ 0 ][ 1 ][ l ] }, new double[] { pq[ 1 ][ 0 ][ l ], pq[ 1 ][ 1 ][ l ] } ) );
+		assertSameCoefficients( new ThinplateSplineFit( pq[ 0 ], pq[ 1 ] ), fit );
+		assertInterpolates( fit );
+
+		fit.remove( 17 );
+		fit.remove( 3 );
+		fit.move( 40, new double[] { 50.5, 60.5 }, new double[] { 55, 70 } );
+		final double[][] source = fit.getSourceLandmarks();
+		fit.move( 41, new double[] { source[ 0 ][ 41 ], source[ 1 ][ 41 ] }, new double[] { 1, 2 } );
+		fit.setTarget( 0, new double[] { 10, 20 } );
+		assertEquals( N - 2, fit.numLandmarks() );
+		assertEquals( 50.5, fit.getSourceLandmarks()[ 0 ][ 40 ], 0 );
+		assertEquals( 1, fit.getTargetLandmarks()[ 0 ][ 41 ], 0 );
+		assertInterpolates( fit );
+		assertSameCoefficients( new ThinplateSplineFit( fit.getSourceLandmarks(), fit.getTargetLandmarks() ), fit );
+
+		fit.fit( null );
+		assertInterpolates( fit );
+	}
+
+	@Test
+	public void testCapacity()
+	{
+		final double[][][] pq = landmarks( 2, 20, 4 );
+		final ThinplateSplineFit fit = new ThinplateSplineFit( pq[ 0 ], pq[ 1 ] );
+		for ( final long capacity : new long[] { Integer.MAX_VALUE, 1L << 32 } )
+		{
+			try
+			{
+				fit.allocate( capacity );
+				fail( "Capacity " + capacity + " accepted." );
+			}
+			catch ( final IllegalArgumentException e )
+			{}
+		}
+
+		/* unchanged */
+		assertEquals( 20, fit.numLandmarks() );
+		assertInterpolates( fit );
+		fit.add( new double[] { 50.5, 60.5 }, new double[] { 55, 70 } );
+		assertInterpolates( fit );
+	}
+
+	@Test
+	public void testDegenerate()
+	{
+		final double[][][] pq = landmarks( 2, 20, 3 );
+		final ThinplateSplineFit fit = new ThinplateSplineFit( pq[ 0 ], pq[ 1 ] );
+		try
+		{
+			fit.add( new double[] { pq[ 0 ][ 0 ][ 5 ], pq[ 0 ][ 1 ][ 5 ] }, new double[] { 0, 0 } );
+			fail( "Duplicate landmark accepted." );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+		assertEquals( 20, fit.numLandmarks() );
+
+		final double[][] collinear = { { 0, 1, 2, 3 }, { 0, 1, 2, 3 } };
+		try
+		{
+			new ThinplateSplineFit( collinear, collinear );
+			fail( "Collinear landmarks accepted." );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+	}
+}
@@ -0,0 +1,68 @@
+package net.imglib2.realtransform;
+
+import java.util.Random;
+
+/**
+ * Random 3d thin plate spline parameters and a brute force evaluation to
+ * test the thin plate spline implementations against.
+ */
+class ThinplateSplineReference
+{
+	final int numLandmarks;
+
+	/* [dimension][landmark] */
+	final double[][] landmarks;
+
+	/* [landmark * 3 + dimension] */
+	final double[] weights;
+
+	final double[][] affine;
+
+	final double[] translation;
+
+	/**
+	 * Random landmarks in a 100<sup>3</sup> cube with small random weights.
+	 */
+	ThinplateSplineReference( final int numLandmarks, final long seed )
+	{
+		this.numLandmarks = numLandmarks;
+		final Random rnd = new Random( seed );
+		landmarks = new double[ 3 ][ numLandmarks ];
+		weights = new double[ 3 * numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < 3; ++d )
+			{
+				landmarks[ d ][ l ] = 100 * rnd.nextDouble();
+				weights[ l * 3 + d ] = 1e-4 * ( rnd.nextDouble() - 0.5 );
+			}
+		affine = new double[][] { { 0.1, 0.02, 0 }, { -0.01, 0.05, 0.03 }, { 0, 0.02, -0.1 } };
+		translation = new double[] { 1, -2, 3 };
+	}
+
+	/**
+	 * Brute force x + A x + b + &Sigma; w U(|x - p|).
+	 */
+	void apply( final double[] x, final double[] y )
+	{
+		for ( int i = 0; i < 3; ++i )
+		{
+			y[ i ] = x[ i ] + translation[ i ];
+			for ( int j = 0; j < 3; ++j )
+				y[ i ] += affine[ i ][ j ] * x[ j ];
+		}
+		for ( int l = 0; l < numLandmarks; ++l )
+		{
+			double r2 = 0;
+			for ( int d = 0; d < 3; ++d )
+			{
+				final double dx = x[ d ] - landmarks[ d ][ l ];
+				r2 += dx * dx;
+			}
+			if ( r2 == 0 )
+				continue;
+			final double u = 0.5 * r2 * Math.log( r2 );
+			for ( int i = 0; i < 3; ++i )
+				y[ i ] += u * weights[ l * 3 + i ];
+		}
+	}
+}
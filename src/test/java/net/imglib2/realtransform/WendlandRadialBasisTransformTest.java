@@ -0,0 +1,131 @@
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.realtransform.WendlandRadialBasisTransform.Kernel;
+
+public class WendlandRadialBasisTransformTest
+{
+	private static final double EPS = 1e-8;
+
+	private static double[][][] landmarks( final int n, final int numLandmarks, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final double[][] p = new double[ n ][ numLandmarks ];
+		final double[][] q = new double[ n ][ numLandmarks ];
+		for ( int l = 0; l < numLandmarks; ++l )
+			for ( int d = 0; d < n; ++d )
+			{
+				p[ d ][ l ] = 100 * rnd.nextDouble();
+				q[ d ][ l ] = 1.1 * p[ d ][ l ] + 3 * d + 5 * rnd.nextDouble();
+			}
+		return new double[][][] { p, q };
+	}
+
+	@Test
+	public void testKernels()
+	{
+		for ( final Kernel kernel : Kernel.values() )
+		{
+			assertEquals( 1, kernel.value( 0 ), 0 );
+			assertEquals( 0, kernel.value( 1 ), 0 );
+			assertEquals( 0, kernel.value( 1.5 ), 0 );
+			double last = 1;
+			for ( double r = 0.1; r < 1; r += 0.1 )
+			{
+				final double value = kernel.value( r );
+				assertTrue( value < last && value > 0 );
+				last = value;
+			}
+		}
+	}
+
+	@Test
+	public void testInterpolation()
+	{
+		for ( final int n : new int[] { 2, 3 } )
+		{
+			final double[][][] pq = landmarks( n, 500, n );
+			for ( final Kernel kernel : Kernel.values() )
+			{
+				final WendlandRadialBasisTransform transform = new WendlandRadialBasisTransform( pq[ 0 ], pq[ 1 ], 20, kernel );
+				final WendlandRadialBasisTransform copy = transform.copy();
+				final double[] x = new double[ n ];
+				final double[] y = new double[ n ];
+				final double[] z = new double[ n ];
+				for ( int l = 0; l < 500; ++l )
+				{
+					for ( int d = 0; d < n; ++d )
+					{
+						x[ d ] = pq[ 0 ][ d ][ l ];
+						z[ d ] = pq[ 1 ][ d ][ l ];
+					}
+					transform.apply( x, y );
+					assertArrayEquals( kernel + " " + n + "D", z, y, 1e-6 );
+					copy.apply( x, x );
+					assertArrayEquals( kernel + " " + n + "D copy", z, x, 1e-6 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLocality()
+	{
+		final double[][][] pq = landmarks( 2, 200, 5 );
+		final WendlandRadialBasisTransform transform = new WendlandRadialBasisTransform( pq[ 0 ], pq[ 1 ], 10 );
+
+		/* equally spaced points beyond the support of all landmarks are transformed by the affine */
+		final double[] x = new double[ 2 ];
+		final double[][] y = new double[ 3 ][ 2 ];
+		for ( int i = 0; i < 3; ++i )
+		{
+			x[ 0 ] = 150 + 20 * i;
+			x[ 1 ] = -50 - 10 * i;
+			transform.apply( x, y[ i ] );
+		}
+		assertEquals( 2 * y[ 1 ][ 0 ], y[ 0 ][ 0 ] + y[ 2 ][ 0 ], EPS );
+		assertEquals( 2 * y[ 1 ][ 1 ], y[ 0 ][ 1 ] + y[ 2 ][ 1 ], EPS );
+
+		/* affine landmarks are transformed by their affine everywhere */
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+		final double[][] q = new double[ 2 ][ 200 ];
+		for ( int l = 0; l < 200; ++l )
+		{
+			x[ 0 ] = pq[ 0 ][ 0 ][ l ];
+			x[ 1 ] = pq[ 0 ][ 1 ][ l ];
+			affine.apply( x, y[ 0 ] );
+			q[ 0 ][ l ] = y[ 0 ][ 0 ];
+			q[ 1 ][ l ] = y[ 0 ][ 1 ];
+		}
+		final WendlandRadialBasisTransform affineTransform = new WendlandRadialBasisTransform( pq[ 0 ], q, 10, Kernel.C4 );
+		final Random rnd = new Random( 6 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			x[ 0 ] = 200 * rnd.nextDouble() - 50;
+			x[ 1 ] = 200 * rnd.nextDouble() - 50;
+			affine.apply( x, y[ 0 ] );
+			affineTransform.apply( x, y[ 1 ] );
+			assertArrayEquals( y[ 0 ], y[ 1 ], 1e-6 );
+		}
+	}
+
+	@Test
+	public void testDuplicate()
+	{
+		final double[][] p = { { 0, 10, 0, 10, 5, 5 }, { 0, 0, 10, 10, 5, 5 } };
+		final double[][] q = { { 0, 10, 0, 10, 5, 6 }, { 0, 0, 10, 10, 5, 5 } };
+		try
+		{
+			new WendlandRadialBasisTransform( p, q, 8 );
+			fail( "Duplicate landmarks with different targets accepted." );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+	}
+}
@@ -0,0 +1,154 @@
+package net.imglib2.realtransform.benchmark;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.realtransform.AffineTransform;
+import net.imglib2.realtransform.AffineTransform2D;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.DeformationFieldTransform;
+import net.imglib2.realtransform.HomographyTransform2D;
+import net.imglib2.realtransform.InvertibleRealTransformSequence;
+import net.imglib2.realtransform.Perspective3D;
+import net.imglib2.realtransform.PolarToCartesianTransform2D;
+import net.imglib2.realtransform.PolynomialTransform2D;
+import net.imglib2.realtransform.PositionFieldTransform;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.realtransform.Scale3D;
+import net.imglib2.realtransform.SphericalToCartesianTransform3D;
+import net.imglib2.realtransform.ThinplateSplineTransform;
+import net.imglib2.realtransform.Translation3D;
+import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Fixed, reproducible instances of all transforms covered by the benchmarks.
+ */
+public class BenchmarkTransforms
+{
+	public static AffineTransform3D affine3D()
+	{
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set(
+				1.1, 0.1, -0.3, 5,
+				0.2, 0.9, 0.05, -3,
+				-0.1, 0.3, 1.2, 7 );
+		return affine;
+	}
+
+	public static AffineTransform2D affine2D()
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 1.1, 0.1, 3, -0.2, 0.9, 4 );
+		return affine;
+	}
+
+	public static ThinplateSplineTransform tps( final int numLandmarks )
+	{
+		final Random rnd = new Random( 42 );
+		final double[][] p = new double[ 2 ][ numLandmarks ];
+		final double[][] q = new double[ 2 ][ numLandmarks ];
+		for ( int i = 0; i < numLandmarks; ++i )
+		{
+			for ( int d = 0; d < 2; ++d )
+			{
+				p[ d ][ i ] = 256 * rnd.nextDouble();
+				q[ d ][ i ] = p[ d ][ i ] + 8 * rnd.nextGaussian();
+			}
+		}
+		return new ThinplateSplineTransform( p, q );
+	}
+
+	/**
+	 * A smooth 256x256 two-dimensional vector field, vectors stacked along
+	 * dimension 2.  With offset, the field stores displacements, otherwise
+	 * positions.
+	 */
+	public static ArrayImg< FloatType, FloatArray > field( final boolean displacement )
+	{
+		final ArrayImg< FloatType, FloatArray > field = ArrayImgs.floats( 256, 256, 2 );
+		final Cursor< FloatType > c = field.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final int d = c.getIntPosition( 2 );
+			final double x = c.getDoublePosition( 0 );
+			final double y = c.getDoublePosition( 1 );
+			final double v = 4 * Math.sin( ( d == 0 ? y : x ) / 32.0 );
+			c.get().setReal( displacement ? v : c.getDoublePosition( d ) + v );
+		}
+		return field;
+	}
+
+	public static RealTransform create( final String name )
+	{
+		switch ( name )
+		{
+		case "affine2d":
+			return affine2D();
+		case "affine3d":
+			return affine3D();
+		case "affinend":
+		{
+			final AffineTransform affine = new AffineTransform( 3 );
+			affine.set( affine3D().getRowPackedCopy() );
+			return affine;
+		}
+		case "scale":
+			return new Scale3D( 1.5, 0.5, 2 );
+		case "translation":
+			return new Translation3D( 1.5, 0.5, 2 );
+		case "homography":
+		{
+			final HomographyTransform2D homography = new HomographyTransform2D();
+			homography.set(
+					1.1, 0.1, 3,
+					-0.2, 0.9, 4,
+					0.001, 0.002, 1 );
+			return homography;
+		}
+		case "perspective":
+			return Perspective3D.getInstance();
+		case "polar":
+			return new PolarToCartesianTransform2D();
+		case "spherical":
+			return SphericalToCartesianTransform3D.getInstance();
+		case "polynomial":
+		{
+			final PolynomialTransform2D polynomial = new PolynomialTransform2D();
+			polynomial.set( 1, 0.1, 0.2, 0.01, 0.02, 0.03, 2, 0.3, 0.4, 0.04, 0.05, 0.06 );
+			return polynomial;
+		}
+		case "tps":
+			return tps( 100 );
+		case "deformation":
+		{
+			final ArrayImg< FloatType, FloatArray > field = field( true );
+			return new DeformationFieldTransform<>( Views.hyperSlice( field, 2, 0 ), Views.hyperSlice( field, 2, 1 ) );
+		}
+		case "position":
+		{
+			final ArrayImg< FloatType, FloatArray > field = field( false );
+			return new PositionFieldTransform<>( Views.hyperSlice( field, 2, 0 ), Views.hyperSlice( field, 2, 1 ) );
+		}
+		case "sequence":
+		case "compiledSequence":
+		{
+			final InvertibleRealTransformSequence sequence = new InvertibleRealTransformSequence();
+			sequence.add( affine3D() );
+			sequence.add( new Scale3D( 1.5, 0.5, 2 ) );
+			sequence.add( new Translation3D( 1.5, 0.5, 2 ) );
+			sequence.add( affine3D().inverse() );
+			return name.equals( "sequence" ) ? sequence : sequence.compile();
+		}
+		case "iterativeInverse":
+			return new WrappedIterativeInvertibleRealTransform<>( tps( 20 ) ).inverse();
+		default:
+			throw new IllegalArgumentException( "Unknown transform " + name );
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package net.imglib2.realtransform.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.LinuxPerfNormProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with the GC profiler and, on Linux, the normalized
+ * hardware counter profiler.  The latter requires perf and can be disabled
+ * with -Dperfnorm=false.
+ */
+public class Benchmarks
+{
+	public static void run( final Class< ? > benchmark ) throws RunnerException
+	{
+		final ChainedOptionsBuilder options = new OptionsBuilder()
+				.include( benchmark.getSimpleName() )
+				.addProfiler( GCProfiler.class );
+
+		if ( System.getProperty( "os.name" ).toLowerCase().contains( "linux" ) && Boolean.parseBoolean( System.getProperty( "perfnorm", "true" ) ) )
+			options.addProfiler( LinuxPerfNormProfiler.class );
+
+		new Runner( options.build() ).run();
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		run( RealTransformBenchmark.class );
+		run( RealViewsBenchmark.class );
+	}
+}
@@ -0,0 +1,109 @@
+package net.imglib2.realtransform.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+import net.imglib2.realtransform.RealTransform;
+
+/**
+ * Throughput of {@link RealTransform#apply(double[], double[])} and of the
+ * batch and float variants for all transforms in
+ * {@link BenchmarkTransforms}.
+ */
+@State( Scope.Thread )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class RealTransformBenchmark
+{
+	private static final int BATCH = 1024;
+
+	@Param( {
+			"affine2d", "affine3d", "affinend", "scale", "translation",
+			"homography", "perspective", "polar", "spherical", "polynomial",
+			"tps", "deformation", "position", "sequence", "compiledSequence",
+			"iterativeInverse" } )
+	public String transform;
+
+	private RealTransform t;
+
+	private double[] source;
+
+	private double[] target;
+
+	private float[] sourceFloat;
+
+	private float[] targetFloat;
+
+	private double[] batchSource;
+
+	private double[] batchTarget;
+
+	@Setup
+	public void setup()
+	{
+		t = BenchmarkTransforms.create( transform );
+
+		final int n = t.numSourceDimensions();
+		final int m = t.numTargetDimensions();
+		final Random rnd = new Random( 42 );
+
+		source = new double[ n ];
+		target = new double[ m ];
+		sourceFloat = new float[ n ];
+		targetFloat = new float[ m ];
+		for ( int d = 0; d < n; ++d )
+		{
+			source[ d ] = 1 + 200 * rnd.nextDouble();
+			sourceFloat[ d ] = ( float )source[ d ];
+		}
+
+		batchSource = new double[ BATCH * n ];
+		batchTarget = new double[ BATCH * m ];
+		for ( int i = 0; i < batchSource.length; ++i )
+			batchSource[ i ] = 1 + 200 * rnd.nextDouble();
+	}
+
+	@Benchmark
+	public double[] apply()
+	{
+		t.apply( source, target );
+		return target;
+	}
+
+	@Benchmark
+	public float[] applyFloat()
+	{
+		t.apply( sourceFloat, targetFloat );
+		return targetFloat;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( BATCH )
+	public double[] applyBatch()
+	{
+		t.apply( batchSource, batchTarget, 0, BATCH );
+		return batchTarget;
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		Benchmarks.run( RealTransformBenchmark.class );
+	}
+}
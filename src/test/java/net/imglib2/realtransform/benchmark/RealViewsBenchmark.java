@@ -0,0 +1,110 @@
+package net.imglib2.realtransform.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.BlockResampler;
+import net.imglib2.realtransform.RealViews;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Full render loops of {@link RealViews#affine} and
+ * {@link RealViews#transform} views, single threaded in flat iteration order
+ * and in parallel through {@link BlockResampler}.
+ */
+@State( Scope.Benchmark )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class RealViewsBenchmark
+{
+	@Param( { "affine", "transform" } )
+	public String view;
+
+	@Param( { "nearest", "nlinear" } )
+	public String interpolation;
+
+	private RandomAccessible< FloatType > transformed;
+
+	private ArrayImg< FloatType, FloatArray > target;
+
+	private ExecutorService service;
+
+	@Setup
+	public void setup()
+	{
+		final ArrayImg< FloatType, FloatArray > source = ArrayImgs.floats( 256, 256, 64 );
+		final Random rnd = new Random( 42 );
+		for ( final FloatType t : source )
+			t.set( rnd.nextFloat() );
+
+		final RealRandomAccessible< FloatType > interpolated = interpolation.equals( "nearest" )
+				? Views.interpolate( Views.extendZero( source ), new NearestNeighborInterpolatorFactory<>() )
+				: Views.interpolate( Views.extendZero( source ), new NLinearInterpolatorFactory<>() );
+
+		final AffineTransform3D affine = BenchmarkTransforms.affine3D();
+		transformed = view.equals( "affine" )
+				? RealViews.affine( interpolated, affine )
+				: RealViews.transform( interpolated, affine );
+
+		target = ArrayImgs.floats( 256, 256, 16 );
+		service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		service.shutdown();
+	}
+
+	@Benchmark
+	public ArrayImg< FloatType, FloatArray > render()
+	{
+		final Cursor< FloatType > s = Views.flatIterable( Views.interval( transformed, target ) ).cursor();
+		final Cursor< FloatType > t = target.cursor();
+		while ( t.hasNext() )
+			t.next().set( s.next() );
+		return target;
+	}
+
+	@Benchmark
+	public ArrayImg< FloatType, FloatArray > resample() throws InterruptedException, ExecutionException
+	{
+		BlockResampler.resample( transformed, target, target, service );
+		return target;
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		Benchmarks.run( RealViewsBenchmark.class );
+	}
+}